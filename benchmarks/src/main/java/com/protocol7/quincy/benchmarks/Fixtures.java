@@ -0,0 +1,80 @@
+package com.protocol7.quincy.benchmarks;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.extensions.TransportParameters;
+import com.protocol7.quincy.utils.Rnd;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.cert.CertificateFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+
+public class Fixtures {
+
+  /**
+   * Directory of the certificate and private key used by the server. The key is only meant for
+   * tests, so it is read from the quic module test resources rather than packaged in the jar. The
+   * default assumes the benchmarks are run from the project root.
+   */
+  public static final String KEYS_PROPERTY = "quincy.benchmarks.keys";
+
+  private static final String DEFAULT_KEYS = "quic/src/test/resources";
+
+  /**
+   * AEAD with random keys, using the same keys in both directions so that it can open its own
+   * packets
+   */
+  public static AEAD aead(final CipherSuite cipherSuite) {
+    final byte[] key = Rnd.rndBytes(cipherSuite.getKeyLength());
+    final byte[] iv = Rnd.rndBytes(12);
+    final byte[] pnKey = Rnd.rndBytes(cipherSuite.getKeyLength());
+
+    return new AEAD(cipherSuite, key, key, iv, iv, pnKey, pnKey);
+  }
+
+  public static TransportParameters transportParameters() {
+    return TransportParameters.newBuilder()
+        .withInitialMaxStreamDataBidiLocal(32768)
+        .withInitialMaxData(49152)
+        .withInitialMaxStreamsBidi(100)
+        .withMaxIdleTimeout(30)
+        .withMaxUDPPacketSize(1452)
+        .withInitialMaxStreamsUni(100)
+        .withDisableActiveMigration(true)
+        .build();
+  }
+
+  public static byte[] certificate() {
+    try (final InputStream in = resource("server.crt")) {
+      return CertificateFactory.getInstance("X.509").generateCertificate(in).getEncoded();
+    } catch (final GeneralSecurityException | IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static PrivateKey privateKey() {
+    try (final InputStream in = resource("server.der")) {
+      final PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(in.readAllBytes());
+      return KeyFactory.getInstance("RSA").generatePrivate(keySpec);
+    } catch (final GeneralSecurityException | IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static InputStream resource(final String name) throws IOException {
+    final Path path = Paths.get(System.getProperty(KEYS_PROPERTY, DEFAULT_KEYS), name);
+    if (!Files.isRegularFile(path)) {
+      throw new IllegalStateException(
+          "Missing " + path.toAbsolutePath() + ", set its directory with -D" + KEYS_PROPERTY);
+    }
+    return Files.newInputStream(path);
+  }
+
+  private Fixtures() {}
+}
@@ -0,0 +1,128 @@
+package com.protocol7.quincy.benchmarks;
+
+import com.protocol7.quincy.protocol.frames.AckFrame;
+import com.protocol7.quincy.protocol.frames.AckRange;
+import com.protocol7.quincy.protocol.frames.ApplicationCloseFrame;
+import com.protocol7.quincy.protocol.frames.ConnectionCloseFrame;
+import com.protocol7.quincy.protocol.frames.CryptoFrame;
+import com.protocol7.quincy.protocol.frames.DataBlockedFrame;
+import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.FrameType;
+import com.protocol7.quincy.protocol.frames.HandshakeDoneFrame;
+import com.protocol7.quincy.protocol.frames.MaxDataFrame;
+import com.protocol7.quincy.protocol.frames.MaxStreamDataFrame;
+import com.protocol7.quincy.protocol.frames.MaxStreamsFrame;
+import com.protocol7.quincy.protocol.frames.NewToken;
+import com.protocol7.quincy.protocol.frames.PaddingFrame;
+import com.protocol7.quincy.protocol.frames.PingFrame;
+import com.protocol7.quincy.protocol.frames.ResetStreamFrame;
+import com.protocol7.quincy.protocol.frames.RetireConnectionIdFrame;
+import com.protocol7.quincy.protocol.frames.StreamDataBlockedFrame;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
+import com.protocol7.quincy.protocol.frames.StreamsBlockedFrame;
+import com.protocol7.quincy.utils.Rnd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameParseBenchmark {
+
+  @Param({
+    "PADDING",
+    "PING",
+    "ACK",
+    "RESET_STREAM",
+    "CRYPTO",
+    "NEW_TOKEN",
+    "STREAM",
+    "MAX_DATA",
+    "MAX_STREAM_DATA",
+    "MAX_STREAMS",
+    "DATA_BLOCKED",
+    "STREAM_DATA_BLOCKED",
+    "STREAMS_BLOCKED",
+    "RETIRE_CONNECTION_ID",
+    "CONNECTION_CLOSE",
+    "APPLICATION_CLOSE",
+    "HANDSHAKE_DONE"
+  })
+  public FrameType type;
+
+  private ByteBuf bb;
+
+  @Setup
+  public void setUp() {
+    bb = PooledByteBufAllocator.DEFAULT.directBuffer();
+    frame(type).write(bb);
+  }
+
+  @TearDown
+  public void tearDown() {
+    bb.release();
+  }
+
+  @Benchmark
+  public Frame parse() {
+    bb.readerIndex(0);
+    return Frame.parse(bb);
+  }
+
+  private static Frame frame(final FrameType type) {
+    switch (type) {
+      case PADDING:
+        return new PaddingFrame(10);
+      case PING:
+        return PingFrame.INSTANCE;
+      case ACK:
+        return new AckFrame(123, new AckRange(1, 5), new AckRange(7, 12), new AckRange(20, 100));
+      case RESET_STREAM:
+        return new ResetStreamFrame(4, 123, 1000);
+      case CRYPTO:
+        return new CryptoFrame(0, Rnd.rndBytes(1000));
+      case NEW_TOKEN:
+        return new NewToken(Rnd.rndBytes(32));
+      case STREAM:
+        return new StreamFrame(4, 1000, false, Rnd.rndBytes(1000));
+      case MAX_DATA:
+        return new MaxDataFrame(1_000_000);
+      case MAX_STREAM_DATA:
+        return new MaxStreamDataFrame(4, 1_000_000);
+      case MAX_STREAMS:
+        return new MaxStreamsFrame(100, true);
+      case DATA_BLOCKED:
+        return new DataBlockedFrame(1_000_000);
+      case STREAM_DATA_BLOCKED:
+        return new StreamDataBlockedFrame(4, 1_000_000);
+      case STREAMS_BLOCKED:
+        return new StreamsBlockedFrame(100, true);
+      case RETIRE_CONNECTION_ID:
+        return new RetireConnectionIdFrame(3);
+      case CONNECTION_CLOSE:
+        return new ConnectionCloseFrame(0x0a, FrameType.STREAM, "protocol violation");
+      case APPLICATION_CLOSE:
+        return new ApplicationCloseFrame(12, "going away");
+      case HANDSHAKE_DONE:
+        return HandshakeDoneFrame.INSTANCE;
+      default:
+        throw new IllegalArgumentException("Frame type not supported: " + type);
+    }
+  }
+}
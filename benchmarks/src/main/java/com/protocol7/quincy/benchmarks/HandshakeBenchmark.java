@@ -0,0 +1,81 @@
+package com.protocol7.quincy.benchmarks;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.ClientTlsSession;
+import com.protocol7.quincy.tls.ClientTlsSession.CertificateInvalidException;
+import com.protocol7.quincy.tls.NoopCertificateValidator;
+import com.protocol7.quincy.tls.ServerTlsSession;
+import com.protocol7.quincy.tls.ServerTlsSession.ServerHelloAndHandshake;
+import com.protocol7.quincy.tls.aead.InitialAEAD;
+import com.protocol7.quincy.tls.extensions.TransportParameters;
+import com.protocol7.quincy.utils.Rnd;
+import io.netty.buffer.Unpooled;
+import java.security.PrivateKey;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandshakeBenchmark {
+
+  private static final List<String> ALPN = List.of("http/0.9");
+
+  @Param({"TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256"})
+  public CipherSuite cipherSuite;
+
+  private final TransportParameters transportParameters = Fixtures.transportParameters();
+  private List<byte[]> certificates;
+  private PrivateKey privateKey;
+
+  @Setup
+  public void setUp() {
+    certificates = List.of(Fixtures.certificate());
+    privateKey = Fixtures.privateKey();
+  }
+
+  /** A full handshake, including the key exchange and certificate signing and verification */
+  @Benchmark
+  public ServerTlsSession handshake() throws CertificateInvalidException {
+    final byte[] connectionId = Rnd.rndBytes(16);
+
+    final ClientTlsSession client =
+        new ClientTlsSession(
+            InitialAEAD.create(connectionId, true),
+            ALPN,
+            transportParameters,
+            NoopCertificateValidator.INSTANCE,
+            List.of(cipherSuite));
+    final ServerTlsSession server =
+        new ServerTlsSession(
+            InitialAEAD.create(connectionId, false),
+            ALPN,
+            transportParameters,
+            certificates,
+            privateKey,
+            List.of(cipherSuite));
+
+    final byte[] clientHello = client.startHandshake(connectionId);
+    final ServerHelloAndHandshake shah = server.handleClientHello(clientHello);
+
+    client.handleServerHello(Unpooled.wrappedBuffer(shah.getServerHello()));
+    final byte[] clientFin = client.handleHandshake(shah.getServerHandshake(), 0).get();
+
+    server.handleClientFinished(clientFin);
+    return server;
+  }
+}
@@ -0,0 +1,56 @@
+package com.protocol7.quincy.benchmarks;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.utils.Rnd;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HeaderProtectionBenchmark {
+
+  @Param({"TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256"})
+  public CipherSuite cipherSuite;
+
+  private AEAD aead;
+  private byte[] sample;
+  private final byte[] header = Rnd.rndBytes(5);
+
+  @Setup
+  public void setUp() {
+    aead = Fixtures.aead(cipherSuite);
+    sample = Rnd.rndBytes(aead.getSampleLength());
+  }
+
+  @Benchmark
+  public byte[] encryptHeader() throws GeneralSecurityException {
+    return aead.encryptHeader(nextSample(), header, true);
+  }
+
+  @Benchmark
+  public byte[] decryptHeader() throws GeneralSecurityException {
+    return aead.decryptHeader(nextSample(), header, true);
+  }
+
+  // every packet has a different sample, and ChaCha20 is slow to protect with a repeated one
+  private byte[] nextSample() {
+    sample[sample.length - 1]++;
+    return sample;
+  }
+}
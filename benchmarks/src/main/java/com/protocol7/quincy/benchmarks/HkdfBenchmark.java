@@ -0,0 +1,50 @@
+package com.protocol7.quincy.benchmarks;
+
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.HKDF;
+import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.InitialAEAD;
+import com.protocol7.quincy.utils.Rnd;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HkdfBenchmark {
+
+  @Param({"TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256"})
+  public CipherSuite cipherSuite;
+
+  private final byte[] connectionId = Rnd.rndBytes(8);
+  private byte[] secret;
+
+  @Setup
+  public void setUp() {
+    secret = Rnd.rndBytes(cipherSuite.getHashLength());
+  }
+
+  @Benchmark
+  public byte[] expandLabel() {
+    return HKDF.expandLabel(
+        cipherSuite, secret, "quic key", new byte[0], cipherSuite.getKeyLength());
+  }
+
+  @Benchmark
+  public AEAD initialAEAD() {
+    return InitialAEAD.create(connectionId, true);
+  }
+}
@@ -0,0 +1,183 @@
+package com.protocol7.quincy.benchmarks;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.protocol7.quincy.connection.Connection;
+import com.protocol7.quincy.netty.LinkConditions;
+import com.protocol7.quincy.netty.Loopback;
+import com.protocol7.quincy.netty.QuicBuilder;
+import com.protocol7.quincy.streams.Stream;
+import com.protocol7.quincy.utils.Rnd;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end benchmarks of a client and server connected over an in-memory {@link Loopback}, with
+ * configurable loss, delay and reordering. Measures handshakes per second, bulk transfer throughput
+ * (the "bytes" counter, in bytes per second) and the latency distribution of small request/response
+ * exchanges.
+ *
+ * <p>Lost handshake packets are not retransmitted, run the handshake benchmark without loss.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoopbackBenchmark {
+
+  private static final String ALPN = "http/0.9";
+  private static final int CHUNK_SIZE = 1000;
+  private static final byte[] RESPONSE = {1};
+  private static final long TIMEOUT_SECONDS = 30;
+
+  @Param({"0"})
+  public double lossRate;
+
+  @Param({"0"})
+  public int delayMillis;
+
+  @Param({"0"})
+  public double reorderRate;
+
+  @Param({"5"})
+  public int reorderDelayMillis;
+
+  @Param({"1048576"})
+  public int bulkSize;
+
+  @Param({"32"})
+  public int messageSize;
+
+  private Loopback loopback;
+  private Connection connection;
+  private byte[] chunk;
+  private byte[] message;
+  private volatile CompletableFuture<Void> response;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Bytes {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    final LinkConditions conditions =
+        LinkConditions.perfect()
+            .withLoss(lossRate)
+            .withDelay(delayMillis, MILLISECONDS)
+            .withReordering(reorderRate, reorderDelayMillis, MILLISECONDS);
+
+    final QuicBuilder server =
+        quicBuilder()
+            .withCertificates(List.of(Fixtures.certificate()))
+            .withPrivateKey(Fixtures.privateKey())
+            .withStreamHandler(
+                (stream, data, finished) -> {
+                  if (finished) {
+                    stream.write(RESPONSE, true);
+                  }
+                });
+
+    loopback = Loopback.start(server, conditions);
+
+    connection =
+        loopback
+            .newBootstrap(quicBuilder())
+            .withStreamHandler(
+                (stream, data, finished) -> {
+                  if (finished) {
+                    response.complete(null);
+                  }
+                })
+            .connect()
+            .get(TIMEOUT_SECONDS, SECONDS);
+
+    chunk = Rnd.rndBytes(CHUNK_SIZE);
+    message = Rnd.rndBytes(messageSize);
+  }
+
+  private static QuicBuilder quicBuilder() {
+    // flow control limits out of the way, the bulk transfer is limited by the link only
+    return new QuicBuilder()
+        .withApplicationProtocols(ALPN)
+        .withInitialMaxData(Integer.MAX_VALUE)
+        .withInitialMaxStreamDataBidiLocal(Integer.MAX_VALUE)
+        .withInitialMaxStreamDataBidiRemote(Integer.MAX_VALUE)
+        .withInitialMaxStreamDataUni(Integer.MAX_VALUE);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    connection.close().get(TIMEOUT_SECONDS, SECONDS);
+    loopback.close();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public Connection handshake() throws Exception {
+    // closing a client connection also closes its channel, each handshake gets a channel of its own
+    final Connection handshaked =
+        loopback.newBootstrap(quicBuilder()).connect().get(TIMEOUT_SECONDS, SECONDS);
+    handshaked.close().get(TIMEOUT_SECONDS, SECONDS);
+    return handshaked;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public void bulk(final Bytes bytes) throws Exception {
+    final CompletableFuture<Void> done = expectResponse();
+
+    final Stream stream = connection.openStream();
+    for (int offset = 0; offset < bulkSize; offset += CHUNK_SIZE) {
+      final int length = Math.min(CHUNK_SIZE, bulkSize - offset);
+      final byte[] data = length == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, length);
+
+      stream.write(data, offset + length == bulkSize);
+    }
+
+    done.get(TIMEOUT_SECONDS, SECONDS);
+    bytes.bytes += bulkSize;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void requestResponse() throws Exception {
+    final CompletableFuture<Void> done = expectResponse();
+
+    connection.openStream().write(message, true);
+
+    done.get(TIMEOUT_SECONDS, SECONDS);
+  }
+
+  private CompletableFuture<Void> expectResponse() {
+    final CompletableFuture<Void> future = new CompletableFuture<>();
+    response = future;
+    return future;
+  }
+}
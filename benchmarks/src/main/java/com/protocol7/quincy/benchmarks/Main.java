@@ -0,0 +1,25 @@
+package com.protocol7.quincy.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler always enabled, so that allocation rates (see {@code
+ * gc.alloc.rate.norm}, bytes per operation) are reported next to throughput. Accepts the regular
+ * JMH command line options, e.g. a regexp to select which benchmarks to run.
+ */
+public class Main {
+
+  public static void main(final String[] args) throws Exception {
+    final Options options =
+        new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,79 @@
+package com.protocol7.quincy.benchmarks;
+
+import com.protocol7.quincy.protocol.Payload;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.utils.Rnd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadBenchmark {
+
+  @Param({"TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256"})
+  public CipherSuite cipherSuite;
+
+  @Param({"64", "1200"})
+  public int payloadSize;
+
+  private final byte[] aad = Rnd.rndBytes(20);
+  private AEAD aead;
+  private Payload payload;
+  private ByteBuf sealed;
+  private ByteBuf scratch;
+  private ByteBuf out;
+  private long packetNumber;
+
+  @Setup
+  public void setUp() {
+    aead = Fixtures.aead(cipherSuite);
+    payload = new Payload(new StreamFrame(0, 0, false, Rnd.rndBytes(payloadSize)));
+
+    sealed = PooledByteBufAllocator.DEFAULT.directBuffer(2048);
+    scratch = PooledByteBufAllocator.DEFAULT.directBuffer(2048);
+    out = PooledByteBufAllocator.DEFAULT.directBuffer(2048);
+
+    payload.write(sealed, aead, 0, aad);
+  }
+
+  @TearDown
+  public void tearDown() {
+    sealed.release();
+    scratch.release();
+    out.release();
+  }
+
+  @Benchmark
+  public int seal() {
+    out.clear();
+    payload.write(out, aead, ++packetNumber, aad);
+    return out.writerIndex();
+  }
+
+  @Benchmark
+  public Payload open() {
+    scratch.clear();
+    scratch.writeBytes(sealed, 0, sealed.writerIndex());
+
+    return Payload.parse(scratch, scratch.readableBytes(), aead, 0, aad);
+  }
+}
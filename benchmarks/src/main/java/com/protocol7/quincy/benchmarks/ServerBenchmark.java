@@ -0,0 +1,89 @@
+package com.protocol7.quincy.benchmarks;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.protocol7.quincy.connection.Connection;
+import com.protocol7.quincy.netty.QuicBuilder;
+import com.protocol7.quincy.netty.QuicServer;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Handshakes per second against a {@link QuicServer} over UDP on the loopback interface, with
+ * clients on concurrent benchmark threads. Compare the number of workers to see how the server
+ * scales with cores, the clients need cores of their own as well.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ServerBenchmark {
+
+  private static final String ALPN = "http/0.9";
+  private static final long TIMEOUT_SECONDS = 30;
+
+  @Param({"1", "4"})
+  public int workers;
+
+  private QuicServer server;
+  private EventLoopGroup clientGroup;
+
+  @Setup
+  public void setUp() throws Exception {
+    server =
+        QuicServer.bind(
+            new QuicBuilder()
+                .withApplicationProtocols(ALPN)
+                .withCertificates(List.of(Fixtures.certificate()))
+                .withPrivateKey(Fixtures.privateKey()),
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            workers);
+
+    clientGroup = new NioEventLoopGroup();
+  }
+
+  @TearDown
+  public void tearDown() {
+    clientGroup.shutdownGracefully(0, 5, SECONDS).syncUninterruptibly();
+    server.close();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public Connection handshake() throws Exception {
+    // closing a client connection also closes its channel, each handshake gets a channel of its
+    // own, and thus a new client port for the kernel to spread over the workers
+    final Bootstrap b = new Bootstrap();
+    b.group(clientGroup);
+    b.channel(NioDatagramChannel.class);
+    b.handler(new QuicBuilder().withApplicationProtocols(ALPN).channelInitializer());
+    final Channel channel = b.connect(server.getLocalAddress()).sync().channel();
+
+    final Connection connection =
+        Connection.newBootstrap(channel).connect().get(TIMEOUT_SECONDS, SECONDS);
+    connection.close().get(TIMEOUT_SECONDS, SECONDS);
+    return connection;
+  }
+}
@@ -0,0 +1,87 @@
+package com.protocol7.quincy.benchmarks;
+
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
+import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.utils.Rnd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShortPacketBenchmark {
+
+  @Param({"TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256"})
+  public CipherSuite cipherSuite;
+
+  @Param({"64", "1200"})
+  public int payloadSize;
+
+  private final ConnectionId connId = ConnectionId.random();
+  private AEAD aead;
+  private byte[] data;
+  private ByteBuf packet;
+  private ByteBuf scratch;
+  private ByteBuf out;
+  private long packetNumber;
+
+  @Setup
+  public void setUp() {
+    aead = Fixtures.aead(cipherSuite);
+    data = Rnd.rndBytes(payloadSize);
+
+    packet = PooledByteBufAllocator.DEFAULT.directBuffer(2048);
+    scratch = PooledByteBufAllocator.DEFAULT.directBuffer(2048);
+    out = PooledByteBufAllocator.DEFAULT.directBuffer(2048);
+
+    create(0).write(packet, aead);
+  }
+
+  @TearDown
+  public void tearDown() {
+    packet.release();
+    scratch.release();
+    out.release();
+  }
+
+  @Benchmark
+  public ShortPacket parseAndComplete() {
+    // payloads are opened in place, so parse a fresh copy of the protected packet every time
+    scratch.clear();
+    scratch.writeBytes(packet, 0, packet.writerIndex());
+
+    return ShortPacket.parse(scratch, ConnectionId.LENGTH).complete(level -> aead);
+  }
+
+  @Benchmark
+  public int write() {
+    // a cipher can not be used to seal with the same packet number (nonce) twice
+    out.clear();
+    create(++packetNumber).write(out, aead);
+    return out.writerIndex();
+  }
+
+  private ShortPacket create(final long packetNumber) {
+    return ShortPacket.create(
+        false, connId, connId, packetNumber, new StreamFrame(0, 0, false, data));
+  }
+}
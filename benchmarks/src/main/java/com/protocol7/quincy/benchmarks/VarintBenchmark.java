@@ -0,0 +1,57 @@
+package com.protocol7.quincy.benchmarks;
+
+import com.protocol7.quincy.Varint;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VarintBenchmark {
+
+  // one value for each of the 1, 2, 4 and 8 byte encodings
+  @Param({"37", "15293", "494878333", "151288809941952652"})
+  public long value;
+
+  private ByteBuf bb;
+
+  @Setup
+  public void setUp() {
+    bb = PooledByteBufAllocator.DEFAULT.directBuffer(Varint.MAX_LENGTH);
+    Varint.write(value, bb);
+  }
+
+  @TearDown
+  public void tearDown() {
+    bb.release();
+  }
+
+  @Benchmark
+  public long read() {
+    bb.readerIndex(0);
+    return Varint.readAsLong(bb);
+  }
+
+  @Benchmark
+  public int write() {
+    bb.writerIndex(0);
+    Varint.write(value, bb);
+    return bb.writerIndex();
+  }
+}
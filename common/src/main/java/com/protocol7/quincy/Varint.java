@@ -87,6 +87,21 @@ public class Varint {
     bb.writeBytes(write(value));
   }
 
+  /** Number of bytes the value is encoded as */
+  public static int length(final long value) {
+    checkRange(value);
+
+    if (value > 1073741823) {
+      return 8;
+    } else if (value > 16383) {
+      return 4;
+    } else if (value > 63) {
+      return 2;
+    } else {
+      return 1;
+    }
+  }
+
   public static byte[] write(final long value) {
     final int from;
     final int mask;
@@ -30,6 +30,14 @@ public class VarintTest {
     Varint.write(4611686018427387904L, bb);
   }
 
+  @Test
+  public void length() {
+    for (final long value :
+        new long[] {0, 63, 64, 16383, 16384, 1073741823, 1073741824, Varint.MAX}) {
+      assertEquals(Varint.write(value).length, Varint.length(value));
+    }
+  }
+
   @Test
   public void randomBounds() {
     for (int i = 0; i < 1000_000; i++) {
@@ -1,6 +1,7 @@
 package com.protocol7.quincy;
 
 import com.protocol7.quincy.protocol.Version;
+import com.protocol7.quincy.reliability.CongestionControllerFactory;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
 import java.util.List;
 
@@ -19,6 +20,11 @@ public class Configuration {
   private final int initialMaxStreamDataUni;
   private final int maxAckDelay;
   private final List<String> applicationProtocols;
+  private final int datagramBatchSize;
+  private final CongestionControllerFactory congestionControllerFactory;
+  private final boolean pacing;
+  private final int maxAckRanges;
+  private final int streamSendBufferSize;
 
   public Configuration(
       final Version version,
@@ -33,7 +39,12 @@ public class Configuration {
       final int initialMaxStreamDataBidiRemote,
       final int initialMaxStreamDataUni,
       final int maxAckDelay,
-      final List<String> applicationProtocols) {
+      final List<String> applicationProtocols,
+      final int datagramBatchSize,
+      final CongestionControllerFactory congestionControllerFactory,
+      final boolean pacing,
+      final int maxAckRanges,
+      final int streamSendBufferSize) {
     this.version = version;
     this.initialMaxStreamDataBidiLocal = initialMaxStreamDataBidiLocal;
     this.initialMaxData = initialMaxData;
@@ -47,6 +58,11 @@ public class Configuration {
     this.initialMaxStreamDataUni = initialMaxStreamDataUni;
     this.maxAckDelay = maxAckDelay;
     this.applicationProtocols = applicationProtocols;
+    this.datagramBatchSize = datagramBatchSize;
+    this.congestionControllerFactory = congestionControllerFactory;
+    this.pacing = pacing;
+    this.maxAckRanges = maxAckRanges;
+    this.streamSendBufferSize = streamSendBufferSize;
   }
 
   public Version getVersion() {
@@ -101,6 +117,30 @@ public class Configuration {
     return applicationProtocols;
   }
 
+  /** Maximum number of datagrams received in a single system call, 1 if not batched */
+  public int getDatagramBatchSize() {
+    return datagramBatchSize;
+  }
+
+  public CongestionControllerFactory getCongestionControllerFactory() {
+    return congestionControllerFactory;
+  }
+
+  /** Whether ack-eliciting packets are spaced out, rather than sent as soon as the window allows */
+  public boolean isPacing() {
+    return pacing;
+  }
+
+  /** Number of ranges of received packets included in acks, per packet number space */
+  public int getMaxAckRanges() {
+    return maxAckRanges;
+  }
+
+  /** Number of bytes written to a stream that are buffered before writes are held back */
+  public int getStreamSendBufferSize() {
+    return streamSendBufferSize;
+  }
+
   public TransportParameters toTransportParameters() {
     return TransportParameters.newBuilder()
         .withInitialMaxStreamDataBidiLocal(initialMaxStreamDataBidiLocal)
@@ -112,6 +152,7 @@ public class Configuration {
         .withDisableActiveMigration(disableMigration)
         .withInitialMaxStreamDataBidiRemote(initialMaxStreamDataBidiRemote)
         .withInitialMaxStreamDataUni(initialMaxStreamDataUni)
+        .withMaxAckDelay(maxAckDelay)
         .build();
   }
 }
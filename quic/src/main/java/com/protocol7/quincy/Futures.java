@@ -17,7 +17,16 @@ public class Futures {
         new GenericFutureListener<Future<V>>() {
           @Override
           public void operationComplete(final Future<V> future) {
-            result.setSuccess(f.apply(future.getNow())); // TODO handle exception
+            if (!future.isSuccess()) {
+              result.setFailure(future.cause());
+              return;
+            }
+
+            try {
+              result.setSuccess(f.apply(future.getNow()));
+            } catch (final RuntimeException e) {
+              result.setFailure(e);
+            }
           }
         });
 
@@ -30,13 +39,28 @@ public class Futures {
     future.addListener(
         new GenericFutureListener<Future<V>>() {
           @Override
-          public void operationComplete(final Future<V> future) throws Exception {
-            Futures.thenSync(
-                f.apply(future.get()),
-                (Function<T, Void>)
-                    t -> {
-                      result.setSuccess(t); // TODO handle exception
-                      return null;
+          public void operationComplete(final Future<V> future) {
+            if (!future.isSuccess()) {
+              result.setFailure(future.cause());
+              return;
+            }
+
+            final Future<T> next;
+            try {
+              next = f.apply(future.getNow());
+            } catch (final RuntimeException e) {
+              result.setFailure(e);
+              return;
+            }
+
+            next.addListener(
+                (GenericFutureListener<Future<T>>)
+                    nextFuture -> {
+                      if (nextFuture.isSuccess()) {
+                        result.setSuccess(nextFuture.getNow());
+                      } else {
+                        result.setFailure(nextFuture.cause());
+                      }
                     });
           }
         });
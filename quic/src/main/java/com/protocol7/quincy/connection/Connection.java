@@ -113,12 +113,14 @@ public interface Connection extends FrameSender {
 
   void setState(State state);
 
-  void closeByPeer();
+  Future<Void> closeByPeer();
 
   void reset(ConnectionId sourceConnectionId);
 
   void setToken(byte[] retryToken);
 
+  ConnectionStats getStats();
+
   interface Listener {
     void action();
   }
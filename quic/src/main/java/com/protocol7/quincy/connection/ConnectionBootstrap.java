@@ -15,12 +15,14 @@ import io.netty.util.concurrent.DefaultPromise;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
 import java.net.InetSocketAddress;
+import java.util.Optional;
 
 public class ConnectionBootstrap {
 
   private final Channel channel;
   private StreamHandler streamHandler = (stream, data, finished) -> {};
   private CertificateValidator certificateValidator = NoopCertificateValidator.INSTANCE;
+  private Optional<InetSocketAddress> peerAddress = Optional.empty();
 
   protected ConnectionBootstrap(final Channel channel) {
     this.channel = requireNonNull(channel);
@@ -37,12 +39,19 @@ public class ConnectionBootstrap {
     return this;
   }
 
+  /** Address of the peer, if other than the remote address the channel is connected to */
+  public ConnectionBootstrap withPeerAddress(final InetSocketAddress peerAddress) {
+    this.peerAddress = Optional.of(peerAddress);
+    return this;
+  }
+
   public Future<Connection> connect() {
     final QuicHandler clientHandler = channel.pipeline().get(QuicHandler.class);
 
     if (clientHandler != null) {
       final Configuration configuration = clientHandler.getConfiguration();
-      final InetSocketAddress peerAddress = (InetSocketAddress) channel.remoteAddress();
+      final InetSocketAddress peerAddress =
+          this.peerAddress.orElseGet(() -> (InetSocketAddress) channel.remoteAddress());
       final Timer timer = clientHandler.getTimer();
 
       final ConnectionId localConnectionId = ConnectionId.random();
@@ -53,7 +62,7 @@ public class ConnectionBootstrap {
               ConnectionId.random(),
               localConnectionId,
               streamHandler,
-              new NettyPacketSender(channel, peerAddress),
+              new NettyPacketSender(channel, peerAddress, configuration.getMaxPacketSize()),
               new DefaultFlowControlHandler(
                   configuration.getInitialMaxData(), configuration.getInitialMaxStreamDataUni()),
               peerAddress,
@@ -74,7 +83,9 @@ public class ConnectionBootstrap {
             }
           });
 
-      connection.handshake(connectFuture);
+      // start the handshake on the event loop reading the responses, so that they can not be
+      // handled before the connection has moved on from its initial state
+      channel.eventLoop().execute(() -> connection.handshake(connectFuture));
 
       return connectionFuture;
     } else {
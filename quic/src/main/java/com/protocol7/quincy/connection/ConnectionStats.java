@@ -0,0 +1,125 @@
+package com.protocol7.quincy.connection;
+
+import com.protocol7.quincy.reliability.CongestionController;
+import com.protocol7.quincy.reliability.RttEstimator;
+import com.protocol7.quincy.reliability.SendQueue;
+import java.util.concurrent.TimeUnit;
+
+/** Point in time statistics for a connection */
+public class ConnectionStats {
+
+  static ConnectionStats of(
+      final RttEstimator rtt,
+      final CongestionController congestionController,
+      final SendQueue sendQueue) {
+    return new ConnectionStats(
+        rtt.getLatestRtt(),
+        rtt.getSmoothedRtt(),
+        rtt.getRttVar(),
+        rtt.getMinRtt(),
+        congestionController.getCongestionWindow(),
+        congestionController.getBytesInFlight(),
+        congestionController.getPacingRate(),
+        sendQueue.size(),
+        sendQueue.getDelay());
+  }
+
+  private final long latestRttNanos;
+  private final long smoothedRttNanos;
+  private final long rttVarNanos;
+  private final long minRttNanos;
+  private final long congestionWindow;
+  private final long bytesInFlight;
+  private final long pacingRate;
+  private final int sendQueueSize;
+  private final long sendQueueDelayNanos;
+
+  private ConnectionStats(
+      final long latestRttNanos,
+      final long smoothedRttNanos,
+      final long rttVarNanos,
+      final long minRttNanos,
+      final long congestionWindow,
+      final long bytesInFlight,
+      final long pacingRate,
+      final int sendQueueSize,
+      final long sendQueueDelayNanos) {
+    this.latestRttNanos = latestRttNanos;
+    this.smoothedRttNanos = smoothedRttNanos;
+    this.rttVarNanos = rttVarNanos;
+    this.minRttNanos = minRttNanos;
+    this.congestionWindow = congestionWindow;
+    this.bytesInFlight = bytesInFlight;
+    this.pacingRate = pacingRate;
+    this.sendQueueSize = sendQueueSize;
+    this.sendQueueDelayNanos = sendQueueDelayNanos;
+  }
+
+  /** RTT of the most recently acknowledged packet, 0 until the first sample */
+  public long getLatestRtt(final TimeUnit unit) {
+    return unit.convert(latestRttNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Smoothed RTT, adjusted for the peer's ack delay. The initial RTT until the first sample */
+  public long getSmoothedRtt(final TimeUnit unit) {
+    return unit.convert(smoothedRttNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public long getRttVar(final TimeUnit unit) {
+    return unit.convert(rttVarNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Lowest RTT seen, 0 until the first sample */
+  public long getMinRtt(final TimeUnit unit) {
+    return unit.convert(minRttNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Bytes allowed in flight by the congestion controller */
+  public long getCongestionWindow() {
+    return congestionWindow;
+  }
+
+  /** Bytes sent in ack-eliciting packets, not yet acknowledged or declared lost */
+  public long getBytesInFlight() {
+    return bytesInFlight;
+  }
+
+  /** Bytes per second set by the congestion controller, 0 if it does not pace */
+  public long getPacingRate() {
+    return pacingRate;
+  }
+
+  /** Packets held back by the congestion window or pacing */
+  public int getSendQueueSize() {
+    return sendQueueSize;
+  }
+
+  /** Smoothed time packets are held back by the congestion window or pacing */
+  public long getSendQueueDelay(final TimeUnit unit) {
+    return unit.convert(sendQueueDelayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionStats{"
+        + "latestRtt="
+        + latestRttNanos
+        + ", smoothedRtt="
+        + smoothedRttNanos
+        + ", rttVar="
+        + rttVarNanos
+        + ", minRtt="
+        + minRttNanos
+        + ", congestionWindow="
+        + congestionWindow
+        + ", bytesInFlight="
+        + bytesInFlight
+        + ", pacingRate="
+        + pacingRate
+        + ", sendQueueSize="
+        + sendQueueSize
+        + ", sendQueueDelay="
+        + sendQueueDelayNanos
+        + '}';
+  }
+}
@@ -4,9 +4,10 @@ import static com.protocol7.quincy.connection.State.Closed;
 import static java.util.Optional.of;
 
 import com.protocol7.quincy.Configuration;
-import com.protocol7.quincy.InboundHandler;
 import com.protocol7.quincy.Pipeline;
+import com.protocol7.quincy.flowcontrol.FlowControlHandler;
 import com.protocol7.quincy.logging.LoggingHandler;
+import com.protocol7.quincy.netty.QuicHandler;
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.PacketNumber;
 import com.protocol7.quincy.protocol.TransportError;
@@ -20,7 +21,12 @@ import com.protocol7.quincy.protocol.packets.InitialPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
 import com.protocol7.quincy.reliability.AckDelay;
+import com.protocol7.quincy.reliability.CongestionController;
+import com.protocol7.quincy.reliability.LossDetector;
+import com.protocol7.quincy.reliability.Pacer;
 import com.protocol7.quincy.reliability.PacketBufferManager;
+import com.protocol7.quincy.reliability.RttEstimator;
+import com.protocol7.quincy.reliability.SendQueue;
 import com.protocol7.quincy.streams.DefaultStreamManager;
 import com.protocol7.quincy.streams.Stream;
 import com.protocol7.quincy.streams.StreamHandler;
@@ -39,10 +45,21 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 public class DefaultConnection implements Connection {
 
+  private final Logger log = LoggerFactory.getLogger(DefaultConnection.class);
+
+  // room for the packet header, the AEAD tag, the stream frame header and a piggybacked ack
+  private static final int STREAM_PACKET_OVERHEAD = 128;
+  // room for a long packet header with connection ids of the maximum length, excluding the token
+  private static final int HEADER_OVERHEAD = 64;
+  // room for the packet header and a piggybacked ack
+  private static final int PACKET_OVERHEAD = HEADER_OVERHEAD + 32;
+
   private final Version version;
 
   private final InetSocketAddress peerAddress;
@@ -54,6 +71,9 @@ public class DefaultConnection implements Connection {
   protected final StateMachine stateMachine;
   private final PacketSender packetSender;
   private final StreamManager streamManager;
+  private final LossDetector lossDetector;
+  private final SendQueue sendQueue;
+  private final int maxPacketSize;
 
   private final Pipeline pipeline;
 
@@ -73,8 +93,8 @@ public class DefaultConnection implements Connection {
       final PacketSender packetSender,
       final StreamHandler streamHandler,
       final TlsManager tlsManager,
-      final InboundHandler flowControlHandler,
-      final Timer timer) {
+      final FlowControlHandler flowControlHandler,
+      final Timer sharedTimer) {
     this.version = configuration.getVersion();
     this.peerAddress = peerAddress;
     this.localConnectionId = localConnectionId;
@@ -82,14 +102,76 @@ public class DefaultConnection implements Connection {
     this.tlsManager = tlsManager;
     this.stateMachine = stateMachine;
     this.packetSender = packetSender;
-    this.streamManager = new DefaultStreamManager(this, streamHandler);
+    this.maxPacketSize = configuration.getMaxPacketSize();
+    final DefaultStreamManager streamManager =
+        new DefaultStreamManager(
+            this,
+            flowControlHandler,
+            streamHandler,
+            configuration.getMaxPacketSize() - STREAM_PACKET_OVERHEAD,
+            configuration.getStreamSendBufferSize(),
+            this::isSendBlocked);
+    this.streamManager = streamManager;
     this.isClient = isClient;
 
+    // timeouts send packets, like probes and acks, on the same event loop as the other packets
+    final Timer timer = new EventLoopTimer(sharedTimer, packetSender.executor());
+
     final Ticker ticker = Ticker.systemTicker();
 
+    final AckDelay ackDelay = new AckDelay(configuration.getAckDelayExponent(), ticker);
+
+    final RttEstimator rtt = new RttEstimator();
+    final CongestionController congestionController =
+        configuration
+            .getCongestionControllerFactory()
+            .create(configuration.getMaxPacketSize(), rtt, configuration.isPacing());
+
+    // the peer's max ack delay is not known, assume it uses the same as ours
+    this.lossDetector =
+        new LossDetector(
+            this,
+            timer,
+            ticker,
+            ackDelay,
+            configuration.getMaxAckDelay(),
+            rtt,
+            congestionController);
+    addCloseListener(lossDetector::close);
+    lossDetector.addAckListener(streamManager);
+
+    final Optional<Pacer> pacer =
+        configuration.isPacing()
+            ? Optional.of(
+                new Pacer(
+                    congestionController,
+                    rtt,
+                    configuration.getMaxPacketSize(),
+                    configuration.getDatagramBatchSize()))
+            : Optional.empty();
+    this.sendQueue =
+        new SendQueue(
+            lossDetector,
+            pacer,
+            packetSender.executor(),
+            ticker,
+            this::beforeSendPacket,
+            this::sendPacketUnbuffered);
+    addCloseListener(sendQueue::clear);
+    // stream data held back while the send queue was blocked
+    sendQueue.addUnblockedListener(streamManager::flush);
+
     final PacketBufferManager packetBuffer =
         new PacketBufferManager(
-            new AckDelay(configuration.getAckDelayExponent(), ticker), this, timer, ticker);
+            ackDelay,
+            lossDetector,
+            configuration.getMaxAckRanges(),
+            this,
+            timer,
+            QuicHandler.TIMER_TICK_MS,
+            configuration.getMaxAckDelay(),
+            level -> maxPayloadLength(level, HEADER_OVERHEAD));
+    lossDetector.addAckListener(packetBuffer);
 
     final LoggingHandler logger = new LoggingHandler(isClient);
 
@@ -122,8 +204,16 @@ public class DefaultConnection implements Connection {
   }
 
   public void onPacket(final Packet packet) {
-    stateMachine.handlePacket(this, packet);
-    pipeline.onPacket(this, packet);
+    // frames sent in response, like acks, flow control updates and stream data, are bundled into
+    // as few packets as possible
+    sendQueue.hold();
+    try {
+      stateMachine.handlePacket(this, packet);
+      pipeline.onPacket(this, packet);
+    } finally {
+      // acks might have opened up the congestion window
+      sendQueue.release();
+    }
   }
 
   @Override
@@ -136,45 +226,70 @@ public class DefaultConnection implements Connection {
       throw new IllegalStateException("Connection not open");
     }
 
-    final Packet newPacket = pipeline.send(this, p);
+    // passed through the outbound pipeline once released by the send queue, frames might be
+    // added to it while it is queued
+    sendQueue.send(p);
+    return p;
+  }
 
-    // check again if any handler closed the connection
-    if (stateMachine.getState() == Closed) {
-      throw new IllegalStateException("Connection not open");
-    }
+  private Packet beforeSendPacket(final Packet packet) {
+    return pipeline.send(this, packet);
+  }
 
-    sendPacketUnbuffered(newPacket);
-    return newPacket;
+  private boolean isSendBlocked() {
+    return sendQueue.isBlocked();
   }
 
-  private void sendPacketUnbuffered(final Packet packet) {
-    packetSender
+  private Future<Void> sendPacketUnbuffered(final Packet packet) {
+    // never block on the write, it is running on the channel event loop
+    return packetSender
         .send(packet, getAEAD(Packet.getEncryptionLevel(packet)))
-        .awaitUninterruptibly(); // TODO fix
+        .addListener(
+            future -> {
+              if (!future.isSuccess()) {
+                log.warn("Failed to send packet {}", packet, future.cause());
+              }
+            });
   }
 
   public FullPacket send(final EncryptionLevel level, final Frame... frames) {
-    final Packet packet;
+    final Optional<FullPacket> appended =
+        sendQueue.tryAppend(level, maxPayloadLength(level), frames);
+    if (appended.isPresent()) {
+      log.debug("Frames added to queued packet {}", appended.get().getPacketNumber());
+      return appended.get();
+    }
+
+    if (stateMachine.getState() == Closed) {
+      throw new IllegalStateException("Connection not open");
+    }
+
+    // numbered by the send queue, so that packets are queued in packet number order
+    return sendQueue.send(() -> createPacket(level, frames));
+  }
+
+  private FullPacket createPacket(final EncryptionLevel level, final Frame... frames) {
     if (level == EncryptionLevel.OneRtt) {
-      packet =
-          ShortPacket.create(
-              false, remoteConnectionId, localConnectionId, nextSendPacketNumber(), frames);
+      return ShortPacket.create(
+          false, remoteConnectionId, localConnectionId, nextSendPacketNumber(), frames);
     } else if (level == EncryptionLevel.Handshake) {
-      packet =
-          HandshakePacket.create(
-              remoteConnectionId, localConnectionId, nextSendPacketNumber(), version, frames);
+      return HandshakePacket.create(
+          remoteConnectionId, localConnectionId, nextSendPacketNumber(), version, frames);
     } else {
-      packet =
-          InitialPacket.create(
-              remoteConnectionId,
-              localConnectionId,
-              nextSendPacketNumber(),
-              version,
-              token,
-              frames);
+      return InitialPacket.create(
+          remoteConnectionId, localConnectionId, nextSendPacketNumber(), version, token, frames);
     }
+  }
 
-    return (FullPacket) sendPacket(packet);
+  private int maxPayloadLength(final EncryptionLevel level) {
+    return maxPayloadLength(level, PACKET_OVERHEAD);
+  }
+
+  private int maxPayloadLength(final EncryptionLevel level, final int overhead) {
+    if (level == EncryptionLevel.Initial) {
+      return maxPacketSize - overhead - token.map(t -> t.length).orElse(0);
+    }
+    return maxPacketSize - overhead;
   }
 
   public Version getVersion() {
@@ -211,6 +326,12 @@ public class DefaultConnection implements Connection {
     this.token = of(token);
   }
 
+  @Override
+  public ConnectionStats getStats() {
+    return ConnectionStats.of(
+        lossDetector.getRtt(), lossDetector.getCongestionController(), sendQueue);
+  }
+
   private final List<Listener> closeListeners = new ArrayList<>();
 
   @Override
@@ -234,6 +355,8 @@ public class DefaultConnection implements Connection {
     setRemoteConnectionId(remoteConnectionId);
 
     resetSendPacketNumber();
+    // the Retry did not acknowledge the Initial packets, but they will never be acked either
+    lossDetector.reset(EncryptionLevel.Initial);
 
     tlsManager.resetTlsSession(remoteConnectionId);
   }
@@ -255,10 +378,10 @@ public class DefaultConnection implements Connection {
     return packetSender.destroy();
   }
 
-  public void closeByPeer() {
+  public Future<Void> closeByPeer() {
     notifyCloseListeners();
 
-    packetSender.destroy().awaitUninterruptibly(); // TOOD fix
+    return packetSender.destroy();
   }
 
   private void notifyCloseListeners() {
@@ -0,0 +1,61 @@
+package com.protocol7.quincy.connection;
+
+import static java.util.Objects.requireNonNull;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timer running its tasks on the event loop of a connection, so that packets sent from them are
+ * handled by the same thread as packets sent in response to received ones. The shared timer only
+ * keeps track of when tasks are due.
+ */
+public class EventLoopTimer implements Timer {
+
+  private final Logger log = LoggerFactory.getLogger(EventLoopTimer.class);
+
+  private final Timer timer;
+  private final EventExecutor executor;
+
+  public EventLoopTimer(final Timer timer, final EventExecutor executor) {
+    this.timer = requireNonNull(timer);
+    this.executor = requireNonNull(executor);
+  }
+
+  @Override
+  public Timeout newTimeout(final TimerTask task, final long delay, final TimeUnit unit) {
+    requireNonNull(task);
+
+    return timer.newTimeout(
+        timeout -> {
+          if (executor.inEventLoop()) {
+            task.run(timeout);
+          } else {
+            executor.execute(() -> run(task, timeout));
+          }
+        },
+        delay,
+        unit);
+  }
+
+  private void run(final TimerTask task, final Timeout timeout) {
+    // a task cancelled while waiting for the event loop still runs, like one cancelled too late
+    try {
+      task.run(timeout);
+    } catch (final Exception e) {
+      log.warn("Timer task failed", e);
+    }
+  }
+
+  /** The shared timer is owned by the caller, stopping it is up to them */
+  @Override
+  public Set<Timeout> stop() {
+    return Set.of();
+  }
+}
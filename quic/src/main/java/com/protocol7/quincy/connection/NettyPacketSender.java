@@ -1,13 +1,14 @@
 package com.protocol7.quincy.connection;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.tls.aead.AEAD;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
 import java.net.InetSocketAddress;
 import org.slf4j.Logger;
@@ -19,25 +20,60 @@ public class NettyPacketSender implements PacketSender {
 
   private final Channel channel;
   private final InetSocketAddress peerAddress;
+  private final int maxPacketSize;
+  private final boolean ownsChannel;
+
+  public NettyPacketSender(
+      final Channel channel, final InetSocketAddress peerAddress, final int maxPacketSize) {
+    this(channel, peerAddress, maxPacketSize, true);
+  }
+
+  /**
+   * @param ownsChannel whether the channel is closed when the sender is destroyed. Server channels
+   *     are shared by all connections and must outlive them.
+   */
+  public NettyPacketSender(
+      final Channel channel,
+      final InetSocketAddress peerAddress,
+      final int maxPacketSize,
+      final boolean ownsChannel) {
+    checkArgument(maxPacketSize > 0);
 
-  public NettyPacketSender(final Channel channel, final InetSocketAddress peerAddress) {
     this.channel = requireNonNull(channel);
     this.peerAddress = requireNonNull(peerAddress);
+    this.maxPacketSize = maxPacketSize;
+    this.ownsChannel = ownsChannel;
   }
 
   @Override
   public Future<Void> send(final Packet packet, final AEAD aead) {
     requireNonNull(packet);
 
-    final ByteBuf bb = Unpooled.buffer();
-    packet.write(bb, aead);
+    // one pooled buffer per datagram, released by the channel once written
+    final ByteBuf bb = channel.alloc().directBuffer(maxPacketSize);
+    try {
+      packet.write(bb, aead);
+    } catch (final RuntimeException e) {
+      bb.release();
+      throw e;
+    }
 
     log.debug("Sending datagram for packet {}", packet);
+    // flushes are coalesced by the FlushConsolidationHandler set up by the QuicInitializer
     return channel.writeAndFlush(new DatagramPacket(bb, peerAddress));
   }
 
   @Override
   public Future<Void> destroy() {
-    return channel.close();
+    if (ownsChannel) {
+      return channel.close();
+    } else {
+      return channel.newSucceededFuture();
+    }
+  }
+
+  @Override
+  public EventExecutor executor() {
+    return channel.eventLoop();
   }
 }
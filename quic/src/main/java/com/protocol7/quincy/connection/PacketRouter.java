@@ -32,6 +32,7 @@ public class PacketRouter {
   private final QuicTokenHandler tokenHandler;
   private final Optional<List<byte[]>> certificates;
   private final Optional<PrivateKey> privateKey;
+  private final int worker;
 
   public PacketRouter(
       final Version version,
@@ -40,12 +41,28 @@ public class PacketRouter {
       final QuicTokenHandler tokenHandler,
       final Optional<List<byte[]>> certificates,
       final Optional<PrivateKey> privateKey) {
+    this(version, connections, streamHandler, tokenHandler, certificates, privateKey, 0);
+  }
+
+  /**
+   * Router for one out of multiple server workers, connection IDs issued by the router are tagged
+   * with the worker index.
+   */
+  public PacketRouter(
+      final Version version,
+      final Connections connections,
+      final StreamHandler streamHandler,
+      final QuicTokenHandler tokenHandler,
+      final Optional<List<byte[]>> certificates,
+      final Optional<PrivateKey> privateKey,
+      final int worker) {
     this.version = version;
     this.connections = connections;
     this.streamHandler = streamHandler;
     this.tokenHandler = tokenHandler;
     this.certificates = certificates;
     this.privateKey = privateKey;
+    this.worker = worker;
   }
 
   private boolean validateVersion(final HalfParsedPacket<?> halfParsed, final PacketSender sender) {
@@ -137,7 +154,9 @@ public class PacketRouter {
               final byte[] retryToken =
                   tokenHandler.writeToken(halfParsed.getDestinationConnectionId(), peerAddress);
 
-              final ConnectionId newLocalConnectionId = ConnectionId.random();
+              // the client will use the new connection ID for the rest of the connection, tag it so
+              // that its packets can be steered to this worker
+              final ConnectionId newLocalConnectionId = ConnectionId.random(worker);
 
               sender.send(
                   RetryPacket.createOutgoing(
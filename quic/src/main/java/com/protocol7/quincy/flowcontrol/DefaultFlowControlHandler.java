@@ -1,6 +1,10 @@
 package com.protocol7.quincy.flowcontrol;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
 import com.google.common.annotations.VisibleForTesting;
+import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
 import com.protocol7.quincy.protocol.TransportError;
 import com.protocol7.quincy.protocol.frames.DataBlockedFrame;
@@ -17,6 +21,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DefaultFlowControlHandler implements FlowControlHandler {
@@ -25,6 +30,7 @@ public class DefaultFlowControlHandler implements FlowControlHandler {
   private final FlowControlCounter sendCounter;
   private final AtomicBoolean connectionBlocked = new AtomicBoolean(false);
   private final Set<Long> blockedStreams = new HashSet<>();
+  private final List<Runnable> creditListeners = new CopyOnWriteArrayList<>();
 
   public DefaultFlowControlHandler(final long connectionMaxBytes, final long streamMaxBytes) {
     receiveCounter = new FlowControlCounter(connectionMaxBytes, streamMaxBytes);
@@ -33,24 +39,41 @@ public class DefaultFlowControlHandler implements FlowControlHandler {
 
   @Override
   public void beforeSendPacket(final Packet packet, final PipelineContext ctx) {
-    if (packet instanceof FullPacket) {
-      final FullPacket fullPacket = (FullPacket) packet;
-      for (final Frame frame : fullPacket.getPayload().getFrames()) {
-        if (frame.getType() == FrameType.STREAM) {
-          final StreamFrame sf = (StreamFrame) frame;
+    // stream data has already consumed credit when released by the stream
+    ctx.next(packet);
+  }
 
-          if (!tryConsume(sf.getStreamId(), sf.getOffset() + sf.getData().length, ctx)) {
-            throw new IllegalStateException("Stream or connection blocked");
-          }
-        }
-      }
+  @Override
+  public synchronized long tryConsumeSendCredit(
+      final long sid, final long offset, final long length, final FrameSender sender) {
+    checkArgument(offset >= 0);
+    checkArgument(length >= 0);
+
+    final long end = offset + length;
+    final long allowed = Math.min(end, Math.max(sendCounter.getMaxOffset(sid), offset));
+    if (allowed > offset) {
+      tryConsume(sid, allowed, sender);
+    }
+    if (allowed < end) {
+      // fails, but lets the peer know we are blocked
+      tryConsume(sid, end, sender);
     }
+    return allowed - offset;
+  }
 
-    ctx.next(packet);
+  @Override
+  public void addSendCreditListener(final Runnable listener) {
+    creditListeners.add(requireNonNull(listener));
+  }
+
+  @Override
+  public long getReceiveMaxOffset(final long sid) {
+    return receiveCounter.getMaxOffset(sid);
   }
 
   @VisibleForTesting
-  protected boolean tryConsume(final long sid, final long offset, final PipelineContext ctx) {
+  protected synchronized boolean tryConsume(
+      final long sid, final long offset, final FrameSender ctx) {
     final TryConsumeResult result = sendCounter.tryConsume(sid, offset);
 
     if (result.isSuccess()) {
@@ -75,21 +98,26 @@ public class DefaultFlowControlHandler implements FlowControlHandler {
   public void onReceivePacket(final Packet packet, final PipelineContext ctx) {
     if (packet instanceof FullPacket) {
       final FullPacket fp = (FullPacket) packet;
+      boolean creditGranted = false;
       // listen for flow control frames
       for (final Frame frame : fp.getPayload().getFrames()) {
         if (frame.getType() == FrameType.MAX_STREAM_DATA) {
           final MaxStreamDataFrame msd = (MaxStreamDataFrame) frame;
           sendCounter.setStreamMaxBytes(msd.getStreamId(), msd.getMaxStreamData());
-          blockedStreams.remove(msd.getStreamId());
+          synchronized (this) {
+            blockedStreams.remove(msd.getStreamId());
+          }
+          creditGranted = true;
         } else if (frame.getType() == FrameType.MAX_DATA) {
           final MaxDataFrame mdf = (MaxDataFrame) frame;
           sendCounter.setConnectionMaxBytes(mdf.getMaxData());
           connectionBlocked.set(false);
+          creditGranted = true;
         } else if (frame.getType() == FrameType.STREAM) {
           final StreamFrame sf = (StreamFrame) frame;
           final long sid = sf.getStreamId();
           final TryConsumeResult result =
-              receiveCounter.tryConsume(sid, sf.getOffset() + sf.getData().length);
+              receiveCounter.tryConsume(sid, sf.getOffset() + sf.getLength());
 
           if (result.isSuccess()) {
             final List<Frame> frames = new ArrayList<>();
@@ -111,6 +139,13 @@ public class DefaultFlowControlHandler implements FlowControlHandler {
           }
         }
       }
+
+      if (creditGranted) {
+        // release data buffered by blocked streams
+        for (final Runnable listener : creditListeners) {
+          listener.run();
+        }
+      }
     }
 
     ctx.next(packet);
@@ -35,7 +35,8 @@ public class FlowControlCounter {
 
   // remove need to syncronize
   public synchronized TryConsumeResult tryConsume(final long sid, final long offset) {
-    checkArgument(offset > 0);
+    // 0 for an empty frame finishing a stream without any data
+    checkArgument(offset >= 0);
 
     // first check if we can successfully consume
     final StreamCounter stream = streams.computeIfAbsent(sid, ignored -> new StreamCounter());
@@ -71,6 +72,14 @@ public class FlowControlCounter {
         success, resultingConnOffset, connectionMaxBytes.get(), resultingStreamOffset, streamMax);
   }
 
+  /** The offset the stream can send up to, within both the stream and the connection limit */
+  public synchronized long getMaxOffset(final long sid) {
+    final StreamCounter stream = streams.computeIfAbsent(sid, ignored -> new StreamCounter());
+    final long connectionCredit = max(connectionMaxBytes.get() - calculateConnectionOffset(), 0);
+
+    return Math.min(stream.maxOffset.get(), stream.offset.get() + connectionCredit);
+  }
+
   public void resetStream(final long sid, final long finalOffset) {
     final StreamCounter stream = streams.computeIfAbsent(sid, ignored -> new StreamCounter());
     stream.offset.updateAndGet(current -> max(current, finalOffset));
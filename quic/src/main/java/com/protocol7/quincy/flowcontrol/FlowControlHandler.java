@@ -1,6 +1,25 @@
 package com.protocol7.quincy.flowcontrol;
 
+import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.InboundHandler;
 import com.protocol7.quincy.OutboundHandler;
 
-public interface FlowControlHandler extends InboundHandler, OutboundHandler {}
+public interface FlowControlHandler extends InboundHandler, OutboundHandler {
+
+  /**
+   * Consume credit for sending stream data from the given offset. If the stream or connection is
+   * blocked, the peer is notified using the sender.
+   *
+   * @return the number of bytes that may be sent, up to length
+   */
+  long tryConsumeSendCredit(long sid, long offset, long length, FrameSender sender);
+
+  /** Notified when the peer has granted more credit, for a stream or the connection */
+  void addSendCreditListener(Runnable listener);
+
+  /**
+   * The offset the peer is allowed to send stream data up to, within the stream and connection
+   * limits we have advertised
+   */
+  long getReceiveMaxOffset(long sid);
+}
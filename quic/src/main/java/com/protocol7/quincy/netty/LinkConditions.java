@@ -0,0 +1,99 @@
+package com.protocol7.quincy.netty;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Impairments applied to datagrams sent over an emulated link, see {@link LinkEmulator}. Each
+ * datagram is dropped with the loss rate. Remaining datagrams are held back for the delay, and with
+ * the reorder rate for an additional reorder delay, letting later datagrams overtake them.
+ */
+public class LinkConditions {
+
+  private static final LinkConditions PERFECT = new LinkConditions(0, 0, 0, 0, 0);
+
+  public static LinkConditions perfect() {
+    return PERFECT;
+  }
+
+  private final double lossRate;
+  private final long delayNanos;
+  private final double reorderRate;
+  private final long reorderDelayNanos;
+  private final long seed;
+
+  private LinkConditions(
+      final double lossRate,
+      final long delayNanos,
+      final double reorderRate,
+      final long reorderDelayNanos,
+      final long seed) {
+    checkArgument(lossRate >= 0 && lossRate <= 1, "lossRate must be between 0 and 1");
+    checkArgument(delayNanos >= 0, "delay must not be negative");
+    checkArgument(reorderRate >= 0 && reorderRate <= 1, "reorderRate must be between 0 and 1");
+    checkArgument(reorderDelayNanos >= 0, "reorderDelay must not be negative");
+
+    this.lossRate = lossRate;
+    this.delayNanos = delayNanos;
+    this.reorderRate = reorderRate;
+    this.reorderDelayNanos = reorderDelayNanos;
+    this.seed = seed;
+  }
+
+  public LinkConditions withLoss(final double lossRate) {
+    return new LinkConditions(lossRate, delayNanos, reorderRate, reorderDelayNanos, seed);
+  }
+
+  public LinkConditions withDelay(final long delay, final TimeUnit unit) {
+    return new LinkConditions(lossRate, unit.toNanos(delay), reorderRate, reorderDelayNanos, seed);
+  }
+
+  public LinkConditions withReordering(
+      final double reorderRate, final long reorderDelay, final TimeUnit unit) {
+    requireNonNull(unit);
+    return new LinkConditions(lossRate, delayNanos, reorderRate, unit.toNanos(reorderDelay), seed);
+  }
+
+  /** Seed for the random decisions on which datagrams to drop or reorder */
+  public LinkConditions withSeed(final long seed) {
+    return new LinkConditions(lossRate, delayNanos, reorderRate, reorderDelayNanos, seed);
+  }
+
+  public double getLossRate() {
+    return lossRate;
+  }
+
+  public long getDelay(final TimeUnit unit) {
+    return unit.convert(delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public double getReorderRate() {
+    return reorderRate;
+  }
+
+  public long getReorderDelay(final TimeUnit unit) {
+    return unit.convert(reorderDelayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  @Override
+  public String toString() {
+    return "LinkConditions{"
+        + "lossRate="
+        + lossRate
+        + ", delayNanos="
+        + delayNanos
+        + ", reorderRate="
+        + reorderRate
+        + ", reorderDelayNanos="
+        + reorderDelayNanos
+        + ", seed="
+        + seed
+        + '}';
+  }
+}
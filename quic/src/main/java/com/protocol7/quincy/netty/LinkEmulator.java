@@ -0,0 +1,63 @@
+package com.protocol7.quincy.netty;
+
+import static java.util.Objects.requireNonNull;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound handler emulating one direction of a UDP link over an in-memory channel. Datagrams are
+ * stamped with the local address, as a socket would, and then dropped, delayed or reordered
+ * according to the {@link LinkConditions}. Dropped datagrams complete their write successfully, as
+ * with a datagram lost in the network.
+ */
+public class LinkEmulator extends ChannelOutboundHandlerAdapter {
+
+  private final InetSocketAddress localAddress;
+  private final LinkConditions conditions;
+  private final Random random;
+
+  public LinkEmulator(final InetSocketAddress localAddress, final LinkConditions conditions) {
+    this.localAddress = requireNonNull(localAddress);
+    this.conditions = requireNonNull(conditions);
+    this.random = new Random(conditions.getSeed());
+  }
+
+  @Override
+  public void write(
+      final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
+    if (!(msg instanceof DatagramPacket)) {
+      ctx.write(msg, promise);
+      return;
+    }
+
+    final DatagramPacket packet = (DatagramPacket) msg;
+
+    if (random.nextDouble() < conditions.getLossRate()) {
+      packet.release();
+      promise.trySuccess();
+      return;
+    }
+
+    final DatagramPacket stamped =
+        new DatagramPacket(packet.content(), packet.recipient(), localAddress);
+
+    long delay = conditions.getDelay(TimeUnit.NANOSECONDS);
+    if (random.nextDouble() < conditions.getReorderRate()) {
+      delay += conditions.getReorderDelay(TimeUnit.NANOSECONDS);
+    }
+
+    if (delay > 0) {
+      // the flush that follows this write will not include the datagram, flush it when it's due
+      ctx.executor()
+          .schedule(() -> ctx.writeAndFlush(stamped, promise), delay, TimeUnit.NANOSECONDS);
+    } else {
+      ctx.write(stamped, promise);
+    }
+  }
+}
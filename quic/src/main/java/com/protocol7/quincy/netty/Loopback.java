@@ -0,0 +1,111 @@
+package com.protocol7.quincy.netty;
+
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.connection.Connection;
+import com.protocol7.quincy.connection.ConnectionBootstrap;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a QUIC server and clients within the same JVM, connected by in-memory channels instead of
+ * UDP sockets. Datagrams pass through a {@link LinkEmulator} in each direction, which stamps them
+ * with a made up loopback address for the sending side and applies the {@link LinkConditions}.
+ *
+ * <p>Each client channel is paired with a server side channel of its own, and thus a separate
+ * server {@link QuicHandler}. Connections made with the bootstrap from {@link
+ * #newBootstrap(QuicBuilder)} share the client channel.
+ */
+public class Loopback implements AutoCloseable {
+
+  // made up ports, only used to tell endpoints apart
+  private static final AtomicInteger PORTS = new AtomicInteger(10000);
+
+  public static Loopback start(final QuicBuilder server, final LinkConditions conditions) {
+    requireNonNull(server);
+    requireNonNull(conditions);
+
+    final EventLoopGroup group = new DefaultEventLoopGroup();
+    final InetSocketAddress serverAddress = nextAddress();
+
+    final ServerBootstrap b = new ServerBootstrap();
+    b.group(group);
+    b.channel(LocalServerChannel.class);
+    b.childHandler(emulated(serverAddress, conditions, server.channelInitializer()));
+
+    // binding to any address picks a unique one
+    final Channel serverChannel = b.bind(LocalAddress.ANY).syncUninterruptibly().channel();
+
+    return new Loopback(group, serverChannel, serverAddress, conditions);
+  }
+
+  private static InetSocketAddress nextAddress() {
+    return new InetSocketAddress(InetAddress.getLoopbackAddress(), PORTS.getAndIncrement());
+  }
+
+  private static ChannelHandler emulated(
+      final InetSocketAddress address,
+      final LinkConditions conditions,
+      final ChannelHandler initializer) {
+    return new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(final Channel ch) {
+        ch.pipeline().addLast(new LinkEmulator(address, conditions), initializer);
+      }
+    };
+  }
+
+  private final EventLoopGroup group;
+  private final Channel serverChannel;
+  private final InetSocketAddress serverAddress;
+  private final LinkConditions conditions;
+
+  private Loopback(
+      final EventLoopGroup group,
+      final Channel serverChannel,
+      final InetSocketAddress serverAddress,
+      final LinkConditions conditions) {
+    this.group = group;
+    this.serverChannel = serverChannel;
+    this.serverAddress = serverAddress;
+    this.conditions = conditions;
+  }
+
+  public InetSocketAddress getServerAddress() {
+    return serverAddress;
+  }
+
+  /** Connects a new client channel, initialized by the builder, to the server */
+  public Channel newClientChannel(final QuicBuilder client) {
+    final Bootstrap b = new Bootstrap();
+    b.group(group);
+    b.channel(LocalChannel.class);
+    b.handler(emulated(nextAddress(), conditions, client.channelInitializer()));
+
+    return b.connect(serverChannel.localAddress()).syncUninterruptibly().channel();
+  }
+
+  /** Bootstrap for {@link Connection}s to the server, over a new client channel */
+  public ConnectionBootstrap newBootstrap(final QuicBuilder client) {
+    return Connection.newBootstrap(newClientChannel(client)).withPeerAddress(serverAddress);
+  }
+
+  @Override
+  public void close() {
+    serverChannel.close().syncUninterruptibly();
+    // nothing left to run once the channels are closed, no need for a quiet period
+    group.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+  }
+}
@@ -1,11 +1,14 @@
 package com.protocol7.quincy.netty;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.addressvalidation.InsecureQuicTokenHandler;
 import com.protocol7.quincy.addressvalidation.QuicTokenHandler;
 import com.protocol7.quincy.protocol.Version;
+import com.protocol7.quincy.reliability.CongestionControllerFactory;
+import com.protocol7.quincy.reliability.NewReno;
 import com.protocol7.quincy.streams.StreamHandler;
 import io.netty.channel.ChannelHandler;
 import java.security.PrivateKey;
@@ -27,7 +30,12 @@ public class QuicBuilder {
   private boolean disableMigration = true;
   private int initialMaxStreamDataBidiRemote = 32768;
   private int initialMaxStreamDataUni = 32768;
-  private int maxAckDelay = 100; // TODO verify
+  private int maxAckDelay = 25;
+  private int datagramBatchSize = 1;
+  private CongestionControllerFactory congestionControllerFactory = NewReno.FACTORY;
+  private boolean pacing = true;
+  private int maxAckRanges = 32;
+  private int streamSendBufferSize = 262144;
 
   private List<byte[]> certificates;
   private PrivateKey privateKey;
@@ -98,6 +106,55 @@ public class QuicBuilder {
     return this;
   }
 
+  /**
+   * Receive up to the given number of datagrams per system call, using recvmmsg. Only applies to
+   * unconnected epoll channels, like the ones bound by {@link QuicServer}. Datagrams written within
+   * the same flush are always sent using sendmmsg where supported.
+   */
+  public QuicBuilder withDatagramBatchSize(final int datagramBatchSize) {
+    checkArgument(datagramBatchSize > 0);
+    this.datagramBatchSize = datagramBatchSize;
+    return this;
+  }
+
+  /** Congestion control used for each connection, defaults to {@link NewReno} */
+  public QuicBuilder withCongestionController(
+      final CongestionControllerFactory congestionControllerFactory) {
+    this.congestionControllerFactory = requireNonNull(congestionControllerFactory);
+    return this;
+  }
+
+  /**
+   * Space out packets at the rate set by the congestion controller, rather than sending the full
+   * window in one burst. Bursts of up to the datagram batch size are still allowed. Enabled by
+   * default
+   */
+  public QuicBuilder withPacing(final boolean pacing) {
+    this.pacing = pacing;
+    return this;
+  }
+
+  /**
+   * Number of ranges of received packets to keep acknowledging, per packet number space. With heavy
+   * loss or reordering, the oldest ranges are dropped once reaching this limit. Defaults to 32
+   */
+  public QuicBuilder withMaxAckRanges(final int maxAckRanges) {
+    checkArgument(maxAckRanges > 0);
+    this.maxAckRanges = maxAckRanges;
+    return this;
+  }
+
+  /**
+   * Number of bytes written to a stream that are buffered while waiting for flow control credit.
+   * The future returned by a write completes once the data fits within the buffer. Defaults to 256
+   * KB
+   */
+  public QuicBuilder withStreamSendBufferSize(final int streamSendBufferSize) {
+    checkArgument(streamSendBufferSize > 0);
+    this.streamSendBufferSize = streamSendBufferSize;
+    return this;
+  }
+
   public QuicBuilder withCertificates(final List<byte[]> certificates) {
     this.certificates = certificates;
     return this;
@@ -142,10 +199,20 @@ public class QuicBuilder {
         initialMaxStreamDataBidiRemote,
         initialMaxStreamDataUni,
         maxAckDelay,
-        applicationProtocols);
+        applicationProtocols,
+        datagramBatchSize,
+        congestionControllerFactory,
+        pacing,
+        maxAckRanges,
+        streamSendBufferSize);
   }
 
   public ChannelHandler channelInitializer() {
+    return channelInitializer(0, WorkerGroup.single());
+  }
+
+  /** Initializer for the channel of one of the workers of a {@link QuicServer} */
+  ChannelHandler channelInitializer(final int worker, final WorkerGroup workers) {
     requireNonNull(streamHandler);
     requireNonNull(tokenHandler);
 
@@ -155,6 +222,8 @@ public class QuicBuilder {
         Optional.ofNullable(certificates),
         Optional.ofNullable(privateKey),
         tokenHandler,
-        streamHandler);
+        streamHandler,
+        worker,
+        workers);
   }
 }
@@ -1,5 +1,7 @@
 package com.protocol7.quincy.netty;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.addressvalidation.QuicTokenHandler;
 import com.protocol7.quincy.connection.Connection;
@@ -18,12 +20,21 @@ import io.netty.util.Timer;
 import java.security.PrivateKey;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public class QuicHandler extends ChannelInboundHandlerAdapter {
 
-  private final Timer timer = new HashedWheelTimer();
+  /**
+   * Tick of the timer shared by the connections, in milliseconds. Fine grained enough for loss
+   * detection and probe timeouts to follow the RTT
+   */
+  public static final long TIMER_TICK_MS = 5;
+
+  private final Timer timer = new HashedWheelTimer(TIMER_TICK_MS, TimeUnit.MILLISECONDS);
   private final PacketRouter router;
   private final Configuration configuration;
+  private final int worker;
+  private final WorkerGroup workers;
 
   public QuicHandler(
       final Configuration configuration,
@@ -31,7 +42,33 @@ public class QuicHandler extends ChannelInboundHandlerAdapter {
       final Optional<PrivateKey> privateKey,
       final QuicTokenHandler tokenHandler,
       final StreamHandler streamHandler) {
+    this(
+        configuration,
+        certificates,
+        privateKey,
+        tokenHandler,
+        streamHandler,
+        0,
+        WorkerGroup.single());
+  }
+
+  /**
+   * Handler for one of the workers in the group. Each worker has its own set of connections, and
+   * forwards datagrams for connections owned by other workers.
+   */
+  public QuicHandler(
+      final Configuration configuration,
+      final Optional<List<byte[]>> certificates,
+      final Optional<PrivateKey> privateKey,
+      final QuicTokenHandler tokenHandler,
+      final StreamHandler streamHandler,
+      final int worker,
+      final WorkerGroup workers) {
+    checkArgument(worker >= 0 && worker < workers.size(), "Invalid worker: " + worker);
+
     this.configuration = configuration;
+    this.worker = worker;
+    this.workers = workers;
     final Connections connections = new Connections(configuration, timer);
     this.router =
         new PacketRouter(
@@ -40,7 +77,8 @@ public class QuicHandler extends ChannelInboundHandlerAdapter {
             streamHandler,
             tokenHandler,
             certificates,
-            privateKey);
+            privateKey,
+            worker);
   }
 
   public Configuration getConfiguration() {
@@ -55,18 +93,41 @@ public class QuicHandler extends ChannelInboundHandlerAdapter {
     router.putConnection(dcid, connection);
   }
 
+  @Override
+  public void handlerAdded(final ChannelHandlerContext ctx) {
+    workers.register(worker, ctx.channel());
+  }
+
   @Override
   public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
     if (msg instanceof DatagramPacket) {
       final DatagramPacket datagramPacket = (DatagramPacket) msg;
+
+      final int owner = workers.owner(datagramPacket);
+      if (owner != -1 && owner != worker && workers.forward(owner, datagramPacket)) {
+        return;
+      }
+
       final ByteBuf bb = datagramPacket.content();
-      final List<Packet> packets =
-          router.route(
-              bb,
-              new NettyPacketSender(ctx.channel(), datagramPacket.sender()),
-              datagramPacket.sender());
+      try {
+        // the channel is shared by all connections, closing one must not close the channel
+        final List<Packet> packets =
+            router.route(
+                bb,
+                new NettyPacketSender(
+                    ctx.channel(),
+                    datagramPacket.sender(),
+                    configuration.getMaxPacketSize(),
+                    false),
+                datagramPacket.sender());
 
-      packets.forEach(ctx::fireChannelRead);
+        // stream and crypto frames are views of the datagram, only valid until it is released
+        packets.forEach(ctx::fireChannelRead);
+      } finally {
+        // data kept beyond that is retained. Batched reads deliver datagrams as slices of a shared
+        // receive buffer, which is only reused once all slices are released
+        datagramPacket.release();
+      }
 
     } else {
       throw new IllegalArgumentException("Expected DatagramPacket packet");
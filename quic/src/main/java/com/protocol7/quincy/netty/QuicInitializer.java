@@ -3,19 +3,26 @@ package com.protocol7.quincy.netty;
 import com.protocol7.quincy.Configuration;
 import com.protocol7.quincy.addressvalidation.QuicTokenHandler;
 import com.protocol7.quincy.streams.StreamHandler;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollDatagramChannelConfig;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import java.security.PrivateKey;
 import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class QuicInitializer extends ChannelInitializer<DatagramChannel> {
+public class QuicInitializer extends ChannelInitializer<Channel> {
+
+  // upper bound on the number of datagrams written before forcing a flush
+  private static final int MAX_WRITES_BEFORE_FLUSH = 256;
 
   private final Logger log = LoggerFactory.getLogger(QuicInitializer.class);
 
@@ -25,6 +32,8 @@ public class QuicInitializer extends ChannelInitializer<DatagramChannel> {
   private final Optional<PrivateKey> privateKey;
   private final QuicTokenHandler tokenHandler;
   private final StreamHandler streamHandler;
+  private final int worker;
+  private final WorkerGroup workers;
 
   public QuicInitializer(
       final Configuration configuration,
@@ -33,19 +42,56 @@ public class QuicInitializer extends ChannelInitializer<DatagramChannel> {
       final Optional<PrivateKey> privateKey,
       final QuicTokenHandler tokenHandler,
       final StreamHandler streamHandler) {
+    this(
+        configuration,
+        handler,
+        certificates,
+        privateKey,
+        tokenHandler,
+        streamHandler,
+        0,
+        WorkerGroup.single());
+  }
+
+  public QuicInitializer(
+      final Configuration configuration,
+      final Optional<ChannelHandler> handler,
+      final Optional<List<byte[]>> certificates,
+      final Optional<PrivateKey> privateKey,
+      final QuicTokenHandler tokenHandler,
+      final StreamHandler streamHandler,
+      final int worker,
+      final WorkerGroup workers) {
     this.configuration = configuration;
     this.handler = handler;
     this.certificates = certificates;
     this.privateKey = privateKey;
     this.tokenHandler = tokenHandler;
     this.streamHandler = streamHandler;
+    this.worker = worker;
+    this.workers = workers;
   }
 
   @Override
-  protected void initChannel(final DatagramChannel ch) {
+  protected void initChannel(final Channel ch) {
+    if (configuration.getDatagramBatchSize() > 1 && ch instanceof EpollDatagramChannel) {
+      // read as many datagrams as fit into the receive buffer with a single recvmmsg call, each
+      // passed on as a slice of the buffer
+      final EpollDatagramChannelConfig config = ((EpollDatagramChannel) ch).config();
+      config.setMaxDatagramPayloadSize(configuration.getMaxPacketSize());
+      config.setRecvByteBufAllocator(
+          new FixedRecvByteBufAllocator(
+              configuration.getMaxPacketSize() * configuration.getDatagramBatchSize()));
+    }
+
     final ChannelPipeline pipeline = ch.pipeline();
+
+    // coalesce flushes of all datagrams written during a read, or an event loop tick, into a
+    // single flush. Must be ahead of the QuicHandler to see when reads start and complete.
+    pipeline.addLast(new FlushConsolidationHandler(MAX_WRITES_BEFORE_FLUSH, true));
     pipeline.addLast(
-        new QuicHandler(configuration, certificates, privateKey, tokenHandler, streamHandler));
+        new QuicHandler(
+            configuration, certificates, privateKey, tokenHandler, streamHandler, worker, workers));
 
     if (handler.isPresent()) {
       pipeline.addLast(handler.get());
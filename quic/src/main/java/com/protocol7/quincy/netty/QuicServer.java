@@ -0,0 +1,121 @@
+package com.protocol7.quincy.netty;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.protocol.ConnectionId;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.util.concurrent.EventExecutor;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * QUIC server running one worker per core. Where epoll is available, each worker binds its own
+ * datagram channel to the same port using SO_REUSEPORT, and runs on an event loop of its own. The
+ * kernel spreads incoming datagrams over the sockets by their address tuple, and each worker
+ * handles the connections it has accepted without sharing any state with the other workers. See
+ * {@link WorkerGroup} for how datagrams ending up at the wrong worker are dealt with.
+ *
+ * <p>Without epoll, the server falls back to a single worker on a NIO channel.
+ */
+public class QuicServer implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(QuicServer.class);
+
+  /** Binds one worker per available processor */
+  public static QuicServer bind(final QuicBuilder builder, final InetSocketAddress address) {
+    return bind(builder, address, Runtime.getRuntime().availableProcessors());
+  }
+
+  public static QuicServer bind(
+      final QuicBuilder builder, final InetSocketAddress address, final int workers) {
+    requireNonNull(builder);
+    requireNonNull(address);
+    checkArgument(
+        workers > 0 && workers <= ConnectionId.MAX_WORKERS,
+        "Invalid number of workers: " + workers);
+
+    final boolean epoll = Epoll.isAvailable();
+    final int size;
+    if (epoll) {
+      size = workers;
+    } else {
+      log.warn("Epoll not available, falling back to a single worker", Epoll.unavailabilityCause());
+      size = 1;
+    }
+
+    final EventLoopGroup group =
+        epoll ? new EpollEventLoopGroup(size) : new NioEventLoopGroup(size);
+    final WorkerGroup workerGroup = new WorkerGroup(size);
+    final List<Channel> channels = new ArrayList<>(size);
+
+    try {
+      InetSocketAddress bindAddress = address;
+      for (final EventExecutor executor : group) {
+        final int worker = channels.size();
+
+        final Bootstrap b = new Bootstrap();
+        // pin each worker to an event loop of its own
+        b.group((EventLoop) executor);
+        if (epoll) {
+          b.channel(EpollDatagramChannel.class);
+          b.option(EpollChannelOption.SO_REUSEPORT, true);
+        } else {
+          b.channel(NioDatagramChannel.class);
+        }
+        b.handler(builder.channelInitializer(worker, workerGroup));
+
+        final Channel channel = b.bind(bindAddress).syncUninterruptibly().channel();
+        channels.add(channel);
+
+        // with an ephemeral port, the remaining workers must bind to the one picked for the first
+        bindAddress = (InetSocketAddress) channel.localAddress();
+      }
+    } catch (final RuntimeException e) {
+      channels.forEach(Channel::close);
+      group.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+      throw e;
+    }
+
+    log.info("Bound {} worker(s) to {}", size, channels.get(0).localAddress());
+
+    return new QuicServer(group, channels);
+  }
+
+  private final EventLoopGroup group;
+  private final List<Channel> channels;
+
+  private QuicServer(final EventLoopGroup group, final List<Channel> channels) {
+    this.group = group;
+    this.channels = Collections.unmodifiableList(channels);
+  }
+
+  public InetSocketAddress getLocalAddress() {
+    return (InetSocketAddress) channels.get(0).localAddress();
+  }
+
+  /** Server channels, indexed by worker */
+  public List<Channel> getChannels() {
+    return channels;
+  }
+
+  @Override
+  public void close() {
+    channels.forEach(channel -> channel.close().syncUninterruptibly());
+    group.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+  }
+}
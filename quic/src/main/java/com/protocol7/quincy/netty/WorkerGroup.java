@@ -0,0 +1,109 @@
+package com.protocol7.quincy.netty;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.packets.PacketType;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.socket.DatagramPacket;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The server channels of a {@link QuicServer}, one per worker. A connection is owned by the worker
+ * whose socket received the client's first Initial packet, and the connection IDs that worker
+ * issues are tagged with its index. Datagrams are normally delivered by the kernel to the socket of
+ * the owning worker, as it hashes the address tuple to pick the socket, but when they are not, for
+ * example after the client address changes, they are handed over to the owning worker's event loop.
+ *
+ * <p>Only packets addressed to a connection ID issued by the server are handed over. Initial and
+ * 0-RTT packets can carry the connection ID picked by the client, and stay with the worker that
+ * received them.
+ */
+public class WorkerGroup {
+
+  public static WorkerGroup single() {
+    return new WorkerGroup(1);
+  }
+
+  private final AtomicReferenceArray<Channel> channels;
+
+  public WorkerGroup(final int size) {
+    checkArgument(size > 0 && size <= ConnectionId.MAX_WORKERS, "Invalid size: " + size);
+
+    this.channels = new AtomicReferenceArray<>(size);
+  }
+
+  public int size() {
+    return channels.length();
+  }
+
+  public void register(final int worker, final Channel channel) {
+    requireNonNull(channel);
+
+    channels.set(worker, channel);
+  }
+
+  /**
+   * Index of the worker owning the connection the datagram belongs to, based on the destination
+   * connection ID of its first packet, as coalesced packets share the same destination connection
+   * ID. Returns -1 if the datagram stays with the worker receiving it, as it is an Initial or 0-RTT
+   * packet or too short to tell.
+   */
+  public int owner(final DatagramPacket datagram) {
+    if (size() == 1) {
+      return 0;
+    }
+
+    final ByteBuf bb = datagram.content();
+    if (!bb.isReadable()) {
+      return -1;
+    }
+    final int offset = bb.readerIndex();
+
+    final int dcidOffset;
+    final int dcidLength;
+    if ((bb.getByte(offset) & 0x80) == 0x80) {
+      // the client picks the destination connection ID of its first Initial, and of 0-RTT packets
+      // sent before it hears from the server. Only Handshake packets are sure to carry ours
+      if (((bb.getByte(offset) & 0x30) >> 4) != PacketType.Handshake.getType()) {
+        return -1;
+      }
+      // long header: flags, version, dcid length and dcid
+      dcidOffset = offset + 6;
+      dcidLength = bb.readableBytes() > 5 ? bb.getUnsignedByte(offset + 5) : 0;
+    } else {
+      // short header: flags and dcid
+      dcidOffset = offset + 1;
+      dcidLength = ConnectionId.LENGTH;
+    }
+
+    if (dcidLength == 0 || dcidOffset >= bb.writerIndex()) {
+      return -1;
+    }
+    return ConnectionId.getWorker(bb.getUnsignedByte(dcidOffset), size());
+  }
+
+  /**
+   * Hands the datagram over to the given worker, which takes over its ownership. Returns false if
+   * the worker is not available, in which case the datagram remains with the caller.
+   */
+  public boolean forward(final int worker, final DatagramPacket datagram) {
+    final Channel channel = channels.get(worker);
+    if (channel == null || !channel.isActive()) {
+      return false;
+    }
+
+    try {
+      channel
+          .eventLoop()
+          .execute(() -> channel.pipeline().fireChannelRead(datagram).fireChannelReadComplete());
+      return true;
+    } catch (final RejectedExecutionException e) {
+      // event loop shutting down
+      return false;
+    }
+  }
+}
@@ -14,6 +14,9 @@ public class ConnectionId {
   public static final int LENGTH = 18;
   public static final int MAX_LENGTH = 20;
 
+  /** Number of server workers that can be told apart by the connection IDs they issue */
+  public static final int MAX_WORKERS = 256;
+
   public static final ConnectionId EMPTY = new ConnectionId(new byte[0]);
 
   public static ConnectionId random() {
@@ -22,6 +25,29 @@ public class ConnectionId {
     return new ConnectionId(id);
   }
 
+  /**
+   * Random connection ID issued by the given server worker. The worker index is encoded in the
+   * first byte, so that packets for the connection can be steered to the owning worker using {@link
+   * #getWorker(int, int)}.
+   */
+  public static ConnectionId random(final int worker) {
+    checkArgument(worker >= 0 && worker < MAX_WORKERS, "Invalid worker: " + worker);
+
+    final byte[] id = new byte[LENGTH];
+    Rnd.rndBytes(id);
+    id[0] = (byte) worker;
+    return new ConnectionId(id);
+  }
+
+  /**
+   * Index of the worker, out of the given number of workers, owning connection IDs starting with
+   * the given byte. Only meaningful for connection IDs issued by a worker, the ones chosen by
+   * clients for their first Initial packet map to an arbitrary worker.
+   */
+  public static int getWorker(final int firstByte, final int workers) {
+    return (firstByte & 0xFF) % workers;
+  }
+
   public static ConnectionId read(final int length, final ByteBuf bb) {
     if (length > 0) {
       final byte[] id = new byte[length];
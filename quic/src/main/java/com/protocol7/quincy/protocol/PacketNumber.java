@@ -47,11 +47,17 @@ public class PacketNumber {
   }
 
   public static byte[] write(final long number) {
+    return write(number, 1);
+  }
+
+  /** Write the number using at least the given number of bytes, up to 4 */
+  public static byte[] write(final long number, final int minLength) {
     if (number < MIN || number > MAX) {
       throw new IllegalArgumentException("Invalid number");
     }
+    Preconditions.checkArgument(minLength >= 1 && minLength <= 4);
 
-    final int length = getLength(number);
+    final int length = Math.max(getLength(number), minLength);
     final byte[] b = new byte[length];
     for (int j = length; j > 0; j--) {
       b[length - j] = (byte) ((number >> (8 * (j - 1))) & 0xFF);
@@ -6,7 +6,6 @@ import static java.util.Objects.requireNonNull;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.FrameType;
 import com.protocol7.quincy.tls.aead.AEAD;
-import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.security.GeneralSecurityException;
@@ -18,18 +17,26 @@ public class Payload {
 
   public static Payload parse(
       final ByteBuf bb, final int length, final AEAD aead, final long pn, final byte[] aad) {
-    final byte[] cipherText = new byte[length];
-    bb.readBytes(cipherText);
+    final int offset = bb.readerIndex();
 
-    final byte[] raw;
+    final ByteBuf frameBuf;
     try {
-      raw = aead.open(cipherText, pn, aad);
+      if (canProcessInPlace(bb)) {
+        // decrypt over the ciphertext in the datagram itself, frames are then parsed from a view
+        final int rawLength =
+            aead.open(bb.nioBuffer(offset, length), bb.nioBuffer(offset, length), pn, aad);
+        frameBuf = bb.slice(offset, rawLength);
+      } else {
+        final byte[] cipherText = new byte[length];
+        bb.getBytes(offset, cipherText);
+        frameBuf = Unpooled.wrappedBuffer(aead.open(cipherText, pn, aad));
+      }
     } catch (final GeneralSecurityException e) {
       throw new RuntimeException(e);
     }
+    bb.readerIndex(offset + length);
 
     final List<Frame> frames = new ArrayList<>();
-    final ByteBuf frameBuf = Unpooled.wrappedBuffer(raw);
 
     while (frameBuf.isReadable()) {
       final Frame frame = Frame.parse(frameBuf);
@@ -75,20 +82,43 @@ public class Payload {
   }
 
   public void write(final ByteBuf bb, final AEAD aead, final long pn, final byte[] aad) {
-    final ByteBuf raw = Unpooled.buffer();
+    // serialize frames straight into the destination buffer and then replace them with the sealed
+    // payload
+    final int payloadOffset = bb.writerIndex();
     for (final Frame frame : frames) {
-      frame.write(raw);
+      frame.write(bb);
     }
-    final byte[] b = Bytes.drainToArray(raw);
+
+    final int length = bb.writerIndex() - payloadOffset;
+    bb.ensureWritable(AEAD.OVERHEAD);
 
     try {
-      final byte[] sealed = aead.seal(b, pn, aad);
-      bb.writeBytes(sealed);
+      if (canProcessInPlace(bb)) {
+        final int sealedLength =
+            aead.seal(
+                bb.nioBuffer(payloadOffset, length),
+                bb.nioBuffer(payloadOffset, length + AEAD.OVERHEAD),
+                pn,
+                aad);
+        bb.writerIndex(payloadOffset + sealedLength);
+      } else {
+        final byte[] b = new byte[length];
+        bb.getBytes(payloadOffset, b);
+
+        final byte[] sealed = aead.seal(b, pn, aad);
+        bb.writerIndex(payloadOffset);
+        bb.writeBytes(sealed);
+      }
     } catch (final GeneralSecurityException e) {
       throw new RuntimeException(e);
     }
   }
 
+  // composite and read-only buffers can not be exposed as a single writable NIO buffer
+  private static boolean canProcessInPlace(final ByteBuf bb) {
+    return bb.nioBufferCount() == 1 && !bb.isReadOnly();
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) return true;
@@ -83,6 +83,11 @@ public class AckFrame extends Frame {
     return ranges;
   }
 
+  /** Largest packet number acknowledged */
+  public long getLargest() {
+    return ranges.get(0).getLargest();
+  }
+
   @Override
   public void write(final ByteBuf bb) {
     bb.writeByte(getType().getType());
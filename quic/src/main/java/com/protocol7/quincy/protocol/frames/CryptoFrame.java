@@ -1,9 +1,13 @@
 package com.protocol7.quincy.protocol.frames;
 
+import static java.util.Objects.requireNonNull;
+
 import com.protocol7.quincy.Varint;
-import com.protocol7.quincy.utils.Hex;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 
+/** Like {@link StreamFrame}, the crypto data is a view of the buffer the frame was parsed from */
 public class CryptoFrame extends Frame {
 
   public static CryptoFrame parse(final ByteBuf bb) {
@@ -14,38 +18,52 @@ public class CryptoFrame extends Frame {
 
     final long offset = Varint.readAsLong(bb);
     final int length = Varint.readAsInt(bb);
-    final byte[] cryptoData = new byte[length];
-    bb.readBytes(cryptoData);
-    return new CryptoFrame(offset, cryptoData);
+    return new CryptoFrame(offset, bb.readSlice(length));
   }
 
   private final long offset;
-  private final byte[] cryptoData;
+  private final ByteBuf cryptoData;
 
-  public CryptoFrame(final long offset, final byte[] cryptoData) {
+  public CryptoFrame(final long offset, final ByteBuf cryptoData) {
     super(FrameType.CRYPTO);
     this.offset = offset;
-    this.cryptoData = cryptoData;
+    this.cryptoData = requireNonNull(cryptoData);
+  }
+
+  public CryptoFrame(final long offset, final byte[] cryptoData) {
+    this(offset, Unpooled.wrappedBuffer(cryptoData));
   }
 
   public long getOffset() {
     return offset;
   }
 
-  public byte[] getCryptoData() {
-    return cryptoData;
+  /** A view of the crypto data, reading from it does not affect the frame */
+  public ByteBuf getCryptoData() {
+    return cryptoData.duplicate();
+  }
+
+  @Override
+  public int calculateLength() {
+    final int length = cryptoData.readableBytes();
+    return 1 + Varint.length(offset) + Varint.length(length) + length;
   }
 
   @Override
   public void write(final ByteBuf bb) {
     bb.writeByte(getType().getType());
     Varint.write(offset, bb);
-    Varint.write(cryptoData.length, bb);
-    bb.writeBytes(cryptoData);
+    Varint.write(cryptoData.readableBytes(), bb);
+    bb.writeBytes(cryptoData, cryptoData.readerIndex(), cryptoData.readableBytes());
   }
 
   @Override
   public String toString() {
-    return "CryptoFrame{" + "offset=" + offset + ", cryptoData=" + Hex.hex(cryptoData) + '}';
+    return "CryptoFrame{"
+        + "offset="
+        + offset
+        + ", cryptoData="
+        + ByteBufUtil.hexDump(cryptoData)
+        + '}';
   }
 }
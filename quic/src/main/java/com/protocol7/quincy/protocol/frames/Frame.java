@@ -2,7 +2,7 @@ package com.protocol7.quincy.protocol.frames;
 
 import com.protocol7.quincy.Writeable;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 public abstract class Frame implements Writeable {
 
@@ -61,7 +61,7 @@ public abstract class Frame implements Writeable {
 
   public int calculateLength() {
     // TODO implement in subclasses, this is slow
-    final ByteBuf bb = Unpooled.buffer();
+    final ByteBuf bb = ByteBufAllocator.DEFAULT.buffer();
     try {
       write(bb);
       return bb.writerIndex();
@@ -16,7 +16,7 @@ public class HandshakeDoneFrame extends Frame {
   }
 
   private HandshakeDoneFrame() {
-    super(FrameType.PING);
+    super(FrameType.HANDSHAKE_DONE);
   }
 
   @Override
@@ -1,10 +1,18 @@
 package com.protocol7.quincy.protocol.frames;
 
+import static java.util.Objects.requireNonNull;
+
 import com.protocol7.quincy.Varint;
 import com.protocol7.quincy.protocol.StreamId;
 import io.netty.buffer.ByteBuf;
-import java.util.Arrays;
-
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+/**
+ * The data of a stream frame is a view of the buffer it was parsed from, or created with, and is
+ * not copied. A parsed frame is only valid while the datagram it arrived in is, data kept beyond
+ * that must be retained.
+ */
 public class StreamFrame extends Frame {
 
   public static StreamFrame parse(final ByteBuf bb) {
@@ -29,8 +37,7 @@ public class StreamFrame extends Frame {
       length = bb.readableBytes();
     }
 
-    final byte[] data = new byte[length];
-    bb.readBytes(data);
+    final ByteBuf data = bb.readSlice(length);
 
     return new StreamFrame(streamId, offset, fin, data);
   }
@@ -38,14 +45,19 @@ public class StreamFrame extends Frame {
   private final long streamId;
   private final long offset;
   private final boolean fin;
-  private final byte[] data;
+  private final ByteBuf data;
 
-  public StreamFrame(final long streamId, final long offset, final boolean fin, final byte[] data) {
+  public StreamFrame(
+      final long streamId, final long offset, final boolean fin, final ByteBuf data) {
     super(FrameType.STREAM);
     this.streamId = StreamId.validate(streamId);
     this.offset = offset;
     this.fin = fin;
-    this.data = data;
+    this.data = requireNonNull(data);
+  }
+
+  public StreamFrame(final long streamId, final long offset, final boolean fin, final byte[] data) {
+    this(streamId, offset, fin, Unpooled.wrappedBuffer(data));
   }
 
   public long getStreamId() {
@@ -60,8 +72,23 @@ public class StreamFrame extends Frame {
     return fin;
   }
 
-  public byte[] getData() {
-    return data;
+  /** A view of the data, reading from it does not affect the frame */
+  public ByteBuf getData() {
+    return data.duplicate();
+  }
+
+  public int getLength() {
+    return data.readableBytes();
+  }
+
+  @Override
+  public int calculateLength() {
+    final int length = getLength();
+    return 1
+        + Varint.length(streamId)
+        + (offset > 0 ? Varint.length(offset) : 0)
+        + Varint.length(length)
+        + length;
   }
 
   @Override
@@ -82,9 +109,10 @@ public class StreamFrame extends Frame {
       Varint.write(offset, bb);
     }
 
-    Varint.write(data.length, bb);
+    Varint.write(data.readableBytes(), bb);
 
-    bb.writeBytes(data);
+    // written without moving the reader index, as the frame is written again if retransmitted
+    bb.writeBytes(data, data.readerIndex(), data.readableBytes());
   }
 
   @Override
@@ -97,7 +125,7 @@ public class StreamFrame extends Frame {
     if (offset != that.offset) return false;
     if (fin != that.fin) return false;
     if (streamId != that.streamId) return false;
-    return Arrays.equals(data, that.data);
+    return ByteBufUtil.equals(data, that.data);
   }
 
   @Override
@@ -105,7 +133,7 @@ public class StreamFrame extends Frame {
     int result = Long.hashCode(streamId);
     result = 31 * result + (int) (offset ^ (offset >>> 32));
     result = 31 * result + (fin ? 1 : 0);
-    result = 31 * result + Arrays.hashCode(data);
+    result = 31 * result + ByteBufUtil.hashCode(data);
     return result;
   }
 
@@ -119,7 +147,7 @@ public class StreamFrame extends Frame {
         + ", fin="
         + fin
         + ", data="
-        + Arrays.toString(data)
+        + ByteBufUtil.hexDump(data)
         + '}';
   }
 }
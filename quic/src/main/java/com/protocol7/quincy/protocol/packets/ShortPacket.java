@@ -64,8 +64,14 @@ public class ShortPacket implements FullPacket {
 
         final int pnOffset = bb.readerIndex();
         final int sampleOffset = pnOffset + 4;
+        final int sampleLength = aead.getSampleLength();
 
-        final byte[] sample = new byte[aead.getSampleLength()];
+        // short packets extend to the end of the datagram
+        if (bb.readableBytes() < 4 + sampleLength) {
+          throw new IllegalArgumentException("Packet too short to sample");
+        }
+
+        final byte[] sample = new byte[sampleLength];
         bb.getBytes(sampleOffset, sample);
 
         // get 4 bytes for PN. Might be too long, but we'll handle that below
@@ -169,7 +175,10 @@ public class ShortPacket implements FullPacket {
     // TODO spin bit
     // TODO reserved bits
 
-    final byte[] pn = PacketNumber.write(packetNumber);
+    // the header protection sample is taken 4 bytes after the start of the packet number, widen
+    // the packet number for tiny payloads so that the sample is within the packet
+    final int minPnLength = Math.max(1, 4 + aead.getSampleLength() - payload.calculateLength());
+    final byte[] pn = PacketNumber.write(packetNumber, minPnLength);
 
     b = (byte) (b | (pn.length - 1)); // pn length
 
@@ -1,6 +1,7 @@
 package com.protocol7.quincy.reliability;
 
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
 
 import com.protocol7.quincy.utils.Ticker;
 import java.util.concurrent.TimeUnit;
@@ -19,6 +20,15 @@ public class AckDelay {
     return Math.max(unit.toMicros(delay) / ackDelayMultiplier, 0);
   }
 
+  /**
+   * Ack delay received from the peer, in nanoseconds. The peer's ack delay exponent is not known,
+   * it is assumed to be the same as ours
+   */
+  public long toNanos(final long ackDelay) {
+    final long max = Long.MAX_VALUE / MICROSECONDS.toNanos(ackDelayMultiplier);
+    return MICROSECONDS.toNanos(Math.min(ackDelay, max) * ackDelayMultiplier);
+  }
+
   public long time() {
     return ticker.nanoTime();
   }
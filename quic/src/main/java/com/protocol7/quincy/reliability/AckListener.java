@@ -0,0 +1,12 @@
+package com.protocol7.quincy.reliability;
+
+import com.protocol7.quincy.tls.EncryptionLevel;
+import java.util.List;
+
+/** Notified of packets newly acknowledged by the peer */
+@FunctionalInterface
+public interface AckListener {
+
+  /** Called once per ack frame, with the packets it acknowledged for the first time */
+  void onPacketsAcked(EncryptionLevel level, List<SentPacket> packets);
+}
@@ -0,0 +1,417 @@
+package com.protocol7.quincy.reliability;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * BBR congestion control, as described in draft-cardwell-iccrg-bbr-congestion-control-00. Instead
+ * of reacting to loss, BBR builds a model of the path from the bottleneck bandwidth, the maximum
+ * recent delivery rate, and the round-trip propagation time, the minimum recent RTT. Packets are
+ * paced at a gain of the bottleneck bandwidth, and the window limits bytes in flight to a gain of
+ * the bandwidth-delay product. The gains cycle to probe for more bandwidth and to drain any queue
+ * built up. All times are in nanoseconds.
+ */
+public class Bbr implements CongestionController {
+
+  public static final CongestionControllerFactory FACTORY = Bbr::new;
+
+  enum Mode {
+    STARTUP,
+    DRAIN,
+    PROBE_BW,
+    PROBE_RTT
+  }
+
+  // the smallest gain doubling the sending rate each round
+  static final double HIGH_GAIN = 2 / Math.log(2);
+  static final double CWND_GAIN = 2;
+  static final double[] PACING_GAIN_CYCLE = {1.25, 0.75, 1, 1, 1, 1, 1, 1};
+
+  static final int BTL_BW_FILTER_ROUNDS = 10;
+  static final long RT_PROP_FILTER_LEN = SECONDS.toNanos(10);
+  static final long PROBE_RTT_DURATION = MILLISECONDS.toNanos(200);
+
+  // the pipe is full once the bandwidth grows less than 25% for 3 rounds
+  static final double FULL_BW_GROWTH = 1.25;
+  static final int FULL_BW_ROUNDS = 3;
+
+  private final long maxDatagramSize;
+  private final long minPipeCwnd;
+  private final long initialWindow;
+  private final RttEstimator rtt;
+  private final boolean paced;
+
+  private volatile long congestionWindow;
+  private volatile long bytesInFlight;
+  private volatile long pacingRate;
+
+  private Mode mode = Mode.STARTUP;
+  private double pacingGain = HIGH_GAIN;
+  private double cwndGain = HIGH_GAIN;
+  private Optional<RateSample> sample = Optional.empty();
+  private long delivered;
+
+  // rounds end when a packet sent after the start of the round is acked
+  private long nextRoundDelivered;
+  private long roundCount;
+  private boolean roundStart;
+
+  // windowed max filter of the delivery rate, the best sample in each of the last rounds
+  private final long[] bwSamples = new long[BTL_BW_FILTER_ROUNDS];
+  private final long[] bwRounds = new long[BTL_BW_FILTER_ROUNDS];
+  private long btlBw;
+
+  private long rtProp = Long.MAX_VALUE;
+  private long rtPropStamp;
+  private boolean rtPropExpired;
+
+  private boolean filledPipe;
+  private long fullBw;
+  private int fullBwCount;
+
+  private int cycleIndex;
+  private long cycleStamp;
+  private boolean lossInCycle;
+
+  private boolean probeRttDoneStampSet;
+  private long probeRttDoneStamp;
+  private boolean probeRttRoundDone;
+
+  private boolean inRecovery;
+  private boolean packetConservation;
+  private long recoveryStartTime;
+  private long priorCwnd;
+
+  public Bbr(final int maxDatagramSize, final RttEstimator rtt, final boolean paced) {
+    checkArgument(maxDatagramSize > 0);
+
+    this.maxDatagramSize = maxDatagramSize;
+    this.minPipeCwnd = 4L * maxDatagramSize;
+    this.initialWindow = NewReno.initialWindow(maxDatagramSize);
+    this.rtt = requireNonNull(rtt);
+    this.paced = paced;
+    this.congestionWindow = initialWindow;
+
+    // no bandwidth estimate yet, assume the initial window is delivered every RTT
+    final long srtt = rtt.hasSample() ? rtt.getSmoothedRtt() : MILLISECONDS.toNanos(1);
+    this.pacingRate = (long) (HIGH_GAIN * initialWindow * 1e9 / srtt);
+  }
+
+  @Override
+  public void onPacketSent(final SentPacket packet) {
+    bytesInFlight += packet.getSize();
+  }
+
+  @Override
+  public void onRateSample(final RateSample sample) {
+    this.sample = Optional.of(sample);
+  }
+
+  @Override
+  public void onPacketsAcked(final List<SentPacket> packets, final long now) {
+    final long priorInFlight = bytesInFlight;
+    long ackedBytes = 0;
+    for (final SentPacket packet : packets) {
+      bytesInFlight -= packet.getSize();
+      ackedBytes += packet.getSize();
+
+      if (inRecovery && packet.getTimeSent() > recoveryStartTime) {
+        // a packet sent after the loss was acked, recovery is over
+        inRecovery = false;
+        packetConservation = false;
+        congestionWindow = Math.max(congestionWindow, priorCwnd);
+      }
+    }
+    delivered += ackedBytes;
+
+    final Optional<RateSample> current = sample;
+    sample = Optional.empty();
+    if (current.isPresent()) {
+      updateModel(current.get(), priorInFlight, now);
+    }
+
+    setPacingRate();
+    setCongestionWindow(ackedBytes);
+  }
+
+  private void updateModel(final RateSample sample, final long priorInFlight, final long now) {
+    updateRound(sample);
+    updateBtlBw(sample);
+    checkCyclePhase(priorInFlight, now);
+    checkFullPipe(sample);
+    checkDrain(now);
+    updateRtProp(sample, now);
+    checkProbeRtt(now);
+  }
+
+  private void updateRound(final RateSample sample) {
+    if (sample.getPriorDelivered() >= nextRoundDelivered) {
+      nextRoundDelivered = sample.getTotalDelivered();
+      roundCount++;
+      roundStart = true;
+      if (packetConservation) {
+        // conservation lasts for one round after the loss
+        packetConservation = false;
+      }
+    } else {
+      roundStart = false;
+    }
+  }
+
+  private void updateBtlBw(final RateSample sample) {
+    final long rate = sample.getDeliveryRate();
+    // app-limited samples are only used if they show more bandwidth than estimated
+    if (rate == 0 || (sample.isAppLimited() && rate < btlBw)) {
+      return;
+    }
+
+    final int slot = (int) (roundCount % BTL_BW_FILTER_ROUNDS);
+    if (bwRounds[slot] != roundCount) {
+      bwRounds[slot] = roundCount;
+      bwSamples[slot] = rate;
+    } else {
+      bwSamples[slot] = Math.max(bwSamples[slot], rate);
+    }
+
+    long max = 0;
+    for (int i = 0; i < BTL_BW_FILTER_ROUNDS; i++) {
+      if (roundCount - bwRounds[i] < BTL_BW_FILTER_ROUNDS) {
+        max = Math.max(max, bwSamples[i]);
+      }
+    }
+    btlBw = max;
+  }
+
+  private void checkCyclePhase(final long priorInFlight, final long now) {
+    if (mode == Mode.PROBE_BW && isNextCyclePhase(priorInFlight, now)) {
+      cycleIndex = (cycleIndex + 1) % PACING_GAIN_CYCLE.length;
+      cycleStamp = now;
+      pacingGain = PACING_GAIN_CYCLE[cycleIndex];
+      lossInCycle = false;
+    }
+  }
+
+  private boolean isNextCyclePhase(final long priorInFlight, final long now) {
+    final boolean isFullLength = now - cycleStamp > rtProp;
+    if (pacingGain > 1) {
+      // probe until the extra data is in flight, or the path says no
+      return isFullLength && (lossInCycle || priorInFlight >= inFlight(pacingGain));
+    } else if (pacingGain < 1) {
+      // drain until any queue created by probing is gone
+      return isFullLength || priorInFlight <= inFlight(1);
+    }
+    return isFullLength;
+  }
+
+  private void checkFullPipe(final RateSample sample) {
+    if (filledPipe || !roundStart || sample.isAppLimited()) {
+      return;
+    }
+
+    if (btlBw >= fullBw * FULL_BW_GROWTH) {
+      fullBw = btlBw;
+      fullBwCount = 0;
+      return;
+    }
+
+    fullBwCount++;
+    if (fullBwCount >= FULL_BW_ROUNDS) {
+      filledPipe = true;
+    }
+  }
+
+  private void checkDrain(final long now) {
+    if (mode == Mode.STARTUP && filledPipe) {
+      // drain the queue created during startup
+      mode = Mode.DRAIN;
+      pacingGain = 1 / HIGH_GAIN;
+      cwndGain = HIGH_GAIN;
+    }
+    if (mode == Mode.DRAIN && bytesInFlight <= inFlight(1)) {
+      enterProbeBw(now);
+    }
+  }
+
+  private void enterProbeBw(final long now) {
+    mode = Mode.PROBE_BW;
+    cwndGain = CWND_GAIN;
+    // start in a random phase, but not the draining one, to desynchronize flows
+    cycleIndex =
+        PACING_GAIN_CYCLE.length
+            - 1
+            - ThreadLocalRandom.current().nextInt(PACING_GAIN_CYCLE.length - 1);
+    cycleStamp = now;
+    pacingGain = PACING_GAIN_CYCLE[cycleIndex];
+  }
+
+  private void updateRtProp(final RateSample sample, final long now) {
+    rtPropExpired = rtProp != Long.MAX_VALUE && now > rtPropStamp + RT_PROP_FILTER_LEN;
+    final long sampleRtt = sample.getRtt();
+    if (sampleRtt > 0 && (sampleRtt <= rtProp || rtPropExpired)) {
+      rtProp = sampleRtt;
+      rtPropStamp = now;
+    }
+  }
+
+  private void checkProbeRtt(final long now) {
+    if (mode != Mode.PROBE_RTT && rtPropExpired) {
+      // drain the pipe to measure the propagation delay without any queue
+      mode = Mode.PROBE_RTT;
+      pacingGain = 1;
+      cwndGain = 1;
+      priorCwnd = saveCwnd();
+      probeRttDoneStampSet = false;
+    }
+
+    if (mode == Mode.PROBE_RTT) {
+      handleProbeRtt(now);
+    }
+  }
+
+  private void handleProbeRtt(final long now) {
+    if (!probeRttDoneStampSet && bytesInFlight <= minPipeCwnd) {
+      probeRttDoneStamp = now + PROBE_RTT_DURATION;
+      probeRttDoneStampSet = true;
+      probeRttRoundDone = false;
+      nextRoundDelivered = delivered;
+    } else if (probeRttDoneStampSet) {
+      if (roundStart) {
+        probeRttRoundDone = true;
+      }
+      if (probeRttRoundDone && now > probeRttDoneStamp) {
+        rtPropStamp = now;
+        congestionWindow = Math.max(congestionWindow, priorCwnd);
+        if (filledPipe) {
+          enterProbeBw(now);
+        } else {
+          mode = Mode.STARTUP;
+          pacingGain = HIGH_GAIN;
+          cwndGain = HIGH_GAIN;
+        }
+      }
+    }
+  }
+
+  private void setPacingRate() {
+    if (btlBw == 0) {
+      return;
+    }
+
+    final long rate = (long) (pacingGain * btlBw);
+    // never slow down during startup, the estimate is still growing
+    if (filledPipe || rate > pacingRate) {
+      pacingRate = rate;
+    }
+  }
+
+  private void setCongestionWindow(final long ackedBytes) {
+    if (inRecovery && packetConservation) {
+      // send one packet for each one acked
+      congestionWindow = Math.max(congestionWindow, bytesInFlight + ackedBytes);
+    } else {
+      // a few extra packets to keep the pipe full with delayed and aggregated acks
+      final long target = inFlight(cwndGain) + 3 * maxDatagramSize;
+      if (filledPipe) {
+        congestionWindow = Math.min(congestionWindow + ackedBytes, target);
+      } else if (congestionWindow < target || delivered < initialWindow) {
+        congestionWindow += ackedBytes;
+      }
+    }
+
+    congestionWindow = Math.max(congestionWindow, minPipeCwnd);
+    if (mode == Mode.PROBE_RTT) {
+      congestionWindow = Math.min(congestionWindow, minPipeCwnd);
+    } else if (mode == Mode.DRAIN && !paced) {
+      // the drain pacing gain only drains the queue when packets are paced, use the window instead
+      congestionWindow = Math.min(congestionWindow, Math.max(inFlight(1), minPipeCwnd));
+    }
+  }
+
+  /** Bytes in flight for the given gain of the bandwidth-delay product */
+  private long inFlight(final double gain) {
+    if (rtProp == Long.MAX_VALUE) {
+      return initialWindow;
+    }
+    return (long) (gain * btlBw * rtProp / 1e9);
+  }
+
+  private long saveCwnd() {
+    if (!inRecovery && mode != Mode.PROBE_RTT) {
+      return congestionWindow;
+    }
+    return Math.max(priorCwnd, congestionWindow);
+  }
+
+  @Override
+  public void onPacketsLost(final List<SentPacket> packets, final long now) {
+    long largestTimeSent = Long.MIN_VALUE;
+    for (final SentPacket packet : packets) {
+      bytesInFlight -= packet.getSize();
+      largestTimeSent = Math.max(largestTimeSent, packet.getTimeSent());
+    }
+
+    if (packets.isEmpty()) {
+      return;
+    }
+    lossInCycle = true;
+
+    if (!inRecovery || largestTimeSent > recoveryStartTime) {
+      priorCwnd = saveCwnd();
+      inRecovery = true;
+      packetConservation = true;
+      recoveryStartTime = now;
+      nextRoundDelivered = delivered;
+      congestionWindow = Math.max(bytesInFlight + maxDatagramSize, minPipeCwnd);
+    }
+  }
+
+  @Override
+  public void onPersistentCongestion() {
+    priorCwnd = saveCwnd();
+    congestionWindow = minPipeCwnd;
+  }
+
+  @Override
+  public void onPacketsDiscarded(final List<SentPacket> packets) {
+    for (final SentPacket packet : packets) {
+      bytesInFlight -= packet.getSize();
+    }
+  }
+
+  @Override
+  public long getCongestionWindow() {
+    return congestionWindow;
+  }
+
+  @Override
+  public long getBytesInFlight() {
+    return bytesInFlight;
+  }
+
+  @Override
+  public long getPacingRate() {
+    return pacingRate;
+  }
+
+  Mode getMode() {
+    return mode;
+  }
+
+  long getBtlBw() {
+    return btlBw;
+  }
+
+  long getRtProp() {
+    return rtProp;
+  }
+
+  double getPacingGain() {
+    return pacingGain;
+  }
+}
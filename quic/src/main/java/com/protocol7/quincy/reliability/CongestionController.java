@@ -0,0 +1,43 @@
+package com.protocol7.quincy.reliability;
+
+import java.util.List;
+
+/**
+ * Congestion control for a connection, deciding how many bytes may be in flight. Only packets
+ * counting towards bytes in flight, that is ack-eliciting packets, are passed to the controller.
+ * All times are in nanoseconds.
+ *
+ * <p>Events are delivered by the {@link LossDetector} of the connection, one at a time. Getters may
+ * be called concurrently, for example for {@link com.protocol7.quincy.connection.ConnectionStats}.
+ */
+public interface CongestionController {
+
+  void onPacketSent(SentPacket packet);
+
+  /** Delivery rate measured by an ack, called before {@link #onPacketsAcked(List, long)} */
+  default void onRateSample(final RateSample sample) {}
+
+  void onPacketsAcked(List<SentPacket> packets, long now);
+
+  void onPacketsLost(List<SentPacket> packets, long now);
+
+  /** Lost packets spanned long enough for the path to be considered congested, RFC 9002 7.6 */
+  void onPersistentCongestion();
+
+  /** Packets no longer in flight, as their packet number space was discarded */
+  void onPacketsDiscarded(List<SentPacket> packets);
+
+  long getCongestionWindow();
+
+  long getBytesInFlight();
+
+  /** Bytes per second packets should be paced at, 0 if the controller does not set a rate */
+  default long getPacingRate() {
+    return 0;
+  }
+
+  /** True if another ack-eliciting packet may be sent */
+  default boolean canSend() {
+    return getBytesInFlight() < getCongestionWindow();
+  }
+}
@@ -0,0 +1,9 @@
+package com.protocol7.quincy.reliability;
+
+/** Creates the congestion controller for each new connection */
+@FunctionalInterface
+public interface CongestionControllerFactory {
+
+  /** @param paced whether the packets sent are spaced out by a {@link Pacer} */
+  CongestionController create(int maxDatagramSize, RttEstimator rtt, boolean paced);
+}
@@ -0,0 +1,265 @@
+package com.protocol7.quincy.reliability;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.List;
+
+/**
+ * CUBIC congestion control, as described in RFC 9438. The window grows as a cubic function of the
+ * time since the last congestion event, which recovers a large window much faster than NewReno on
+ * paths with a high bandwidth-delay product. In the Reno-friendly region, on short RTTs, it grows
+ * at least as fast as NewReno would.
+ *
+ * <p>Slow start uses HyStart++, RFC 9406, leaving slow start once the RTT starts to increase rather
+ * than on the first loss.
+ */
+public class Cubic implements CongestionController {
+
+  public static final CongestionControllerFactory FACTORY = Cubic::new;
+
+  static final double C = 0.4;
+  static final double BETA = 0.7;
+  // additive increase making the Reno-friendly region as aggressive as NewReno on average
+  static final double ALPHA = 3 * (1 - BETA) / (1 + BETA);
+
+  // HyStart++ constants, RFC 9406 section 4.3
+  static final long MIN_RTT_THRESH = MILLISECONDS.toNanos(4);
+  static final long MAX_RTT_THRESH = MILLISECONDS.toNanos(16);
+  static final int MIN_RTT_DIVISOR = 8;
+  static final int N_RTT_SAMPLE = 8;
+  static final int CSS_GROWTH_DIVISOR = 4;
+  static final int CSS_ROUNDS = 5;
+  // limit of the burst a single ack can release when packets are not paced, paced packets are not
+  // limited
+  static final int L = 8;
+
+  private final long maxDatagramSize;
+  private final long minimumWindow;
+  private final long maxIncrease;
+  private final RttEstimator rtt;
+
+  private volatile long congestionWindow;
+  private volatile long bytesInFlight;
+  private long ssthresh = Long.MAX_VALUE;
+  private long recoveryStartTime;
+  private boolean inRecovery;
+
+  // cubic state, the epoch starts with the first ack in congestion avoidance
+  private boolean inEpoch;
+  private long epochStart;
+  private double wMax;
+  private double k;
+  private double wEst;
+
+  // HyStart++ state, a round ends once a packet sent after the start of the round is acked
+  private long largestSent = -1;
+  private long windowEnd;
+  private long lastRoundMinRtt = Long.MAX_VALUE;
+  private long currentRoundMinRtt = Long.MAX_VALUE;
+  private int rttSampleCount;
+  private boolean inCss;
+  private long cssBaselineMinRtt;
+  private int cssRounds;
+
+  public Cubic(final int maxDatagramSize, final RttEstimator rtt, final boolean paced) {
+    checkArgument(maxDatagramSize > 0);
+
+    this.maxDatagramSize = maxDatagramSize;
+    this.minimumWindow = 2L * maxDatagramSize;
+    this.maxIncrease = paced ? Long.MAX_VALUE : L * maxDatagramSize;
+    this.rtt = requireNonNull(rtt);
+    this.congestionWindow = NewReno.initialWindow(maxDatagramSize);
+  }
+
+  @Override
+  public void onPacketSent(final SentPacket packet) {
+    bytesInFlight += packet.getSize();
+    largestSent = Math.max(largestSent, packet.getPacketNumber());
+  }
+
+  @Override
+  public void onPacketsAcked(final List<SentPacket> packets, final long now) {
+    long ackedBytes = 0;
+    long largestAcked = -1;
+    for (final SentPacket packet : packets) {
+      bytesInFlight -= packet.getSize();
+      largestAcked = Math.max(largestAcked, packet.getPacketNumber());
+
+      // the window does not grow until a packet sent after the start of recovery is acked
+      if (!isInRecovery(packet.getTimeSent())) {
+        ackedBytes += packet.getSize();
+      }
+    }
+
+    if (largestAcked >= windowEnd) {
+      startRound();
+    }
+
+    if (ackedBytes > 0) {
+      if (congestionWindow < ssthresh) {
+        slowStart(ackedBytes);
+      } else {
+        congestionAvoidance(ackedBytes, now);
+      }
+    }
+  }
+
+  private void slowStart(final long ackedBytes) {
+    final long latestRtt = rtt.getLatestRtt();
+    if (latestRtt > 0) {
+      currentRoundMinRtt = Math.min(currentRoundMinRtt, latestRtt);
+      rttSampleCount++;
+    }
+
+    final long increase = Math.min(ackedBytes, maxIncrease);
+    if (inCss) {
+      congestionWindow += increase / CSS_GROWTH_DIVISOR;
+
+      // the RTT increase was spurious, go back to slow start
+      if (rttSampleCount >= N_RTT_SAMPLE && currentRoundMinRtt < cssBaselineMinRtt) {
+        inCss = false;
+      }
+    } else {
+      congestionWindow += increase;
+
+      if (rttSampleCount >= N_RTT_SAMPLE
+          && currentRoundMinRtt != Long.MAX_VALUE
+          && lastRoundMinRtt != Long.MAX_VALUE) {
+        final long threshold =
+            Math.max(MIN_RTT_THRESH, Math.min(lastRoundMinRtt / MIN_RTT_DIVISOR, MAX_RTT_THRESH));
+        if (currentRoundMinRtt >= lastRoundMinRtt + threshold) {
+          // the queue is building up, grow more carefully
+          inCss = true;
+          cssBaselineMinRtt = currentRoundMinRtt;
+          cssRounds = 0;
+        }
+      }
+    }
+  }
+
+  private void startRound() {
+    lastRoundMinRtt = currentRoundMinRtt;
+    currentRoundMinRtt = Long.MAX_VALUE;
+    rttSampleCount = 0;
+    windowEnd = largestSent + 1;
+
+    if (inCss) {
+      cssRounds++;
+      if (cssRounds >= CSS_ROUNDS) {
+        // enough rounds of increasing RTT to be confident slow start should end
+        inCss = false;
+        ssthresh = congestionWindow;
+      }
+    }
+  }
+
+  private void congestionAvoidance(final long ackedBytes, final long now) {
+    if (!inEpoch) {
+      inEpoch = true;
+      epochStart = now;
+      if (congestionWindow < wMax) {
+        k = Math.cbrt((wMax - congestionWindow) / (C * maxDatagramSize));
+      } else {
+        // left slow start without a loss, the current window is the plateau
+        k = 0;
+        wMax = congestionWindow;
+      }
+      wEst = congestionWindow;
+    }
+
+    final double t = seconds(now - epochStart);
+    final double target =
+        Math.max(
+            congestionWindow,
+            Math.min(wCubic(t + seconds(rtt.getSmoothedRtt())), 1.5 * congestionWindow));
+
+    final double alpha = wEst >= wMax ? 1 : ALPHA;
+    wEst += alpha * maxDatagramSize * ackedBytes / congestionWindow;
+
+    if (wCubic(t) < wEst) {
+      // Reno-friendly region
+      congestionWindow = Math.max(congestionWindow, (long) wEst);
+    } else {
+      congestionWindow += (long) ((target - congestionWindow) * ackedBytes / congestionWindow);
+    }
+  }
+
+  /** Window in bytes, t seconds into the epoch */
+  private double wCubic(final double t) {
+    return C * Math.pow(t - k, 3) * maxDatagramSize + wMax;
+  }
+
+  @Override
+  public void onPacketsLost(final List<SentPacket> packets, final long now) {
+    long largestTimeSent = Long.MIN_VALUE;
+    for (final SentPacket packet : packets) {
+      bytesInFlight -= packet.getSize();
+      largestTimeSent = Math.max(largestTimeSent, packet.getTimeSent());
+    }
+
+    // a single reduction for all packets lost before recovery started
+    if (!packets.isEmpty() && !isInRecovery(largestTimeSent)) {
+      inRecovery = true;
+      recoveryStartTime = now;
+      inEpoch = false;
+      inCss = false;
+
+      // fast convergence, release bandwidth to new flows if the plateau keeps dropping
+      if (congestionWindow < wMax) {
+        wMax = congestionWindow * (1 + BETA) / 2;
+      } else {
+        wMax = congestionWindow;
+      }
+
+      ssthresh = Math.max((long) (congestionWindow * BETA), minimumWindow);
+      congestionWindow = ssthresh;
+    }
+  }
+
+  @Override
+  public void onPersistentCongestion() {
+    congestionWindow = minimumWindow;
+    inRecovery = false;
+    inEpoch = false;
+    inCss = false;
+  }
+
+  @Override
+  public void onPacketsDiscarded(final List<SentPacket> packets) {
+    for (final SentPacket packet : packets) {
+      bytesInFlight -= packet.getSize();
+    }
+  }
+
+  @Override
+  public long getCongestionWindow() {
+    return congestionWindow;
+  }
+
+  @Override
+  public long getBytesInFlight() {
+    return bytesInFlight;
+  }
+
+  long getSsthresh() {
+    return ssthresh;
+  }
+
+  double getWMax() {
+    return wMax;
+  }
+
+  boolean isInCss() {
+    return inCss;
+  }
+
+  private boolean isInRecovery(final long timeSent) {
+    return inRecovery && timeSent <= recoveryStartTime;
+  }
+
+  private static double seconds(final long nanos) {
+    return nanos / 1e9;
+  }
+}
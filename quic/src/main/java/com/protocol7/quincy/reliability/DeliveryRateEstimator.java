@@ -0,0 +1,83 @@
+package com.protocol7.quincy.reliability;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Delivery rate estimation, as described in draft-cheng-iccrg-delivery-rate-estimation. Each packet
+ * sent records how much had been delivered at the time. When it is acknowledged, the bytes
+ * delivered since over the time elapsed gives the delivery rate. All times are in nanoseconds.
+ */
+public class DeliveryRateEstimator {
+
+  private long delivered;
+  private long deliveredTime;
+  private long firstSentTime;
+  // delivered count at which the connection stops being app-limited, 0 if not app-limited
+  private long appLimitedUntil;
+
+  /** @param bytesInFlight bytes in flight before the packet was sent */
+  public void onPacketSent(final SentPacket packet, final long bytesInFlight) {
+    // nothing in flight, start measuring from this packet
+    if (bytesInFlight == 0) {
+      firstSentTime = packet.getTimeSent();
+      deliveredTime = packet.getTimeSent();
+    }
+
+    packet.setDeliveryState(delivered, deliveredTime, firstSentTime, appLimitedUntil != 0);
+  }
+
+  /**
+   * @param minRtt samples over intervals shorter than this are compressed by ack aggregation and
+   *     only used for round counting
+   */
+  public Optional<RateSample> onPacketsAcked(
+      final List<SentPacket> packets, final long now, final long minRtt) {
+    Optional<SentPacket> latest = Optional.empty();
+    for (final SentPacket packet : packets) {
+      delivered += packet.getSize();
+      deliveredTime = now;
+
+      // the sample is taken over the most recently sent packet
+      if (latest.isEmpty() || packet.getDelivered() >= latest.get().getDelivered()) {
+        latest = Optional.of(packet);
+      }
+    }
+
+    if (appLimitedUntil != 0 && delivered > appLimitedUntil) {
+      appLimitedUntil = 0;
+    }
+
+    if (latest.isEmpty()) {
+      return Optional.empty();
+    }
+
+    final SentPacket packet = latest.get();
+    firstSentTime = packet.getTimeSent();
+
+    // the rate can not be higher than either the send or the ack rate
+    final long sendElapsed = packet.getTimeSent() - packet.getFirstSentTime();
+    final long ackElapsed = now - packet.getDeliveredTime();
+    long interval = Math.max(sendElapsed, ackElapsed);
+    if (interval < minRtt) {
+      interval = 0;
+    }
+
+    return Optional.of(
+        new RateSample(
+            delivered - packet.getDelivered(),
+            packet.getDelivered(),
+            interval,
+            now - packet.getTimeSent(),
+            packet.isAppLimited()));
+  }
+
+  /** The sender has nothing more to send, samples until the flight is acked are app-limited */
+  public void onAppLimited(final long bytesInFlight) {
+    appLimitedUntil = Math.max(delivered + bytesInFlight, 1);
+  }
+
+  public long getDelivered() {
+    return delivered;
+  }
+}
@@ -0,0 +1,556 @@
+package com.protocol7.quincy.reliability;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.protocol7.quincy.FrameSender;
+import com.protocol7.quincy.protocol.frames.AckFrame;
+import com.protocol7.quincy.protocol.frames.AckRange;
+import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.packets.FullPacket;
+import com.protocol7.quincy.tls.EncryptionLevel;
+import com.protocol7.quincy.utils.Pair;
+import com.protocol7.quincy.utils.Ticker;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loss detection as described in RFC 9002, section 6. Sent packets are tracked per packet number
+ * space. A packet is declared lost once a packet sent sufficiently later, by packet number or by
+ * time, has been acknowledged. If acknowledgements stop arriving, a probe timeout (PTO) sends probe
+ * packets to elicit them.
+ *
+ * <p>A single timer per connection is armed for the earliest loss time or PTO, and is not armed at
+ * all while no ack-eliciting packets are in flight. All times are in nanoseconds.
+ *
+ * <p>Ack-eliciting packets sent, acknowledged and lost are reported to the {@link
+ * CongestionController}. Retransmissions and probes are sent after releasing the lock, as sending
+ * passes the packets back through {@link #onPacketSent(EncryptionLevel, FullPacket)}.
+ */
+public class LossDetector {
+
+  private static final Logger log = LoggerFactory.getLogger(LossDetector.class);
+
+  // reordering threshold, in packets
+  static final int PACKET_THRESHOLD = 3;
+
+  static final long GRANULARITY = MILLISECONDS.toNanos(1);
+
+  // cap the exponential backoff, the idle timeout closes the connection long before this
+  private static final int MAX_PTO_BACKOFF = 16;
+
+  // number of PTOs a span of lost packets must cover to be persistent congestion
+  static final int PERSISTENT_CONGESTION_THRESHOLD = 3;
+
+  private static class Space {
+    private final PacketBuffer buffer;
+    private long largestAcked = -1;
+    // send time of the latest sent packet acknowledged
+    private long latestAckedTimeSent;
+    private long lossTime;
+    private long timeOfLastAckEliciting;
+    private boolean discarded;
+
+    private Space(final Ticker ticker) {
+      this.buffer = new PacketBuffer(ticker);
+    }
+  }
+
+  private final Map<EncryptionLevel, Space> spaces = new EnumMap<>(EncryptionLevel.class);
+  private final RttEstimator rtt;
+  private final CongestionController congestionController;
+  private final DeliveryRateEstimator deliveryRate = new DeliveryRateEstimator();
+  private final FrameSender frameSender;
+  private final Timer timer;
+  private final Ticker ticker;
+  private final AckDelay ackDelay;
+  private final long maxAckDelay;
+  private final List<AckListener> ackListeners = new CopyOnWriteArrayList<>();
+
+  private int ptoCount;
+  // ack-eliciting packets that may be sent regardless of the congestion window, after a PTO
+  private int probes;
+  private long firstRttSampleTime;
+  private Optional<Timeout> timeout = Optional.empty();
+  private long timeoutDeadline;
+  private boolean closed;
+
+  /**
+   * @param maxAckDelay maximum time the peer delays acknowledgements of 1-RTT packets, in
+   *     milliseconds
+   */
+  public LossDetector(
+      final FrameSender frameSender,
+      final Timer timer,
+      final Ticker ticker,
+      final AckDelay ackDelay,
+      final long maxAckDelay,
+      final RttEstimator rtt,
+      final CongestionController congestionController) {
+    this.frameSender = requireNonNull(frameSender);
+    this.timer = requireNonNull(timer);
+    this.ticker = requireNonNull(ticker);
+    this.ackDelay = requireNonNull(ackDelay);
+    this.maxAckDelay = MILLISECONDS.toNanos(maxAckDelay);
+    this.rtt = requireNonNull(rtt);
+    this.congestionController = requireNonNull(congestionController);
+
+    for (final EncryptionLevel level : EncryptionLevel.values()) {
+      spaces.put(level, new Space(ticker));
+    }
+  }
+
+  public synchronized void onPacketSent(final EncryptionLevel level, final FullPacket packet) {
+    final Space space = spaces.get(level);
+    if (space.discarded) {
+      // can never be acked
+      return;
+    }
+    // a packet number reused after a reset replaces the earlier packet, which is no longer in
+    // flight
+    final Optional<SentPacket> replaced = space.buffer.remove(packet.getPacketNumber());
+    if (replaced.isPresent() && replaced.get().isAckEliciting()) {
+      congestionController.onPacketsDiscarded(List.of(replaced.get()));
+    }
+    final SentPacket sent = space.buffer.put(packet);
+
+    if (sent.isAckEliciting()) {
+      probes = Math.max(probes - 1, 0);
+      deliveryRate.onPacketSent(sent, congestionController.getBytesInFlight());
+      congestionController.onPacketSent(sent);
+
+      space.timeOfLastAckEliciting = sent.getTimeSent();
+      setTimer();
+    }
+  }
+
+  /** True if the packet may be sent now, packets not ack-eliciting can always be sent */
+  public synchronized boolean canSend(final FullPacket packet) {
+    if (!SentPacket.isAckEliciting(packet.getPayload().getFrames())) {
+      return true;
+    }
+    return probes > 0 || congestionController.canSend();
+  }
+
+  /** Listeners are notified outside the lock, and must be added before any packets are acked */
+  public void addAckListener(final AckListener listener) {
+    ackListeners.add(requireNonNull(listener));
+  }
+
+  public void onAckReceived(final AckFrame frame, final EncryptionLevel level) {
+    final List<SentPacket> acked = new ArrayList<>();
+    final List<Pair<EncryptionLevel, List<Frame>>> retransmits;
+    synchronized (this) {
+      retransmits = handleAck(frame, level, acked);
+    }
+
+    if (!acked.isEmpty()) {
+      for (final AckListener listener : ackListeners) {
+        listener.onPacketsAcked(level, acked);
+      }
+    }
+    send(retransmits);
+  }
+
+  private List<Pair<EncryptionLevel, List<Frame>>> handleAck(
+      final AckFrame frame, final EncryptionLevel level, final List<SentPacket> newlyAcked) {
+    final Space space = spaces.get(level);
+
+    final long largest = frame.getLargest();
+    space.largestAcked = Math.max(space.largestAcked, largest);
+
+    Optional<SentPacket> largestNewlyAcked = Optional.empty();
+    final List<SentPacket> ackedInFlight = new ArrayList<>();
+    for (final AckRange range : frame.getRanges()) {
+      for (final SentPacket acked : space.buffer.remove(range.getSmallest(), range.getLargest())) {
+        log.debug("Acked packet {} at level {}", acked.getPacketNumber(), level);
+        newlyAcked.add(acked);
+        space.latestAckedTimeSent = Math.max(space.latestAckedTimeSent, acked.getTimeSent());
+        if (acked.isAckEliciting()) {
+          ackedInFlight.add(acked);
+        }
+        if (largestNewlyAcked.isEmpty()
+            || acked.getPacketNumber() > largestNewlyAcked.get().getPacketNumber()) {
+          largestNewlyAcked = Optional.of(acked);
+        }
+      }
+    }
+
+    if (largestNewlyAcked.isEmpty()) {
+      return List.of();
+    }
+
+    final long now = ticker.nanoTime();
+
+    // only the largest acknowledged packet gives an RTT sample, later acks for it would not
+    if (largestNewlyAcked.get().getPacketNumber() == largest && !ackedInFlight.isEmpty()) {
+      if (!rtt.hasSample()) {
+        firstRttSampleTime = now;
+      }
+      rtt.update(now - largestNewlyAcked.get().getTimeSent(), peerAckDelay(frame, level));
+    }
+
+    final List<SentPacket> lost = detectLost(space);
+    if (!ackedInFlight.isEmpty()) {
+      deliveryRate
+          .onPacketsAcked(ackedInFlight, now, rtt.getMinRtt())
+          .ifPresent(congestionController::onRateSample);
+      congestionController.onPacketsAcked(ackedInFlight, now);
+    }
+    onPacketsLost(lost, Optional.of(frame), now);
+
+    ptoCount = 0;
+    setTimer();
+
+    return retransmittable(level, lost);
+  }
+
+  private long peerAckDelay(final AckFrame frame, final EncryptionLevel level) {
+    // initial packets are acked immediately, any delay reported is noise
+    if (level == EncryptionLevel.Initial) {
+      return 0;
+    }
+    return Math.min(ackDelay.toNanos(frame.getAckDelay()), maxAckDelay);
+  }
+
+  /** No more packets are waiting to be sent */
+  public synchronized void onSendQueueEmpty() {
+    if (congestionController.canSend()) {
+      // not using the full window, the delivery rate says nothing about the available bandwidth
+      deliveryRate.onAppLimited(congestionController.getBytesInFlight());
+    }
+  }
+
+  /**
+   * Stop tracking packets in a space, once its keys have been discarded. Only the first call has
+   * any effect, as discarding also resets the PTO backoff
+   */
+  public synchronized void discard(final EncryptionLevel level) {
+    final Space space = spaces.get(level);
+    if (space.discarded) {
+      return;
+    }
+    space.discarded = true;
+    clear(space);
+  }
+
+  /**
+   * Forget the packets sent in a space, while still tracking those sent later. Used when the client
+   * restarts the handshake after a Retry, RFC 9002 section 6.3
+   */
+  public synchronized void reset(final EncryptionLevel level) {
+    final Space space = spaces.get(level);
+    if (space.discarded) {
+      return;
+    }
+    clear(space);
+  }
+
+  private void clear(final Space space) {
+    final List<SentPacket> inFlight = new ArrayList<>();
+    for (final SentPacket packet : space.buffer.getPackets()) {
+      if (packet.isAckEliciting()) {
+        inFlight.add(packet);
+      }
+    }
+    if (!inFlight.isEmpty()) {
+      congestionController.onPacketsDiscarded(inFlight);
+    }
+
+    space.buffer.clear();
+    space.lossTime = 0;
+    space.timeOfLastAckEliciting = 0;
+
+    ptoCount = 0;
+    setTimer();
+  }
+
+  /** Stop the timer, no more packets are retransmitted */
+  public synchronized void close() {
+    closed = true;
+    cancelTimer();
+  }
+
+  public RttEstimator getRtt() {
+    return rtt;
+  }
+
+  public CongestionController getCongestionController() {
+    return congestionController;
+  }
+
+  @VisibleForTesting
+  PacketBuffer getBuffer(final EncryptionLevel level) {
+    return spaces.get(level).buffer;
+  }
+
+  private void onTimeout(final Timeout fired) {
+    final List<Pair<EncryptionLevel, List<Frame>>> retransmits;
+    synchronized (this) {
+      retransmits = handleTimeout(fired);
+    }
+    send(retransmits);
+  }
+
+  private List<Pair<EncryptionLevel, List<Frame>>> handleTimeout(final Timeout fired) {
+    // a timer cancelled too late to stop it from firing
+    if (timeout.isEmpty() || timeout.get() != fired) {
+      return List.of();
+    }
+
+    timeout = Optional.empty();
+    if (closed || !frameSender.isOpen()) {
+      return List.of();
+    }
+
+    final long now = ticker.nanoTime();
+    final long deadline = nextDeadline();
+    if (deadline == 0) {
+      return List.of();
+    } else if (deadline - now > GRANULARITY) {
+      // armed for an earlier deadline that has since moved
+      setTimer();
+      return List.of();
+    }
+
+    final List<Pair<EncryptionLevel, List<Frame>>> retransmits;
+    final Optional<EncryptionLevel> lossLevel = earliestLossTime();
+    if (lossLevel.isPresent()) {
+      final EncryptionLevel level = lossLevel.get();
+      final List<SentPacket> lost = detectLost(spaces.get(level));
+      onPacketsLost(lost, Optional.empty(), now);
+      retransmits = retransmittable(level, lost);
+    } else {
+      retransmits = earliestPto().map(this::probe).orElse(List.of());
+      ptoCount++;
+    }
+
+    setTimer();
+    return retransmits;
+  }
+
+  private List<SentPacket> detectLost(final Space space) {
+    space.lossTime = 0;
+    if (space.largestAcked == -1) {
+      return List.of();
+    }
+
+    final long lossDelay =
+        Math.max(9 * Math.max(rtt.getLatestRtt(), rtt.getSmoothedRtt()) / 8, GRANULARITY);
+    final long lostSendTime = ticker.nanoTime() - lossDelay;
+
+    final List<SentPacket> lost = new ArrayList<>();
+    for (final SentPacket packet : space.buffer.getPackets()) {
+      final long pn = packet.getPacketNumber();
+      if (pn > space.largestAcked) {
+        // in packet number order, none of the rest can be lost yet
+        break;
+      }
+      if (packet.getTimeSent() > space.latestAckedTimeSent) {
+        // only packets sent before an acknowledged packet can be lost. Packets that are not
+        // ack-eliciting can be sent ahead of packets with lower numbers held back by the send queue
+        continue;
+      }
+
+      if (packet.getTimeSent() <= lostSendTime || space.largestAcked >= pn + PACKET_THRESHOLD) {
+        lost.add(packet);
+      } else {
+        final long lossTime = packet.getTimeSent() + lossDelay;
+        if (space.lossTime == 0 || lossTime < space.lossTime) {
+          space.lossTime = lossTime;
+        }
+      }
+    }
+
+    lost.forEach(packet -> space.buffer.remove(packet.getPacketNumber()));
+    return lost;
+  }
+
+  private void onPacketsLost(
+      final List<SentPacket> lost, final Optional<AckFrame> frame, final long now) {
+    final List<SentPacket> lostInFlight =
+        lost.stream()
+            .filter(SentPacket::isAckEliciting)
+            .sorted(Comparator.comparingLong(SentPacket::getPacketNumber))
+            .collect(Collectors.toList());
+    if (lostInFlight.isEmpty()) {
+      return;
+    }
+
+    congestionController.onPacketsLost(lostInFlight, now);
+
+    if (isPersistentCongestion(lostInFlight, frame)) {
+      log.debug("Persistent congestion");
+      congestionController.onPersistentCongestion();
+    }
+  }
+
+  /**
+   * Persistent congestion is declared when the lost packets span more than a few PTOs, without any
+   * packet sent in between being acknowledged, RFC 9002 section 7.6
+   */
+  private boolean isPersistentCongestion(
+      final List<SentPacket> lost, final Optional<AckFrame> frame) {
+    if (!rtt.hasSample()) {
+      return false;
+    }
+
+    final long duration =
+        (rtt.getSmoothedRtt() + Math.max(4 * rtt.getRttVar(), GRANULARITY) + maxAckDelay)
+            * PERSISTENT_CONGESTION_THRESHOLD;
+
+    // packets sent before the first RTT sample were sent with the initial RTT as the estimate
+    Optional<SentPacket> start = Optional.empty();
+    for (final SentPacket packet : lost) {
+      if (packet.getTimeSent() <= firstRttSampleTime) {
+        continue;
+      }
+
+      if (start.isEmpty()
+          || isAcked(frame, start.get().getPacketNumber(), packet.getPacketNumber())) {
+        start = Optional.of(packet);
+      } else if (packet.getTimeSent() - start.get().getTimeSent() > duration) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** True if any packet between from and to, exclusive, was acked by the frame */
+  private static boolean isAcked(final Optional<AckFrame> frame, final long from, final long to) {
+    return frame.isPresent()
+        && frame
+            .get()
+            .getRanges()
+            .stream()
+            .anyMatch(range -> range.getLargest() > from && range.getSmallest() < to);
+  }
+
+  private List<Pair<EncryptionLevel, List<Frame>>> retransmittable(
+      final EncryptionLevel level, final List<SentPacket> lost) {
+    final List<Pair<EncryptionLevel, List<Frame>>> retransmits = new ArrayList<>();
+    for (final SentPacket packet : lost) {
+      log.debug("Packet {} at level {} lost", packet.getPacketNumber(), level);
+
+      final List<Frame> frames = packet.getRetransmittableFrames();
+      if (!frames.isEmpty()) {
+        retransmits.add(Pair.of(level, frames));
+      }
+    }
+    return retransmits;
+  }
+
+  private List<Pair<EncryptionLevel, List<Frame>>> probe(final EncryptionLevel level) {
+    // probe with the oldest data in flight, it's the most likely to have been lost. The probe is
+    // sent even if the congestion window is full
+    return spaces
+        .get(level)
+        .buffer
+        .getOldestAckEliciting()
+        .map(
+            packet -> {
+              log.debug("PTO, sending probe at level {}", level);
+              probes = 1;
+              return List.of(Pair.of(level, packet.getRetransmittableFrames()));
+            })
+        .orElse(List.of());
+  }
+
+  private void send(final List<Pair<EncryptionLevel, List<Frame>>> retransmits) {
+    for (final Pair<EncryptionLevel, List<Frame>> retransmit : retransmits) {
+      if (!frameSender.isOpen()) {
+        return;
+      }
+      frameSender.send(retransmit.getFirst(), retransmit.getSecond().toArray(new Frame[0]));
+    }
+  }
+
+  private Optional<EncryptionLevel> earliestLossTime() {
+    Optional<EncryptionLevel> earliest = Optional.empty();
+    for (final EncryptionLevel level : EncryptionLevel.values()) {
+      final long lossTime = spaces.get(level).lossTime;
+      if (lossTime != 0 && (earliest.isEmpty() || lossTime < spaces.get(earliest.get()).lossTime)) {
+        earliest = Optional.of(level);
+      }
+    }
+    return earliest;
+  }
+
+  private Optional<EncryptionLevel> earliestPto() {
+    Optional<EncryptionLevel> earliest = Optional.empty();
+    long earliestTime = 0;
+    for (final EncryptionLevel level : EncryptionLevel.values()) {
+      final Space space = spaces.get(level);
+      if (space.buffer.hasAckEliciting()) {
+        final long time = space.timeOfLastAckEliciting + ptoDuration(level);
+        if (earliest.isEmpty() || time < earliestTime) {
+          earliest = Optional.of(level);
+          earliestTime = time;
+        }
+      }
+    }
+    return earliest;
+  }
+
+  @VisibleForTesting
+  long ptoDuration(final EncryptionLevel level) {
+    long duration = rtt.getSmoothedRtt() + Math.max(4 * rtt.getRttVar(), GRANULARITY);
+    if (level == EncryptionLevel.OneRtt) {
+      duration += maxAckDelay;
+    }
+    return duration << Math.min(ptoCount, MAX_PTO_BACKOFF);
+  }
+
+  /** The time the timer should fire at, or 0 if it should not be armed */
+  @VisibleForTesting
+  long nextDeadline() {
+    final Optional<EncryptionLevel> lossLevel = earliestLossTime();
+    if (lossLevel.isPresent()) {
+      return spaces.get(lossLevel.get()).lossTime;
+    }
+
+    return earliestPto()
+        .map(level -> spaces.get(level).timeOfLastAckEliciting + ptoDuration(level))
+        .orElse(0L);
+  }
+
+  private void setTimer() {
+    if (closed) {
+      return;
+    }
+
+    final long deadline = nextDeadline();
+    if (deadline == 0) {
+      cancelTimer();
+      return;
+    }
+
+    // a timer firing too early re-arms itself, only move it if the deadline gets earlier. Saves
+    // re-arming the timer for every packet sent
+    if (timeout.isPresent() && timeoutDeadline <= deadline) {
+      return;
+    }
+
+    cancelTimer();
+    timeoutDeadline = deadline;
+    final long delay = Math.max(deadline - ticker.nanoTime(), 0);
+    timeout = Optional.of(timer.newTimeout(this::onTimeout, delay, NANOSECONDS));
+  }
+
+  private void cancelTimer() {
+    timeout.ifPresent(Timeout::cancel);
+    timeout = Optional.empty();
+  }
+}
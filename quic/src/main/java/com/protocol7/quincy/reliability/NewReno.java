@@ -0,0 +1,104 @@
+package com.protocol7.quincy.reliability;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+
+/** NewReno congestion control, as described in RFC 9002, section 7 and appendix B */
+public class NewReno implements CongestionController {
+
+  public static final CongestionControllerFactory FACTORY =
+      (maxDatagramSize, rtt, paced) -> new NewReno(maxDatagramSize);
+
+  private final long maxDatagramSize;
+  private final long minimumWindow;
+
+  private volatile long congestionWindow;
+  private volatile long bytesInFlight;
+  private long ssthresh = Long.MAX_VALUE;
+  private long recoveryStartTime;
+  private boolean inRecovery;
+
+  public NewReno(final int maxDatagramSize) {
+    checkArgument(maxDatagramSize > 0);
+
+    this.maxDatagramSize = maxDatagramSize;
+    this.minimumWindow = 2L * maxDatagramSize;
+    this.congestionWindow = initialWindow(maxDatagramSize);
+  }
+
+  static long initialWindow(final long maxDatagramSize) {
+    return Math.min(10 * maxDatagramSize, Math.max(14720, 2 * maxDatagramSize));
+  }
+
+  @Override
+  public void onPacketSent(final SentPacket packet) {
+    bytesInFlight += packet.getSize();
+  }
+
+  @Override
+  public void onPacketsAcked(final List<SentPacket> packets, final long now) {
+    for (final SentPacket packet : packets) {
+      bytesInFlight -= packet.getSize();
+
+      // the window does not grow until a packet sent after the start of recovery is acked
+      if (isInRecovery(packet.getTimeSent())) {
+        continue;
+      }
+
+      if (congestionWindow < ssthresh) {
+        congestionWindow += packet.getSize();
+      } else {
+        congestionWindow += maxDatagramSize * packet.getSize() / congestionWindow;
+      }
+    }
+  }
+
+  @Override
+  public void onPacketsLost(final List<SentPacket> packets, final long now) {
+    long largestTimeSent = Long.MIN_VALUE;
+    for (final SentPacket packet : packets) {
+      bytesInFlight -= packet.getSize();
+      largestTimeSent = Math.max(largestTimeSent, packet.getTimeSent());
+    }
+
+    // a single reduction for all packets lost before recovery started
+    if (!packets.isEmpty() && !isInRecovery(largestTimeSent)) {
+      inRecovery = true;
+      recoveryStartTime = now;
+      ssthresh = congestionWindow / 2;
+      congestionWindow = Math.max(ssthresh, minimumWindow);
+    }
+  }
+
+  @Override
+  public void onPersistentCongestion() {
+    congestionWindow = minimumWindow;
+    inRecovery = false;
+  }
+
+  @Override
+  public void onPacketsDiscarded(final List<SentPacket> packets) {
+    for (final SentPacket packet : packets) {
+      bytesInFlight -= packet.getSize();
+    }
+  }
+
+  @Override
+  public long getCongestionWindow() {
+    return congestionWindow;
+  }
+
+  @Override
+  public long getBytesInFlight() {
+    return bytesInFlight;
+  }
+
+  long getSsthresh() {
+    return ssthresh;
+  }
+
+  private boolean isInRecovery(final long timeSent) {
+    return inRecovery && timeSent <= recoveryStartTime;
+  }
+}
@@ -0,0 +1,96 @@
+package com.protocol7.quincy.reliability;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Token bucket spacing out ack-eliciting packets, RFC 9002 section 7.7. The bucket fills at the
+ * pacing rate of the congestion controller, or if it does not pace, at a rate sending the
+ * congestion window over one smoothed RTT.
+ *
+ * <p>The bucket holds at least a batch of datagrams, so that a burst released together can be
+ * written in a single system call. It also holds what should be sent during the granularity of the
+ * event loop releasing packets, as it can not reliably wake up any more often than that.
+ */
+public class Pacer {
+
+  // pace a bit faster than the window allows, to not under-utilize it due to timer delays
+  static final double N = 1.25;
+  // releases are scheduled on the event loop, the NIO transport wakes up at millisecond precision
+  static final long TIMER_GRANULARITY = MILLISECONDS.toNanos(1);
+
+  private final CongestionController congestionController;
+  private final RttEstimator rtt;
+  private final long minCapacity;
+
+  private double tokens;
+  private long lastRefill = -1;
+
+  public Pacer(
+      final CongestionController congestionController,
+      final RttEstimator rtt,
+      final int maxDatagramSize,
+      final int batchSize) {
+    checkArgument(maxDatagramSize > 0);
+    checkArgument(batchSize > 0);
+
+    this.congestionController = requireNonNull(congestionController);
+    this.rtt = requireNonNull(rtt);
+    this.minCapacity = (long) maxDatagramSize * batchSize;
+  }
+
+  /** Nanoseconds until a packet of the given size can be sent, 0 if it can be sent now */
+  public synchronized long timeUntilSend(final int size, final long now) {
+    refill(now);
+
+    // without an RTT sample the rate would be based on the initial RTT, which is far too slow for
+    // most paths. The initial window is limiting enough
+    final double missing = size - tokens;
+    if (missing < 1 || !rtt.hasSample()) {
+      return 0;
+    }
+    // round up, a timer firing a bit early would otherwise re-arm itself for a single nanosecond
+    return (long) Math.ceil(missing * 1e9 / getRate());
+  }
+
+  public synchronized void onPacketSent(final int size, final long now) {
+    refill(now);
+    // unpaced packets sent before the first RTT sample do not hold back later ones
+    tokens = Math.max(tokens - size, 0);
+  }
+
+  /** Bytes per second packets are released at */
+  public long getRate() {
+    final long pacingRate = congestionController.getPacingRate();
+    if (pacingRate > 0) {
+      return pacingRate;
+    }
+
+    final long smoothedRtt = Math.max(rtt.getSmoothedRtt(), 1);
+    return Math.max(
+        (long) (N * congestionController.getCongestionWindow() * SECONDS.toNanos(1) / smoothedRtt),
+        1);
+  }
+
+  long getCapacity() {
+    return Math.max(minCapacity, (long) (seconds(TIMER_GRANULARITY) * getRate()));
+  }
+
+  private void refill(final long now) {
+    final long capacity = getCapacity();
+    if (lastRefill == -1) {
+      // start with a full bucket
+      tokens = capacity;
+    } else if (now > lastRefill) {
+      // an idle connection gets no more than a full bucket
+      tokens = Math.min(capacity, tokens + seconds(now - lastRefill) * getRate());
+    }
+    lastRefill = Math.max(lastRefill, now);
+  }
+
+  private static double seconds(final long nanos) {
+    return nanos / 1e9;
+  }
+}
@@ -1,70 +1,224 @@
 package com.protocol7.quincy.reliability;
 
-import static com.protocol7.quincy.utils.Pair.of;
 import static java.util.Objects.requireNonNull;
 
-import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
-import com.protocol7.quincy.utils.Pair;
 import com.protocol7.quincy.utils.Ticker;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
+/**
+ * Packets sent within a single packet number space, waiting to be acknowledged.
+ *
+ * <p>Packets are held in a ring indexed by packet number, from the oldest packet not yet
+ * acknowledged to the latest sent. Packet numbers are shared by all spaces, so the ring can have
+ * empty slots for packets sent in other spaces, and for packets acknowledged out of order.
+ * Iteration is always in packet number order.
+ *
+ * <p>Not thread safe, access is guarded by the {@link LossDetector}.
+ */
 public class PacketBuffer {
 
-  private final ConcurrentMap<Long, Pair<List<Frame>, Long>> buffer = new ConcurrentHashMap<>();
+  private static final int INITIAL_CAPACITY = 64;
+
   private final Ticker ticker;
 
+  private SentPacket[] slots = new SentPacket[INITIAL_CAPACITY];
+  // slot holding the packet number first
+  private int head;
+  private long first;
+  // number of slots from first to the latest packet, including empty ones
+  private int length;
+  private int size;
+  private int ackEliciting;
+
   public PacketBuffer(final Ticker ticker) {
     this.ticker = requireNonNull(ticker);
   }
 
-  public void put(final FullPacket packet) {
+  public SentPacket put(final FullPacket packet) {
     requireNonNull(packet);
-    buffer.put(packet.getPacketNumber(), of(packet.getPayload().getFrames(), ticker.nanoTime()));
+    final SentPacket sent =
+        new SentPacket(
+            packet.getPacketNumber(),
+            packet.getPayload().getFrames(),
+            ticker.nanoTime(),
+            packet.getPayload().calculateLength());
+
+    final long pn = sent.getPacketNumber();
+    if (length == 0) {
+      head = 0;
+      first = pn;
+      length = 1;
+    } else if (pn < first) {
+      // only when packets are sent out of order, make room before the first packet
+      ensureCapacity(length + (int) (first - pn));
+      head = Math.floorMod(head - (int) (first - pn), slots.length);
+      length += (int) (first - pn);
+      first = pn;
+    } else if (pn >= first + length) {
+      ensureCapacity((int) (pn - first) + 1);
+      length = (int) (pn - first) + 1;
+    }
+
+    final int index = index(pn);
+    final SentPacket previous = slots[index];
+    if (previous != null) {
+      size--;
+      if (previous.isAckEliciting()) {
+        ackEliciting--;
+      }
+    }
+    slots[index] = sent;
+    size++;
+    if (sent.isAckEliciting()) {
+      ackEliciting++;
+    }
+    return sent;
   }
 
   public void clear() {
-    buffer.clear();
+    slots = new SentPacket[INITIAL_CAPACITY];
+    head = 0;
+    length = 0;
+    size = 0;
+    ackEliciting = 0;
   }
 
-  public boolean remove(final long packetNumber) {
-    return buffer.remove(packetNumber) != null;
+  public Optional<SentPacket> remove(final long packetNumber) {
+    if (!inRange(packetNumber)) {
+      return Optional.empty();
+    }
+
+    final int index = index(packetNumber);
+    final SentPacket removed = slots[index];
+    if (removed != null) {
+      slots[index] = null;
+      size--;
+      if (removed.isAckEliciting()) {
+        ackEliciting--;
+      }
+      trim();
+    }
+    return Optional.ofNullable(removed);
+  }
+
+  /** Remove the packets from smallest to largest, inclusive, in packet number order */
+  public List<SentPacket> remove(final long smallest, final long largest) {
+    final List<SentPacket> removed = new ArrayList<>();
+    if (length == 0) {
+      return removed;
+    }
+
+    // only visit the slots within the ring, not the full range
+    final long from = Math.max(smallest, first);
+    final long to = Math.min(largest, first + length - 1);
+    for (long pn = from; pn <= to; pn++) {
+      final int index = index(pn);
+      final SentPacket packet = slots[index];
+      if (packet != null) {
+        slots[index] = null;
+        size--;
+        if (packet.isAckEliciting()) {
+          ackEliciting--;
+        }
+        removed.add(packet);
+      }
+    }
+    trim();
+    return removed;
   }
 
   public boolean contains(final long packetNumber) {
-    return buffer.containsKey(packetNumber);
+    return inRange(packetNumber) && slots[index(packetNumber)] != null;
   }
 
   public boolean isEmpty() {
-    return buffer.isEmpty();
+    return size == 0;
   }
 
-  public Collection<Frame> drainSince(final long ttl, final TimeUnit unit) {
-    final long since = ticker.nanoTime() - unit.toNanos(ttl);
+  public int size() {
+    return size;
+  }
+
+  /** True if any of the buffered packets are ack-eliciting */
+  public boolean hasAckEliciting() {
+    return ackEliciting > 0;
+  }
+
+  /** The buffered packets, in packet number order */
+  public List<SentPacket> getPackets() {
+    final List<SentPacket> packets = new ArrayList<>(size);
+    for (int i = 0; i < length; i++) {
+      final SentPacket packet = slots[(head + i) % slots.length];
+      if (packet != null) {
+        packets.add(packet);
+      }
+    }
+    return packets;
+  }
+
+  /** The ack-eliciting packet with the lowest packet number, if any */
+  public Optional<SentPacket> getOldestAckEliciting() {
+    if (ackEliciting == 0) {
+      return Optional.empty();
+    }
+    for (int i = 0; i < length; i++) {
+      final SentPacket packet = slots[(head + i) % slots.length];
+      if (packet != null && packet.isAckEliciting()) {
+        return Optional.of(packet);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private boolean inRange(final long packetNumber) {
+    return packetNumber >= first && packetNumber < first + length;
+  }
+
+  private int index(final long packetNumber) {
+    return (int) ((head + (packetNumber - first)) % slots.length);
+  }
+
+  /** Drop empty slots from both ends, so the ring spans the packets still waiting */
+  private void trim() {
+    if (size == 0) {
+      head = 0;
+      length = 0;
+      return;
+    }
+    while (slots[head] == null) {
+      head = (head + 1) % slots.length;
+      first++;
+      length--;
+    }
+    while (slots[(head + length - 1) % slots.length] == null) {
+      length--;
+    }
+  }
 
-    final List<Entry<Long, Pair<List<Frame>, Long>>> toDrain =
-        buffer
-            .entrySet()
-            .stream()
-            .filter(entry -> entry.getValue().getSecond() < since)
-            .collect(Collectors.toUnmodifiableList());
+  private void ensureCapacity(final int capacity) {
+    if (capacity <= slots.length) {
+      return;
+    }
 
-    toDrain.forEach(entry -> remove(entry.getKey()));
+    int newCapacity = slots.length;
+    while (newCapacity < capacity) {
+      newCapacity *= 2;
+    }
 
-    return toDrain
-        .stream()
-        .flatMap(entry -> entry.getValue().getFirst().stream())
-        .collect(Collectors.toUnmodifiableList());
+    // unwrap the ring, the first packet ends up in the first slot
+    final SentPacket[] grown = new SentPacket[newCapacity];
+    for (int i = 0; i < length; i++) {
+      grown[i] = slots[(head + i) % slots.length];
+    }
+    slots = grown;
+    head = 0;
   }
 
   @Override
   public String toString() {
-    return "PacketBuffer{" + buffer + '}';
+    return "PacketBuffer{" + getPackets() + '}';
   }
 }
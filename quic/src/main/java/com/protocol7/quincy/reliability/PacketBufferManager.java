@@ -1,5 +1,6 @@
 package com.protocol7.quincy.reliability;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.protocol7.quincy.protocol.packets.Packet.getEncryptionLevel;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -14,69 +15,68 @@ import com.protocol7.quincy.connection.State;
 import com.protocol7.quincy.protocol.frames.AckFrame;
 import com.protocol7.quincy.protocol.frames.AckRange;
 import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.FrameType;
 import com.protocol7.quincy.protocol.packets.*;
-import com.protocol7.quincy.reliability.AckQueue.Entry;
 import com.protocol7.quincy.tls.EncryptionLevel;
-import com.protocol7.quincy.utils.Pair;
-import com.protocol7.quincy.utils.Ticker;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
-import io.netty.util.TimerTask;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class PacketBufferManager implements InboundHandler, OutboundHandler {
-
-  private static final long RESEND_DELAY = 10;
+public class PacketBufferManager implements InboundHandler, OutboundHandler, AckListener {
 
   private final Logger log = LoggerFactory.getLogger(PacketBufferManager.class);
 
-  private final PacketBuffer initialBuffer;
-  private final PacketBuffer handshakeBuffer;
-  private final PacketBuffer buffer;
-  private final AckQueue ackQueue = new AckQueue();
-  private final AtomicReference<Long> largestAcked = new AtomicReference<>(0L);
+  // RFC 9000 section 13.2.2, ack at least every second ack-eliciting packet
+  static final int ACK_ELICITING_THRESHOLD = 2;
+
+  private final Map<EncryptionLevel, ReceivedPackets> received =
+      new EnumMap<>(EncryptionLevel.class);
   private final AckDelay ackDelay;
+  private final LossDetector lossDetector;
   private final FrameSender frameSender;
-
+  private final Timer timer;
+  private final long timerTick;
+  private final long maxAckDelay;
+  private final ToIntFunction<EncryptionLevel> maxPayloadLength;
+
+  private Optional<Timeout> ackTimeout = Optional.empty();
+
+  /**
+   * @param maxAckRanges number of ranges of received packets kept for acking, per space
+   * @param timerTick how late the timer may fire, in milliseconds
+   * @param maxAckDelay maximum time acks of 1-RTT packets are delayed, in milliseconds
+   * @param maxPayloadLength maximum length of a packet payload at each level, including the AEAD
+   *     overhead. Acks piggybacked on packets are limited to the room left
+   */
   public PacketBufferManager(
       final AckDelay ackDelay,
+      final LossDetector lossDetector,
+      final int maxAckRanges,
       final FrameSender frameSender,
       final Timer timer,
-      final Ticker ticker) {
-    this.ackDelay = requireNonNull(ackDelay);
-    this.frameSender = frameSender;
-
-    initialBuffer = new PacketBuffer(ticker);
-    handshakeBuffer = new PacketBuffer(ticker);
-    buffer = new PacketBuffer(ticker);
-
-    final TimerTask task =
-        new TimerTask() {
-          @Override
-          public void run(final Timeout timeout) {
-            if (frameSender.isOpen()) {
-              resend();
-              timeout.timer().newTimeout(this, RESEND_DELAY, MILLISECONDS);
-            }
-          }
-        };
-
-    timer.newTimeout(task, RESEND_DELAY, MILLISECONDS);
-
-    // TODO cancel timeout when connection closes
-  }
+      final long timerTick,
+      final long maxAckDelay,
+      final ToIntFunction<EncryptionLevel> maxPayloadLength) {
+    checkArgument(timerTick >= 0);
+    checkArgument(maxAckDelay >= 0);
 
-  public void resend() {
-    final Collection<Frame> toResend = buffer.drainSince(1000, MILLISECONDS);
-    toResend.stream().forEach(f -> frameSender.send(EncryptionLevel.OneRtt, f));
+    this.ackDelay = requireNonNull(ackDelay);
+    this.lossDetector = requireNonNull(lossDetector);
+    this.frameSender = requireNonNull(frameSender);
+    this.timer = requireNonNull(timer);
+    this.timerTick = timerTick;
+    this.maxAckDelay = maxAckDelay;
+    this.maxPayloadLength = requireNonNull(maxPayloadLength);
+
+    for (final EncryptionLevel level : EncryptionLevel.values()) {
+      received.put(level, new ReceivedPackets(maxAckRanges));
+    }
   }
 
   @Override
@@ -86,15 +86,15 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
 
     if (packet instanceof FullPacket) {
       FullPacket fp = (FullPacket) packet;
-      buffer(fp);
-
-      final Pair<List<AckRange>, Long> drained = drainAcks(getEncryptionLevel(fp));
-      final List<AckRange> ackBlocks = drained.getFirst();
-      if (!ackBlocks.isEmpty()) {
-        // add to packet
-        final long delay = ackDelay.calculate(drained.getSecond(), NANOSECONDS);
-        final AckFrame ackFrame = new AckFrame(delay, ackBlocks);
-        fp = fp.addFrame(ackFrame);
+
+      // ack-only packets sent when flushing already carry the ack
+      if (!hasAck(fp)) {
+        final EncryptionLevel level = getEncryptionLevel(fp);
+        final int room = maxPayloadLength.applyAsInt(level) - fp.getPayload().calculateLength();
+        final Optional<AckFrame> ackFrame = createAck(level, room);
+        if (ackFrame.isPresent()) {
+          fp = fp.addFrame(ackFrame.get());
+        }
       }
 
       ctx.next(fp);
@@ -103,55 +103,73 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
     }
   }
 
-  private void buffer(final FullPacket packet) {
-    final EncryptionLevel level = getEncryptionLevel(packet);
-    if (level == EncryptionLevel.Initial) {
-      initialBuffer.put(packet);
-    } else if (level == EncryptionLevel.Handshake) {
-      handshakeBuffer.put(packet);
-    } else {
-      buffer.put(packet);
-    }
-  }
-
   @Override
   public void onReceivePacket(final Packet packet, final PipelineContext ctx) {
     requireNonNull(packet);
     requireNonNull(ctx);
 
     if (packet instanceof FullPacket) {
+      // the spaces are only discarded on the first packet of the next level, later calls are
+      // ignored
       if (packet instanceof HandshakePacket) {
         // implicitly ack all initial packets
-        initialBuffer.clear();
+        lossDetector.discard(EncryptionLevel.Initial);
       } else if (packet instanceof ShortPacket) {
         // implicitly ack all handshake packets
-        handshakeBuffer.clear();
+        lossDetector.discard(EncryptionLevel.Handshake);
       }
 
       final FullPacket fp = (FullPacket) packet;
-      ackQueue.add(fp, ackDelay.time());
+      final EncryptionLevel level = getEncryptionLevel(fp);
+      final boolean ackEliciting = SentPacket.isAckEliciting(fp.getPayload().getFrames());
+      final boolean inOrder =
+          received.get(level).add(fp.getPacketNumber(), ackDelay.time(), ackEliciting);
       log.debug("Packet queued for acking {}", fp.getPacketNumber());
 
       handleAcks(packet);
 
-      if (shouldFlush(packet) && ctx.getState() != State.Closed) {
-        log.debug("Directly acking packet");
-        final EncryptionLevel level = getEncryptionLevel(packet);
-        flushAcks(level, ctx);
+      if (ackEliciting && ctx.getState() != State.Closed) {
+        if (shouldAckImmediately(fp, level, inOrder, ctx.getState())) {
+          log.debug("Directly acking packet");
+          flushAcks(level, ctx);
+        } else {
+          scheduleAck();
+        }
       }
     }
 
     ctx.next(packet);
   }
 
-  private boolean shouldFlush(final Packet packet) {
-    // if (packet instanceof InitialPacket || packet instanceof HandshakePacket) {
-    //  return true;
-    // } else
-    if (packet instanceof FullPacket && acksOnly((FullPacket) packet)) {
-      return false;
-    } else {
-      return true;
+  /** RFC 9000 section 13.2.1 and 13.2.2 */
+  private boolean shouldAckImmediately(
+      final FullPacket packet,
+      final EncryptionLevel level,
+      final boolean inOrder,
+      final State state) {
+    // acks are not delayed until the handshake is confirmed, to get the RTT sample and the
+    // handshake done quickly. The server waits for HANDSHAKE_DONE to be acked
+    return level != EncryptionLevel.OneRtt
+        || state != State.Done
+        || packet.getPayload().getFirst(FrameType.HANDSHAKE_DONE).isPresent()
+        // the peer should learn of missing packets as soon as possible
+        || !inOrder
+        || received.get(level).getAckElicitingSinceAck() >= ACK_ELICITING_THRESHOLD;
+  }
+
+  private synchronized void scheduleAck() {
+    if (ackTimeout.isPresent() && !ackTimeout.get().isExpired()) {
+      return;
+    }
+    // the timer fires up to a tick late, the ack must still go out within the max ack delay
+    final long delay = Math.max(maxAckDelay - timerTick, 0);
+    ackTimeout = Optional.of(timer.newTimeout(t -> onAckTimeout(), delay, MILLISECONDS));
+  }
+
+  private void onAckTimeout() {
+    // the ack might already have been sent, either piggybacked or after more packets arrived
+    if (frameSender.isOpen()) {
+      flushAcks(EncryptionLevel.OneRtt, frameSender);
     }
   }
 
@@ -164,101 +182,75 @@ public class PacketBufferManager implements InboundHandler, OutboundHandler {
           .getFrames()
           .stream()
           .filter(frame -> frame instanceof AckFrame)
-          .forEach(frame -> handleAcks((AckFrame) frame, level));
+          .forEach(frame -> lossDetector.onAckReceived((AckFrame) frame, level));
     }
   }
 
-  private void handleAcks(final AckFrame frame, final EncryptionLevel level) {
-    frame.getRanges().forEach(b -> handleAcks(b, level));
-  }
+  private void flushAcks(final EncryptionLevel level, final FrameSender sender) {
+    log.debug("Flushing acks at " + level);
 
-  private void handleAcks(final AckRange range, final EncryptionLevel level) {
-    // TODO optimize
-    final long smallest = range.getSmallest();
-    final long largest = range.getLargest();
-    for (long pn = smallest; pn <= largest; pn++) {
-      if (ack(pn, level)) {
-        log.debug("Acked packet {} at level {}", pn, level);
-        largestAcked.getAndAccumulate(pn, Math::max);
+    if (received.get(level).isAckPending()) {
+      final Optional<AckFrame> ackFrame = createAck(level, maxPayloadLength.applyAsInt(level));
+      if (ackFrame.isPresent()) {
+        sender.send(level, ackFrame.get());
+
+        log.debug("Flushed acks {}", ackFrame.get());
       }
     }
   }
 
-  private boolean ack(final long pn, final EncryptionLevel level) {
-    if (level == EncryptionLevel.Initial) {
-      return initialBuffer.remove(pn);
-    } else if (level == EncryptionLevel.Handshake) {
-      return handshakeBuffer.remove(pn);
-    } else {
-      return buffer.remove(pn);
+  /** Ack of the received packets, leaving out the oldest ranges if needed to fit the length */
+  private Optional<AckFrame> createAck(final EncryptionLevel level, final int maxLength) {
+    final ReceivedPackets packets = received.get(level);
+    if (packets.isEmpty()) {
+      return Optional.empty();
     }
-  }
 
-  private void flushAcks(final EncryptionLevel level, final FrameSender sender) {
-    log.debug("Flushing acks at " + level);
-
-    final Pair<List<AckRange>, Long> drained = drainAcks(level);
-    final List<AckRange> ranges = drained.getFirst();
-    if (!ranges.isEmpty()) {
-      final long delay = ackDelay.calculate(drained.getSecond(), NANOSECONDS);
-      final AckFrame ackFrame = new AckFrame(delay, ranges);
-      sender.send(level, ackFrame);
-
-      log.debug("Flushed acks {}", ranges);
+    final long delay =
+        ackDelay.calculate(ackDelay.delay(packets.getLargestReceivedTime()), NANOSECONDS);
+    AckFrame ack = new AckFrame(delay, packets.getRanges());
+    // the ranges left out are still acked by later acks
+    final List<AckRange> ranges = ack.getRanges();
+    for (int count = ranges.size() - 1; count > 0 && ack.calculateLength() > maxLength; count--) {
+      ack = new AckFrame(delay, ranges.subList(0, count));
     }
-  }
-
-  // TODO break out and test directly
-  private Pair<List<AckRange>, Long> drainAcks(final EncryptionLevel level) {
-    final Collection<Entry> pns = ackQueue.drain(level);
-    if (pns.isEmpty()) {
-      return Pair.of(Collections.emptyList(), 0L);
+    if (ack.calculateLength() > maxLength) {
+      // not even the latest range fits, leave the ack pending
+      return Optional.empty();
     }
 
-    final long largestPnQueueTime =
-        pns.stream().max(Comparator.comparingLong(Entry::getPacketNumber)).get().getTimestamp();
-
-    final List<Long> pnsLong =
-        pns.stream().map(Entry::getPacketNumber).sorted().collect(Collectors.toList());
-
-    final List<AckRange> ranges = new ArrayList<>();
-    long lower = -1;
-    long upper = -1;
-    for (final long pn : pnsLong) {
-      if (lower == -1) {
-        lower = pn;
-        upper = pn;
-      } else {
-        if (pn > upper + 1) {
-          ranges.add(new AckRange(lower, upper));
-          lower = pn;
-          upper = pn;
-        } else {
-          upper++;
+    packets.onAckSent();
+    return Optional.of(ack);
+  }
+
+  /** Our acks have been received, the packets they acknowledged do not have to be acked again */
+  @Override
+  public void onPacketsAcked(final EncryptionLevel level, final List<SentPacket> packets) {
+    for (final SentPacket packet : packets) {
+      for (final Frame frame : packet.getFrames()) {
+        if (frame instanceof AckFrame) {
+          received.get(level).onAckAcked(((AckFrame) frame).getLargest());
         }
       }
     }
-    ranges.add(new AckRange(lower, upper));
-
-    return Pair.of(ranges, ackDelay.delay(largestPnQueueTime));
   }
 
-  private static boolean acksOnly(final FullPacket packet) {
-    return packet.getPayload().getFrames().stream().allMatch(frame -> frame instanceof AckFrame);
+  private static boolean hasAck(final FullPacket packet) {
+    return packet.getPayload().getFrames().stream().anyMatch(frame -> frame instanceof AckFrame);
   }
 
   @VisibleForTesting
   protected PacketBuffer getBuffer() {
-    return buffer;
+    return lossDetector.getBuffer(EncryptionLevel.OneRtt);
   }
 
   @VisibleForTesting
   protected PacketBuffer getInitialBuffer() {
-    return initialBuffer;
+    return lossDetector.getBuffer(EncryptionLevel.Initial);
   }
 
   @VisibleForTesting
   protected PacketBuffer getHandshakeBuffer() {
-    return handshakeBuffer;
+    return lossDetector.getBuffer(EncryptionLevel.Handshake);
   }
 }
@@ -0,0 +1,83 @@
+package com.protocol7.quincy.reliability;
+
+/**
+ * Delivery rate measured over the interval between sending a packet and it being acknowledged, see
+ * {@link DeliveryRateEstimator}. All times are in nanoseconds.
+ */
+public class RateSample {
+
+  private final long delivered;
+  private final long priorDelivered;
+  private final long interval;
+  private final long rtt;
+  private final boolean appLimited;
+
+  public RateSample(
+      final long delivered,
+      final long priorDelivered,
+      final long interval,
+      final long rtt,
+      final boolean appLimited) {
+    this.delivered = delivered;
+    this.priorDelivered = priorDelivered;
+    this.interval = interval;
+    this.rtt = rtt;
+    this.appLimited = appLimited;
+  }
+
+  /** Bytes delivered during the interval */
+  public long getDelivered() {
+    return delivered;
+  }
+
+  /** Bytes delivered on the connection when the packet starting the interval was sent */
+  public long getPriorDelivered() {
+    return priorDelivered;
+  }
+
+  /** Bytes delivered on the connection, including this sample */
+  public long getTotalDelivered() {
+    return priorDelivered + delivered;
+  }
+
+  public long getInterval() {
+    return interval;
+  }
+
+  /** RTT of the most recently sent packet acknowledged, not adjusted for ack delay */
+  public long getRtt() {
+    return rtt;
+  }
+
+  /**
+   * True if the sender did not have enough data to fill the congestion window, the rate is then a
+   * lower bound of the bandwidth
+   */
+  public boolean isAppLimited() {
+    return appLimited;
+  }
+
+  /** Bytes per second, 0 if the interval is too short to give a meaningful rate */
+  public long getDeliveryRate() {
+    if (interval <= 0) {
+      return 0;
+    }
+    return (long) (delivered * 1e9 / interval);
+  }
+
+  @Override
+  public String toString() {
+    return "RateSample{"
+        + "delivered="
+        + delivered
+        + ", priorDelivered="
+        + priorDelivered
+        + ", interval="
+        + interval
+        + ", rtt="
+        + rtt
+        + ", appLimited="
+        + appLimited
+        + '}';
+  }
+}
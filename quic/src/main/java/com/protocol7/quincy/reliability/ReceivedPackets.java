@@ -0,0 +1,172 @@
+package com.protocol7.quincy.reliability;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.protocol7.quincy.protocol.frames.AckRange;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packet numbers received within a single packet number space, kept as ranges to acknowledge.
+ *
+ * <p>Ranges are merged as packets arrive, in or out of order. They are retained and included in
+ * every ack until the peer has acknowledged a packet carrying an ack for them, RFC 9000 section
+ * 13.2.4. Only the given number of ranges are kept, when a new range would exceed it the lowest one
+ * is dropped.
+ */
+public class ReceivedPackets {
+
+  private final int maxRanges;
+
+  // pairs of smallest and largest packet number, largest range first
+  private final long[] ranges;
+  private int count;
+  // kept when the ranges are trimmed, to detect gaps after it
+  private long largestReceived = -1;
+  private long largestReceivedTime;
+  private int ackElicitingSinceAck;
+
+  public ReceivedPackets(final int maxRanges) {
+    checkArgument(maxRanges > 0);
+
+    this.maxRanges = maxRanges;
+    this.ranges = new long[maxRanges * 2];
+  }
+
+  /**
+   * @param ackEliciting whether the packet must be acknowledged, rather than only included in the
+   *     next ack sent
+   * @return true if the packet was the next expected one, false if it was reordered, a duplicate or
+   *     if there is a gap before it
+   */
+  public synchronized boolean add(final long pn, final long time, final boolean ackEliciting) {
+    checkArgument(pn >= 0);
+
+    final boolean inOrder;
+    if (pn > largestReceived) {
+      // the common case, a new largest packet
+      inOrder = largestReceived == -1 || pn == largestReceived + 1;
+      if (count > 0 && pn == largest(0) + 1) {
+        ranges[1] = pn;
+      } else {
+        insert(0, pn);
+      }
+      largestReceived = pn;
+      largestReceivedTime = time;
+    } else if (addOutOfOrder(pn)) {
+      inOrder = false;
+    } else {
+      // a duplicate, or too old to track
+      return false;
+    }
+
+    if (ackEliciting) {
+      ackElicitingSinceAck++;
+    }
+    return inOrder;
+  }
+
+  private boolean addOutOfOrder(final long pn) {
+    for (int i = 0; i < count; i++) {
+      if (pn > largest(i)) {
+        // in the gap below range i - 1, not adjacent to it or it would have been extended
+        if (pn == largest(i) + 1) {
+          ranges[2 * i + 1] = pn;
+        } else {
+          insert(i, pn);
+        }
+        return true;
+      } else if (pn >= smallest(i)) {
+        return false;
+      } else if (pn == smallest(i) - 1) {
+        ranges[2 * i] = pn;
+        if (i + 1 < count && largest(i + 1) == pn - 1) {
+          // filled the gap between two ranges
+          ranges[2 * i] = smallest(i + 1);
+          remove(i + 1);
+        }
+        return true;
+      }
+    }
+
+    // below all ranges
+    if (count == maxRanges) {
+      return false;
+    }
+    insert(count, pn);
+    return true;
+  }
+
+  private void insert(final int index, final long pn) {
+    final int moved = Math.min(count, maxRanges - 1) - index;
+    if (moved > 0) {
+      System.arraycopy(ranges, 2 * index, ranges, 2 * (index + 1), 2 * moved);
+    }
+    ranges[2 * index] = pn;
+    ranges[2 * index + 1] = pn;
+    count = Math.min(count + 1, maxRanges);
+  }
+
+  private void remove(final int index) {
+    System.arraycopy(ranges, 2 * (index + 1), ranges, 2 * index, 2 * (count - index - 1));
+    count--;
+  }
+
+  /** Ranges to acknowledge, largest first */
+  public synchronized List<AckRange> getRanges() {
+    final List<AckRange> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(new AckRange(smallest(i), largest(i)));
+    }
+    return result;
+  }
+
+  public synchronized boolean isEmpty() {
+    return count == 0;
+  }
+
+  /** Time the largest packet was received */
+  public synchronized long getLargestReceivedTime() {
+    return largestReceivedTime;
+  }
+
+  /** True if an ack-eliciting packet has been received since the last ack was sent */
+  public synchronized boolean isAckPending() {
+    return ackElicitingSinceAck > 0;
+  }
+
+  /** Number of ack-eliciting packets received since the last ack was sent */
+  public synchronized int getAckElicitingSinceAck() {
+    return ackElicitingSinceAck;
+  }
+
+  public synchronized void onAckSent() {
+    ackElicitingSinceAck = 0;
+  }
+
+  /**
+   * The peer has received an ack with the given largest packet number, the packets up to it do not
+   * have to be acknowledged again
+   */
+  public synchronized void onAckAcked(final long largestAcked) {
+    while (count > 0 && largest(count - 1) <= largestAcked) {
+      count--;
+    }
+    if (count > 0 && smallest(count - 1) <= largestAcked) {
+      ranges[2 * (count - 1)] = largestAcked + 1;
+    }
+  }
+
+  private long smallest(final int index) {
+    return ranges[2 * index];
+  }
+
+  private long largest(final int index) {
+    return ranges[2 * index + 1];
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "ReceivedPackets" + getRanges();
+  }
+}
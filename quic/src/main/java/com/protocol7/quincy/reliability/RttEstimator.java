@@ -0,0 +1,68 @@
+package com.protocol7.quincy.reliability;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Round-trip time estimate, as described in RFC 9002, section 5. All times are in nanoseconds.
+ *
+ * <p>Updated by a single thread at a time, but may be read concurrently.
+ */
+public class RttEstimator {
+
+  public static final long INITIAL_RTT = MILLISECONDS.toNanos(333);
+
+  private volatile long latestRtt;
+  private volatile long smoothedRtt = INITIAL_RTT;
+  private volatile long rttVar = INITIAL_RTT / 2;
+  private volatile long minRtt;
+  private volatile boolean hasSample;
+
+  /**
+   * @param rtt time from sending a packet until it was acknowledged
+   * @param ackDelay time the peer reports it delayed the acknowledgement
+   */
+  public void update(final long rtt, final long ackDelay) {
+    final long latest = Math.max(rtt, 0);
+    latestRtt = latest;
+
+    if (!hasSample) {
+      minRtt = latest;
+      smoothedRtt = latest;
+      rttVar = latest / 2;
+      hasSample = true;
+      return;
+    }
+
+    minRtt = Math.min(minRtt, latest);
+
+    // never let the ack delay make the sample smaller than the min RTT
+    long adjusted = latest;
+    if (ackDelay > 0 && latest - ackDelay >= minRtt) {
+      adjusted = latest - ackDelay;
+    }
+
+    rttVar = (3 * rttVar + Math.abs(smoothedRtt - adjusted)) / 4;
+    smoothedRtt = (7 * smoothedRtt + adjusted) / 8;
+  }
+
+  public boolean hasSample() {
+    return hasSample;
+  }
+
+  public long getLatestRtt() {
+    return latestRtt;
+  }
+
+  public long getSmoothedRtt() {
+    return smoothedRtt;
+  }
+
+  public long getRttVar() {
+    return rttVar;
+  }
+
+  /** Lowest RTT seen, without adjusting for ack delays. 0 until the first sample */
+  public long getMinRtt() {
+    return minRtt;
+  }
+}
@@ -0,0 +1,358 @@
+package com.protocol7.quincy.reliability;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.protocol7.quincy.protocol.packets.Packet.getEncryptionLevel;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.protocol7.quincy.protocol.frames.AckFrame;
+import com.protocol7.quincy.protocol.frames.ApplicationCloseFrame;
+import com.protocol7.quincy.protocol.frames.ConnectionCloseFrame;
+import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.packets.FullPacket;
+import com.protocol7.quincy.protocol.packets.Packet;
+import com.protocol7.quincy.tls.EncryptionLevel;
+import com.protocol7.quincy.utils.Ticker;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds back packets while the congestion controller does not allow sending more, or while the
+ * {@link Pacer} if any, spaces them out. Ack-eliciting packets are released in the order they were
+ * queued. Packets that are not ack-eliciting, like those only carrying acks, are neither congestion
+ * controlled nor paced, RFC 9002 section 7, and are sent without waiting for the packets queued
+ * ahead of them. The peer's acks can otherwise be delayed by a congestion window that only opens up
+ * as our acks arrive. A packet is tracked by the {@link LossDetector} once released.
+ *
+ * <p>Packets held back by the congestion window are released by {@link #drain()} once acks arrive,
+ * packets held back by the pacer are released by a task scheduled on the event loop.
+ *
+ * <p>Packets are only written on the event loop the connection's packets are written on. A write
+ * from any other thread would be queued behind the ones the event loop makes directly, so packets
+ * sent from timers or application threads are queued and drained by the event loop. Packets created
+ * with {@link #send(Supplier)} are numbered while holding the queue lock, so that they are queued,
+ * and written, in packet number order.
+ *
+ * <p>Frames sent while a packet of the same level is queued are added to it with {@link
+ * #tryAppend(EncryptionLevel, int, Frame...)}, as long as it stays within the packet size, so that
+ * a backlog is sent in as few packets as possible. {@link #hold()} keeps all packets queued, to
+ * bundle the frames sent in response to a received packet. Packets pass through the outbound
+ * handlers as they are released, so that appended frames are handled like any others.
+ *
+ * <p>Once the queue has been blocked, by the congestion controller or pacer, and is empty again,
+ * the unblocked listeners are notified so that data held back while blocked can be sent.
+ */
+public class SendQueue {
+
+  private final Deque<Queued> queue = new ArrayDeque<>();
+  private final LossDetector lossDetector;
+  private final Optional<Pacer> pacer;
+  private final EventExecutor executor;
+  private final Ticker ticker;
+  private final UnaryOperator<Packet> outbound;
+  private final Consumer<Packet> transmitter;
+  private final List<Runnable> unblockedListeners = new CopyOnWriteArrayList<>();
+
+  private Optional<ScheduledFuture<?>> scheduled = Optional.empty();
+  private long smoothedDelay;
+  private int holds;
+  private boolean blocked;
+  private boolean drainScheduled;
+
+  /**
+   * @param executor event loop the packets are written on
+   * @param outbound handlers each packet passes through when released, just before it is sent
+   * @param transmitter writes the packet to the network
+   */
+  public SendQueue(
+      final LossDetector lossDetector,
+      final Optional<Pacer> pacer,
+      final EventExecutor executor,
+      final Ticker ticker,
+      final UnaryOperator<Packet> outbound,
+      final Consumer<Packet> transmitter) {
+    this.lossDetector = requireNonNull(lossDetector);
+    this.pacer = requireNonNull(pacer);
+    this.executor = requireNonNull(executor);
+    this.ticker = requireNonNull(ticker);
+    this.outbound = requireNonNull(outbound);
+    this.transmitter = requireNonNull(transmitter);
+  }
+
+  public void send(final Packet packet) {
+    requireNonNull(packet);
+
+    final boolean queued;
+    synchronized (this) {
+      queued = enqueue(packet);
+    }
+    if (queued) {
+      drain();
+    }
+  }
+
+  /**
+   * Queue the packet created by the factory. It is created while holding the queue lock, packets
+   * numbered by the factory are therefore queued in packet number order.
+   */
+  public FullPacket send(final Supplier<? extends FullPacket> factory) {
+    final FullPacket packet;
+    final boolean queued;
+    synchronized (this) {
+      packet = requireNonNull(factory.get());
+      queued = enqueue(packet);
+    }
+    if (queued) {
+      drain();
+    }
+    return packet;
+  }
+
+  private boolean enqueue(final Packet packet) {
+    if (!(packet instanceof FullPacket) || isClose((FullPacket) packet)) {
+      // the connection is going away, no point in waiting for the window to open
+      if (executor.inEventLoop()) {
+        transmitter.accept(outbound.apply(packet));
+      } else {
+        executor.execute(() -> transmitter.accept(outbound.apply(packet)));
+      }
+      return false;
+    }
+
+    queue.add(new Queued((FullPacket) packet, ticker.nanoTime()));
+    return true;
+  }
+
+  /** Listeners are notified outside the lock */
+  public void addUnblockedListener(final Runnable listener) {
+    unblockedListeners.add(requireNonNull(listener));
+  }
+
+  /** True while packets are held back by the congestion controller or pacer */
+  public synchronized boolean isBlocked() {
+    return blocked;
+  }
+
+  /**
+   * Add the frames to the last queued packet of the same encryption level rather than sending a
+   * packet of their own, if the frames fit. Acks are only added to, or bundled with, a packet that
+   * would be sent right away, they must not be held back by the congestion controller or pacer.
+   *
+   * @param maxLength maximum length of the packet payload, including the AEAD overhead
+   * @return the packet the frames were added to, if any
+   */
+  public synchronized Optional<FullPacket> tryAppend(
+      final EncryptionLevel level, final int maxLength, final Frame... frames) {
+    requireNonNull(level);
+
+    final Optional<Queued> latest = last(level);
+    if (latest.isEmpty()) {
+      return Optional.empty();
+    }
+    final Queued last = latest.get();
+    if (Arrays.stream(frames).anyMatch(SendQueue::isClose)) {
+      return Optional.empty();
+    }
+    // an ack is piggybacked on every packet sent, never add a second one
+    if (hasAck(last.packet) && Arrays.stream(frames).anyMatch(f -> f instanceof AckFrame)) {
+      return Optional.empty();
+    }
+
+    final int length =
+        last.packet.getPayload().calculateLength()
+            + Arrays.stream(frames).mapToInt(Frame::calculateLength).sum();
+    if (length > maxLength) {
+      return Optional.empty();
+    }
+
+    FullPacket packet = last.packet;
+    for (final Frame frame : frames) {
+      packet = packet.addFrame(frame);
+    }
+    if ((hasAck(last.packet) || Arrays.stream(frames).anyMatch(f -> f instanceof AckFrame))
+        && !canSendNow(packet)) {
+      return Optional.empty();
+    }
+
+    last.packet = packet;
+    return Optional.of(packet);
+  }
+
+  private Optional<Queued> last(final EncryptionLevel level) {
+    final Iterator<Queued> iter = queue.descendingIterator();
+    while (iter.hasNext()) {
+      final Queued queued = iter.next();
+      if (getEncryptionLevel(queued.packet) == level) {
+        return Optional.of(queued);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /** True if the queued packet would be released at once if the queue was drained */
+  private boolean canSendNow(final FullPacket packet) {
+    if (!SentPacket.isAckEliciting(packet.getPayload().getFrames())) {
+      return true;
+    }
+    // packets queued ahead of it are held back
+    if (blocked || !lossDetector.canSend(packet)) {
+      return false;
+    }
+    return pacer.isEmpty()
+        || pacer.get().timeUntilSend(packet.getPayload().calculateLength(), ticker.nanoTime()) == 0;
+  }
+
+  /** Keep packets queued until {@link #release()} is called, holds can be nested */
+  public synchronized void hold() {
+    holds++;
+  }
+
+  /** Release a hold, sending the queued packets if it was the last one */
+  public void release() {
+    synchronized (this) {
+      checkState(holds > 0, "Send queue not held");
+
+      holds--;
+    }
+    drain();
+  }
+
+  /**
+   * Release as many queued packets as the congestion controller and pacer allows. Called outside
+   * the event loop, the queue is drained by a task run on the event loop.
+   */
+  public void drain() {
+    if (!executor.inEventLoop()) {
+      synchronized (this) {
+        if (drainScheduled) {
+          return;
+        }
+        drainScheduled = true;
+      }
+      executor.execute(
+          () -> {
+            synchronized (this) {
+              drainScheduled = false;
+            }
+            drain();
+          });
+      return;
+    }
+
+    if (drainQueue()) {
+      for (final Runnable listener : unblockedListeners) {
+        listener.run();
+      }
+    }
+  }
+
+  /** @return true if the queue was blocked and has now been emptied */
+  private synchronized boolean drainQueue() {
+    if (holds > 0) {
+      return false;
+    }
+
+    while (!queue.isEmpty() && lossDetector.canSend(queue.peek().packet)) {
+      final Queued queued = queue.peek();
+      final long now = ticker.nanoTime();
+
+      // like the congestion window, pacing only applies to ack-eliciting packets
+      if (pacer.isPresent() && SentPacket.isAckEliciting(queued.packet.getPayload().getFrames())) {
+        final int size = queued.packet.getPayload().calculateLength();
+        final long delay = pacer.get().timeUntilSend(size, now);
+        if (delay > 0) {
+          schedule(delay);
+          blocked = true;
+          return false;
+        }
+        pacer.get().onPacketSent(size, now);
+      }
+
+      queue.poll();
+      transmit(queued, now);
+    }
+
+    if (!queue.isEmpty()) {
+      // packets that are not ack-eliciting do not wait for the ones held back
+      final Iterator<Queued> iter = queue.iterator();
+      while (iter.hasNext()) {
+        final Queued queued = iter.next();
+        if (!SentPacket.isAckEliciting(queued.packet.getPayload().getFrames())) {
+          iter.remove();
+          transmit(queued, ticker.nanoTime());
+        }
+      }
+
+      blocked = true;
+      return false;
+    }
+
+    lossDetector.onSendQueueEmpty();
+    final boolean unblocked = blocked;
+    blocked = false;
+    return unblocked;
+  }
+
+  private void transmit(final Queued queued, final long now) {
+    smoothedDelay = (7 * smoothedDelay + (now - queued.time)) / 8;
+
+    final FullPacket packet = (FullPacket) outbound.apply(queued.packet);
+    lossDetector.onPacketSent(getEncryptionLevel(packet), packet);
+    transmitter.accept(packet);
+  }
+
+  private void schedule(final long delay) {
+    // a scheduled release will drain and re-schedule as needed
+    if (scheduled.isPresent() && !scheduled.get().isDone()) {
+      return;
+    }
+    scheduled = Optional.of(executor.schedule(this::drain, delay, NANOSECONDS));
+  }
+
+  public synchronized void clear() {
+    queue.clear();
+    blocked = false;
+    scheduled.ifPresent(f -> f.cancel(false));
+  }
+
+  public synchronized int size() {
+    return queue.size();
+  }
+
+  /** Smoothed time packets spend in the queue, in nanoseconds */
+  public synchronized long getDelay() {
+    return smoothedDelay;
+  }
+
+  private static boolean isClose(final FullPacket packet) {
+    return packet.getPayload().getFrames().stream().anyMatch(SendQueue::isClose);
+  }
+
+  private static boolean isClose(final Frame frame) {
+    return frame instanceof ConnectionCloseFrame || frame instanceof ApplicationCloseFrame;
+  }
+
+  private static boolean hasAck(final FullPacket packet) {
+    return packet.getPayload().getFrames().stream().anyMatch(frame -> frame instanceof AckFrame);
+  }
+
+  private static class Queued {
+    private FullPacket packet;
+    private final long time;
+
+    private Queued(final FullPacket packet, final long time) {
+      this.packet = packet;
+      this.time = time;
+    }
+  }
+}
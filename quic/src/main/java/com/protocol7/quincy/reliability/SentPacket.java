@@ -0,0 +1,126 @@
+package com.protocol7.quincy.reliability;
+
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.FrameType;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/** A packet sent but not yet acknowledged or declared lost */
+public class SentPacket {
+
+  private final long packetNumber;
+  private final List<Frame> frames;
+  private final long timeSent;
+  private final int size;
+  private final boolean ackEliciting;
+
+  // state of the connection when the packet was sent, for delivery rate estimation
+  private long delivered;
+  private long deliveredTime;
+  private long firstSentTime;
+  private boolean appLimited;
+
+  public SentPacket(
+      final long packetNumber, final List<Frame> frames, final long timeSent, final int size) {
+    this.packetNumber = packetNumber;
+    this.frames = requireNonNull(frames);
+    this.timeSent = timeSent;
+    this.size = size;
+    this.ackEliciting = isAckEliciting(frames);
+  }
+
+  /** True if any of the frames must be acknowledged by the peer */
+  public static boolean isAckEliciting(final List<Frame> frames) {
+    return frames.stream().anyMatch(SentPacket::isAckEliciting);
+  }
+
+  public long getPacketNumber() {
+    return packetNumber;
+  }
+
+  public List<Frame> getFrames() {
+    return frames;
+  }
+
+  /** Time the packet was sent, in nanoseconds */
+  public long getTimeSent() {
+    return timeSent;
+  }
+
+  /** Size of the packet payload including the AEAD tag, headers are not included */
+  public int getSize() {
+    return size;
+  }
+
+  /** True if the packet carries any frame the peer must acknowledge */
+  public boolean isAckEliciting() {
+    return ackEliciting;
+  }
+
+  /** Record the delivery state of the connection, set by the {@link DeliveryRateEstimator} */
+  void setDeliveryState(
+      final long delivered,
+      final long deliveredTime,
+      final long firstSentTime,
+      final boolean appLimited) {
+    this.delivered = delivered;
+    this.deliveredTime = deliveredTime;
+    this.firstSentTime = firstSentTime;
+    this.appLimited = appLimited;
+  }
+
+  /** Bytes delivered on the connection when the packet was sent */
+  public long getDelivered() {
+    return delivered;
+  }
+
+  /** Time the last delivered packet was acked when the packet was sent, in nanoseconds */
+  public long getDeliveredTime() {
+    return deliveredTime;
+  }
+
+  /** Send time of the first packet in the flight the packet was sent in, in nanoseconds */
+  public long getFirstSentTime() {
+    return firstSentTime;
+  }
+
+  /** True if the connection had nothing more to send when the packet was sent */
+  public boolean isAppLimited() {
+    return appLimited;
+  }
+
+  /** Frames to send again if the packet is lost, padding is kept to retain the packet size */
+  public List<Frame> getRetransmittableFrames() {
+    if (!ackEliciting) {
+      return List.of();
+    }
+    return frames.stream().filter(SentPacket::isRetransmittable).collect(Collectors.toList());
+  }
+
+  private static boolean isAckEliciting(final Frame frame) {
+    return frame.getType() != FrameType.PADDING && isRetransmittable(frame);
+  }
+
+  private static boolean isRetransmittable(final Frame frame) {
+    final FrameType type = frame.getType();
+    return type != FrameType.ACK
+        && type != FrameType.CONNECTION_CLOSE
+        && type != FrameType.APPLICATION_CLOSE;
+  }
+
+  @Override
+  public String toString() {
+    return "SentPacket{"
+        + "packetNumber="
+        + packetNumber
+        + ", frames="
+        + frames
+        + ", timeSent="
+        + timeSent
+        + ", size="
+        + size
+        + '}';
+  }
+}
@@ -1,37 +1,56 @@
 package com.protocol7.quincy.streams;
 
+import static java.util.Objects.requireNonNull;
+
 import com.protocol7.quincy.FrameSender;
+import com.protocol7.quincy.flowcontrol.FlowControlHandler;
 import com.protocol7.quincy.protocol.StreamId;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.ResetStreamFrame;
 import com.protocol7.quincy.protocol.frames.StreamFrame;
-import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.tls.EncryptionLevel;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.concurrent.Future;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class DefaultStream implements Stream {
 
   private final long id;
   private final FrameSender sender;
+  private final FlowControlHandler flowControlHandler;
   private final StreamHandler handler;
-  private final AtomicLong offset = new AtomicLong(0);
   private final StreamType streamType;
+  private final int maxFrameSize;
+  private final SendBuffer sendBuffer;
+  private final StreamScheduler scheduler;
   private final SendStateMachine sendStateMachine = new SendStateMachine();
   private final ReceiveStateMachine receiveStateMachine = new ReceiveStateMachine();
   private final ReceivedDataBuffer receivedDataBuffer = new ReceivedDataBuffer();
-  private final AtomicBoolean seenFinish = new AtomicBoolean(false);
+  private boolean finishDelivered;
+  private volatile Priority priority = Priority.DEFAULT;
 
+  /**
+   * @param maxFrameSize maximum number of bytes sent in each stream frame
+   * @param sendBufferSize number of bytes buffered before writes are held back
+   */
   public DefaultStream(
       final long id,
       final FrameSender sender,
+      final FlowControlHandler flowControlHandler,
       final StreamHandler handler,
-      final StreamType streamType) {
+      final StreamType streamType,
+      final int maxFrameSize,
+      final long sendBufferSize,
+      final StreamScheduler scheduler) {
     this.id = StreamId.validate(id);
     this.sender = sender;
+    this.flowControlHandler = requireNonNull(flowControlHandler);
     this.handler = handler;
     this.streamType = streamType;
+    this.maxFrameSize = maxFrameSize;
+    this.sendBuffer = new SendBuffer(sendBufferSize);
+    this.scheduler = requireNonNull(scheduler);
   }
 
   public long getId() {
@@ -42,28 +61,78 @@ public class DefaultStream implements Stream {
     return streamType;
   }
 
-  public void write(final byte[] b, final boolean finish) {
-    canWrite();
+  public Future<Void> write(final byte[] b, final boolean finish) {
+    final Future<Void> future;
+    synchronized (this) {
+      canWrite();
+
+      future = sendBuffer.write(b, finish);
+    }
+
+    // the data is sent once no stream of a higher priority has data to send
+    scheduler.schedule(this);
+    scheduler.flush();
+    return future;
+  }
+
+  @Override
+  public Priority getPriority() {
+    return priority;
+  }
+
+  @Override
+  public void setPriority(final Priority priority) {
+    this.priority = requireNonNull(priority);
+
+    scheduler.reschedule(this);
+  }
+
+  /** True if there is buffered data, or the end of the stream, left to send */
+  public synchronized boolean hasPending() {
+    return sendBuffer.hasPending() && sendStateMachine.canSend();
+  }
+
+  /**
+   * Send a frame of the buffered data, as far as flow control allows
+   *
+   * @return true if there is more left to send
+   */
+  synchronized boolean sendFrame() {
+    if (!hasPending()) {
+      return false;
+    }
+
+    final long offset = sendBuffer.getOffset();
+    final long length = Math.min(sendBuffer.getBuffered(), maxFrameSize);
+    final long credit = flowControlHandler.tryConsumeSendCredit(id, offset, length, sender);
+    if (credit == 0 && length > 0) {
+      // blocked, scheduled again once the peer grants more credit
+      return false;
+    }
 
-    final long frameOffset = offset.getAndAdd(b.length);
-    final StreamFrame sf = new StreamFrame(id, frameOffset, finish, b);
-    final FullPacket p = sender.send(EncryptionLevel.OneRtt, sf);
+    final ByteBuf data = sendBuffer.take(credit);
+    final boolean finish = sendBuffer.isFinished();
+    final int dataLength = data.readableBytes();
+    sender.send(EncryptionLevel.OneRtt, new StreamFrame(id, offset, finish, data));
 
-    sendStateMachine.onStream(p.getPacketNumber(), finish);
+    sendStateMachine.onStream(offset, dataLength, finish);
+    return hasPending();
   }
 
-  public void reset(final int applicationErrorCode) {
+  public synchronized void reset(final int applicationErrorCode) {
     canReset();
 
-    final Frame frame = new ResetStreamFrame(id, applicationErrorCode, offset.get());
+    // the final size only covers data already sent
+    sendBuffer.reset(new IllegalStateException("Stream reset"));
+    final Frame frame = new ResetStreamFrame(id, applicationErrorCode, sendBuffer.getOffset());
 
-    final FullPacket p = sender.send(EncryptionLevel.OneRtt, frame);
+    sender.send(EncryptionLevel.OneRtt, frame);
 
-    sendStateMachine.onReset(p.getPacketNumber());
+    sendStateMachine.onReset();
   }
 
   private void canWrite() {
-    if (!streamType.canSend() || !sendStateMachine.canSend()) {
+    if (!streamType.canSend() || !sendStateMachine.canSend() || sendBuffer.isFinishWritten()) {
       throw new IllegalStateException();
     }
   }
@@ -74,29 +143,53 @@ public class DefaultStream implements Stream {
     }
   }
 
-  public void onData(final long offset, final boolean finish, final byte[] b) {
-    if (finish) {
-      seenFinish.set(true);
+  /** @return false if the data is beyond what flow control allows the peer to send */
+  public boolean onData(final long offset, final boolean finish, final ByteBuf data) {
+    if (!receivedDataBuffer.onData(
+        data, offset, finish, flowControlHandler.getReceiveMaxOffset(id))) {
+      return false;
     }
 
-    receivedDataBuffer.onData(b, offset, finish);
-
-    while (receivedDataBuffer.hasMore()) {
-      final Optional<byte[]> data = receivedDataBuffer.read();
-
-      handler.onData(this, data.get(), receivedDataBuffer.isDone() && seenFinish.get());
+    // all contiguous data is delivered at once
+    final Optional<ByteBuf> contiguous = receivedDataBuffer.read();
+    if (contiguous.isPresent()) {
+      try {
+        deliver(ByteBufUtil.getBytes(contiguous.get()));
+      } finally {
+        contiguous.get().release();
+      }
+    } else if (receivedDataBuffer.isDone() && !finishDelivered) {
+      // an empty frame finishing the stream
+      deliver(new byte[0]);
     }
 
     receiveStateMachine.onStream(finish);
+    return true;
+  }
+
+  private void deliver(final byte[] data) {
+    final boolean done = receivedDataBuffer.isDone();
+    finishDelivered = done;
+    handler.onData(this, data, done);
   }
 
   public void onReset(final int applicationErrorCode, final long offset) {
+    receivedDataBuffer.clear();
     receiveStateMachine.onReset();
     receiveStateMachine.onAppReadReset();
   }
 
-  public void onAck(final long pn) {
-    sendStateMachine.onAck(pn);
+  /** A stream frame, either the original or a retransmission of it, was acknowledged */
+  public synchronized void onStreamAcked(final long offset, final long length, final boolean fin) {
+    sendStateMachine.onStreamAcked(offset, length, fin);
+  }
+
+  public synchronized void onResetAcked() {
+    sendStateMachine.onResetAcked();
+  }
+
+  synchronized SendStateMachine.SendStreamState getSendState() {
+    return sendStateMachine.getState();
   }
 
   public boolean isFinished() {
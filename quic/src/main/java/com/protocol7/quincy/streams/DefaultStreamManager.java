@@ -5,22 +5,47 @@ import static java.util.Objects.requireNonNull;
 import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
 import com.protocol7.quincy.connection.State;
-import com.protocol7.quincy.protocol.frames.AckFrame;
-import com.protocol7.quincy.protocol.frames.AckRange;
+import com.protocol7.quincy.flowcontrol.FlowControlHandler;
+import com.protocol7.quincy.protocol.TransportError;
 import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.FrameType;
 import com.protocol7.quincy.protocol.frames.ResetStreamFrame;
 import com.protocol7.quincy.protocol.frames.StreamFrame;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.reliability.SentPacket;
+import com.protocol7.quincy.tls.EncryptionLevel;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 public class DefaultStreamManager implements StreamManager {
 
   private final Streams streams;
   private final StreamHandler handler;
 
-  public DefaultStreamManager(final FrameSender frameSender, final StreamHandler handler) {
-    this.streams = new Streams(requireNonNull(frameSender));
+  /**
+   * @param maxFrameSize maximum number of bytes sent in each stream frame
+   * @param sendBufferSize number of bytes each stream buffers before writes are held back
+   * @param sendBlocked true while the connection can not send more, stream data is then held back
+   *     to be sent by priority once it can
+   */
+  public DefaultStreamManager(
+      final FrameSender frameSender,
+      final FlowControlHandler flowControlHandler,
+      final StreamHandler handler,
+      final int maxFrameSize,
+      final long sendBufferSize,
+      final BooleanSupplier sendBlocked) {
+    this.streams =
+        new Streams(
+            requireNonNull(frameSender),
+            requireNonNull(flowControlHandler),
+            maxFrameSize,
+            sendBufferSize,
+            requireNonNull(sendBlocked));
     this.handler = requireNonNull(handler);
+
+    flowControlHandler.addSendCreditListener(streams::flush);
   }
 
   @Override
@@ -40,14 +65,15 @@ public class DefaultStreamManager implements StreamManager {
 
           final DefaultStream stream = streams.getOrCreate(sf.getStreamId(), handler);
 
-          stream.onData(sf.getOffset(), sf.isFin(), sf.getData());
+          if (!stream.onData(sf.getOffset(), sf.isFin(), sf.getData())) {
+            ctx.closeConnection(
+                TransportError.FLOW_CONTROL_ERROR, FrameType.STREAM, "Flow control error");
+            return;
+          }
         } else if (frame instanceof ResetStreamFrame) {
           final ResetStreamFrame rsf = (ResetStreamFrame) frame;
           final DefaultStream stream = streams.getOrCreate(rsf.getStreamId(), handler);
           stream.onReset(rsf.getApplicationErrorCode(), rsf.getFinalSize());
-        } else if (frame instanceof AckFrame) {
-          final AckFrame af = (AckFrame) frame;
-          af.getRanges().stream().forEach(this::handleAcks);
         }
       }
     }
@@ -55,15 +81,27 @@ public class DefaultStreamManager implements StreamManager {
     ctx.next(packet);
   }
 
-  private void handleAcks(final AckRange block) {
-    // TODO optimize
-    final long smallest = block.getSmallest();
-    final long largest = block.getLargest();
-    for (long i = smallest; i <= largest; i++) {
-      streams.onAck(i);
+  @Override
+  public void onPacketsAcked(final EncryptionLevel level, final List<SentPacket> packets) {
+    // only the streams with frames in the acked packets are notified. Lost frames are sent again
+    // in new packets, so streams track the acked frames rather than packet numbers
+    for (final SentPacket packet : packets) {
+      for (final Frame frame : packet.getFrames()) {
+        if (frame instanceof StreamFrame) {
+          final StreamFrame sf = (StreamFrame) frame;
+          streams.onStreamAcked(sf.getStreamId(), sf.getOffset(), sf.getLength(), sf.isFin());
+        } else if (frame instanceof ResetStreamFrame) {
+          streams.onResetAcked(((ResetStreamFrame) frame).getStreamId());
+        }
+      }
     }
   }
 
+  /** Send data buffered by the streams, once the connection can send more */
+  public void flush() {
+    streams.flush();
+  }
+
   @Override
   public Stream openStream(final boolean client, final boolean bidirectional) {
     return streams.openStream(client, bidirectional, handler);
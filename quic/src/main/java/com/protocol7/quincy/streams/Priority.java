@@ -0,0 +1,55 @@
+package com.protocol7.quincy.streams;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Objects;
+
+/** Priority of a stream, as defined by RFC 9218 */
+public class Priority {
+
+  public static final int MAX_URGENCY = 7;
+  public static final int DEFAULT_URGENCY = 3;
+
+  public static final Priority DEFAULT = new Priority(DEFAULT_URGENCY, false);
+
+  private final int urgency;
+  private final boolean incremental;
+
+  /**
+   * @param urgency from 0 to 7, streams of lower urgency are served first
+   * @param incremental whether the stream is useful to the receiver as data arrives, allowing it to
+   *     share the bandwidth with other incremental streams of the same urgency
+   */
+  public Priority(final int urgency, final boolean incremental) {
+    checkArgument(urgency >= 0 && urgency <= MAX_URGENCY, "Urgency must be between 0 and 7");
+
+    this.urgency = urgency;
+    this.incremental = incremental;
+  }
+
+  public int getUrgency() {
+    return urgency;
+  }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    final Priority priority = (Priority) o;
+    return urgency == priority.urgency && incremental == priority.incremental;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(urgency, incremental);
+  }
+
+  @Override
+  public String toString() {
+    return "Priority[u=" + urgency + (incremental ? ", i" : "") + ']';
+  }
+}
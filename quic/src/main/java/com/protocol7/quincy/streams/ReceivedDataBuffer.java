@@ -1,38 +1,139 @@
 package com.protocol7.quincy.streams;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.TreeMap;
 
-// TODO optimize
+/**
+ * Data received on a stream, reassembled in stream offset order.
+ *
+ * <p>Data that can be read at once is kept as a retained slice of the buffer it arrived in, without
+ * copying. Out-of-order data is copied, as a slice would pin the whole receive buffer, which can be
+ * far larger than the data, for as long as the gap before it remains. Only the parts not already
+ * received are kept, so retransmitted data is dropped even when it was split differently, or
+ * overlaps data already received. Data is never accepted beyond the offset the peer is allowed to
+ * send, bounding the memory used by a stream to its flow control window.
+ *
+ * <p>Not thread safe, only used by the {@link DefaultStream} when receiving packets.
+ */
 public class ReceivedDataBuffer {
 
-  private final TreeMap<Long, byte[]> buffer = new TreeMap<>();
-  private long largestOffset = 0;
+  // non-overlapping ranges of data above the read offset, by offset
+  private final TreeMap<Long, ByteBuf> ranges = new TreeMap<>();
   private long readOffset = 0;
+  private long finalSize = -1;
+  private long buffered = 0;
+
+  /**
+   * Add received data, the buffer retains or copies the parts it keeps. Data that can be read at
+   * once is retained, and should be read before the buffer it arrived in is reused.
+   *
+   * @param maxOffset the offset the peer is allowed to send up to
+   * @return false if the data goes beyond the max offset, in which case none of it is kept
+   */
+  public boolean onData(
+      final ByteBuf data, final long offset, final boolean finish, final long maxOffset) {
+    requireNonNull(data);
+    checkArgument(offset >= 0);
 
-  public void onData(final byte[] data, final long offset, final boolean finish) {
-    buffer.put(offset, data);
+    final long end = offset + data.readableBytes();
+    if (end > maxOffset) {
+      return false;
+    }
     if (finish) {
-      this.largestOffset = offset;
+      finalSize = end;
+    }
+
+    // already delivered data is dropped
+    long cursor = Math.max(offset, readOffset);
+    if (cursor >= end) {
+      return true;
+    }
+
+    final List<Entry<Long, ByteBuf>> gaps = new ArrayList<>();
+    final Long floor = ranges.floorKey(cursor);
+    for (final Entry<Long, ByteBuf> range :
+        ranges.subMap(floor != null ? floor : cursor, true, end, false).entrySet()) {
+      final long rangeStart = range.getKey();
+      final long rangeEnd = rangeStart + range.getValue().readableBytes();
+      if (rangeStart > cursor) {
+        gaps.add(Map.entry(cursor, slice(data, offset, cursor, rangeStart)));
+      }
+      cursor = Math.max(cursor, rangeEnd);
+    }
+    if (cursor < end) {
+      gaps.add(Map.entry(cursor, slice(data, offset, cursor, end)));
+    }
+
+    for (final Entry<Long, ByteBuf> gap : gaps) {
+      ranges.put(gap.getKey(), gap.getValue());
+      buffered += gap.getValue().readableBytes();
+    }
+    return true;
+  }
+
+  private ByteBuf slice(final ByteBuf data, final long offset, final long from, final long to) {
+    final ByteBuf slice = data.slice(data.readerIndex() + (int) (from - offset), (int) (to - from));
+    if (from == readOffset) {
+      return slice.retain();
+    } else {
+      return Unpooled.copiedBuffer(slice);
     }
   }
 
+  /** True if there is data to read at the read offset */
   public boolean hasMore() {
-    return buffer.get(readOffset) != null;
+    return !ranges.isEmpty() && ranges.firstKey() == readOffset;
   }
 
-  public Optional<byte[]> read() {
-    final byte[] b = buffer.get(readOffset);
+  /**
+   * Read all contiguous data at the read offset, as a single buffer. The caller must release it.
+   */
+  public Optional<ByteBuf> read() {
+    final List<ByteBuf> contiguous = new ArrayList<>();
+    while (hasMore()) {
+      final ByteBuf range = ranges.pollFirstEntry().getValue();
+      contiguous.add(range);
+      readOffset += range.readableBytes();
+      buffered -= range.readableBytes();
+    }
 
-    if (b != null) {
-      readOffset += b.length;
-      return Optional.of(b);
-    } else {
+    if (contiguous.isEmpty()) {
       return Optional.empty();
+    } else if (contiguous.size() == 1) {
+      return Optional.of(contiguous.get(0));
+    } else {
+      final CompositeByteBuf composite = Unpooled.compositeBuffer(contiguous.size());
+      composite.addComponents(true, contiguous);
+      return Optional.of(composite);
     }
   }
 
+  /** True if all data up to the end of the stream has been read */
   public boolean isDone() {
-    return readOffset > largestOffset;
+    return finalSize >= 0 && readOffset >= finalSize;
+  }
+
+  /** Number of bytes received but not yet read */
+  public long getBuffered() {
+    return buffered;
+  }
+
+  /** Drop all data not yet read */
+  public void clear() {
+    for (final ByteBuf range : ranges.values()) {
+      range.release();
+    }
+    ranges.clear();
+    buffered = 0;
   }
 }
@@ -0,0 +1,157 @@
+package com.protocol7.quincy.streams;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Data written to a stream, waiting to be sent.
+ *
+ * <p>Writes are always accepted and released in order, as flow control allows. The future of a
+ * write completes once the data buffered up to and including it fits within the buffer size, so an
+ * application waiting for it before writing more never buffers much more than that.
+ *
+ * <p>The written arrays are not copied, data is taken as views of them. The application must not
+ * modify an array after writing it.
+ *
+ * <p>Not thread safe, access is guarded by the {@link DefaultStream}.
+ */
+public class SendBuffer {
+
+  private static class PendingWrite {
+    private final long end;
+    private final Promise<Void> promise;
+
+    private PendingWrite(final long end, final Promise<Void> promise) {
+      this.end = end;
+      this.promise = promise;
+    }
+  }
+
+  private final long maxSize;
+  private final Deque<byte[]> chunks = new ArrayDeque<>();
+  // bytes of the first chunk already sent
+  private int chunkOffset;
+  private final Deque<PendingWrite> pendingWrites = new ArrayDeque<>();
+
+  // offset of the next byte to send, and of the end of the data written
+  private long sendOffset;
+  private long writeOffset;
+  private boolean finishWritten;
+  private boolean finishSent;
+
+  public SendBuffer(final long maxSize) {
+    checkArgument(maxSize > 0);
+
+    this.maxSize = maxSize;
+  }
+
+  /** @return a future completed once the data fits within the buffer */
+  public Future<Void> write(final byte[] b, final boolean finish) {
+    requireNonNull(b);
+    checkState(!finishWritten, "Stream already finished");
+
+    if (b.length > 0) {
+      chunks.add(b);
+    }
+    writeOffset += b.length;
+    finishWritten = finish;
+
+    final Promise<Void> promise = new DefaultPromise<>(GlobalEventExecutor.INSTANCE);
+    if (fits(writeOffset)) {
+      promise.setSuccess(null);
+    } else {
+      pendingWrites.add(new PendingWrite(writeOffset, promise));
+    }
+    return promise;
+  }
+
+  /** True if there is data, or the end of the stream, left to send */
+  public boolean hasPending() {
+    return sendOffset < writeOffset || (finishWritten && !finishSent);
+  }
+
+  /** Stream offset of the next byte to send */
+  public long getOffset() {
+    return sendOffset;
+  }
+
+  public long getBuffered() {
+    return writeOffset - sendOffset;
+  }
+
+  public boolean isFinishWritten() {
+    return finishWritten;
+  }
+
+  /** True if all data has been taken and the stream is finished */
+  public boolean isFinished() {
+    return finishWritten && sendOffset == writeOffset;
+  }
+
+  /** Take up to length bytes to send, starting at the current offset, without copying */
+  public ByteBuf take(final long length) {
+    checkArgument(length >= 0);
+
+    final int size = (int) Math.min(length, getBuffered());
+    final List<ByteBuf> views = new ArrayList<>(1);
+    int taken = 0;
+    while (taken < size) {
+      final byte[] chunk = chunks.peek();
+      final int n = Math.min(size - taken, chunk.length - chunkOffset);
+      views.add(Unpooled.wrappedBuffer(chunk, chunkOffset, n));
+      taken += n;
+      chunkOffset += n;
+      if (chunkOffset == chunk.length) {
+        chunks.poll();
+        chunkOffset = 0;
+      }
+    }
+
+    final ByteBuf data;
+    if (views.isEmpty()) {
+      data = Unpooled.EMPTY_BUFFER;
+    } else if (views.size() == 1) {
+      data = views.get(0);
+    } else {
+      // data spanning several writes is a composite view of them
+      data = Unpooled.wrappedBuffer(views.toArray(new ByteBuf[0]));
+    }
+
+    sendOffset += size;
+    finishSent = isFinished();
+
+    while (!pendingWrites.isEmpty() && fits(pendingWrites.peek().end)) {
+      pendingWrites.poll().promise.setSuccess(null);
+    }
+    return data;
+  }
+
+  /** Drop all buffered data, failing the writes still waiting */
+  public void reset(final Throwable cause) {
+    chunks.clear();
+    chunkOffset = 0;
+    writeOffset = sendOffset;
+    finishWritten = true;
+    finishSent = true;
+
+    while (!pendingWrites.isEmpty()) {
+      pendingWrites.poll().promise.setFailure(cause);
+    }
+  }
+
+  private boolean fits(final long end) {
+    return end - sendOffset <= maxSize;
+  }
+}
@@ -2,11 +2,17 @@ package com.protocol7.quincy.streams;
 
 import static com.protocol7.quincy.streams.SendStateMachine.SendStreamState.*;
 
-import java.util.Collections;
-import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
 
+/**
+ * Send side of a stream. Data is received by the peer once every byte up to the final size, and the
+ * end of the stream, has been acknowledged, no matter in which packets. Lost data is retransmitted
+ * in new packets, so acknowledgements are tracked by stream offset rather than by packet number.
+ *
+ * <p>Not thread safe, guarded by the {@link DefaultStream}.
+ */
 public class SendStateMachine {
 
   public SendStreamState getState() {
@@ -23,13 +29,14 @@ public class SendStateMachine {
   }
 
   private SendStreamState state = Open;
-  private final Set<Long> outstandingStreamPackets =
-      Collections.newSetFromMap(new ConcurrentHashMap<>());
-  private Optional<Long> outstandingResetPacket = Optional.empty();
+  private final RangeSet<Long> acked = TreeRangeSet.create();
+  private long finalSize = -1;
+  private boolean finAcked;
 
-  public void onStream(final long pn, final boolean fin) {
+  public void onStream(final long offset, final long length, final boolean fin) {
     if (state == Open || state == Send) {
       if (fin) {
+        finalSize = offset + length;
         state = DataSent;
       } else {
         state = Send;
@@ -39,26 +46,31 @@ public class SendStateMachine {
     }
   }
 
-  public void onReset(final long pn) {
+  public void onReset() {
     if (state == Open || state == Send || state == DataSent) {
       state = ResetSent;
-      outstandingResetPacket = Optional.of(pn);
     } else {
       throw new IllegalStateException();
     }
   }
 
-  public void onAck(final long pn) {
-    outstandingStreamPackets.remove(pn);
+  public void onStreamAcked(final long offset, final long length, final boolean fin) {
+    if (length > 0) {
+      acked.add(Range.closedOpen(offset, offset + length));
+    }
+    finAcked |= fin;
 
-    if (state == DataSent && outstandingStreamPackets.isEmpty()) {
+    if (state == DataSent
+        && finAcked
+        && (finalSize == 0 || acked.encloses(Range.closedOpen(0L, finalSize)))) {
       state = DataRecvd;
-    } else if (state == ResetSent) {
-      if (outstandingResetPacket.isPresent() && outstandingResetPacket.get().equals(pn)) {
-        state = ResetRecvd;
-      } else {
-        throw new IllegalStateException();
-      }
+    }
+  }
+
+  public void onResetAcked() {
+    // acks for data sent before the reset do not matter anymore
+    if (state == ResetSent) {
+      state = ResetRecvd;
     }
   }
 
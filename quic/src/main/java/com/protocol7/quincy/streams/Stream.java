@@ -1,14 +1,30 @@
 package com.protocol7.quincy.streams;
 
+import io.netty.util.concurrent.Future;
+
 public interface Stream {
 
   long getId();
 
   StreamType getStreamType();
 
-  void write(final byte[] b, boolean finish);
+  /**
+   * Queue data to be sent, in frames released as flow control allows.
+   *
+   * @return a future completed once the data fits within the send buffer. Writing more before it
+   *     completes buffers data beyond the buffer size
+   */
+  Future<Void> write(final byte[] b, boolean finish);
 
   void reset(int applicationErrorCode);
 
+  Priority getPriority();
+
+  /**
+   * Set the priority of the data sent on the stream, relative to other streams on the connection.
+   * Streams start out with {@link Priority#DEFAULT}.
+   */
+  void setPriority(Priority priority);
+
   boolean isFinished();
 }
@@ -1,8 +1,9 @@
 package com.protocol7.quincy.streams;
 
 import com.protocol7.quincy.InboundHandler;
+import com.protocol7.quincy.reliability.AckListener;
 
-public interface StreamManager extends InboundHandler {
+public interface StreamManager extends InboundHandler, AckListener {
 
   Stream openStream(boolean client, boolean bidirectional);
 }
@@ -0,0 +1,139 @@
+package com.protocol7.quincy.streams;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decides which stream sends the next frame, following the extensible priorities of RFC 9218.
+ *
+ * <p>Streams of a lower urgency are always served first. Within an urgency, non-incremental streams
+ * are served one at a time in stream id order, each sending all it can before the next. Incremental
+ * streams of the same urgency then take turns, sending a frame each.
+ *
+ * <p>Only streams with data to send are scheduled. A stream blocked by flow control is dropped from
+ * the schedule, and scheduled again once credit is granted. No stream data is sent while the
+ * connection is blocked from sending, so that it goes out by priority once the connection can send
+ * again, rather than in the order it was written.
+ */
+public class StreamScheduler {
+
+  private final BooleanSupplier sendBlocked;
+
+  // by urgency, non-incremental streams in id order and incremental streams in turn
+  private final List<NavigableMap<Long, DefaultStream>> sequential = new ArrayList<>();
+  private final List<Deque<DefaultStream>> incremental = new ArrayList<>();
+  private final Map<Long, Priority> scheduled = new HashMap<>();
+  private final AtomicInteger flushRequests = new AtomicInteger();
+
+  /** @param sendBlocked true while the connection can not send more */
+  public StreamScheduler(final BooleanSupplier sendBlocked) {
+    this.sendBlocked = requireNonNull(sendBlocked);
+
+    for (int urgency = 0; urgency <= Priority.MAX_URGENCY; urgency++) {
+      sequential.add(new TreeMap<>());
+      incremental.add(new ArrayDeque<>());
+    }
+  }
+
+  /** Schedule the stream to send, unless it already is */
+  public synchronized void schedule(final DefaultStream stream) {
+    requireNonNull(stream);
+
+    if (scheduled.containsKey(stream.getId())) {
+      return;
+    }
+
+    final Priority priority = stream.getPriority();
+    scheduled.put(stream.getId(), priority);
+    if (priority.isIncremental()) {
+      incremental.get(priority.getUrgency()).add(stream);
+    } else {
+      sequential.get(priority.getUrgency()).put(stream.getId(), stream);
+    }
+  }
+
+  /** Move the stream within the schedule, after its priority has been changed */
+  public synchronized void reschedule(final DefaultStream stream) {
+    requireNonNull(stream);
+
+    final Priority priority = scheduled.remove(stream.getId());
+    if (priority != null) {
+      if (priority.isIncremental()) {
+        incremental.get(priority.getUrgency()).remove(stream);
+      } else {
+        sequential.get(priority.getUrgency()).remove(stream.getId());
+      }
+      schedule(stream);
+    }
+  }
+
+  public synchronized boolean isScheduled(final long streamId) {
+    return scheduled.containsKey(streamId);
+  }
+
+  /**
+   * Send frames from the scheduled streams, one at a time by priority. Only one thread flushes at a
+   * time, a flush requested meanwhile, or while sending a frame, is done by that thread, so that
+   * streams are never locked in different orders.
+   */
+  public void flush() {
+    if (flushRequests.getAndIncrement() > 0) {
+      return;
+    }
+
+    int requests = 1;
+    try {
+      do {
+        flushScheduled();
+        requests = flushRequests.addAndGet(-requests);
+      } while (requests > 0);
+    } catch (final RuntimeException e) {
+      // like the connection having been closed, let the next flush start over
+      flushRequests.set(0);
+      throw e;
+    }
+  }
+
+  private void flushScheduled() {
+    // streams send outside the lock, as they might be scheduling concurrently
+    while (!sendBlocked.getAsBoolean()) {
+      final Optional<DefaultStream> stream = next();
+      if (!stream.isPresent()) {
+        return;
+      }
+
+      if (stream.get().sendFrame()) {
+        // incremental streams go last in turn, non-incremental streams stay first
+        schedule(stream.get());
+      }
+    }
+  }
+
+  private synchronized Optional<DefaultStream> next() {
+    for (int urgency = 0; urgency <= Priority.MAX_URGENCY; urgency++) {
+      final Entry<Long, DefaultStream> first = sequential.get(urgency).pollFirstEntry();
+      if (first != null) {
+        scheduled.remove(first.getKey());
+        return Optional.of(first.getValue());
+      }
+      final DefaultStream next = incremental.get(urgency).poll();
+      if (next != null) {
+        scheduled.remove(next.getId());
+        return Optional.of(next);
+      }
+    }
+    return Optional.empty();
+  }
+}
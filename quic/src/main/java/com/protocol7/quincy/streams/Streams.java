@@ -1,18 +1,33 @@
 package com.protocol7.quincy.streams;
 
 import com.protocol7.quincy.FrameSender;
+import com.protocol7.quincy.flowcontrol.FlowControlHandler;
 import com.protocol7.quincy.protocol.StreamId;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 
 public class Streams {
 
   private final FrameSender frameSender;
+  private final FlowControlHandler flowControlHandler;
+  private final int maxFrameSize;
+  private final long sendBufferSize;
+  private final StreamScheduler scheduler;
   private final Map<Long, DefaultStream> streams = new ConcurrentHashMap<>();
   private long maxId = -1;
 
-  public Streams(final FrameSender frameSender) {
+  public Streams(
+      final FrameSender frameSender,
+      final FlowControlHandler flowControlHandler,
+      final int maxFrameSize,
+      final long sendBufferSize,
+      final BooleanSupplier sendBlocked) {
     this.frameSender = frameSender;
+    this.flowControlHandler = flowControlHandler;
+    this.maxFrameSize = maxFrameSize;
+    this.sendBufferSize = sendBufferSize;
+    this.scheduler = new StreamScheduler(sendBlocked);
   }
 
   public Stream openStream(
@@ -20,7 +35,7 @@ public class Streams {
     final StreamType type = bidirectional ? StreamType.Bidirectional : StreamType.Sending;
     final long streamId = StreamId.next(maxId, client, bidirectional);
     this.maxId = streamId;
-    final DefaultStream stream = new DefaultStream(streamId, frameSender, handler, type);
+    final DefaultStream stream = newStream(streamId, handler, type);
     streams.put(streamId, stream);
     return stream;
   }
@@ -28,9 +43,7 @@ public class Streams {
   public DefaultStream getOrCreate(final long streamId, final StreamHandler handler) {
     DefaultStream stream = streams.get(streamId);
     if (stream == null) {
-      stream =
-          new DefaultStream(
-              streamId, frameSender, handler, StreamType.Bidirectional); // TODO support stream type
+      stream = newStream(streamId, handler, StreamType.Bidirectional); // TODO support stream type
       final DefaultStream existingStream = streams.putIfAbsent(streamId, stream);
       if (existingStream != null) {
         stream = existingStream;
@@ -39,9 +52,42 @@ public class Streams {
     return stream;
   }
 
-  public void onAck(final long pn) {
+  private DefaultStream newStream(
+      final long streamId, final StreamHandler handler, final StreamType type) {
+    return new DefaultStream(
+        streamId,
+        frameSender,
+        flowControlHandler,
+        handler,
+        type,
+        maxFrameSize,
+        sendBufferSize,
+        scheduler);
+  }
+
+  /** Send data buffered by any of the streams, by priority and as far as flow control allows */
+  public void flush() {
+    // streams blocked by flow control are no longer scheduled
     for (final DefaultStream stream : streams.values()) {
-      stream.onAck(pn);
+      if (stream.hasPending()) {
+        scheduler.schedule(stream);
+      }
+    }
+    scheduler.flush();
+  }
+
+  public void onStreamAcked(
+      final long streamId, final long offset, final long length, final boolean fin) {
+    final DefaultStream stream = streams.get(streamId);
+    if (stream != null) {
+      stream.onStreamAcked(offset, length, fin);
+    }
+  }
+
+  public void onResetAcked(final long streamId) {
+    final DefaultStream stream = streams.get(streamId);
+    if (stream != null) {
+      stream.onResetAcked();
     }
   }
 }
@@ -21,8 +21,7 @@ import com.protocol7.quincy.tls.ClientTlsSession.CertificateInvalidException;
 import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.util.concurrent.Promise;
 import java.util.List;
 import java.util.Optional;
@@ -89,12 +88,7 @@ public class ClientTlsManager implements TlsManager {
           if (frame instanceof CryptoFrame) {
             final CryptoFrame cf = (CryptoFrame) frame;
 
-            final ByteBuf cryptoData = Unpooled.wrappedBuffer(cf.getCryptoData());
-            try {
-              tlsSession.handleServerHello(cryptoData);
-            } finally {
-              cryptoData.release();
-            }
+            tlsSession.handleServerHello(cf.getCryptoData());
             ctx.setState(State.BeforeHandshake);
           }
         }
@@ -145,7 +139,7 @@ public class ClientTlsManager implements TlsManager {
         final CryptoFrame cf = (CryptoFrame) frame;
 
         final Optional<byte[]> clientFin =
-            tlsSession.handleHandshake(cf.getCryptoData(), cf.getOffset());
+            tlsSession.handleHandshake(ByteBufUtil.getBytes(cf.getCryptoData()), cf.getOffset());
 
         if (clientFin.isPresent()) {
           tlsSession.unsetInitialAead();
@@ -17,6 +17,7 @@ import com.protocol7.quincy.reliability.AckUtil;
 import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.util.concurrent.Promise;
 import java.security.PrivateKey;
 import java.util.List;
@@ -65,7 +66,7 @@ public class ServerTlsManager implements TlsManager {
         final CryptoFrame cf = (CryptoFrame) initialPacket.getPayload().getFrames().get(0);
 
         final ServerTlsSession.ServerHelloAndHandshake shah =
-            tlsSession.handleClientHello(cf.getCryptoData());
+            tlsSession.handleClientHello(ByteBufUtil.getBytes(cf.getCryptoData()));
 
         // sent as initial packet
         // TODO ack?
@@ -86,7 +87,7 @@ public class ServerTlsManager implements TlsManager {
         throw new IllegalArgumentException("Missing crypto frame");
       }
       final CryptoFrame cryptoFrame = (CryptoFrame) cryptoFrameOpt.get();
-      tlsSession.handleClientFinished(cryptoFrame.getCryptoData());
+      tlsSession.handleClientFinished(ByteBufUtil.getBytes(cryptoFrame.getCryptoData()));
 
       final FullPacket donePacket = ctx.send(EncryptionLevel.OneRtt, HandshakeDoneFrame.INSTANCE);
       donePacketNumber.set(donePacket.getPacketNumber());
@@ -2,7 +2,6 @@ package com.protocol7.quincy;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeast;
@@ -26,11 +25,14 @@ import com.protocol7.quincy.tls.aead.AEAD;
 import io.netty.util.Timer;
 import io.netty.util.concurrent.DefaultEventExecutor;
 import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.concurrent.SucceededFuture;
+import java.io.ByteArrayOutputStream;
 import java.security.PrivateKey;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -54,22 +56,34 @@ public class ClientServerConnectionTest {
 
   private @Mock StreamHandler clientListener;
   private @Mock StreamHandler serverListener;
-  private @Mock Timer scheduler;
+  private final Timer scheduler = new MockTimer();
   private final FlowControlHandler flowControlHandler = new DefaultFlowControlHandler(1000, 1000);
 
   public static class ForwardingPacketSender implements PacketSender {
 
     private final DefaultEventExecutor executor = new DefaultEventExecutor();
 
+    private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+
     private Connection peer;
+    private EventExecutor peerExecutor;
 
-    public void setPeer(final Connection peer) {
+    /** Packets are received on the event loop the peer sends its packets on, like with Netty */
+    public void setPeer(final Connection peer, final ForwardingPacketSender peerSender) {
       this.peer = peer;
+      this.peerExecutor = peerSender.executor;
     }
 
     @Override
     public Future<Void> send(final Packet packet, final AEAD aead) {
-      executor.execute(() -> peer.onPacket(packet));
+      peerExecutor.execute(
+          () -> {
+            try {
+              peer.onPacket(packet);
+            } catch (final RuntimeException e) {
+              errors.add(e);
+            }
+          });
 
       return new SucceededFuture(executor, null);
     }
@@ -78,6 +92,11 @@ public class ClientServerConnectionTest {
     public Future<Void> destroy() {
       return new SucceededFuture(executor, null);
     }
+
+    @Override
+    public EventExecutor executor() {
+      return executor;
+    }
   }
 
   @Before
@@ -111,8 +130,8 @@ public class ClientServerConnectionTest {
             TestUtil.getTestAddress(),
             scheduler);
 
-    clientSender.setPeer(serverConnection);
-    serverSender.setPeer(clientConnection);
+    clientSender.setPeer(serverConnection, serverSender);
+    serverSender.setPeer(clientConnection, clientSender);
   }
 
   @Test
@@ -152,6 +171,19 @@ public class ClientServerConnectionTest {
     verify(clientListener).onData(any(), eq(PONG), eq(true));
   }
 
+  @Test
+  public void emptyStream() {
+    handshake();
+
+    final Stream stream = clientConnection.openStream();
+    stream.write(new byte[0], true);
+
+    sleep();
+
+    verify(serverListener).onData(any(), eq(new byte[0]), eq(true));
+    assertEquals(List.of(), clientSender.errors);
+  }
+
   @Test
   public void sirStreamAlot() {
     handshake();
@@ -166,29 +198,30 @@ public class ClientServerConnectionTest {
       stream.write(b(i), i == 99);
     }
 
-    // wait until all messages have arrived
-    ArgumentCaptor<byte[]> captor = null;
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int i = 0; i < 100; i++) {
+      expected.writeBytes(b(i));
+    }
+
+    // wait until all messages have arrived. Buffered writes are sent in frames as large as the
+    // packets allow, so the data does not arrive in the same chunks as written
+    byte[] received = new byte[0];
     for (int i = 0; i < 10; i++) {
-      captor = ArgumentCaptor.forClass(byte[].class);
+      final ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
       verify(serverListener, atLeast(0))
           .onData(any(Stream.class), captor.capture(), any(Boolean.class));
 
-      if (captor.getAllValues().size() >= 100) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      captor.getAllValues().forEach(out::writeBytes);
+      received = out.toByteArray();
+
+      if (received.length >= expected.size()) {
         break;
       }
       sleep();
     }
 
-    if (captor != null) {
-      assertEquals(100, captor.getAllValues().size());
-
-      for (int i = 0; i < 100; i++) {
-        final byte[] value = captor.getAllValues().get(i);
-        assertArrayEquals(b(i), value);
-      }
-    } else {
-      fail("Timed out");
-    }
+    assertArrayEquals(expected.toByteArray(), received);
   }
 
   private byte[] b(final int i) {
@@ -0,0 +1,85 @@
+package com.protocol7.quincy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.junit.Test;
+
+public class FuturesTest {
+
+  private final RuntimeException failure = new RuntimeException("failed");
+
+  @Test
+  public void thenSync() {
+    final Promise<Integer> promise = promise();
+
+    final Future<Integer> result = Futures.thenSync(promise, i -> i + 1);
+    promise.setSuccess(1);
+
+    assertEquals(2, (int) result.syncUninterruptibly().getNow());
+  }
+
+  @Test
+  public void thenSyncFailed() {
+    final Promise<Integer> promise = promise();
+
+    final Future<Integer> result = Futures.thenSync(promise, i -> i + 1);
+    promise.setFailure(failure);
+
+    assertFailed(result);
+  }
+
+  @Test
+  public void thenSyncThrows() {
+    final Promise<Integer> promise = promise();
+
+    final Future<Integer> result =
+        Futures.thenSync(
+            promise,
+            i -> {
+              throw failure;
+            });
+    promise.setSuccess(1);
+
+    assertFailed(result);
+  }
+
+  @Test
+  public void thenAsync() {
+    final Promise<Integer> promise = promise();
+    final Promise<Integer> next = promise();
+
+    final Future<Integer> result = Futures.thenAsync(promise, i -> next);
+    promise.setSuccess(1);
+    next.setSuccess(2);
+
+    assertEquals(2, (int) result.syncUninterruptibly().getNow());
+  }
+
+  @Test
+  public void thenAsyncFailed() {
+    final Promise<Integer> promise = promise();
+    final Promise<Integer> next = promise();
+
+    final Future<Integer> result = Futures.thenAsync(promise, i -> next);
+    promise.setSuccess(1);
+    next.setFailure(failure);
+
+    assertFailed(result);
+  }
+
+  private void assertFailed(final Future<?> future) {
+    future.awaitUninterruptibly();
+    assertFalse(future.isSuccess());
+    assertSame(failure, future.cause());
+  }
+
+  private static <T> Promise<T> promise() {
+    return new DefaultPromise<>(GlobalEventExecutor.INSTANCE);
+  }
+}
@@ -3,13 +3,18 @@ package com.protocol7.quincy;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 public class MockTimer implements Timer {
 
   public Set<Timeout> timeouts = new HashSet<>();
+  private final Map<Timeout, Long> delays = new HashMap<>();
 
   @Override
   public Timeout newTimeout(final TimerTask timerTask, final long l, final TimeUnit timeUnit) {
@@ -41,6 +46,7 @@ public class MockTimer implements Timer {
           }
         };
     timeouts.add(timeout);
+    delays.put(timeout, timeUnit.toNanos(l));
     return timeout;
   }
 
@@ -54,4 +60,17 @@ public class MockTimer implements Timer {
       timeout.task().run(timeout);
     }
   }
+
+  /** Run only the tasks scheduled with the given delay */
+  public void trigger(final long delay, final TimeUnit timeUnit) throws Exception {
+    final List<Timeout> matching = new ArrayList<>();
+    for (final Timeout timeout : timeouts) {
+      if (delays.get(timeout) == timeUnit.toNanos(delay)) {
+        matching.add(timeout);
+      }
+    }
+    for (final Timeout timeout : matching) {
+      timeout.task().run(timeout);
+    }
+  }
 }
@@ -1,10 +1,13 @@
 package com.protocol7.quincy.client;
 
 import static com.protocol7.quincy.protocol.ConnectionId.EMPTY;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import com.google.common.primitives.Bytes;
+import com.protocol7.quincy.MockTimer;
 import com.protocol7.quincy.TestUtil;
 import com.protocol7.quincy.connection.Connection;
 import com.protocol7.quincy.connection.PacketSender;
@@ -23,7 +26,8 @@ import com.protocol7.quincy.tls.ServerTlsSession;
 import com.protocol7.quincy.tls.ServerTlsSession.ServerHelloAndHandshake;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
 import com.protocol7.quincy.utils.Rnd;
-import io.netty.util.Timer;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.concurrent.*;
 import java.security.PrivateKey;
 import java.util.List;
@@ -53,12 +57,13 @@ public class ClientTest {
 
   @Mock private PacketSender packetSender;
   @Mock private StreamHandler streamListener;
-  @Mock private Timer scheduler;
+  private final MockTimer scheduler = new MockTimer();
 
   @Before
   public void setUp() {
     when(packetSender.send(any(), any()))
         .thenReturn(new SucceededFuture(new DefaultEventExecutor(), null));
+    when(packetSender.executor()).thenReturn(new EmbeddedChannel().eventLoop());
     when(packetSender.destroy())
         .thenReturn(new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE).setSuccess(null));
 
@@ -127,9 +132,12 @@ public class ClientTest {
 
     final CryptoFrame cf = (CryptoFrame) initialPacket2.getPayload().getFrames().get(0);
 
-    final byte[] clientHello = cf.getCryptoData();
+    final byte[] clientHello = ByteBufUtil.getBytes(cf.getCryptoData());
 
     assertTrue(initialPacket2.getPayload().calculateLength() >= 1200);
+    // the first initial packet is no longer in flight
+    assertEquals(
+        initialPacket2.getPayload().calculateLength(), connection.getStats().getBytesInFlight());
 
     // verify handshake state
     assertFalse(handshakeFuture.isDone());
@@ -195,7 +203,7 @@ public class ClientTest {
     assertArrayEquals(DATA, dataCaptor.getValue());
 
     // verify ack
-    assertAck(6, 4, 3, 3);
+    assertAck(5, 3, 3, 3);
   }
 
   @Test
@@ -208,10 +216,11 @@ public class ClientTest {
     verify(streamListener).onData(any(), eq(DATA), eq(false));
     verify(streamListener).onData(any(), eq(DATA2), eq(true));
 
-    // verify ack
-    assertAck(6, 4, 3, 3);
-    // verify ack
-    assertAck(7, 5, 4, 4);
+    // verify ack of the handshake done packet
+    assertAck(5, 3, 3, 3);
+    // verify ack, sent for every second packet and still including the first packet as the peer
+    // has not acked the ack
+    assertAck(6, 4, 3, 5);
   }
 
   @Test
@@ -221,12 +230,11 @@ public class ClientTest {
     connection.onPacket(packet(new StreamFrame(streamId, DATA.length, true, DATA2)));
     connection.onPacket(packet(new StreamFrame(streamId, 0, false, DATA)));
 
-    verify(streamListener).onData(any(), eq(DATA), eq(false));
-    verify(streamListener).onData(any(), eq(DATA2), eq(true));
+    verify(streamListener).onData(any(), eq(Bytes.concat(DATA, DATA2)), eq(true));
 
     // verify acks
-    assertAck(6, 4, 3, 3);
-    assertAck(7, 5, 4, 4);
+    assertAck(5, 3, 3, 3);
+    assertAck(6, 4, 3, 5);
   }
 
   @Test
@@ -236,7 +244,7 @@ public class ClientTest {
     connection.onPacket(packet(new ResetStreamFrame(streamId, 123, 0)));
 
     // verify ack
-    assertAck(6, 4, 3, 3);
+    assertAck(5, 3, 3, 3);
   }
 
   @Test
@@ -245,8 +253,13 @@ public class ClientTest {
 
     connection.onPacket(packet(PingFrame.INSTANCE));
 
-    // verify ack
-    assertAck(6, 4, 3, 3);
+    // verify ack of the handshake done packet
+    assertAck(5, 3, 3, 3);
+
+    // the ping is acked once the ack delay has passed
+    verify(packetSender, times(5)).send(any(), any());
+    triggerAckTimer();
+    assertAck(6, 4, 3, 4);
   }
 
   @Test
@@ -344,6 +357,15 @@ public class ClientTest {
         frames);
   }
 
+  private void triggerAckTimer() {
+    try {
+      // armed a tick of the timer before the max ack delay
+      scheduler.trigger(new QuicBuilder().configuration().getMaxAckDelay() - 5, MILLISECONDS);
+    } catch (final Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private long nextPacketNumber() {
     packetNumber = PacketNumber.next(packetNumber);
     return packetNumber;
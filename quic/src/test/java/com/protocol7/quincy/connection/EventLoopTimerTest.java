@@ -0,0 +1,51 @@
+package com.protocol7.quincy.connection;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.protocol7.quincy.MockTimer;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EventLoopTimerTest {
+
+  @Mock private EventExecutor executor;
+
+  private final MockTimer timer = new MockTimer();
+  private final AtomicInteger runs = new AtomicInteger();
+
+  @Test
+  public void runOnEventLoop() throws Exception {
+    final EventLoopTimer eventLoopTimer = new EventLoopTimer(timer, executor);
+    eventLoopTimer.newTimeout(t -> runs.incrementAndGet(), 10, MILLISECONDS);
+
+    timer.trigger();
+
+    // handed over to the event loop
+    assertEquals(0, runs.get());
+    final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).execute(captor.capture());
+
+    captor.getValue().run();
+    assertEquals(1, runs.get());
+  }
+
+  @Test
+  public void runDirectlyInEventLoop() throws Exception {
+    when(executor.inEventLoop()).thenReturn(true);
+    final EventLoopTimer eventLoopTimer = new EventLoopTimer(timer, executor);
+    eventLoopTimer.newTimeout(t -> runs.incrementAndGet(), 10, MILLISECONDS);
+
+    timer.trigger();
+
+    assertEquals(1, runs.get());
+  }
+}
@@ -0,0 +1,43 @@
+package com.protocol7.quincy.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.TestUtil;
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.frames.PingFrame;
+import com.protocol7.quincy.protocol.packets.HalfParsedPacket;
+import com.protocol7.quincy.protocol.packets.Packet;
+import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.tls.aead.AEAD;
+import com.protocol7.quincy.tls.aead.TestAEAD;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import java.net.InetSocketAddress;
+import org.junit.Test;
+
+public class NettyPacketSenderTest {
+
+  private final AEAD aead = TestAEAD.create();
+  private final InetSocketAddress peerAddress = TestUtil.getTestAddress();
+  private final EmbeddedChannel channel = new EmbeddedChannel();
+  private final NettyPacketSender sender = new NettyPacketSender(channel, peerAddress, 1452);
+
+  @Test
+  public void send() {
+    final ConnectionId connId = ConnectionId.random();
+    final ShortPacket packet = ShortPacket.create(false, connId, connId, 123, PingFrame.INSTANCE);
+
+    assertTrue(sender.send(packet, aead).isSuccess());
+
+    final DatagramPacket datagram = channel.readOutbound();
+    assertEquals(peerAddress, datagram.recipient());
+    assertTrue(datagram.content().isDirect());
+
+    final HalfParsedPacket<?> halfParsed = Packet.parse(datagram.content(), ConnectionId.LENGTH);
+    assertEquals(packet, halfParsed.complete(level -> aead));
+
+    datagram.release();
+    assertEquals(0, datagram.refCnt());
+  }
+}
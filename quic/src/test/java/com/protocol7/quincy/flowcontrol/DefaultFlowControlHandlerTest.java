@@ -6,6 +6,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 import com.protocol7.quincy.PipelineContext;
@@ -136,6 +137,15 @@ public class DefaultFlowControlHandlerTest {
     verify(ctx).next(packet);
   }
 
+  @Test
+  public void emptyStreamFinished() {
+    final Packet packet = p(new StreamFrame(sid, 0, true, new byte[0]));
+    handler.onReceivePacket(packet, ctx);
+
+    verify(ctx).next(packet);
+    verifyNoMoreInteractions(ctx);
+  }
+
   private FullPacket p(final Frame frame) {
     return ShortPacket.create(
         false, ConnectionId.random(), ConnectionId.random(), PacketNumber.MIN, frame);
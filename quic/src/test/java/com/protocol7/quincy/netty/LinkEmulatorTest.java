@@ -0,0 +1,114 @@
+package com.protocol7.quincy.netty;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.TestUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class LinkEmulatorTest {
+
+  private final InetSocketAddress localAddress = new InetSocketAddress("127.0.0.1", 1234);
+  private final InetSocketAddress peerAddress = TestUtil.getTestAddress();
+
+  @Test
+  public void perfect() {
+    final EmbeddedChannel channel = channel(LinkConditions.perfect());
+
+    channel.writeOutbound(datagram(1));
+
+    final DatagramPacket written = channel.readOutbound();
+    assertEquals(localAddress, written.sender());
+    assertEquals(peerAddress, written.recipient());
+    assertEquals(1, written.content().readInt());
+    written.release();
+  }
+
+  @Test
+  public void loss() {
+    final EmbeddedChannel channel = channel(LinkConditions.perfect().withLoss(1));
+
+    final DatagramPacket datagram = datagram(1);
+    final ChannelFuture future = channel.writeAndFlush(datagram);
+
+    assertTrue(future.isSuccess());
+    assertNull(channel.readOutbound());
+    assertEquals(0, datagram.refCnt());
+  }
+
+  @Test
+  public void delay() throws InterruptedException {
+    final EmbeddedChannel channel = channel(LinkConditions.perfect().withDelay(5, MILLISECONDS));
+
+    final ChannelFuture future = channel.writeAndFlush(datagram(1));
+    assertNull(channel.readOutbound());
+    assertFalse(future.isDone());
+
+    Thread.sleep(10);
+    channel.runScheduledPendingTasks();
+
+    final DatagramPacket written = channel.readOutbound();
+    assertEquals(1, written.content().readInt());
+    assertTrue(future.isSuccess());
+    written.release();
+  }
+
+  @Test
+  public void reordering() throws InterruptedException {
+    final EmbeddedChannel channel =
+        channel(LinkConditions.perfect().withReordering(0.5, 5, MILLISECONDS).withSeed(123));
+
+    final int count = 100;
+    for (int i = 0; i < count; i++) {
+      channel.writeAndFlush(datagram(i));
+    }
+
+    Thread.sleep(10);
+    channel.runScheduledPendingTasks();
+
+    final List<Integer> written = new ArrayList<>();
+    DatagramPacket datagram;
+    while ((datagram = channel.readOutbound()) != null) {
+      written.add(datagram.content().readInt());
+      datagram.release();
+    }
+
+    assertEquals(count, written.size());
+    assertEquals(count, written.stream().distinct().count());
+    // held back datagrams arrive after the others
+    final List<Integer> sorted = new ArrayList<>(written);
+    sorted.sort(Integer::compare);
+    assertNotEquals(sorted, written);
+  }
+
+  @Test
+  public void passThroughOtherMessages() {
+    final EmbeddedChannel channel = channel(LinkConditions.perfect().withLoss(1));
+
+    final ByteBuf bb = Unpooled.wrappedBuffer(new byte[] {1});
+    channel.writeOutbound(bb);
+
+    assertEquals(bb, channel.readOutbound());
+    bb.release();
+  }
+
+  private EmbeddedChannel channel(final LinkConditions conditions) {
+    return new EmbeddedChannel(new LinkEmulator(localAddress, conditions));
+  }
+
+  private DatagramPacket datagram(final int value) {
+    return new DatagramPacket(Unpooled.buffer().writeInt(value), peerAddress);
+  }
+}
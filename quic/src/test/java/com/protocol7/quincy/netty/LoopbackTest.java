@@ -0,0 +1,237 @@
+package com.protocol7.quincy.netty;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.connection.Connection;
+import com.protocol7.quincy.connection.ConnectionStats;
+import com.protocol7.quincy.reliability.CongestionController;
+import com.protocol7.quincy.reliability.Cubic;
+import com.protocol7.quincy.reliability.SentPacket;
+import com.protocol7.quincy.streams.Stream;
+import com.protocol7.quincy.tls.KeyUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class LoopbackTest {
+
+  private static final String ALPN = "http/0.9";
+
+  private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+
+  private final QuicBuilder server =
+      new QuicBuilder()
+          .withApplicationProtocols(ALPN)
+          .withCertificates(KeyUtil.getCertsFromCrt("src/test/resources/server.crt"))
+          .withPrivateKey(KeyUtil.getPrivateKey("src/test/resources/server.der"))
+          .withStreamHandler(
+              (stream, data, finished) -> {
+                if (finished) {
+                  stream.write("PONG".getBytes(StandardCharsets.US_ASCII), true);
+                }
+              });
+
+  private final QuicBuilder client = new QuicBuilder().withApplicationProtocols(ALPN);
+
+  @Test
+  public void perfect() throws InterruptedException {
+    assertPingPong(LinkConditions.perfect());
+  }
+
+  @Test
+  public void delay() throws InterruptedException {
+    assertPingPong(LinkConditions.perfect().withDelay(10, MILLISECONDS));
+  }
+
+  @Test
+  public void handshakes() {
+    try (final Loopback loopback = Loopback.start(server, LinkConditions.perfect())) {
+      for (int i = 0; i < 3; i++) {
+        final Connection connection =
+            loopback.newBootstrap(client).connect().syncUninterruptibly().getNow();
+        connection.close().syncUninterruptibly();
+      }
+    }
+  }
+
+  @Test
+  public void rttStats() throws InterruptedException {
+    final Connection connection =
+        assertPingPong(LinkConditions.perfect().withDelay(10, MILLISECONDS));
+
+    // 10 ms delay in each direction
+    final ConnectionStats stats = connection.getStats();
+    assertTrue(stats.getMinRtt(MILLISECONDS) >= 20);
+    assertTrue(stats.getLatestRtt(MILLISECONDS) >= stats.getMinRtt(MILLISECONDS));
+    assertTrue(stats.getSmoothedRtt(MILLISECONDS) >= 20);
+  }
+
+  @Test
+  public void cubicOnLossyLongLink() throws InterruptedException {
+    final AtomicInteger received = new AtomicInteger();
+    final QuicBuilder counting =
+        new QuicBuilder()
+            .withApplicationProtocols(ALPN)
+            .withCertificates(KeyUtil.getCertsFromCrt("src/test/resources/server.crt"))
+            .withPrivateKey(KeyUtil.getPrivateKey("src/test/resources/server.der"))
+            .withStreamHandler(
+                (stream, data, finished) -> {
+                  received.addAndGet(data.length);
+                  if (finished) {
+                    stream.write(
+                        String.valueOf(received.get()).getBytes(StandardCharsets.US_ASCII), true);
+                  }
+                });
+    final List<Recording> controllers = new CopyOnWriteArrayList<>();
+    final QuicBuilder cubic =
+        client.withCongestionController(
+            (maxDatagramSize, rtt, paced) -> {
+              final Recording recording =
+                  new Recording(new Cubic(maxDatagramSize, rtt, paced), maxDatagramSize);
+              controllers.add(recording);
+              return recording;
+            });
+
+    // 50 ms each way, with 5% of datagrams lost in each direction
+    final LinkConditions conditions =
+        LinkConditions.perfect().withDelay(50, MILLISECONDS).withLoss(0.05).withSeed(7);
+
+    try (final Loopback loopback = Loopback.start(counting, conditions)) {
+      final Connection connection =
+          loopback
+              .newBootstrap(cubic)
+              .withStreamHandler(
+                  (stream, data, finished) ->
+                      responses.add(new String(data, StandardCharsets.US_ASCII)))
+              .connect()
+              .syncUninterruptibly()
+              .getNow();
+
+      // many times the initial window, lost packets are retransmitted
+      final int chunks = 200;
+      final byte[] chunk = new byte[700];
+      final Stream stream = connection.openStream();
+      for (int i = 0; i < chunks; i++) {
+        stream.write(chunk, i == chunks - 1);
+      }
+
+      assertEquals(String.valueOf(chunks * chunk.length), responses.poll(20, TimeUnit.SECONDS));
+
+      final ConnectionStats stats = connection.getStats();
+      assertTrue(stats.getSmoothedRtt(MILLISECONDS) >= 100);
+
+      assertEquals(1, controllers.size());
+      final Recording recording = controllers.get(0);
+      final long minimumWindow = 2L * recording.maxDatagramSize;
+
+      // the window grew in slow start before the first loss
+      assertTrue(recording.reductions.size() > 0);
+      final long[] first = recording.reductions.get(0);
+      assertTrue(first[0] > recording.initialWindow);
+
+      // each loss reduces the window by CUBIC's beta of 0.7, not halves it as NewReno does
+      for (final long[] reduction : recording.reductions) {
+        assertEquals(Math.max((long) (reduction[0] * 0.7), minimumWindow), reduction[1]);
+      }
+
+      // and the window grows again after the last reduction
+      final long[] last = recording.reductions.get(recording.reductions.size() - 1);
+      assertTrue(recording.largestSinceReduction > last[1]);
+
+      connection.close().syncUninterruptibly();
+    }
+  }
+
+  /** Records the window on each reduction and the largest window since the latest one */
+  private static class Recording implements CongestionController {
+    private final CongestionController delegate;
+    private final int maxDatagramSize;
+    private final long initialWindow;
+    // the window before and after each reduction
+    private final List<long[]> reductions = new CopyOnWriteArrayList<>();
+    private volatile long largestSinceReduction;
+
+    private Recording(final CongestionController delegate, final int maxDatagramSize) {
+      this.delegate = delegate;
+      this.maxDatagramSize = maxDatagramSize;
+      this.initialWindow = delegate.getCongestionWindow();
+    }
+
+    @Override
+    public void onPacketSent(final SentPacket packet) {
+      delegate.onPacketSent(packet);
+    }
+
+    @Override
+    public void onPacketsAcked(final List<SentPacket> packets, final long now) {
+      delegate.onPacketsAcked(packets, now);
+      largestSinceReduction = Math.max(largestSinceReduction, delegate.getCongestionWindow());
+    }
+
+    @Override
+    public void onPacketsLost(final List<SentPacket> packets, final long now) {
+      final long before = delegate.getCongestionWindow();
+      delegate.onPacketsLost(packets, now);
+      final long after = delegate.getCongestionWindow();
+      if (after < before) {
+        reductions.add(new long[] {before, after});
+        largestSinceReduction = after;
+      }
+    }
+
+    @Override
+    public void onPersistentCongestion() {
+      delegate.onPersistentCongestion();
+    }
+
+    @Override
+    public void onPacketsDiscarded(final List<SentPacket> packets) {
+      delegate.onPacketsDiscarded(packets);
+    }
+
+    @Override
+    public long getCongestionWindow() {
+      return delegate.getCongestionWindow();
+    }
+
+    @Override
+    public long getBytesInFlight() {
+      return delegate.getBytesInFlight();
+    }
+
+    @Override
+    public long getPacingRate() {
+      return delegate.getPacingRate();
+    }
+  }
+
+  private Connection assertPingPong(final LinkConditions conditions) throws InterruptedException {
+    try (final Loopback loopback = Loopback.start(server, conditions)) {
+      final Connection connection =
+          loopback
+              .newBootstrap(client)
+              .withStreamHandler(
+                  (stream, data, finished) ->
+                      responses.add(new String(data, StandardCharsets.US_ASCII)))
+              .connect()
+              .syncUninterruptibly()
+              .getNow();
+
+      assertEquals(loopback.getServerAddress(), connection.getPeerAddress());
+
+      connection.openStream().write("PING".getBytes(StandardCharsets.US_ASCII), true);
+
+      assertEquals("PONG", responses.poll(5000, TimeUnit.MILLISECONDS));
+
+      connection.close().syncUninterruptibly();
+      return connection;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.protocol7.quincy.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollDatagramChannelConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuicInitializerTest {
+
+  @Before
+  public void setUp() {
+    assumeTrue(Epoll.isAvailable());
+  }
+
+  @Test
+  public void batched() {
+    final EpollDatagramChannel channel = new EpollDatagramChannel();
+    try {
+      init(new QuicBuilder().withMaxPacketSize(1400).withDatagramBatchSize(8), channel);
+
+      final EpollDatagramChannelConfig config = channel.config();
+      assertEquals(1400, config.getMaxDatagramPayloadSize());
+      assertEquals(1400 * 8, guess(config.getRecvByteBufAllocator()));
+    } finally {
+      channel.unsafe().closeForcibly();
+    }
+  }
+
+  @Test
+  public void notBatched() {
+    final EpollDatagramChannel channel = new EpollDatagramChannel();
+    try {
+      init(new QuicBuilder(), channel);
+
+      assertEquals(0, channel.config().getMaxDatagramPayloadSize());
+    } finally {
+      channel.unsafe().closeForcibly();
+    }
+  }
+
+  private void init(final QuicBuilder builder, final EpollDatagramChannel channel) {
+    ((QuicInitializer) builder.channelInitializer()).initChannel(channel);
+  }
+
+  private int guess(final RecvByteBufAllocator allocator) {
+    assertEquals(FixedRecvByteBufAllocator.class, allocator.getClass());
+    return allocator.newHandle().guess();
+  }
+}
@@ -0,0 +1,123 @@
+package com.protocol7.quincy.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.connection.Connection;
+import com.protocol7.quincy.tls.KeyUtil;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class QuicServerTest {
+
+  private static final String ALPN = "http/0.9";
+
+  private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+
+  private final QuicBuilder server =
+      new QuicBuilder()
+          .withApplicationProtocols(ALPN)
+          .withCertificates(KeyUtil.getCertsFromCrt("src/test/resources/server.crt"))
+          .withPrivateKey(KeyUtil.getPrivateKey("src/test/resources/server.der"))
+          .withStreamHandler(
+              (stream, data, finished) -> {
+                if (finished) {
+                  stream.write("PONG".getBytes(StandardCharsets.US_ASCII), true);
+                }
+              });
+
+  private final QuicBuilder client = new QuicBuilder().withApplicationProtocols(ALPN);
+
+  private final EventLoopGroup clientGroup = new NioEventLoopGroup(1);
+
+  @After
+  public void tearDown() {
+    clientGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+  }
+
+  @Test
+  public void workers() throws InterruptedException {
+    try (final QuicServer quicServer = QuicServer.bind(server, localAddress(), 4)) {
+      final int expected = Epoll.isAvailable() ? 4 : 1;
+      assertEquals(expected, quicServer.getChannels().size());
+      for (final Channel channel : quicServer.getChannels()) {
+        assertEquals(quicServer.getLocalAddress(), channel.localAddress());
+      }
+
+      // connections from different client ports spread over the workers
+      for (int i = 0; i < 8; i++) {
+        assertPingPong(quicServer);
+      }
+
+      // closing connections leaves the server channels open
+      for (final Channel channel : quicServer.getChannels()) {
+        assertTrue(channel.isActive());
+      }
+    }
+  }
+
+  @Test
+  public void singleWorker() throws InterruptedException {
+    try (final QuicServer quicServer = QuicServer.bind(server, localAddress(), 1)) {
+      assertEquals(1, quicServer.getChannels().size());
+
+      assertPingPong(quicServer);
+      assertPingPong(quicServer);
+    }
+  }
+
+  @Test
+  public void batched() throws InterruptedException {
+    server.withDatagramBatchSize(16);
+
+    try (final QuicServer quicServer = QuicServer.bind(server, localAddress(), 2)) {
+      for (int i = 0; i < 4; i++) {
+        assertPingPong(quicServer);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidWorkers() {
+    QuicServer.bind(server, localAddress(), 0);
+  }
+
+  private void assertPingPong(final QuicServer quicServer) throws InterruptedException {
+    final Bootstrap b = new Bootstrap();
+    b.group(clientGroup);
+    b.channel(NioDatagramChannel.class);
+    b.handler(client.channelInitializer());
+    final Channel channel = b.connect(quicServer.getLocalAddress()).syncUninterruptibly().channel();
+
+    final Connection connection =
+        Connection.newBootstrap(channel)
+            .withStreamHandler(
+                (stream, data, finished) ->
+                    responses.add(new String(data, StandardCharsets.US_ASCII)))
+            .connect()
+            .syncUninterruptibly()
+            .getNow();
+
+    connection.openStream().write("PING".getBytes(StandardCharsets.US_ASCII), true);
+
+    assertEquals("PONG", responses.poll(5000, TimeUnit.MILLISECONDS));
+
+    connection.close().syncUninterruptibly();
+  }
+
+  private static InetSocketAddress localAddress() {
+    return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+  }
+}
@@ -0,0 +1,182 @@
+package com.protocol7.quincy.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.TestUtil;
+import com.protocol7.quincy.addressvalidation.InsecureQuicTokenHandler;
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.Version;
+import com.protocol7.quincy.protocol.frames.PaddingFrame;
+import com.protocol7.quincy.protocol.packets.InitialPacket;
+import com.protocol7.quincy.protocol.packets.PacketType;
+import com.protocol7.quincy.tls.aead.TestAEAD;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import java.util.Optional;
+import org.junit.Test;
+
+public class WorkerGroupTest {
+
+  private final WorkerGroup workers = new WorkerGroup(4);
+
+  @Test
+  public void ownerShortHeader() {
+    final ConnectionId connId = ConnectionId.random(2);
+
+    assertEquals(2, workers.owner(shortPacket(connId)));
+  }
+
+  @Test
+  public void ownerHandshake() {
+    final ConnectionId connId = ConnectionId.random(3);
+
+    assertEquals(3, workers.owner(longPacket(PacketType.Handshake, connId)));
+  }
+
+  @Test
+  public void ownerInitial() {
+    // the connection ID could have been picked by the client
+    assertEquals(-1, workers.owner(longPacket(PacketType.Initial, ConnectionId.random(3))));
+    assertEquals(
+        -1, workers.owner(longPacket(PacketType.Zero_RTT_Protected, ConnectionId.random(3))));
+  }
+
+  @Test
+  public void ownerEmptyConnectionId() {
+    assertEquals(-1, workers.owner(longPacket(PacketType.Handshake, ConnectionId.EMPTY)));
+  }
+
+  @Test
+  public void ownerTruncated() {
+    assertEquals(-1, workers.owner(datagram(Unpooled.buffer())));
+    assertEquals(-1, workers.owner(datagram(Unpooled.wrappedBuffer(new byte[] {0x40}))));
+    assertEquals(-1, workers.owner(datagram(Unpooled.wrappedBuffer(new byte[] {(byte) 0xc0}))));
+  }
+
+  @Test
+  public void ownerSingle() {
+    assertEquals(0, WorkerGroup.single().owner(shortPacket(ConnectionId.random(3))));
+  }
+
+  @Test
+  public void forward() {
+    final EmbeddedChannel channel = new EmbeddedChannel();
+    workers.register(1, channel);
+
+    final DatagramPacket datagram = shortPacket(ConnectionId.random(1));
+    assertTrue(workers.forward(1, datagram));
+
+    channel.runPendingTasks();
+    assertSame(datagram, channel.readInbound());
+  }
+
+  @Test
+  public void forwardUnregistered() {
+    assertFalse(workers.forward(1, shortPacket(ConnectionId.random(1))));
+  }
+
+  @Test
+  public void forwardInactive() {
+    final EmbeddedChannel channel = new EmbeddedChannel();
+    workers.register(1, channel);
+    channel.close();
+
+    assertFalse(workers.forward(1, shortPacket(ConnectionId.random(1))));
+  }
+
+  @Test
+  public void handlerForwardsToOwner() {
+    final EmbeddedChannel owner = new EmbeddedChannel();
+    workers.register(2, owner);
+    final EmbeddedChannel channel = new EmbeddedChannel(handler(0));
+
+    final DatagramPacket datagram = shortPacket(ConnectionId.random(2));
+    channel.writeInbound(datagram);
+
+    owner.runPendingTasks();
+    assertSame(datagram, owner.readInbound());
+    assertNull(channel.readInbound());
+  }
+
+  @Test
+  public void handlerKeepsInitial() {
+    final EmbeddedChannel other = new EmbeddedChannel();
+    workers.register(2, other);
+    final EmbeddedChannel channel = new EmbeddedChannel(handler(1));
+
+    // the client picked connection ID looks like one issued by worker 2
+    final InitialPacket initial =
+        InitialPacket.create(
+            ConnectionId.random(2),
+            ConnectionId.random(),
+            0,
+            Version.DRAFT_29,
+            Optional.empty(),
+            new PaddingFrame(1200));
+    final ByteBuf bb = Unpooled.buffer();
+    initial.write(bb, TestAEAD.create());
+    channel.writeInbound(datagram(bb));
+
+    other.runPendingTasks();
+    assertNull(other.readInbound());
+
+    // handled by this worker, asking the client to retry with a connection ID tagged with it
+    final DatagramPacket retry = channel.readOutbound();
+    final ByteBuf content = retry.content();
+    content.skipBytes(6 + content.getUnsignedByte(5));
+    assertEquals(1, workers.owner(shortPacket(ConnectionId.read(content))));
+    retry.release();
+  }
+
+  @Test
+  public void handlerRegistersChannel() {
+    final EmbeddedChannel channel = new EmbeddedChannel(handler(1));
+
+    final DatagramPacket datagram = shortPacket(ConnectionId.random(1));
+    assertTrue(workers.forward(1, datagram));
+    channel.runPendingTasks();
+
+    // no connection matching the packet, dropped and released by the handler
+    assertNull(channel.readInbound());
+    assertEquals(0, datagram.refCnt());
+  }
+
+  private QuicHandler handler(final int worker) {
+    return new QuicHandler(
+        new QuicBuilder().configuration(),
+        Optional.empty(),
+        Optional.empty(),
+        InsecureQuicTokenHandler.INSTANCE,
+        (stream, data, finished) -> {},
+        worker,
+        workers);
+  }
+
+  private DatagramPacket shortPacket(final ConnectionId dcid) {
+    final ByteBuf bb = Unpooled.buffer();
+    bb.writeByte(0x40);
+    dcid.write(bb);
+    bb.writeBytes(new byte[20]);
+    return datagram(bb);
+  }
+
+  private DatagramPacket longPacket(final PacketType type, final ConnectionId dcid) {
+    final ByteBuf bb = Unpooled.buffer();
+    bb.writeByte(0xc0 | type.getType() << 4);
+    bb.writeInt(0xff00001d);
+    ConnectionId.write(dcid, bb);
+    ConnectionId.write(ConnectionId.random(), bb);
+    bb.writeBytes(new byte[20]);
+    return datagram(bb);
+  }
+
+  private DatagramPacket datagram(final ByteBuf bb) {
+    return new DatagramPacket(bb, TestUtil.getTestAddress(), TestUtil.getTestAddress());
+  }
+}
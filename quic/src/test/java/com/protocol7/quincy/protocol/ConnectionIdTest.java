@@ -90,4 +90,28 @@ public class ConnectionIdTest {
 
     assertArrayEquals(b16, ConnectionId.read(bb).asBytes());
   }
+
+  @Test
+  public void randomWorker() {
+    for (int worker = 0; worker < ConnectionId.MAX_WORKERS; worker++) {
+      final ConnectionId connId = ConnectionId.random(worker);
+      assertEquals(ConnectionId.LENGTH, connId.getLength());
+      assertEquals(worker, ConnectionId.getWorker(connId.asBytes()[0], ConnectionId.MAX_WORKERS));
+    }
+  }
+
+  @Test
+  public void getWorker() {
+    final ConnectionId connId = ConnectionId.random(5);
+
+    assertEquals(5, ConnectionId.getWorker(connId.asBytes()[0], 8));
+    assertEquals(1, ConnectionId.getWorker(connId.asBytes()[0], 4));
+    assertEquals(0, ConnectionId.getWorker(connId.asBytes()[0], 1));
+    assertEquals(2, ConnectionId.getWorker((byte) 0xFE, 4));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void randomWorkerTooLarge() {
+    ConnectionId.random(ConnectionId.MAX_WORKERS);
+  }
 }
@@ -87,6 +87,18 @@ public class PacketNumberTest {
     assertWrite(1160621137, "452dac51");
   }
 
+  @Test
+  public void writeMinLength() {
+    assertEquals("000019", Hex.hex(PacketNumber.write(0x19, 3)));
+    assertEquals("00003719", Hex.hex(PacketNumber.write(0x3719, 4)));
+    assertEquals("2589fa19", Hex.hex(PacketNumber.write(0x2589fa19, 1)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void writeMinLengthTooLong() {
+    PacketNumber.write(0x19, 5);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void writeTooSmall() {
     PacketNumber.write(-1);
@@ -29,6 +29,31 @@ public class PayloadTest {
     assertEquals(payload, parsed);
   }
 
+  @Test
+  public void roundtripDirect() {
+    final Payload payload = new Payload(PingFrame.INSTANCE, new PaddingFrame(1));
+
+    final ByteBuf bb = Unpooled.directBuffer();
+    payload.write(bb, aead, pn, aad);
+
+    final Payload parsed = Payload.parse(bb, payload.calculateLength(), aead, pn, aad);
+
+    assertEquals(payload, parsed);
+    assertEquals(0, bb.readableBytes());
+  }
+
+  @Test
+  public void roundtripComposite() {
+    final Payload payload = new Payload(PingFrame.INSTANCE, new PaddingFrame(1));
+
+    final ByteBuf bb = Unpooled.compositeBuffer();
+    payload.write(bb, aead, pn, aad);
+
+    final Payload parsed = Payload.parse(bb, payload.calculateLength(), aead, pn, aad);
+
+    assertEquals(payload, parsed);
+  }
+
   @Test
   public void write() {
     final Payload payload = new Payload(PingFrame.INSTANCE, new PaddingFrame(1));
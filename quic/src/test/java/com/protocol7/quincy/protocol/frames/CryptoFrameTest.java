@@ -1,6 +1,5 @@
 package com.protocol7.quincy.protocol.frames;
 
-import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import com.protocol7.quincy.utils.Hex;
@@ -20,6 +19,16 @@ public class CryptoFrameTest {
     final CryptoFrame parsed = CryptoFrame.parse(bb);
 
     assertEquals(parsed.getOffset(), frame.getOffset());
-    assertArrayEquals(parsed.getCryptoData(), frame.getCryptoData());
+    assertEquals(frame.getCryptoData(), parsed.getCryptoData());
+  }
+
+  @Test
+  public void calculateLength() {
+    final CryptoFrame frame = new CryptoFrame(123, new byte[100]);
+
+    final ByteBuf bb = Unpooled.buffer();
+    frame.write(bb);
+
+    assertEquals(bb.readableBytes(), frame.calculateLength());
   }
 }
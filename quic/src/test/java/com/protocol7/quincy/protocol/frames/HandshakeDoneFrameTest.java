@@ -0,0 +1,31 @@
+package com.protocol7.quincy.protocol.frames;
+
+import static org.junit.Assert.assertEquals;
+
+import com.protocol7.quincy.TestUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+public class HandshakeDoneFrameTest {
+
+  @Test
+  public void roundtrip() {
+    final ByteBuf bb = Unpooled.buffer();
+    final HandshakeDoneFrame frame = HandshakeDoneFrame.INSTANCE;
+
+    frame.write(bb);
+
+    final Frame parsed = Frame.parse(bb);
+
+    assertEquals(frame, parsed);
+  }
+
+  @Test
+  public void write() {
+    final ByteBuf bb = Unpooled.buffer();
+    HandshakeDoneFrame.INSTANCE.write(bb);
+
+    TestUtil.assertBuffer("1e", bb);
+  }
+}
@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import com.protocol7.quincy.protocol.StreamId;
 import com.protocol7.quincy.utils.Hex;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import org.junit.Test;
 
@@ -33,7 +34,7 @@ public class StreamFrameTest {
     assertFalse(frame.isFin());
     assertEquals(0, frame.getOffset());
     assertEquals(467722447824726350L, frame.getStreamId());
-    assertArrayEquals(DATA, frame.getData());
+    assertArrayEquals(DATA, ByteBufUtil.getBytes(frame.getData()));
   }
 
   @Test
@@ -45,7 +46,7 @@ public class StreamFrameTest {
     assertFalse(frame.isFin());
     assertEquals(123, frame.getOffset());
     assertEquals(210490071094968184L, frame.getStreamId());
-    assertArrayEquals(DATA, frame.getData());
+    assertArrayEquals(DATA, ByteBufUtil.getBytes(frame.getData()));
   }
 
   @Test
@@ -57,7 +58,7 @@ public class StreamFrameTest {
     assertTrue(frame.isFin());
     assertEquals(0, frame.getOffset());
     assertEquals(4158820520164861892L, frame.getStreamId());
-    assertArrayEquals(DATA, frame.getData());
+    assertArrayEquals(DATA, ByteBufUtil.getBytes(frame.getData()));
   }
 
   @Test
@@ -71,4 +72,28 @@ public class StreamFrameTest {
     final StreamFrame frame = new StreamFrame(123, 123, false, DATA);
     assertEquals(11, frame.calculateLength());
   }
+
+  @Test
+  public void parseWithoutCopy() {
+    final ByteBuf bb = Unpooled.copiedBuffer(Hex.dehex("10c67daf169411a94e48656c6c6f"));
+
+    final StreamFrame frame = StreamFrame.parse(bb);
+
+    // a view of the parsed buffer
+    bb.setByte(9, 'J');
+    assertArrayEquals("Jello".getBytes(), ByteBufUtil.getBytes(frame.getData()));
+  }
+
+  @Test
+  public void writeAgain() {
+    final StreamFrame frame = new StreamFrame(123, 0, false, DATA);
+
+    // as when retransmitted
+    final ByteBuf bb = Unpooled.buffer();
+    frame.write(bb);
+    frame.write(bb);
+
+    assertEquals(frame, StreamFrame.parse(bb));
+    assertEquals(frame, StreamFrame.parse(bb));
+  }
 }
@@ -7,6 +7,7 @@ import com.protocol7.quincy.protocol.frames.PingFrame;
 import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.TestAEAD;
 import com.protocol7.quincy.utils.Bits;
+import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.junit.Test;
@@ -52,6 +53,28 @@ public class ShortPacketTest {
     assertEquals(packet.getPayload(), parsed.getPayload());
   }
 
+  @Test
+  public void roundtripTinyPayload() {
+    // the header protection sample must be within the packet, even for a single byte payload
+    final ShortPacket packet =
+        ShortPacket.create(false, dest, ConnectionId.EMPTY, 3, PingFrame.INSTANCE);
+    final ByteBuf written = buffer(packet);
+    final ByteBuf bb = Unpooled.wrappedBuffer(Bytes.drainToArray(written));
+
+    final ShortPacket parsed = ShortPacket.parse(bb, dest.getLength()).complete(level -> aead);
+
+    assertEquals(packet.getPacketNumber(), parsed.getPacketNumber());
+    assertEquals(packet.getPayload(), parsed.getPayload());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tooShortToSample() {
+    final ByteBuf bb = buffer(packet());
+    bb.writerIndex(1 + dest.getLength() + 19);
+
+    ShortPacket.parse(bb, dest.getLength()).complete(level -> aead);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void invalidFirstBit() {
     final ByteBuf bb = buffer(packet());
@@ -34,6 +34,16 @@ public class AckDelayTest {
     assertEquals(0, ackDelay.calculate(-800 * 1000, TimeUnit.NANOSECONDS));
   }
 
+  @Test
+  public void toNanos() {
+    assertEquals(800 * 1000, ackDelay.toNanos(100));
+  }
+
+  @Test
+  public void toNanosSaturates() {
+    assertTrue(ackDelay.toNanos(Long.MAX_VALUE) > 0);
+  }
+
   @Test
   public void time() {
     assertEquals(123, ackDelay.time());
@@ -0,0 +1,141 @@
+package com.protocol7.quincy.reliability;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.protocol.frames.PingFrame;
+import com.protocol7.quincy.reliability.Bbr.Mode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class BbrTest {
+
+  private static final int MDS = 1200;
+
+  // 1000 packets per second over a 50 ms link, the bottleneck adds 1 ms to serialize each packet
+  private static final long BANDWIDTH = 1_200_000;
+  private static final long DELAY = MILLISECONDS.toNanos(50);
+  private static final long SERIALIZATION = SECONDS.toNanos(1) * MDS / BANDWIDTH;
+  private static final long RTT = DELAY + SERIALIZATION;
+  private static final long BDP = BANDWIDTH * RTT / SECONDS.toNanos(1);
+
+  private final RttEstimator rtt = new RttEstimator();
+  private final DeliveryRateEstimator deliveryRate = new DeliveryRateEstimator();
+  private final Bbr bbr = new Bbr(MDS, rtt, false);
+
+  private final Set<Mode> modes = EnumSet.noneOf(Mode.class);
+
+  @Test
+  public void initial() {
+    assertEquals(Mode.STARTUP, bbr.getMode());
+    assertEquals(12000, bbr.getCongestionWindow());
+    assertTrue(bbr.getPacingRate() > 0);
+  }
+
+  @Test
+  public void startupFindsBottleneck() {
+    simulate(SECONDS.toNanos(3));
+
+    assertEquals(Mode.PROBE_BW, bbr.getMode());
+    assertTrue(modes.contains(Mode.DRAIN));
+
+    // the bottleneck spaces out the acks at exactly its rate
+    assertEquals(BANDWIDTH, bbr.getBtlBw(), BANDWIDTH / 20);
+    assertEquals(RTT, bbr.getRtProp(), MILLISECONDS.toNanos(1));
+
+    // twice the bandwidth-delay product, plus some headroom for ack aggregation
+    assertTrue(bbr.getCongestionWindow() <= 2 * BDP + 3 * MDS + MDS);
+    assertTrue(bbr.getCongestionWindow() >= BDP);
+
+    assertEquals(bbr.getPacingGain() * bbr.getBtlBw(), bbr.getPacingRate(), 1);
+  }
+
+  @Test
+  public void probeRtt() {
+    simulate(SECONDS.toNanos(12));
+
+    // the propagation delay is remeasured after 10 seconds without a lower sample
+    assertTrue(modes.contains(Mode.PROBE_RTT));
+    assertEquals(Mode.PROBE_BW, bbr.getMode());
+    assertEquals(RTT, bbr.getRtProp(), MILLISECONDS.toNanos(1));
+  }
+
+  @Test
+  public void lossConservesPackets() {
+    simulate(SECONDS.toNanos(3));
+
+    final SentPacket lost = packet(pn++, now);
+    send(lost);
+    final long inFlight = bbr.getBytesInFlight();
+    bbr.onPacketsLost(List.of(lost), now);
+
+    // one packet may be sent for the one lost
+    assertEquals(inFlight - MDS, bbr.getBytesInFlight());
+    assertEquals(inFlight, bbr.getCongestionWindow());
+  }
+
+  @Test
+  public void persistentCongestion() {
+    bbr.onPersistentCongestion();
+
+    assertEquals(4 * MDS, bbr.getCongestionWindow());
+  }
+
+  @Test
+  public void discarded() {
+    final SentPacket packet = packet(1, 0);
+    send(packet);
+    bbr.onPacketsDiscarded(List.of(packet));
+
+    assertEquals(0, bbr.getBytesInFlight());
+  }
+
+  private long now = MILLISECONDS.toNanos(1000);
+  private long pn;
+
+  // packets in flight, in the order they leave the bottleneck, with the time their ack arrives
+  private final Deque<SentPacket> inFlight = new ArrayDeque<>();
+  private final Deque<Long> ackTimes = new ArrayDeque<>();
+  private long bottleneckFree;
+
+  /** Send as much as the window allows through a bottleneck link, with an unlimited queue */
+  private void simulate(final long duration) {
+    final long end = now + duration;
+    while (now < end) {
+      while (bbr.canSend()) {
+        final SentPacket packet = packet(pn++, now);
+        send(packet);
+
+        bottleneckFree = Math.max(bottleneckFree, now) + SERIALIZATION;
+        inFlight.add(packet);
+        ackTimes.add(bottleneckFree + DELAY);
+      }
+
+      now = ackTimes.poll();
+      final SentPacket acked = inFlight.poll();
+
+      rtt.update(now - acked.getTimeSent(), 0);
+      deliveryRate
+          .onPacketsAcked(List.of(acked), now, rtt.getMinRtt())
+          .ifPresent(bbr::onRateSample);
+      bbr.onPacketsAcked(List.of(acked), now);
+
+      modes.add(bbr.getMode());
+    }
+  }
+
+  private void send(final SentPacket packet) {
+    deliveryRate.onPacketSent(packet, bbr.getBytesInFlight());
+    bbr.onPacketSent(packet);
+  }
+
+  private SentPacket packet(final long pn, final long timeSent) {
+    return new SentPacket(pn, List.of(PingFrame.INSTANCE), timeSent, MDS);
+  }
+}
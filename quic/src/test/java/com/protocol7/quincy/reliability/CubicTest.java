@@ -0,0 +1,229 @@
+package com.protocol7.quincy.reliability;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.protocol.frames.PingFrame;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class CubicTest {
+
+  private static final int MDS = 1200;
+
+  private final RttEstimator rtt = new RttEstimator();
+  private final Cubic cubic = new Cubic(MDS, rtt, false);
+
+  private long pn;
+  private long now = MILLISECONDS.toNanos(1000);
+
+  @Test
+  public void initialWindow() {
+    assertEquals(12000, cubic.getCongestionWindow());
+    assertEquals(Long.MAX_VALUE, cubic.getSsthresh());
+  }
+
+  @Test
+  public void slowStart() {
+    round(100);
+
+    assertEquals(24000, cubic.getCongestionWindow());
+    assertEquals(0, cubic.getBytesInFlight());
+  }
+
+  @Test
+  public void slowStartBurstLimited() {
+    final List<SentPacket> packets = send(10);
+    cubic.onPacketsAcked(packets, now);
+
+    // at most L packets per ack
+    assertEquals(12000 + Cubic.L * MDS, cubic.getCongestionWindow());
+  }
+
+  @Test
+  public void slowStartPacedNotBurstLimited() {
+    final Cubic paced = new Cubic(MDS, rtt, true);
+    final List<SentPacket> packets = send(10);
+    packets.forEach(paced::onPacketSent);
+    paced.onPacketsAcked(packets, now);
+
+    assertEquals(24000, paced.getCongestionWindow());
+  }
+
+  @Test
+  public void lossReducesWindow() {
+    loss();
+
+    assertEquals(8400, cubic.getCongestionWindow());
+    assertEquals(8400, cubic.getSsthresh());
+    assertEquals(12000, cubic.getWMax(), 0.1);
+  }
+
+  @Test
+  public void fastConvergence() {
+    loss();
+    now += MILLISECONDS.toNanos(100);
+    // the window has not recovered to the previous plateau
+    loss();
+
+    assertEquals(8400 * (1 + Cubic.BETA) / 2, cubic.getWMax(), 0.1);
+    assertEquals((long) (8400 * Cubic.BETA), cubic.getCongestionWindow());
+  }
+
+  @Test
+  public void minimumWindow() {
+    for (int i = 0; i < 10; i++) {
+      now += MILLISECONDS.toNanos(100);
+      loss();
+    }
+
+    assertEquals(2 * MDS, cubic.getCongestionWindow());
+  }
+
+  @Test
+  public void noGrowthDuringRecovery() {
+    final List<SentPacket> packets = send(2);
+    now += MILLISECONDS.toNanos(100);
+    cubic.onPacketsLost(packets.subList(0, 1), now);
+    cubic.onPacketsAcked(packets.subList(1, 2), now);
+
+    assertEquals(8400, cubic.getCongestionWindow());
+  }
+
+  @Test
+  public void concaveThenConvex() {
+    // grow the window in slow start, for cubic growth to dominate the Reno-friendly region
+    for (int i = 0; i < 3; i++) {
+      round(100);
+    }
+    assertEquals(96000, cubic.getCongestionWindow());
+
+    final long lossTime = now;
+    loss();
+    assertEquals(67200, cubic.getCongestionWindow());
+
+    // packets sent before the loss was detected do not grow the window
+    round(200);
+    assertEquals(67200, cubic.getCongestionWindow());
+
+    // the epoch starts with the first ack, the whole round is acked at the start of the curve
+    round(200);
+
+    // K = cbrt((96000 - 67200) / (0.4 * 1200)) = 3.9 s
+    final long k = MILLISECONDS.toNanos(3915);
+    long previousGrowth = Long.MAX_VALUE;
+    while (now < lossTime + k - MILLISECONDS.toNanos(500)) {
+      final long before = cubic.getCongestionWindow();
+      round(200);
+      final long growth = cubic.getCongestionWindow() - before;
+
+      // concave, slowing down when approaching the window at the time of the loss
+      assertTrue(growth <= previousGrowth);
+      previousGrowth = growth;
+    }
+
+    while (now < lossTime + k) {
+      round(200);
+    }
+    assertEquals(96000, cubic.getCongestionWindow(), 4000);
+
+    // convex, probing for more bandwidth faster the longer it has been since the loss
+    while (now < lossTime + k + MILLISECONDS.toNanos(4000)) {
+      round(200);
+    }
+    assertTrue(cubic.getCongestionWindow() > 115000);
+  }
+
+  @Test
+  public void renoFriendly() {
+    loss();
+
+    // on a short RTT the cubic function barely moves, while Reno would grow each round
+    for (int i = 0; i < 50; i++) {
+      round(1);
+    }
+
+    final long reno = 8400 + (long) (40 * Cubic.ALPHA * MDS);
+    assertTrue(cubic.getCongestionWindow() >= reno);
+  }
+
+  @Test
+  public void hystartLeavesSlowStartOnRttIncrease() {
+    round(100);
+    assertFalse(cubic.isInCss());
+
+    round(120);
+    assertTrue(cubic.isInCss());
+    assertEquals(Long.MAX_VALUE, cubic.getSsthresh());
+
+    // conservative slow start grows a quarter as fast
+    final long before = cubic.getCongestionWindow();
+    round(120);
+    assertEquals(before + before / Cubic.CSS_GROWTH_DIVISOR, cubic.getCongestionWindow(), MDS);
+
+    for (int i = 0; i < Cubic.CSS_ROUNDS - 1; i++) {
+      round(120);
+    }
+
+    // left slow start without any loss
+    assertFalse(cubic.isInCss());
+    assertTrue(cubic.getSsthresh() < Long.MAX_VALUE);
+  }
+
+  @Test
+  public void hystartSpuriousRttIncrease() {
+    round(100);
+    round(120);
+    assertTrue(cubic.isInCss());
+
+    round(100);
+    assertFalse(cubic.isInCss());
+    assertEquals(Long.MAX_VALUE, cubic.getSsthresh());
+  }
+
+  @Test
+  public void persistentCongestion() {
+    loss();
+    cubic.onPersistentCongestion();
+
+    assertEquals(2 * MDS, cubic.getCongestionWindow());
+  }
+
+  @Test
+  public void discarded() {
+    final List<SentPacket> packets = send(2);
+    cubic.onPacketsDiscarded(packets);
+
+    assertEquals(0, cubic.getBytesInFlight());
+    assertEquals(12000, cubic.getCongestionWindow());
+  }
+
+  /** Send a window worth of packets and get them all acked one RTT later */
+  private void round(final long rttMs) {
+    final List<SentPacket> packets = send((int) (cubic.getCongestionWindow() / MDS));
+    now += MILLISECONDS.toNanos(rttMs);
+
+    for (final SentPacket packet : packets) {
+      rtt.update(MILLISECONDS.toNanos(rttMs), 0);
+      cubic.onPacketsAcked(List.of(packet), now);
+    }
+  }
+
+  private void loss() {
+    final List<SentPacket> packets = send(1);
+    cubic.onPacketsLost(packets, now);
+  }
+
+  private List<SentPacket> send(final int count) {
+    final List<SentPacket> packets = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final SentPacket packet = new SentPacket(pn++, List.of(PingFrame.INSTANCE), now, MDS);
+      cubic.onPacketSent(packet);
+      packets.add(packet);
+    }
+    return packets;
+  }
+}
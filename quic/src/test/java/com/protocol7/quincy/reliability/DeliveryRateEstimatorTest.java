@@ -0,0 +1,98 @@
+package com.protocol7.quincy.reliability;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.protocol.frames.PingFrame;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Test;
+
+public class DeliveryRateEstimatorTest {
+
+  private final DeliveryRateEstimator estimator = new DeliveryRateEstimator();
+
+  private long inFlight;
+
+  @Test
+  public void deliveryState() {
+    final SentPacket first = send(1, ms(0));
+    final SentPacket second = send(2, ms(5));
+
+    assertEquals(0, second.getDelivered());
+    assertEquals(ms(0), second.getFirstSentTime());
+    assertEquals(ms(0), second.getDeliveredTime());
+    assertFalse(second.isAppLimited());
+
+    ack(ms(50), first);
+    final SentPacket third = send(3, ms(50));
+    assertEquals(1000, third.getDelivered());
+    assertEquals(ms(50), third.getDeliveredTime());
+  }
+
+  @Test
+  public void rate() {
+    final List<SentPacket> packets = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      packets.add(send(i, ms(i)));
+    }
+
+    RateSample sample = null;
+    for (int i = 0; i < 10; i++) {
+      sample = ack(ms(50 + 2 * i), packets.get(i)).get();
+    }
+
+    // the acks are spaced further apart than the sends, 10000 bytes over 68 ms
+    assertEquals(10000, sample.getDelivered());
+    assertEquals(0, sample.getPriorDelivered());
+    assertEquals(ms(68), sample.getInterval());
+    assertEquals((long) (10000 / 0.068), sample.getDeliveryRate());
+    assertEquals(ms(59), sample.getRtt());
+  }
+
+  @Test
+  public void intervalShorterThanMinRtt() {
+    final SentPacket packet = send(1, ms(0));
+
+    final RateSample sample = estimator.onPacketsAcked(List.of(packet), ms(10), ms(20)).get();
+
+    assertEquals(0, sample.getDeliveryRate());
+    assertEquals(1000, sample.getTotalDelivered());
+  }
+
+  @Test
+  public void appLimited() {
+    estimator.onAppLimited(0);
+    final SentPacket packet = send(1, ms(0));
+    assertTrue(packet.isAppLimited());
+
+    ack(ms(50), packet);
+
+    // everything in flight when the sender ran out of data has been delivered
+    assertFalse(send(2, ms(50)).isAppLimited());
+  }
+
+  @Test
+  public void nothingAcked() {
+    assertEquals(Optional.empty(), estimator.onPacketsAcked(List.of(), ms(0), 0));
+  }
+
+  private SentPacket send(final long pn, final long time) {
+    final SentPacket packet = new SentPacket(pn, List.of(PingFrame.INSTANCE), time, 1000);
+    estimator.onPacketSent(packet, inFlight);
+    inFlight += packet.getSize();
+    return packet;
+  }
+
+  private Optional<RateSample> ack(final long time, final SentPacket packet) {
+    inFlight -= packet.getSize();
+    return estimator.onPacketsAcked(List.of(packet), time, 0);
+  }
+
+  private static long ms(final long ms) {
+    return MILLISECONDS.toNanos(ms);
+  }
+}
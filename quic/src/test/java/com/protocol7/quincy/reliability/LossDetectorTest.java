@@ -0,0 +1,542 @@
+package com.protocol7.quincy.reliability;
+
+import static com.protocol7.quincy.protocol.ConnectionId.random;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.protocol7.quincy.FrameSender;
+import com.protocol7.quincy.protocol.Version;
+import com.protocol7.quincy.protocol.frames.AckFrame;
+import com.protocol7.quincy.protocol.frames.AckRange;
+import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.MaxDataFrame;
+import com.protocol7.quincy.protocol.frames.PaddingFrame;
+import com.protocol7.quincy.protocol.frames.PingFrame;
+import com.protocol7.quincy.protocol.packets.FullPacket;
+import com.protocol7.quincy.protocol.packets.InitialPacket;
+import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.tls.EncryptionLevel;
+import com.protocol7.quincy.utils.Ticker;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LossDetectorTest {
+
+  private static final long MAX_ACK_DELAY = 25;
+
+  @Mock private FrameSender frameSender;
+  @Mock private Timer timer;
+  @Mock private Ticker ticker;
+  @Mock private Timeout timeout;
+  @Mock private CongestionController congestionController;
+
+  private final ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
+  private long now = MILLISECONDS.toNanos(1000);
+
+  private LossDetector detector;
+
+  @Before
+  public void setUp() {
+    when(frameSender.isOpen()).thenReturn(true);
+    when(ticker.nanoTime()).thenAnswer(invocation -> now);
+    when(timer.newTimeout(taskCaptor.capture(), anyLong(), eq(NANOSECONDS))).thenReturn(timeout);
+
+    detector =
+        new LossDetector(
+            frameSender,
+            timer,
+            ticker,
+            new AckDelay(3, ticker),
+            MAX_ACK_DELAY,
+            new RttEstimator(),
+            congestionController);
+  }
+
+  @Test
+  public void noTimerWhenIdle() {
+    // ack only packets are not ack-eliciting
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, new AckFrame(0, new AckRange(1, 1))));
+
+    verify(timer, never()).newTimeout(any(TimerTask.class), anyLong(), any());
+    assertEquals(0, detector.nextDeadline());
+  }
+
+  @Test
+  public void ptoArmedOnSend() {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+
+    // smoothed RTT + 4 * RTT variance + max ack delay
+    final long pto =
+        RttEstimator.INITIAL_RTT + 2 * RttEstimator.INITIAL_RTT + MILLISECONDS.toNanos(25);
+    assertEquals(pto, detector.ptoDuration(EncryptionLevel.OneRtt));
+    verify(timer).newTimeout(any(TimerTask.class), eq(pto), eq(NANOSECONDS));
+  }
+
+  @Test
+  public void handshakePtoWithoutMaxAckDelay() {
+    assertEquals(3 * RttEstimator.INITIAL_RTT, detector.ptoDuration(EncryptionLevel.Initial));
+  }
+
+  @Test
+  public void timerNotRearmedForLaterDeadline() {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    now += MILLISECONDS.toNanos(10);
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(2)));
+
+    verify(timer, times(1)).newTimeout(any(TimerTask.class), anyLong(), eq(NANOSECONDS));
+  }
+
+  @Test
+  public void earlyTimeoutRearms() throws Exception {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    now += MILLISECONDS.toNanos(10);
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(2)));
+
+    // fires for the deadline of the first packet, which has since moved
+    now += detector.ptoDuration(EncryptionLevel.OneRtt) - MILLISECONDS.toNanos(10);
+    fire();
+
+    verify(frameSender, never()).send(any(EncryptionLevel.class), any(Frame.class));
+    verify(timer).newTimeout(any(TimerTask.class), eq(MILLISECONDS.toNanos(10)), eq(NANOSECONDS));
+  }
+
+  @Test
+  public void rttSample() {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    now += MILLISECONDS.toNanos(20);
+    detector.onAckReceived(ack(1, 1), EncryptionLevel.OneRtt);
+
+    assertEquals(MILLISECONDS.toNanos(20), detector.getRtt().getLatestRtt());
+    assertEquals(MILLISECONDS.toNanos(20), detector.getRtt().getSmoothedRtt());
+  }
+
+  @Test
+  public void rttSampleAdjustedForAckDelay() {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    now += MILLISECONDS.toNanos(20);
+    detector.onAckReceived(ack(1, 1), EncryptionLevel.OneRtt);
+
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(2)));
+    now += MILLISECONDS.toNanos(30);
+    // 10 ms, with an ack delay exponent of 3
+    detector.onAckReceived(new AckFrame(1250, new AckRange(2, 2)), EncryptionLevel.OneRtt);
+
+    assertEquals(MILLISECONDS.toNanos(30), detector.getRtt().getLatestRtt());
+    assertEquals(MILLISECONDS.toNanos(20), detector.getRtt().getSmoothedRtt());
+    assertEquals(MILLISECONDS.toNanos(20), detector.getRtt().getMinRtt());
+  }
+
+  @Test
+  public void ackDelayCappedByMaxAckDelay() {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    now += MILLISECONDS.toNanos(20);
+    detector.onAckReceived(ack(1, 1), EncryptionLevel.OneRtt);
+
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(2)));
+    now += MILLISECONDS.toNanos(60);
+    // 40 ms, more than the max ack delay of 25 ms
+    detector.onAckReceived(new AckFrame(5000, new AckRange(2, 2)), EncryptionLevel.OneRtt);
+
+    // 7/8 * 20 + 1/8 * (60 - 25)
+    assertEquals(
+        MILLISECONDS.toNanos(20) * 7 / 8 + MILLISECONDS.toNanos(35) / 8,
+        detector.getRtt().getSmoothedRtt());
+  }
+
+  @Test
+  public void initialAckDelayIgnored() {
+    detector.onPacketSent(EncryptionLevel.Initial, initial(1, PingFrame.INSTANCE));
+    now += MILLISECONDS.toNanos(20);
+    detector.onAckReceived(new AckFrame(0, new AckRange(1, 1)), EncryptionLevel.Initial);
+
+    detector.onPacketSent(EncryptionLevel.Initial, initial(2, PingFrame.INSTANCE));
+    now += MILLISECONDS.toNanos(30);
+    detector.onAckReceived(new AckFrame(1250, new AckRange(2, 2)), EncryptionLevel.Initial);
+
+    assertEquals(
+        MILLISECONDS.toNanos(20) * 7 / 8 + MILLISECONDS.toNanos(30) / 8,
+        detector.getRtt().getSmoothedRtt());
+  }
+
+  @Test
+  public void noRttSampleForNonAckEliciting() {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, new PaddingFrame(1)));
+    now += MILLISECONDS.toNanos(20);
+    detector.onAckReceived(ack(1, 1), EncryptionLevel.OneRtt);
+
+    assertEquals(0, detector.getRtt().getLatestRtt());
+  }
+
+  @Test
+  public void packetThreshold() {
+    for (int pn = 1; pn <= 4; pn++) {
+      detector.onPacketSent(EncryptionLevel.OneRtt, packet(pn, f(pn)));
+    }
+
+    detector.onAckReceived(ack(4, 4), EncryptionLevel.OneRtt);
+
+    // only the packet 3 packets before the acked one is lost
+    verify(frameSender).send(EncryptionLevel.OneRtt, f(1));
+    verify(frameSender, times(1)).send(any(EncryptionLevel.class), any(Frame.class));
+    assertFalse(detector.getBuffer(EncryptionLevel.OneRtt).contains(1));
+    assertTrue(detector.getBuffer(EncryptionLevel.OneRtt).contains(2));
+    assertTrue(detector.getBuffer(EncryptionLevel.OneRtt).contains(3));
+  }
+
+  @Test
+  public void notLostIfSentAfterAckedPacket() {
+    // an ack-only packet sent ahead of packets held back by the congestion window
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(5, new AckFrame(0, new AckRange(1, 1))));
+    now += MILLISECONDS.toNanos(1);
+    for (int pn = 1; pn <= 4; pn++) {
+      detector.onPacketSent(EncryptionLevel.OneRtt, packet(pn, f(pn)));
+    }
+
+    detector.onAckReceived(ack(5, 5), EncryptionLevel.OneRtt);
+
+    verify(frameSender, never()).send(any(EncryptionLevel.class), any(Frame.class));
+    assertTrue(detector.getBuffer(EncryptionLevel.OneRtt).contains(1));
+  }
+
+  @Test
+  public void timeThreshold() throws Exception {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(2)));
+    now += MILLISECONDS.toNanos(8);
+    detector.onAckReceived(ack(2, 2), EncryptionLevel.OneRtt);
+
+    // not yet lost, loss timer armed for 9/8 RTT after the packet was sent
+    verify(frameSender, never()).send(any(EncryptionLevel.class), any(Frame.class));
+    assertEquals(now + MILLISECONDS.toNanos(1), detector.nextDeadline());
+
+    now += MILLISECONDS.toNanos(1);
+    fire();
+
+    verify(frameSender).send(EncryptionLevel.OneRtt, f(1));
+    assertTrue(detector.getBuffer(EncryptionLevel.OneRtt).isEmpty());
+  }
+
+  @Test
+  public void pto() throws Exception {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    final long pto = detector.ptoDuration(EncryptionLevel.OneRtt);
+
+    now += pto;
+    fire();
+
+    // probe with the unacked data, which stays in flight
+    verify(frameSender).send(EncryptionLevel.OneRtt, f(1));
+    assertTrue(detector.getBuffer(EncryptionLevel.OneRtt).contains(1));
+
+    // exponential backoff
+    assertEquals(2 * pto, detector.ptoDuration(EncryptionLevel.OneRtt));
+  }
+
+  @Test
+  public void ackResetsPtoBackoff() throws Exception {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    final long pto = detector.ptoDuration(EncryptionLevel.OneRtt);
+    now += pto;
+    fire();
+
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(1)));
+    detector.onAckReceived(ack(1, 2), EncryptionLevel.OneRtt);
+
+    assertTrue(detector.ptoDuration(EncryptionLevel.OneRtt) < pto);
+    assertEquals(0, detector.nextDeadline());
+    verify(timeout).cancel();
+  }
+
+  @Test
+  public void ackInOtherSpace() {
+    detector.onPacketSent(EncryptionLevel.Initial, initial(1, PingFrame.INSTANCE));
+
+    detector.onAckReceived(ack(1, 1), EncryptionLevel.OneRtt);
+
+    assertTrue(detector.getBuffer(EncryptionLevel.Initial).contains(1));
+  }
+
+  @Test
+  public void discard() {
+    detector.onPacketSent(EncryptionLevel.Initial, initial(1, PingFrame.INSTANCE));
+
+    detector.discard(EncryptionLevel.Initial);
+
+    assertTrue(detector.getBuffer(EncryptionLevel.Initial).isEmpty());
+    assertEquals(0, detector.nextDeadline());
+    verify(timeout).cancel();
+  }
+
+  @Test
+  public void discardOnlyOnce() throws Exception {
+    detector.discard(EncryptionLevel.Initial);
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    final long pto = detector.ptoDuration(EncryptionLevel.OneRtt);
+    now += pto;
+    fire();
+
+    // does not reset the PTO backoff again
+    detector.discard(EncryptionLevel.Initial);
+
+    assertEquals(2 * pto, detector.ptoDuration(EncryptionLevel.OneRtt));
+  }
+
+  @Test
+  public void notTrackedOnceDiscarded() {
+    detector.discard(EncryptionLevel.Initial);
+
+    detector.onPacketSent(EncryptionLevel.Initial, initial(1, PingFrame.INSTANCE));
+
+    assertTrue(detector.getBuffer(EncryptionLevel.Initial).isEmpty());
+    assertEquals(0, detector.nextDeadline());
+  }
+
+  @Test
+  public void close() throws Exception {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+
+    detector.close();
+    verify(timeout).cancel();
+
+    now += detector.ptoDuration(EncryptionLevel.OneRtt);
+    fire();
+
+    verify(frameSender, never()).send(any(EncryptionLevel.class), any(Frame.class));
+  }
+
+  @Test
+  public void connectionClosed() throws Exception {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    when(frameSender.isOpen()).thenReturn(false);
+
+    now += detector.ptoDuration(EncryptionLevel.OneRtt);
+    fire();
+
+    verify(frameSender, never()).send(any(EncryptionLevel.class), any(Frame.class));
+  }
+
+  @Test
+  public void controllerNotifiedOfAckedPackets() {
+    final FullPacket packet = packet(1, f(1));
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet);
+    // not ack-eliciting, does not count towards bytes in flight
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, new PaddingFrame(1)));
+
+    verify(congestionController).onPacketSent(argThat(sent -> sent.getPacketNumber() == 1));
+    verify(congestionController, times(1)).onPacketSent(any(SentPacket.class));
+
+    now += MILLISECONDS.toNanos(20);
+    detector.onAckReceived(ack(1, 2), EncryptionLevel.OneRtt);
+
+    verify(congestionController).onPacketsAcked(argThat(packets(1)), eq(now));
+  }
+
+  @Test
+  public void ackListener() {
+    final List<List<SentPacket>> notified = new ArrayList<>();
+    detector.addAckListener((level, packets) -> notified.add(packets));
+
+    for (int pn = 1; pn <= 3; pn++) {
+      detector.onPacketSent(EncryptionLevel.OneRtt, packet(pn, f(pn)));
+    }
+
+    detector.onAckReceived(
+        new AckFrame(0, new AckRange(3, 3), new AckRange(1, 1)), EncryptionLevel.OneRtt);
+    // packet 1 and 3 are already acked
+    detector.onAckReceived(ack(1, 3), EncryptionLevel.OneRtt);
+    detector.onAckReceived(ack(1, 3), EncryptionLevel.OneRtt);
+
+    assertEquals(2, notified.size());
+    // ranges are processed largest first
+    assertTrue(packets(3, 1).matches(notified.get(0)));
+    assertTrue(packets(2).matches(notified.get(1)));
+  }
+
+  @Test
+  public void controllerGetsRateSample() {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+
+    now += MILLISECONDS.toNanos(20);
+    detector.onAckReceived(ack(1, 1), EncryptionLevel.OneRtt);
+
+    verify(congestionController)
+        .onRateSample(argThat(sample -> sample.getDelivered() == sample.getTotalDelivered()));
+  }
+
+  @Test
+  public void controllerNotifiedOfLostPackets() {
+    for (int pn = 1; pn <= 4; pn++) {
+      detector.onPacketSent(EncryptionLevel.OneRtt, packet(pn, f(pn)));
+    }
+
+    detector.onAckReceived(ack(4, 4), EncryptionLevel.OneRtt);
+
+    verify(congestionController).onPacketsAcked(argThat(packets(4)), eq(now));
+    verify(congestionController).onPacketsLost(argThat(packets(1)), eq(now));
+    verify(congestionController, never()).onPersistentCongestion();
+  }
+
+  @Test
+  public void controllerNotifiedOfDiscardedPackets() {
+    detector.onPacketSent(EncryptionLevel.Initial, initial(1, PingFrame.INSTANCE));
+
+    detector.discard(EncryptionLevel.Initial);
+
+    verify(congestionController).onPacketsDiscarded(argThat(packets(1)));
+  }
+
+  @Test
+  public void reset() {
+    detector.onPacketSent(EncryptionLevel.Initial, initial(0, PingFrame.INSTANCE));
+    detector.onPacketSent(EncryptionLevel.Initial, initial(1, PingFrame.INSTANCE));
+
+    detector.reset(EncryptionLevel.Initial);
+
+    verify(congestionController).onPacketsDiscarded(argThat(packets(0, 1)));
+    assertTrue(detector.getBuffer(EncryptionLevel.Initial).isEmpty());
+    assertEquals(0, detector.nextDeadline());
+
+    // unlike discarding, packets are still tracked after a reset
+    detector.onPacketSent(EncryptionLevel.Initial, initial(0, PingFrame.INSTANCE));
+    assertTrue(detector.getBuffer(EncryptionLevel.Initial).contains(0));
+  }
+
+  @Test
+  public void reusedPacketNumber() {
+    detector.onPacketSent(EncryptionLevel.Initial, initial(0, PingFrame.INSTANCE));
+    detector.onPacketSent(EncryptionLevel.Initial, initial(0, PingFrame.INSTANCE));
+
+    // the replaced packet is no longer in flight
+    verify(congestionController).onPacketsDiscarded(argThat(packets(0)));
+    verify(congestionController, times(2)).onPacketSent(any());
+    assertEquals(1, detector.getBuffer(EncryptionLevel.Initial).size());
+  }
+
+  @Test
+  public void canSend() {
+    when(congestionController.canSend()).thenReturn(false);
+
+    assertFalse(detector.canSend(packet(1, f(1))));
+    // acks are not congestion controlled
+    assertTrue(detector.canSend(packet(1, new AckFrame(0, new AckRange(1, 1)))));
+  }
+
+  @Test
+  public void probeIgnoresCongestionWindow() throws Exception {
+    when(congestionController.canSend()).thenReturn(false);
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+
+    now += detector.ptoDuration(EncryptionLevel.OneRtt);
+    fire();
+
+    assertTrue(detector.canSend(packet(2, f(1))));
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(1)));
+    assertFalse(detector.canSend(packet(3, f(2))));
+  }
+
+  @Test
+  public void persistentCongestion() {
+    // RTT sample of 10 ms, persistent congestion after 3 * (10 + 4 * 5 + 25) ms
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    now += MILLISECONDS.toNanos(10);
+    detector.onAckReceived(ack(1, 1), EncryptionLevel.OneRtt);
+
+    now += MILLISECONDS.toNanos(1);
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(2)));
+    now += MILLISECONDS.toNanos(200);
+    for (int pn = 3; pn <= 6; pn++) {
+      detector.onPacketSent(EncryptionLevel.OneRtt, packet(pn, f(pn)));
+    }
+
+    detector.onAckReceived(ack(6, 6), EncryptionLevel.OneRtt);
+
+    verify(congestionController).onPacketsLost(argThat(packets(2, 3)), eq(now));
+    verify(congestionController).onPersistentCongestion();
+  }
+
+  @Test
+  public void noPersistentCongestionIfAckedInBetween() {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    now += MILLISECONDS.toNanos(10);
+    detector.onAckReceived(ack(1, 1), EncryptionLevel.OneRtt);
+
+    now += MILLISECONDS.toNanos(1);
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(2)));
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(3, f(3)));
+    now += MILLISECONDS.toNanos(200);
+    for (int pn = 4; pn <= 7; pn++) {
+      detector.onPacketSent(EncryptionLevel.OneRtt, packet(pn, f(pn)));
+    }
+
+    detector.onAckReceived(
+        new AckFrame(0, new AckRange(3, 3), new AckRange(7, 7)), EncryptionLevel.OneRtt);
+
+    verify(congestionController).onPacketsLost(argThat(packets(2, 4)), eq(now));
+    verify(congestionController, never()).onPersistentCongestion();
+  }
+
+  @Test
+  public void noPersistentCongestionWithoutRttSample() {
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(1, f(1)));
+    now += MILLISECONDS.toNanos(5000);
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(2, f(2)));
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(3, f(3)));
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(4, f(4)));
+    detector.onPacketSent(EncryptionLevel.OneRtt, packet(5, new PaddingFrame(1)));
+
+    // acking a packet that is not ack-eliciting gives no RTT sample
+    detector.onAckReceived(ack(5, 5), EncryptionLevel.OneRtt);
+
+    verify(congestionController).onPacketsLost(argThat(packets(1, 2)), eq(now));
+    verify(congestionController, never()).onPersistentCongestion();
+  }
+
+  private static ArgumentMatcher<List<SentPacket>> packets(final long... pns) {
+    return packets ->
+        Arrays.equals(pns, packets.stream().mapToLong(SentPacket::getPacketNumber).toArray());
+  }
+
+  private void fire() throws Exception {
+    taskCaptor.getValue().run(timeout);
+  }
+
+  private FullPacket packet(final long pn, final Frame... frames) {
+    return ShortPacket.create(false, random(), random(), pn, frames);
+  }
+
+  private FullPacket initial(final long pn, final Frame... frames) {
+    return InitialPacket.create(random(), random(), pn, Version.DRAFT_29, Optional.empty(), frames);
+  }
+
+  private AckFrame ack(final long smallest, final long largest) {
+    return new AckFrame(0, new AckRange(smallest, largest));
+  }
+
+  private Frame f(final long i) {
+    return new MaxDataFrame(i);
+  }
+}
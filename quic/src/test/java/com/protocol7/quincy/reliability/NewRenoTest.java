@@ -0,0 +1,135 @@
+package com.protocol7.quincy.reliability;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.protocol.frames.PingFrame;
+import java.util.List;
+import org.junit.Test;
+
+public class NewRenoTest {
+
+  private static final int MDS = 1200;
+
+  private final NewReno reno = new NewReno(MDS);
+
+  @Test
+  public void initialWindow() {
+    assertEquals(12000, reno.getCongestionWindow());
+    assertEquals(14720, NewReno.initialWindow(1472));
+    assertEquals(2 * 9000, NewReno.initialWindow(9000));
+  }
+
+  @Test
+  public void bytesInFlight() {
+    final SentPacket packet = packet(1, 0, 1000);
+    reno.onPacketSent(packet);
+    assertEquals(1000, reno.getBytesInFlight());
+
+    reno.onPacketsAcked(List.of(packet), 10);
+    assertEquals(0, reno.getBytesInFlight());
+  }
+
+  @Test
+  public void canSend() {
+    for (int pn = 0; pn < 10; pn++) {
+      assertTrue(reno.canSend());
+      reno.onPacketSent(packet(pn, 0, MDS));
+    }
+    assertFalse(reno.canSend());
+  }
+
+  @Test
+  public void slowStart() {
+    final SentPacket packet = packet(1, 0, MDS);
+    reno.onPacketSent(packet);
+    reno.onPacketsAcked(List.of(packet), 10);
+
+    assertEquals(12000 + MDS, reno.getCongestionWindow());
+  }
+
+  @Test
+  public void lossHalvesWindow() {
+    final SentPacket lost = packet(1, 0, MDS);
+    reno.onPacketSent(lost);
+    reno.onPacketsLost(List.of(lost), 10);
+
+    assertEquals(0, reno.getBytesInFlight());
+    assertEquals(6000, reno.getCongestionWindow());
+    assertEquals(6000, reno.getSsthresh());
+  }
+
+  @Test
+  public void singleReductionPerRecovery() {
+    final SentPacket lost1 = packet(1, 0, MDS);
+    final SentPacket lost2 = packet(2, 5, MDS);
+    reno.onPacketSent(lost1);
+    reno.onPacketSent(lost2);
+
+    reno.onPacketsLost(List.of(lost1), 10);
+    // sent before recovery started
+    reno.onPacketsLost(List.of(lost2), 20);
+
+    assertEquals(6000, reno.getCongestionWindow());
+  }
+
+  @Test
+  public void noGrowthDuringRecovery() {
+    final SentPacket lost = packet(1, 0, MDS);
+    final SentPacket acked = packet(2, 5, MDS);
+    reno.onPacketSent(lost);
+    reno.onPacketSent(acked);
+
+    reno.onPacketsLost(List.of(lost), 10);
+    reno.onPacketsAcked(List.of(acked), 20);
+
+    assertEquals(6000, reno.getCongestionWindow());
+  }
+
+  @Test
+  public void congestionAvoidance() {
+    final SentPacket lost = packet(1, 0, MDS);
+    reno.onPacketSent(lost);
+    reno.onPacketsLost(List.of(lost), 10);
+
+    // sent after recovery started, ends recovery
+    final SentPacket acked = packet(2, 20, MDS);
+    reno.onPacketSent(acked);
+    reno.onPacketsAcked(List.of(acked), 30);
+
+    assertEquals(6000 + MDS * MDS / 6000, reno.getCongestionWindow());
+  }
+
+  @Test
+  public void minimumWindow() {
+    for (int i = 0; i < 10; i++) {
+      final SentPacket lost = packet(i, i * 10, MDS);
+      reno.onPacketSent(lost);
+      reno.onPacketsLost(List.of(lost), i * 10 + 5);
+    }
+
+    assertEquals(2 * MDS, reno.getCongestionWindow());
+  }
+
+  @Test
+  public void persistentCongestion() {
+    reno.onPersistentCongestion();
+
+    assertEquals(2 * MDS, reno.getCongestionWindow());
+  }
+
+  @Test
+  public void discarded() {
+    final SentPacket packet = packet(1, 0, 1000);
+    reno.onPacketSent(packet);
+    reno.onPacketsDiscarded(List.of(packet));
+
+    assertEquals(0, reno.getBytesInFlight());
+    assertEquals(12000, reno.getCongestionWindow());
+  }
+
+  private SentPacket packet(final long pn, final long timeSent, final int size) {
+    return new SentPacket(pn, List.of(PingFrame.INSTANCE), timeSent, size);
+  }
+}
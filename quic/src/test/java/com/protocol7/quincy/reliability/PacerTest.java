@@ -0,0 +1,96 @@
+package com.protocol7.quincy.reliability;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PacerTest {
+
+  private static final int MDS = 1000;
+
+  @Mock private CongestionController congestionController;
+
+  private final RttEstimator rtt = new RttEstimator();
+  private Pacer pacer;
+
+  private long now = MILLISECONDS.toNanos(1000);
+
+  @Before
+  public void setUp() {
+    rtt.update(MILLISECONDS.toNanos(100), 0);
+    when(congestionController.getCongestionWindow()).thenReturn(16_000L);
+
+    pacer = new Pacer(congestionController, rtt, MDS, 2);
+  }
+
+  @Test
+  public void rateFromWindow() {
+    // 1.25 * 16000 bytes per 100 ms
+    assertEquals(200_000, pacer.getRate());
+  }
+
+  @Test
+  public void rateFromController() {
+    when(congestionController.getPacingRate()).thenReturn(500_000L);
+
+    assertEquals(500_000, pacer.getRate());
+  }
+
+  @Test
+  public void burstUpToBatch() {
+    send();
+    send();
+
+    // 5 ms until the next packet can go at 200 kB/s
+    assertEquals(MILLISECONDS.toNanos(5), pacer.timeUntilSend(MDS, now));
+
+    now += MILLISECONDS.toNanos(5);
+    assertEquals(0, pacer.timeUntilSend(MDS, now));
+  }
+
+  @Test
+  public void burstUpToTimerGranularity() {
+    // 1 ms at 20 MB/s is more than the batch
+    when(congestionController.getPacingRate()).thenReturn(20_000_000L);
+    assertEquals(20_000, pacer.getCapacity());
+
+    for (int i = 0; i < 20; i++) {
+      send();
+    }
+    assertEquals(50_000, pacer.timeUntilSend(MDS, now));
+  }
+
+  @Test
+  public void idleDoesNotOverfill() {
+    send();
+    send();
+
+    now += MILLISECONDS.toNanos(1000);
+    send();
+    send();
+
+    assertEquals(MILLISECONDS.toNanos(5), pacer.timeUntilSend(MDS, now));
+  }
+
+  @Test
+  public void notPacedWithoutRttSample() {
+    final Pacer unsampled = new Pacer(congestionController, new RttEstimator(), MDS, 1);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(0, unsampled.timeUntilSend(MDS, now));
+      unsampled.onPacketSent(MDS, now);
+    }
+  }
+
+  private void send() {
+    assertEquals(0, pacer.timeUntilSend(MDS, now));
+    pacer.onPacketSent(MDS, now);
+  }
+}
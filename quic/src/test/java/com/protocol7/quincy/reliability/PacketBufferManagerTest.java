@@ -8,21 +8,28 @@ import static org.mockito.Mockito.*;
 
 import com.protocol7.quincy.FrameSender;
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.connection.State;
 import com.protocol7.quincy.protocol.Version;
 import com.protocol7.quincy.protocol.frames.AckFrame;
 import com.protocol7.quincy.protocol.frames.AckRange;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.PaddingFrame;
 import com.protocol7.quincy.protocol.frames.PingFrame;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
+import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.HandshakePacket;
 import com.protocol7.quincy.protocol.packets.InitialPacket;
 import com.protocol7.quincy.protocol.packets.Packet;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
 import com.protocol7.quincy.tls.EncryptionLevel;
+import com.protocol7.quincy.tls.aead.TestAEAD;
 import com.protocol7.quincy.utils.Ticker;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import org.junit.Before;
@@ -42,8 +49,12 @@ public class PacketBufferManagerTest {
   @Mock private Ticker ticker;
   @Mock private Timeout timeout;
 
+  // as used by connections, the maximum packet size less room for the header
+  private static final int MAX_PACKET_SIZE = 1452;
+  private static final int MAX_PAYLOAD_LENGTH = MAX_PACKET_SIZE - 64;
+
+  private LossDetector lossDetector;
   private PacketBufferManager buffer;
-  private TimerTask resendTask;
 
   @Before
   public void setUp() {
@@ -53,18 +64,22 @@ public class PacketBufferManagerTest {
 
     when(ticker.nanoTime()).thenReturn(2000_0000_0000L);
 
-    final ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
-    when(timer.newTimeout(taskCaptor.capture(), anyLong(), any(TimeUnit.class))).thenReturn(null);
-
-    when(timeout.timer()).thenReturn(timer);
+    when(timer.newTimeout(any(TimerTask.class), anyLong(), any(TimeUnit.class)))
+        .thenReturn(timeout);
 
-    buffer = new PacketBufferManager(ackDelay, frameSender, timer, ticker);
-
-    resendTask = taskCaptor.getValue();
+    lossDetector =
+        new LossDetector(
+            frameSender, timer, ticker, ackDelay, 25, new RttEstimator(), new NewReno(1452));
+    buffer =
+        new PacketBufferManager(
+            ackDelay, lossDetector, 32, frameSender, timer, 5, 25, level -> MAX_PAYLOAD_LENGTH);
+    lossDetector.addAckListener(buffer);
   }
 
   @Test
   public void dontAckOnlyAcks() {
+    handshakeDone();
+
     final Packet ackPacket = packet(1, new AckFrame(123, new AckRange(7, 8)));
 
     buffer.onReceivePacket(ackPacket, ctx);
@@ -76,26 +91,190 @@ public class PacketBufferManagerTest {
     final Packet pingPacket = packet(2, PingFrame.INSTANCE);
 
     buffer.onReceivePacket(pingPacket, ctx);
+    fireAckTimer();
 
-    final AckFrame actual = (AckFrame) verifySent();
+    final AckFrame actual = (AckFrame) verifySentByTimer();
 
     assertEquals(new AckRange(1, 2), actual.getRanges().get(0));
   }
 
   @Test
   public void ackOnPing() {
+    handshakeDone();
+
     final Packet pingPacket = packet(2, PingFrame.INSTANCE);
 
     buffer.onReceivePacket(pingPacket, ctx);
 
-    final AckFrame actual = (AckFrame) verifySent();
+    // delayed, waiting for another packet to arrive
+    verify(ctx, never()).send(any(EncryptionLevel.class), any(Frame.class));
+
+    fireAckTimer();
+
+    final AckFrame actual = (AckFrame) verifySentByTimer();
     assertEquals(67, actual.getAckDelay());
     assertEquals(new AckRange(2, 2), actual.getRanges().get(0));
   }
 
+  @Test
+  public void ackEverySecondPacket() {
+    handshakeDone();
+
+    buffer.onReceivePacket(packet(1, PingFrame.INSTANCE), ctx);
+    buffer.onReceivePacket(packet(2, PingFrame.INSTANCE), ctx);
+
+    assertEquals(List.of(new AckRange(1, 2)), ((AckFrame) verifySent()).getRanges());
+
+    buffer.onReceivePacket(packet(3, PingFrame.INSTANCE), ctx);
+    buffer.onReceivePacket(packet(4, PingFrame.INSTANCE), ctx);
+
+    final ArgumentCaptor<Frame> captor = ArgumentCaptor.forClass(Frame.class);
+    verify(ctx, times(2)).send(any(EncryptionLevel.class), captor.capture());
+    assertEquals(List.of(new AckRange(1, 4)), ((AckFrame) captor.getValue()).getRanges());
+  }
+
+  @Test
+  public void ackGapImmediately() {
+    handshakeDone();
+
+    buffer.onReceivePacket(packet(1, PingFrame.INSTANCE), ctx);
+    verify(ctx, never()).send(any(EncryptionLevel.class), any(Frame.class));
+
+    buffer.onReceivePacket(packet(3, PingFrame.INSTANCE), ctx);
+
+    assertEquals(
+        List.of(new AckRange(3, 3), new AckRange(1, 1)), ((AckFrame) verifySent()).getRanges());
+  }
+
+  @Test
+  public void ackImmediatelyBeforeHandshakeDone() {
+    when(ctx.getState()).thenReturn(State.BeforeDone);
+
+    buffer.onReceivePacket(packet(1, PingFrame.INSTANCE), ctx);
+
+    assertEquals(List.of(new AckRange(1, 1)), ((AckFrame) verifySent()).getRanges());
+  }
+
+  @Test
+  public void ackInitialImmediately() {
+    buffer.onReceivePacket(ip(1, PingFrame.INSTANCE), ctx);
+
+    final ArgumentCaptor<Frame> captor = ArgumentCaptor.forClass(Frame.class);
+    verify(ctx).send(eq(EncryptionLevel.Initial), captor.capture());
+    assertEquals(List.of(new AckRange(1, 1)), ((AckFrame) captor.getValue()).getRanges());
+    verify(timer, never()).newTimeout(any(TimerTask.class), eq(20L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void delayedAckPiggybacked() {
+    handshakeDone();
+
+    buffer.onReceivePacket(packet(1, PingFrame.INSTANCE), ctx);
+
+    buffer.beforeSendPacket(packet(10, PingFrame.INSTANCE), ctx);
+    assertEquals(List.of(new AckRange(1, 1)), ackRanges((FullPacket) verifyNext(1)));
+
+    // already sent with the packet, the timer does not send another ack
+    fireAckTimer();
+    verify(frameSender, never()).send(any(EncryptionLevel.class), any(Frame.class));
+  }
+
+  @Test
+  public void piggybackedAckFitsPacket() {
+    handshakeDone();
+
+    // as many ranges as are kept, each far apart
+    for (int i = 0; i < 32; i++) {
+      buffer.onReceivePacket(packet(i * 200L, PingFrame.INSTANCE), ctx);
+    }
+
+    // a full stream packet, as sized by the stream manager
+    final byte[] data = new byte[MAX_PACKET_SIZE - 128];
+    buffer.beforeSendPacket(packet(10, new StreamFrame(0, 0, false, data)), ctx);
+
+    // after the received packets
+    final FullPacket sent = (FullPacket) verifyNext(32);
+    final List<AckRange> ranges = ackRanges(sent);
+    // the latest ranges, the oldest are left out
+    assertTrue(ranges.size() < 32);
+    assertEquals(new AckRange(31 * 200L, 31 * 200L), ranges.get(0));
+
+    final ByteBuf bb = Unpooled.buffer();
+    sent.write(bb, TestAEAD.create());
+    assertTrue(bb.readableBytes() <= MAX_PACKET_SIZE);
+  }
+
+  @Test
+  public void ackNotPiggybackedWithoutRoom() {
+    handshakeDone();
+    buffer.onReceivePacket(packet(1, PingFrame.INSTANCE), ctx);
+
+    // leaves less room than the smallest ack needs
+    final byte[] data = new byte[MAX_PAYLOAD_LENGTH - 8];
+    buffer.beforeSendPacket(packet(10, new StreamFrame(0, 0, false, data)), ctx);
+
+    final FullPacket sent = (FullPacket) verifyNext(1);
+    assertFalse(sent.getPayload().getFrames().stream().anyMatch(f -> f instanceof AckFrame));
+
+    // still sent by the timer
+    fireAckTimer();
+    assertEquals(List.of(new AckRange(1, 1)), ((AckFrame) verifySentByTimer()).getRanges());
+  }
+
+  @Test
+  public void ackTimerArmedOnce() {
+    handshakeDone();
+
+    buffer.onReceivePacket(packet(1, PingFrame.INSTANCE), ctx);
+    buffer.onReceivePacket(packet(2, new PaddingFrame(1)), ctx);
+    buffer.onReceivePacket(packet(3, PingFrame.INSTANCE), ctx);
+    buffer.onReceivePacket(packet(4, PingFrame.INSTANCE), ctx);
+
+    // the max ack delay, less a tick of the timer
+    verify(timer).newTimeout(any(TimerTask.class), eq(20L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void ackReordered() {
+    handshakeDone();
+
+    buffer.onReceivePacket(packet(3, PingFrame.INSTANCE), ctx);
+    buffer.onReceivePacket(packet(1, PingFrame.INSTANCE), ctx);
+    buffer.onReceivePacket(packet(2, PingFrame.INSTANCE), ctx);
+
+    // the first packet is delayed, reordered ones are acked immediately
+    final ArgumentCaptor<Frame> captor = ArgumentCaptor.forClass(Frame.class);
+    verify(ctx, times(2)).send(any(EncryptionLevel.class), captor.capture());
+
+    assertEquals(
+        List.of(new AckRange(3, 3), new AckRange(1, 1)),
+        ((AckFrame) captor.getAllValues().get(0)).getRanges());
+    assertEquals(
+        List.of(new AckRange(1, 3)), ((AckFrame) captor.getAllValues().get(1)).getRanges());
+  }
+
+  @Test
+  public void acksRetainedUntilAcked() {
+    handshakeDone();
+
+    buffer.onReceivePacket(packet(1, PingFrame.INSTANCE), ctx);
+
+    // every packet sent carries the ack, until one of them has been acked
+    buffer.beforeSendPacket(packet(10, PingFrame.INSTANCE), ctx);
+    final FullPacket sent = (FullPacket) verifyNext(1);
+    assertEquals(List.of(new AckRange(1, 1)), ackRanges(sent));
+
+    sent(sent);
+    buffer.onReceivePacket(packet(2, new AckFrame(0, new AckRange(10, 10))), ctx);
+
+    buffer.beforeSendPacket(packet(11, PingFrame.INSTANCE), ctx);
+    // packet 2 was ack-only, but is still included
+    assertEquals(List.of(new AckRange(2, 2)), ackRanges((FullPacket) verifyNext(3)));
+  }
+
   @Test
   public void ackInitial() {
-    buffer.beforeSendPacket(ip(2, new PaddingFrame(1)), ctx);
+    sent(ip(2, new PaddingFrame(1)));
 
     assertTrue(buffer.getBuffer().isEmpty());
     assertTrue(buffer.getHandshakeBuffer().isEmpty());
@@ -108,7 +287,7 @@ public class PacketBufferManagerTest {
 
   @Test
   public void ackInitialWithHandshake() {
-    buffer.beforeSendPacket(ip(2, new PaddingFrame(1)), ctx);
+    sent(ip(2, new PaddingFrame(1)));
 
     // handshake packet implicitly acks any initial packets
     buffer.onReceivePacket(hp(3, new PaddingFrame(1)), ctx);
@@ -118,7 +297,7 @@ public class PacketBufferManagerTest {
 
   @Test
   public void ackInitialWithInvalidPacketType() {
-    buffer.beforeSendPacket(ip(2, new PaddingFrame(1)), ctx);
+    sent(ip(2, new PaddingFrame(1)));
 
     buffer.onReceivePacket(packet(3, new AckFrame(123, new AckRange(2, 2))), ctx);
 
@@ -128,7 +307,7 @@ public class PacketBufferManagerTest {
 
   @Test
   public void ackHandshake() {
-    buffer.beforeSendPacket(hp(2, new PaddingFrame(1)), ctx);
+    sent(hp(2, new PaddingFrame(1)));
 
     assertTrue(buffer.getBuffer().isEmpty());
     assertFalse(buffer.getHandshakeBuffer().isEmpty());
@@ -141,7 +320,7 @@ public class PacketBufferManagerTest {
 
   @Test
   public void ackHandshakeWithShort() {
-    buffer.beforeSendPacket(hp(2, new PaddingFrame(1)), ctx);
+    sent(hp(2, new PaddingFrame(1)));
 
     buffer.onReceivePacket(packet(3, PingFrame.INSTANCE), ctx);
 
@@ -150,7 +329,7 @@ public class PacketBufferManagerTest {
 
   @Test
   public void ackHandshakeWithInvalidPacketType() {
-    buffer.beforeSendPacket(hp(2, new PaddingFrame(1)), ctx);
+    sent(hp(2, new PaddingFrame(1)));
 
     buffer.onReceivePacket(ip(3, new AckFrame(123, new AckRange(2, 2))), ctx);
 
@@ -160,7 +339,7 @@ public class PacketBufferManagerTest {
 
   @Test
   public void ackPacket() {
-    buffer.beforeSendPacket(packet(2, PingFrame.INSTANCE), ctx);
+    sent(packet(2, PingFrame.INSTANCE));
 
     assertFalse(buffer.getBuffer().isEmpty());
     assertTrue(buffer.getHandshakeBuffer().isEmpty());
@@ -173,7 +352,7 @@ public class PacketBufferManagerTest {
 
   @Test
   public void ackPacketWithInvalidPacketType() {
-    buffer.beforeSendPacket(packet(2, PingFrame.INSTANCE), ctx);
+    sent(packet(2, PingFrame.INSTANCE));
 
     buffer.onReceivePacket(hp(3, new AckFrame(123, new AckRange(2, 2))), ctx);
 
@@ -191,53 +370,70 @@ public class PacketBufferManagerTest {
 
     assertEquals(pingPacket, actual);
 
-    assertBuffered(2);
+    // tracked by the loss detector once released by the send queue
+    assertBufferEmpty();
   }
 
-  @Test
-  public void resend() throws Exception {
-    when(frameSender.isOpen()).thenReturn(true);
-
-    final Packet pingPacket = packet(2, PingFrame.INSTANCE);
-    buffer.beforeSendPacket(pingPacket, ctx);
-    assertBuffered(2);
+  private Packet packet(final long pn, final Frame... frames) {
+    return ShortPacket.create(false, random(), random(), pn, frames);
+  }
 
-    // move time forward so that packet is valid for resend
-    when(ticker.nanoTime()).thenReturn(3000_0000_0000L);
+  private Packet ip(final long pn, final Frame... frames) {
+    return InitialPacket.create(random(), random(), pn, Version.DRAFT_29, Optional.empty(), frames);
+  }
 
-    resendTask.run(timeout);
+  private Packet hp(final long pn, final Frame... frames) {
+    return HandshakePacket.create(random(), random(), pn, Version.DRAFT_29, frames);
+  }
 
-    verify(frameSender).send(EncryptionLevel.OneRtt, PingFrame.INSTANCE);
+  private void sent(final Packet packet) {
+    lossDetector.onPacketSent(Packet.getEncryptionLevel(packet), (FullPacket) packet);
   }
 
-  @Test
-  public void resendClosed() throws Exception {
-    when(frameSender.isOpen()).thenReturn(false);
+  private Packet verifyNext() {
+    final ArgumentCaptor<Packet> captor = ArgumentCaptor.forClass(Packet.class);
+    verify(ctx).next(captor.capture());
 
-    final Packet pingPacket = packet(2, PingFrame.INSTANCE);
-    buffer.beforeSendPacket(pingPacket, ctx);
-    assertBuffered(2);
+    return captor.getValue();
+  }
 
-    resendTask.run(timeout);
+  private Packet verifyNext(final int index) {
+    final ArgumentCaptor<Packet> captor = ArgumentCaptor.forClass(Packet.class);
+    verify(ctx, atLeastOnce()).next(captor.capture());
 
-    verify(frameSender, never()).send(EncryptionLevel.OneRtt, PingFrame.INSTANCE);
+    return captor.getAllValues().get(index);
   }
 
-  private Packet packet(final long pn, final Frame... frames) {
-    return ShortPacket.create(false, random(), random(), pn, frames);
+  private static List<AckRange> ackRanges(final FullPacket packet) {
+    return packet
+        .getPayload()
+        .getFrames()
+        .stream()
+        .filter(frame -> frame instanceof AckFrame)
+        .findFirst()
+        .map(frame -> ((AckFrame) frame).getRanges())
+        .get();
   }
 
-  private Packet ip(final long pn, final Frame... frames) {
-    return InitialPacket.create(random(), random(), pn, Version.DRAFT_29, Optional.empty(), frames);
+  private void handshakeDone() {
+    when(ctx.getState()).thenReturn(State.Done);
   }
 
-  private Packet hp(final long pn, final Frame... frames) {
-    return HandshakePacket.create(random(), random(), pn, Version.DRAFT_29, frames);
+  private void fireAckTimer() {
+    final ArgumentCaptor<TimerTask> captor = ArgumentCaptor.forClass(TimerTask.class);
+    verify(timer).newTimeout(captor.capture(), eq(20L), eq(TimeUnit.MILLISECONDS));
+
+    when(frameSender.isOpen()).thenReturn(true);
+    try {
+      captor.getValue().run(timeout);
+    } catch (final Exception e) {
+      throw new RuntimeException(e);
+    }
   }
 
-  private Packet verifyNext() {
-    final ArgumentCaptor<Packet> captor = ArgumentCaptor.forClass(Packet.class);
-    verify(ctx).next(captor.capture());
+  private Frame verifySentByTimer() {
+    final ArgumentCaptor<Frame> captor = ArgumentCaptor.forClass(Frame.class);
+    verify(frameSender).send(eq(EncryptionLevel.OneRtt), captor.capture());
 
     return captor.getValue();
   }
@@ -249,11 +445,6 @@ public class PacketBufferManagerTest {
     return captor.getValue();
   }
 
-  private void assertBuffered(final long packetNumber) {
-    // packet buffered for future acking
-    assertTrue(buffer.getBuffer().contains(packetNumber));
-  }
-
   private void assertBufferEmpty() {
     assertTrue(buffer.getBuffer().isEmpty());
   }
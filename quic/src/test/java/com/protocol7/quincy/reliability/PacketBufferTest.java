@@ -6,13 +6,16 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import com.protocol7.quincy.protocol.frames.AckFrame;
+import com.protocol7.quincy.protocol.frames.AckRange;
 import com.protocol7.quincy.protocol.frames.Frame;
 import com.protocol7.quincy.protocol.frames.MaxDataFrame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
 import com.protocol7.quincy.utils.Ticker;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -47,7 +50,7 @@ public class PacketBufferTest {
     assertFalse(buffer.isEmpty());
     assertTrue(buffer.contains(pn1));
 
-    assertTrue(buffer.remove(pn1));
+    assertTrue(buffer.remove(pn1).isPresent());
 
     assertTrue(buffer.isEmpty());
     assertFalse(buffer.contains(pn1));
@@ -55,27 +58,116 @@ public class PacketBufferTest {
 
   @Test
   public void remove() {
-    assertFalse(buffer.remove(pn1));
+    assertFalse(buffer.remove(pn1).isPresent());
     buffer.put(packet1);
-    assertTrue(buffer.remove(pn1));
+    assertEquals(pn1, buffer.remove(pn1).get().getPacketNumber());
   }
 
   @Test
-  public void drain() {
+  public void timeSent() {
     when(ticker.nanoTime()).thenReturn(100L);
+    buffer.put(packet1);
 
-    assertTrue(buffer.drainSince(10, TimeUnit.NANOSECONDS).isEmpty());
+    assertEquals(100L, buffer.remove(pn1).get().getTimeSent());
+  }
+
+  @Test
+  public void ackEliciting() {
+    assertFalse(buffer.hasAckEliciting());
+
+    buffer.put(ShortPacket.create(false, EMPTY, EMPTY, 3, new AckFrame(0, new AckRange(1, 1))));
+    assertFalse(buffer.hasAckEliciting());
+    assertFalse(buffer.getOldestAckEliciting().isPresent());
 
-    buffer.put(packet1);
-    when(ticker.nanoTime()).thenReturn(200L);
     buffer.put(packet2);
+    buffer.put(packet1);
+    assertTrue(buffer.hasAckEliciting());
+    assertEquals(pn1, buffer.getOldestAckEliciting().get().getPacketNumber());
+
+    buffer.remove(pn1);
+    buffer.remove(pn2);
+    assertFalse(buffer.hasAckEliciting());
+  }
+
+  @Test
+  public void clear() {
+    buffer.put(packet1);
+    buffer.clear();
 
-    assertEquals(List.of(f(1)), buffer.drainSince(10, TimeUnit.NANOSECONDS));
-    assertTrue(buffer.drainSince(10, TimeUnit.NANOSECONDS).isEmpty());
+    assertTrue(buffer.isEmpty());
+    assertFalse(buffer.hasAckEliciting());
+  }
+
+  @Test
+  public void removeRange() {
+    for (long pn = 1; pn <= 10; pn++) {
+      buffer.put(p(pn));
+    }
+
+    assertEquals(List.of(4L, 5L, 6L), pns(buffer.remove(4, 6)));
+    // ranges reaching outside the buffered packets
+    assertEquals(List.of(1L, 2L, 3L), pns(buffer.remove(0, 6)));
+    assertEquals(List.of(9L, 10L), pns(buffer.remove(9, 1000)));
+    assertEquals(List.of(), pns(buffer.remove(20, 30)));
+
+    assertEquals(List.of(7L, 8L), pns(buffer.getPackets()));
+    assertEquals(2, buffer.size());
+  }
+
+  @Test
+  public void inOrder() {
+    buffer.put(p(5));
+    buffer.put(p(3));
+    buffer.put(p(9));
+
+    assertEquals(List.of(3L, 5L, 9L), pns(buffer.getPackets()));
+    assertFalse(buffer.contains(4));
+  }
+
+  @Test
+  public void growAndWrap() {
+    long acked = 0;
+    for (long pn = 0; pn < 1000; pn++) {
+      buffer.put(p(pn));
+      // keep 20 packets outstanding, moving the ring forward
+      if (pn >= 20) {
+        assertTrue(buffer.remove(acked++).isPresent());
+      }
+    }
+    assertEquals(20, buffer.size());
+
+    // a burst larger than the ring
+    for (long pn = 1000; pn < 1200; pn++) {
+      buffer.put(p(pn));
+    }
+
+    final List<Long> expected = new ArrayList<>();
+    for (long pn = 980; pn < 1200; pn++) {
+      expected.add(pn);
+    }
+    assertEquals(expected, pns(buffer.getPackets()));
+    assertEquals(980, buffer.getOldestAckEliciting().get().getPacketNumber());
+  }
+
+  @Test
+  public void gaps() {
+    buffer.put(p(1));
+    // sent in another packet number space
+    buffer.put(p(100));
+
+    assertTrue(buffer.remove(1).isPresent());
+    assertEquals(List.of(100L), pns(buffer.getPackets()));
+    assertEquals(100, buffer.getOldestAckEliciting().get().getPacketNumber());
+
+    assertTrue(buffer.remove(100).isPresent());
+    assertTrue(buffer.isEmpty());
+
+    buffer.put(p(101));
+    assertEquals(List.of(101L), pns(buffer.getPackets()));
+  }
 
-    when(ticker.nanoTime()).thenReturn(300L);
-    assertEquals(List.of(f(2)), buffer.drainSince(10, TimeUnit.NANOSECONDS));
-    assertTrue(buffer.drainSince(10, TimeUnit.NANOSECONDS).isEmpty());
+  private static List<Long> pns(final List<SentPacket> packets) {
+    return packets.stream().map(SentPacket::getPacketNumber).collect(Collectors.toList());
   }
 
   private FullPacket p(final long pn) {
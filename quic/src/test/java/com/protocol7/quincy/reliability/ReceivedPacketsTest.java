@@ -0,0 +1,158 @@
+package com.protocol7.quincy.reliability;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.protocol7.quincy.protocol.frames.AckRange;
+import java.util.List;
+import org.junit.Test;
+
+public class ReceivedPacketsTest {
+
+  private final ReceivedPackets received = new ReceivedPackets(4);
+
+  @Test
+  public void empty() {
+    assertTrue(received.isEmpty());
+    assertEquals(List.of(), received.getRanges());
+    assertFalse(received.isAckPending());
+  }
+
+  @Test
+  public void inOrder() {
+    for (long pn = 0; pn < 1000; pn++) {
+      received.add(pn, pn, true);
+    }
+
+    assertEquals(List.of(new AckRange(0, 999)), received.getRanges());
+    assertEquals(999, received.getLargestReceivedTime());
+  }
+
+  @Test
+  public void gaps() {
+    add(1, 2, 5, 6, 9);
+
+    assertEquals(
+        List.of(new AckRange(9, 9), new AckRange(5, 6), new AckRange(1, 2)), received.getRanges());
+  }
+
+  @Test
+  public void reordered() {
+    add(5, 1, 3, 2, 4);
+
+    assertEquals(List.of(new AckRange(1, 5)), received.getRanges());
+    // the time of the largest, not the latest packet
+    assertEquals(5, received.getLargestReceivedTime());
+  }
+
+  @Test
+  public void fillGap() {
+    add(1, 2, 4, 5, 8);
+    add(3);
+
+    assertEquals(List.of(new AckRange(8, 8), new AckRange(1, 5)), received.getRanges());
+  }
+
+  @Test
+  public void extendRangeUpwards() {
+    add(1, 5, 9);
+    add(6);
+
+    assertEquals(
+        List.of(new AckRange(9, 9), new AckRange(5, 6), new AckRange(1, 1)), received.getRanges());
+  }
+
+  @Test
+  public void duplicate() {
+    add(1, 2, 3);
+    received.onAckSent();
+    add(2);
+
+    assertEquals(List.of(new AckRange(1, 3)), received.getRanges());
+    assertFalse(received.isAckPending());
+  }
+
+  @Test
+  public void maxRanges() {
+    add(1, 3, 5, 7);
+    add(9);
+
+    // the lowest range is dropped
+    assertEquals(
+        List.of(new AckRange(9, 9), new AckRange(7, 7), new AckRange(5, 5), new AckRange(3, 3)),
+        received.getRanges());
+
+    // too old to be tracked
+    add(1);
+    assertEquals(4, received.getRanges().size());
+    assertEquals(3, received.getRanges().get(3).getSmallest());
+  }
+
+  @Test
+  public void ackPending() {
+    received.add(1, 0, false);
+    assertFalse(received.isAckPending());
+
+    received.add(2, 0, true);
+    assertTrue(received.isAckPending());
+
+    received.onAckSent();
+    assertFalse(received.isAckPending());
+    // still acked until the peer has seen the ack
+    assertEquals(List.of(new AckRange(1, 2)), received.getRanges());
+  }
+
+  @Test
+  public void ackElicitingSinceAck() {
+    add(1, 2, 3);
+    assertEquals(3, received.getAckElicitingSinceAck());
+
+    received.onAckSent();
+    assertEquals(0, received.getAckElicitingSinceAck());
+  }
+
+  @Test
+  public void addReturnsInOrder() {
+    assertTrue(received.add(1, 0, true));
+    assertTrue(received.add(2, 0, true));
+    // gap
+    assertFalse(received.add(4, 0, true));
+    // reordered
+    assertFalse(received.add(3, 0, true));
+    // duplicate
+    assertFalse(received.add(3, 0, true));
+    assertTrue(received.add(5, 0, true));
+  }
+
+  @Test
+  public void ackAcked() {
+    add(1, 2, 3, 5, 6, 8);
+
+    received.onAckAcked(5);
+    assertEquals(List.of(new AckRange(8, 8), new AckRange(6, 6)), received.getRanges());
+
+    received.onAckAcked(8);
+    assertTrue(received.isEmpty());
+
+    add(9);
+    assertEquals(List.of(new AckRange(9, 9)), received.getRanges());
+  }
+
+  @Test
+  public void gapAfterAckAcked() {
+    add(1, 2);
+    received.onAckAcked(2);
+    assertTrue(received.isEmpty());
+
+    // still a gap, even though no ranges are left
+    assertFalse(received.add(4, 0, true));
+    assertTrue(received.add(5, 0, true));
+  }
+
+  private void add(final long... pns) {
+    for (final long pn : pns) {
+      received.add(pn, pn, true);
+    }
+  }
+}
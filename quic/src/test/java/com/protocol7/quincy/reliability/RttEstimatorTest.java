@@ -0,0 +1,83 @@
+package com.protocol7.quincy.reliability;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RttEstimatorTest {
+
+  private final RttEstimator rtt = new RttEstimator();
+
+  @Test
+  public void initial() {
+    assertFalse(rtt.hasSample());
+    assertEquals(0, rtt.getLatestRtt());
+    assertEquals(0, rtt.getMinRtt());
+    assertEquals(RttEstimator.INITIAL_RTT, rtt.getSmoothedRtt());
+    assertEquals(RttEstimator.INITIAL_RTT / 2, rtt.getRttVar());
+  }
+
+  @Test
+  public void firstSample() {
+    // ack delay is ignored for the first sample
+    rtt.update(ms(100), ms(10));
+
+    assertTrue(rtt.hasSample());
+    assertEquals(ms(100), rtt.getLatestRtt());
+    assertEquals(ms(100), rtt.getMinRtt());
+    assertEquals(ms(100), rtt.getSmoothedRtt());
+    assertEquals(ms(50), rtt.getRttVar());
+  }
+
+  @Test
+  public void smoothed() {
+    rtt.update(ms(100), 0);
+    rtt.update(ms(180), 0);
+
+    assertEquals(ms(180), rtt.getLatestRtt());
+    assertEquals(ms(100), rtt.getMinRtt());
+    assertEquals(ms(110), rtt.getSmoothedRtt());
+    assertEquals(ms(57.5), rtt.getRttVar());
+  }
+
+  @Test
+  public void ackDelaySubtracted() {
+    rtt.update(ms(100), 0);
+    rtt.update(ms(180), ms(80));
+
+    assertEquals(ms(180), rtt.getLatestRtt());
+    assertEquals(ms(100), rtt.getSmoothedRtt());
+  }
+
+  @Test
+  public void ackDelayNotBelowMinRtt() {
+    rtt.update(ms(100), 0);
+    rtt.update(ms(120), ms(80));
+
+    // subtracting the ack delay would go below the min RTT, the sample is used as is
+    assertEquals(ms(102.5), rtt.getSmoothedRtt());
+  }
+
+  @Test
+  public void minRtt() {
+    rtt.update(ms(100), 0);
+    rtt.update(ms(60), 0);
+    rtt.update(ms(80), 0);
+
+    assertEquals(ms(60), rtt.getMinRtt());
+  }
+
+  @Test
+  public void negativeSample() {
+    rtt.update(-1, 0);
+
+    assertEquals(0, rtt.getLatestRtt());
+  }
+
+  private static long ms(final double ms) {
+    return (long) (MILLISECONDS.toNanos(1) * ms);
+  }
+}
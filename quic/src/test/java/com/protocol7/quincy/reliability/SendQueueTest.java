@@ -0,0 +1,494 @@
+package com.protocol7.quincy.reliability;
+
+import static com.protocol7.quincy.protocol.ConnectionId.random;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.protocol7.quincy.protocol.TransportError;
+import com.protocol7.quincy.protocol.Version;
+import com.protocol7.quincy.protocol.frames.AckFrame;
+import com.protocol7.quincy.protocol.frames.AckRange;
+import com.protocol7.quincy.protocol.frames.ConnectionCloseFrame;
+import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.FrameType;
+import com.protocol7.quincy.protocol.frames.MaxDataFrame;
+import com.protocol7.quincy.protocol.frames.PaddingFrame;
+import com.protocol7.quincy.protocol.frames.PingFrame;
+import com.protocol7.quincy.protocol.packets.FullPacket;
+import com.protocol7.quincy.protocol.packets.HandshakePacket;
+import com.protocol7.quincy.protocol.packets.Packet;
+import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.tls.EncryptionLevel;
+import com.protocol7.quincy.utils.Ticker;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SendQueueTest {
+
+  @Mock private LossDetector lossDetector;
+  @Mock private EventExecutor executor;
+  @Mock private Ticker ticker;
+  @Mock private ScheduledFuture<?> future;
+  @Mock private CongestionController congestionController;
+
+  private final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+  private final List<Packet> sent = new ArrayList<>();
+  private final int largeSize = large(0).getPayload().calculateLength();
+  private long now = MILLISECONDS.toNanos(1000);
+  private SendQueue queue;
+
+  @Before
+  public void setUp() {
+    when(ticker.nanoTime()).thenAnswer(invocation -> now);
+    when(executor.inEventLoop()).thenReturn(true);
+
+    queue =
+        new SendQueue(
+            lossDetector, Optional.empty(), executor, ticker, UnaryOperator.identity(), sent::add);
+  }
+
+  @Test
+  public void sendWhenAllowed() {
+    final FullPacket packet = packet(1, PingFrame.INSTANCE);
+    when(lossDetector.canSend(packet)).thenReturn(true);
+
+    queue.send(packet);
+
+    assertEquals(List.of(packet), sent);
+    assertEquals(0, queue.size());
+    verify(lossDetector).onPacketSent(EncryptionLevel.OneRtt, packet);
+  }
+
+  @Test
+  public void queueWhenBlocked() {
+    final FullPacket packet = packet(1, PingFrame.INSTANCE);
+    when(lossDetector.canSend(packet)).thenReturn(false);
+
+    queue.send(packet);
+
+    assertEquals(List.of(), sent);
+    assertEquals(1, queue.size());
+    verify(lossDetector, never()).onPacketSent(any(), any());
+
+    when(lossDetector.canSend(packet)).thenReturn(true);
+    queue.drain();
+
+    assertEquals(List.of(packet), sent);
+    assertEquals(0, queue.size());
+    verify(lossDetector).onPacketSent(EncryptionLevel.OneRtt, packet);
+  }
+
+  @Test
+  public void releasedInOrder() {
+    final FullPacket packet1 = packet(1, PingFrame.INSTANCE);
+    final FullPacket packet2 = packet(2, PingFrame.INSTANCE);
+    when(lossDetector.canSend(packet1)).thenReturn(false);
+
+    queue.send(packet1);
+    // would be allowed, but must not overtake the queued packet
+    queue.send(packet2);
+
+    assertEquals(List.of(), sent);
+    assertEquals(2, queue.size());
+
+    when(lossDetector.canSend(packet1)).thenReturn(true);
+    when(lossDetector.canSend(packet2)).thenReturn(true);
+    queue.drain();
+
+    assertEquals(List.of(packet1, packet2), sent);
+  }
+
+  @Test
+  public void drainedOnEventLoop() {
+    final FullPacket packet1 = packet(1, PingFrame.INSTANCE);
+    final FullPacket packet2 = packet(2, PingFrame.INSTANCE);
+    when(lossDetector.canSend(any())).thenReturn(true);
+    when(executor.inEventLoop()).thenReturn(false);
+
+    // sent from a timer or application thread, written once the event loop drains the queue
+    queue.send(packet1);
+    queue.send(packet2);
+
+    assertEquals(List.of(), sent);
+    verify(executor, times(1)).execute(taskCaptor.capture());
+
+    when(executor.inEventLoop()).thenReturn(true);
+    taskCaptor.getValue().run();
+
+    assertEquals(List.of(packet1, packet2), sent);
+  }
+
+  @Test
+  public void sendCreated() {
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.send(packet(1, PingFrame.INSTANCE));
+
+    final FullPacket packet = queue.send(() -> packet(2, PingFrame.INSTANCE));
+
+    assertEquals(2, packet.getPacketNumber());
+    assertEquals(2, queue.size());
+  }
+
+  @Test
+  public void ackOnlyNotHeldBack() {
+    final FullPacket packet1 = packet(1, PingFrame.INSTANCE);
+    final FullPacket ack = packet(2, new AckFrame(0, new AckRange(1, 1)));
+    final FullPacket packet3 = packet(3, PingFrame.INSTANCE);
+    when(lossDetector.canSend(packet1)).thenReturn(false);
+
+    queue.send(packet1);
+    queue.send(ack);
+    queue.send(packet3);
+
+    // acks are not congestion controlled
+    assertEquals(List.of(ack), sent);
+    assertEquals(2, queue.size());
+    assertTrue(queue.isBlocked());
+    verify(lossDetector).onPacketSent(EncryptionLevel.OneRtt, ack);
+
+    when(lossDetector.canSend(packet1)).thenReturn(true);
+    when(lossDetector.canSend(packet3)).thenReturn(true);
+    queue.drain();
+
+    assertEquals(List.of(ack, packet1, packet3), sent);
+  }
+
+  @Test
+  public void closeNotQueued() {
+    final FullPacket packet = packet(1, PingFrame.INSTANCE);
+    when(lossDetector.canSend(packet)).thenReturn(false);
+    queue.send(packet);
+
+    final FullPacket close =
+        packet(
+            2, new ConnectionCloseFrame(TransportError.NO_ERROR.getValue(), FrameType.PADDING, ""));
+    queue.send(close);
+
+    assertEquals(List.of(close), sent);
+  }
+
+  @Test
+  public void appendToQueuedPacket() {
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.send(packet(1, PingFrame.INSTANCE));
+
+    final Optional<FullPacket> appended =
+        queue.tryAppend(EncryptionLevel.OneRtt, 1000, new MaxDataFrame(123));
+
+    assertEquals(1, appended.get().getPacketNumber());
+    assertEquals(
+        List.of(PingFrame.INSTANCE, new MaxDataFrame(123)),
+        appended.get().getPayload().getFrames());
+    assertEquals(1, queue.size());
+
+    when(lossDetector.canSend(any())).thenReturn(true);
+    queue.drain();
+
+    assertEquals(List.of(appended.get()), sent);
+    verify(lossDetector).onPacketSent(EncryptionLevel.OneRtt, appended.get());
+  }
+
+  @Test
+  public void appendEmptyQueue() {
+    assertFalse(queue.tryAppend(EncryptionLevel.OneRtt, 1000, PingFrame.INSTANCE).isPresent());
+  }
+
+  @Test
+  public void appendOtherLevel() {
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.send(HandshakePacket.create(random(), random(), 1, Version.DRAFT_29, PingFrame.INSTANCE));
+
+    assertFalse(queue.tryAppend(EncryptionLevel.OneRtt, 1000, PingFrame.INSTANCE).isPresent());
+  }
+
+  @Test
+  public void appendToEarlierPacketOfLevel() {
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.send(packet(1, PingFrame.INSTANCE));
+    queue.send(HandshakePacket.create(random(), random(), 2, Version.DRAFT_29, PingFrame.INSTANCE));
+
+    assertEquals(
+        1,
+        queue
+            .tryAppend(EncryptionLevel.OneRtt, 1000, new MaxDataFrame(123))
+            .get()
+            .getPacketNumber());
+    assertEquals(2, queue.size());
+  }
+
+  @Test
+  public void appendTooLarge() {
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.send(large(1));
+
+    assertFalse(
+        queue.tryAppend(EncryptionLevel.OneRtt, largeSize + 10, new PaddingFrame(20)).isPresent());
+    assertEquals(
+        largeSize + 10,
+        queue
+            .tryAppend(EncryptionLevel.OneRtt, largeSize + 10, new PaddingFrame(10))
+            .get()
+            .getPayload()
+            .calculateLength());
+  }
+
+  @Test
+  public void appendSecondAck() {
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.send(packet(1, PingFrame.INSTANCE, new AckFrame(0, new AckRange(1, 1))));
+
+    assertFalse(
+        queue
+            .tryAppend(EncryptionLevel.OneRtt, 1000, new AckFrame(0, new AckRange(1, 2)))
+            .isPresent());
+  }
+
+  @Test
+  public void appendAckToBlockedPacket() {
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.send(packet(1, PingFrame.INSTANCE));
+
+    // would be held back with the packet, sent in a packet of its own instead
+    assertFalse(
+        queue
+            .tryAppend(EncryptionLevel.OneRtt, 1000, new AckFrame(0, new AckRange(1, 1)))
+            .isPresent());
+  }
+
+  @Test
+  public void appendToBlockedAck() {
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.hold();
+    queue.send(packet(1, new AckFrame(0, new AckRange(1, 1))));
+
+    // the ack would no longer be sent right away
+    assertFalse(queue.tryAppend(EncryptionLevel.OneRtt, 1000, PingFrame.INSTANCE).isPresent());
+  }
+
+  @Test
+  public void appendAckWhileHeld() {
+    when(lossDetector.canSend(any())).thenReturn(true);
+    queue.hold();
+    queue.send(packet(1, PingFrame.INSTANCE));
+
+    assertTrue(
+        queue
+            .tryAppend(EncryptionLevel.OneRtt, 1000, new AckFrame(0, new AckRange(1, 1)))
+            .isPresent());
+  }
+
+  @Test
+  public void outboundOnRelease() {
+    final List<Packet> outbound = new ArrayList<>();
+    queue =
+        new SendQueue(
+            lossDetector,
+            Optional.empty(),
+            executor,
+            ticker,
+            packet -> {
+              outbound.add(packet);
+              return ((FullPacket) packet).addFrame(new PaddingFrame(1));
+            },
+            sent::add);
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.send(packet(1, PingFrame.INSTANCE));
+    final FullPacket appended =
+        queue.tryAppend(EncryptionLevel.OneRtt, 1000, new MaxDataFrame(123)).get();
+
+    assertEquals(List.of(), outbound);
+
+    when(lossDetector.canSend(any())).thenReturn(true);
+    queue.drain();
+
+    // the appended frames pass through the outbound handlers, like any other
+    assertEquals(List.of(appended), outbound);
+    final FullPacket processed = appended.addFrame(new PaddingFrame(1));
+    assertEquals(List.of(processed), sent);
+    verify(lossDetector).onPacketSent(EncryptionLevel.OneRtt, processed);
+  }
+
+  @Test
+  public void appendClose() {
+    when(lossDetector.canSend(any())).thenReturn(false);
+    queue.send(packet(1, PingFrame.INSTANCE));
+
+    assertFalse(
+        queue
+            .tryAppend(
+                EncryptionLevel.OneRtt,
+                1000,
+                new ConnectionCloseFrame(TransportError.NO_ERROR.getValue(), FrameType.PADDING, ""))
+            .isPresent());
+  }
+
+  @Test
+  public void hold() {
+    when(lossDetector.canSend(any())).thenReturn(true);
+
+    queue.hold();
+    queue.hold();
+    final FullPacket packet = packet(1, PingFrame.INSTANCE);
+    queue.send(packet);
+    queue.drain();
+    queue.release();
+
+    assertEquals(List.of(), sent);
+
+    queue.release();
+
+    assertEquals(List.of(packet), sent);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void releaseNotHeld() {
+    queue.release();
+  }
+
+  @Test
+  public void unblocked() {
+    final List<String> notified = new ArrayList<>();
+    queue.addUnblockedListener(() -> notified.add("unblocked"));
+
+    final FullPacket packet = packet(1, PingFrame.INSTANCE);
+    when(lossDetector.canSend(packet)).thenReturn(false);
+    queue.send(packet);
+
+    assertTrue(queue.isBlocked());
+
+    when(lossDetector.canSend(packet)).thenReturn(true);
+    queue.drain();
+
+    assertFalse(queue.isBlocked());
+    assertEquals(List.of("unblocked"), notified);
+
+    // not notified unless it was blocked
+    queue.send(packet(2, new AckFrame(0, new AckRange(1, 1))));
+    assertEquals(List.of("unblocked"), notified);
+  }
+
+  @Test
+  public void clear() {
+    final FullPacket packet = packet(1, PingFrame.INSTANCE);
+    when(lossDetector.canSend(packet)).thenReturn(false);
+    queue.send(packet);
+
+    queue.clear();
+    queue.drain();
+
+    assertEquals(0, queue.size());
+    assertEquals(List.of(), sent);
+  }
+
+  @Test
+  public void delay() {
+    final FullPacket packet = packet(1, PingFrame.INSTANCE);
+    when(lossDetector.canSend(packet)).thenReturn(false);
+    queue.send(packet);
+
+    now += MILLISECONDS.toNanos(80);
+    when(lossDetector.canSend(packet)).thenReturn(true);
+    queue.drain();
+
+    assertEquals(MILLISECONDS.toNanos(10), queue.getDelay());
+  }
+
+  @Test
+  public void paced() throws Exception {
+    doReturn(future).when(executor).schedule(taskCaptor.capture(), anyLong(), eq(NANOSECONDS));
+    when(lossDetector.canSend(any())).thenReturn(true);
+    queue = pacedQueue();
+
+    // the bucket holds two packets
+    for (int pn = 1; pn <= 3; pn++) {
+      queue.send(large(pn));
+    }
+    assertEquals(2, sent.size());
+    assertEquals(1, queue.size());
+
+    // 1.25 * 12000 bytes per 100 ms
+    final long delay = (long) Math.ceil(largeSize * 1e9 / 150_000);
+    verify(executor).schedule(any(Runnable.class), eq(delay), eq(NANOSECONDS));
+
+    // acks are not paced, but can not overtake the packet waiting
+    queue.send(packet(4, new AckFrame(0, new AckRange(1, 1))));
+    assertEquals(2, sent.size());
+
+    now += delay;
+    taskCaptor.getValue().run();
+
+    assertEquals(4, sent.size());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void pacedTimerNotRearmed() {
+    doReturn(future).when(executor).schedule(any(Runnable.class), anyLong(), eq(NANOSECONDS));
+    when(lossDetector.canSend(any())).thenReturn(true);
+    queue = pacedQueue();
+
+    for (int pn = 1; pn <= 4; pn++) {
+      queue.send(large(pn));
+    }
+
+    verify(executor, times(1)).schedule(any(Runnable.class), anyLong(), eq(NANOSECONDS));
+  }
+
+  @Test
+  public void clearCancelsTimer() {
+    doReturn(future).when(executor).schedule(any(Runnable.class), anyLong(), eq(NANOSECONDS));
+    when(lossDetector.canSend(any())).thenReturn(true);
+    queue = pacedQueue();
+
+    for (int pn = 1; pn <= 3; pn++) {
+      queue.send(large(pn));
+    }
+    queue.clear();
+
+    verify(future).cancel(false);
+  }
+
+  private SendQueue pacedQueue() {
+    final RttEstimator rtt = new RttEstimator();
+    rtt.update(MILLISECONDS.toNanos(100), 0);
+    when(congestionController.getCongestionWindow()).thenReturn(12000L);
+
+    return new SendQueue(
+        lossDetector,
+        Optional.of(new Pacer(congestionController, rtt, largeSize, 2)),
+        executor,
+        ticker,
+        UnaryOperator.identity(),
+        sent::add);
+  }
+
+  private FullPacket large(final long pn) {
+    return packet(pn, PingFrame.INSTANCE, new PaddingFrame(1000));
+  }
+
+  private FullPacket packet(final long pn, final Frame... frames) {
+    return ShortPacket.create(false, random(), random(), pn, frames);
+  }
+}
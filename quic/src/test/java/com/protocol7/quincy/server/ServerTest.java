@@ -1,10 +1,12 @@
 package com.protocol7.quincy.server;
 
 import static java.util.Optional.empty;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import com.protocol7.quincy.MockTimer;
 import com.protocol7.quincy.TestUtil;
 import com.protocol7.quincy.connection.Connection;
 import com.protocol7.quincy.connection.PacketSender;
@@ -21,8 +23,8 @@ import com.protocol7.quincy.tls.ClientTlsSession.CertificateInvalidException;
 import com.protocol7.quincy.tls.KeyUtil;
 import com.protocol7.quincy.tls.NoopCertificateValidator;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
-import io.netty.buffer.Unpooled;
-import io.netty.util.Timer;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.concurrent.DefaultEventExecutor;
 import io.netty.util.concurrent.SucceededFuture;
 import java.security.PrivateKey;
@@ -54,13 +56,14 @@ public class ServerTest {
 
   @Mock private PacketSender packetSender;
   @Mock private StreamHandler streamListener;
-  @Mock private Timer scheduler;
+  private final MockTimer scheduler = new MockTimer();
   private final FlowControlHandler flowControlHandler = new DefaultFlowControlHandler(1000, 1000);
 
   @Before
   public void setUp() {
     when(packetSender.send(any(), any()))
         .thenReturn(new SucceededFuture(new DefaultEventExecutor(), null));
+    when(packetSender.executor()).thenReturn(new EmbeddedChannel().eventLoop());
 
     final List<byte[]> certificates = KeyUtil.getCertsFromCrt("src/test/resources/server.crt");
     final PrivateKey privateKey = KeyUtil.getPrivateKey("src/test/resources/server.der");
@@ -96,10 +99,12 @@ public class ServerTest {
 
     assertEquals(0, serverHello.getPacketNumber());
     assertFalse(serverHello.getToken().isPresent());
-    assertEquals(1, serverHello.getPayload().getFrames().size());
+    // the client hello is acked in the same packet
+    assertEquals(2, serverHello.getPayload().getFrames().size());
     final CryptoFrame cf = (CryptoFrame) serverHello.getPayload().getFrames().get(0);
+    assertTrue(serverHello.getPayload().getFrames().get(1) instanceof AckFrame);
 
-    clientTlsSession.handleServerHello(Unpooled.wrappedBuffer(cf.getCryptoData()));
+    clientTlsSession.handleServerHello(cf.getCryptoData());
 
     final HandshakePacket handshake = (HandshakePacket) captureSentPacket(2);
     assertEquals(clientConnectionId, handshake.getDestinationConnectionId());
@@ -108,11 +113,12 @@ public class ServerTest {
     assertEquals(1, handshake.getPayload().getFrames().size());
     final CryptoFrame cf2 = (CryptoFrame) handshake.getPayload().getFrames().get(0);
 
-    final byte[] clientFin = clientTlsSession.handleHandshake(cf2.getCryptoData(), 0).get();
+    final byte[] clientFin =
+        clientTlsSession.handleHandshake(ByteBufUtil.getBytes(cf2.getCryptoData()), 0).get();
 
     connection.onPacket(hp(serverConnectionId, new CryptoFrame(0, clientFin)));
 
-    final ShortPacket serverDone = (ShortPacket) captureSentPacket(4);
+    final ShortPacket serverDone = (ShortPacket) captureSentPacket(3);
 
     connection.onPacket(
         ShortPacket.create(
@@ -148,7 +154,11 @@ public class ServerTest {
 
     connection.onPacket(packet(serverConnectionId, PingFrame.INSTANCE));
 
-    assertAck(6, 5, 3, 4);
+    // the ack is delayed, waiting for more packets
+    verify(packetSender, times(4)).send(any(), any());
+    triggerAckTimer();
+
+    assertAck(5, 4, 3, 4);
   }
 
   private void assertAck(
@@ -184,6 +194,15 @@ public class ServerTest {
         destConnId, clientConnectionId, nextPacketNumber(), Version.DRAFT_29, frames);
   }
 
+  private void triggerAckTimer() {
+    try {
+      // armed a tick of the timer before the max ack delay
+      scheduler.trigger(new QuicBuilder().configuration().getMaxAckDelay() - 5, MILLISECONDS);
+    } catch (final Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private long nextPacketNumber() {
     packetNumber = PacketNumber.next(packetNumber);
     return packetNumber;
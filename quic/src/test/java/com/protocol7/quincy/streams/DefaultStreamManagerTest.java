@@ -1,5 +1,6 @@
 package com.protocol7.quincy.streams;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -8,16 +9,25 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.google.common.primitives.Bytes;
 import com.protocol7.quincy.PipelineContext;
 import com.protocol7.quincy.connection.State;
+import com.protocol7.quincy.flowcontrol.DefaultFlowControlHandler;
+import com.protocol7.quincy.flowcontrol.MockFlowControlHandler;
 import com.protocol7.quincy.protocol.ConnectionId;
 import com.protocol7.quincy.protocol.PacketNumber;
+import com.protocol7.quincy.protocol.TransportError;
 import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.FrameType;
+import com.protocol7.quincy.protocol.frames.MaxStreamDataFrame;
 import com.protocol7.quincy.protocol.frames.ResetStreamFrame;
 import com.protocol7.quincy.protocol.frames.StreamFrame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
 import com.protocol7.quincy.protocol.packets.ShortPacket;
+import com.protocol7.quincy.reliability.SentPacket;
+import com.protocol7.quincy.streams.SendStateMachine.SendStreamState;
 import com.protocol7.quincy.tls.EncryptionLevel;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,9 +50,10 @@ public class DefaultStreamManagerTest {
   public void setUp() {
     when(ctx.send(any(EncryptionLevel.class), any(Frame.class))).thenReturn(packet);
     when(ctx.getState()).thenReturn(State.Done);
-    when(packet.getPacketNumber()).thenReturn(456L);
 
-    manager = new DefaultStreamManager(ctx, listener);
+    manager =
+        new DefaultStreamManager(
+            ctx, new MockFlowControlHandler(), listener, 1000, 10000, () -> false);
   }
 
   @Test
@@ -93,6 +104,121 @@ public class DefaultStreamManagerTest {
     assertTrue(stream.isFinished());
   }
 
+  @Test
+  public void creditReleasesBufferedData() {
+    final DefaultFlowControlHandler flowControl = new DefaultFlowControlHandler(100, 3);
+    manager = new DefaultStreamManager(ctx, flowControl, listener, 1000, 10000, () -> false);
+    final Stream stream = manager.openStream(true, true);
+
+    stream.write(DATA1, true);
+    verify(ctx)
+        .send(
+            any(EncryptionLevel.class),
+            eq(new StreamFrame(stream.getId(), 0, false, "hel".getBytes())));
+    assertFalse(stream.isFinished());
+
+    flowControl.onReceivePacket(p(new MaxStreamDataFrame(stream.getId(), 10)), ctx);
+
+    verify(ctx)
+        .send(
+            any(EncryptionLevel.class),
+            eq(new StreamFrame(stream.getId(), 3, true, "lo".getBytes())));
+    assertTrue(stream.isFinished());
+  }
+
+  @Test
+  public void ackNotifiesStreamsInPacket() {
+    final DefaultStream stream1 = (DefaultStream) manager.openStream(true, true);
+    final DefaultStream stream2 = (DefaultStream) manager.openStream(true, true);
+    stream1.write(DATA1, true);
+    stream2.write(DATA2, true);
+
+    // both writes went out in the same packet, but the ack only covers the frame of the first
+    // stream
+    manager.onPacketsAcked(
+        EncryptionLevel.OneRtt,
+        List.of(
+            new SentPacket(
+                456, List.of(new StreamFrame(stream1.getId(), 0, true, DATA1)), 0, 100)));
+
+    assertEquals(SendStreamState.DataRecvd, stream1.getSendState());
+    assertEquals(SendStreamState.DataSent, stream2.getSendState());
+  }
+
+  @Test
+  public void ackOfRetransmittedData() {
+    final DefaultStream stream = (DefaultStream) manager.openStream(true, true);
+    stream.write(DATA1, false);
+    stream.write(DATA2, true);
+
+    // the packet with the first frame is lost, the second frame is acked
+    manager.onPacketsAcked(
+        EncryptionLevel.OneRtt,
+        List.of(
+            new SentPacket(
+                2, List.of(new StreamFrame(stream.getId(), DATA1.length, true, DATA2)), 0, 100)));
+    assertEquals(SendStreamState.DataSent, stream.getSendState());
+
+    // the first frame is retransmitted in a new packet, and acked
+    manager.onPacketsAcked(
+        EncryptionLevel.OneRtt,
+        List.of(
+            new SentPacket(3, List.of(new StreamFrame(stream.getId(), 0, false, DATA1)), 0, 100)));
+    assertEquals(SendStreamState.DataRecvd, stream.getSendState());
+  }
+
+  @Test
+  public void ackOfEmptyFinish() {
+    final DefaultStream stream = (DefaultStream) manager.openStream(true, true);
+    stream.write(DATA1, false);
+    stream.write(new byte[0], true);
+
+    manager.onPacketsAcked(
+        EncryptionLevel.OneRtt,
+        List.of(
+            new SentPacket(1, List.of(new StreamFrame(stream.getId(), 0, false, DATA1)), 0, 100)));
+    // the end of the stream is not yet acked
+    assertEquals(SendStreamState.DataSent, stream.getSendState());
+
+    manager.onPacketsAcked(
+        EncryptionLevel.OneRtt,
+        List.of(
+            new SentPacket(
+                2,
+                List.of(new StreamFrame(stream.getId(), DATA1.length, true, new byte[0])),
+                0,
+                100)));
+    assertEquals(SendStreamState.DataRecvd, stream.getSendState());
+  }
+
+  @Test
+  public void ackAfterReset() {
+    final DefaultStream stream = (DefaultStream) manager.openStream(true, true);
+    stream.write(DATA1, false);
+    stream.reset(123);
+
+    // the data sent before the reset
+    manager.onPacketsAcked(
+        EncryptionLevel.OneRtt,
+        List.of(
+            new SentPacket(1, List.of(new StreamFrame(stream.getId(), 0, false, DATA1)), 0, 100)));
+    assertEquals(SendStreamState.ResetSent, stream.getSendState());
+
+    manager.onPacketsAcked(
+        EncryptionLevel.OneRtt,
+        List.of(
+            new SentPacket(
+                2, List.of(new ResetStreamFrame(stream.getId(), 123, DATA1.length)), 0, 100)));
+    assertEquals(SendStreamState.ResetRecvd, stream.getSendState());
+  }
+
+  @Test
+  public void ackForUnknownStream() {
+    manager.onPacketsAcked(
+        EncryptionLevel.OneRtt,
+        List.of(new SentPacket(1, List.of(new StreamFrame(4, 0, true, DATA1)), 0, 100)));
+  }
+
   @Test
   public void receiveSingle() {
     final Stream stream = manager.openStream(true, true);
@@ -125,12 +251,27 @@ public class DefaultStreamManagerTest {
     verifyNoMoreInteractions(listener);
 
     manager.onReceivePacket(p(new StreamFrame(stream.getId(), 0, false, DATA1)), ctx);
-    verify(listener).onData(stream, DATA1, false);
-    verify(listener).onData(stream, DATA2, true);
+    // delivered at once, as it is now contiguous
+    verify(listener).onData(stream, Bytes.concat(DATA1, DATA2), true);
 
     assertTrue(stream.isFinished());
   }
 
+  @Test
+  public void receiveBeyondFlowControl() {
+    manager =
+        new DefaultStreamManager(
+            ctx, new DefaultFlowControlHandler(100, 3), listener, 1000, 10000, () -> false);
+    final Stream stream = manager.openStream(true, true);
+
+    // out of order, but beyond the advertised stream window
+    manager.onReceivePacket(p(new StreamFrame(stream.getId(), 2, false, DATA2)), ctx);
+
+    verify(ctx)
+        .closeConnection(TransportError.FLOW_CONTROL_ERROR, FrameType.STREAM, "Flow control error");
+    verifyNoMoreInteractions(listener);
+  }
+
   @Test
   public void receiveReset() {
     final Stream stream = manager.openStream(true, true);
@@ -2,6 +2,9 @@ package com.protocol7.quincy.streams;
 
 import static org.junit.Assert.*;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.junit.Test;
 
 public class ReceivedDataBufferTest {
@@ -13,27 +16,132 @@ public class ReceivedDataBufferTest {
 
   @Test
   public void inOrder() {
-    buffer.onData(DATA1, 0, false);
+    assertTrue(onData(DATA1, 0, false));
     assertFalse(buffer.isDone());
-    assertArrayEquals(DATA1, buffer.read().get());
+    assertRead("hello");
 
-    buffer.onData(DATA2, DATA1.length, true);
+    assertTrue(onData(DATA2, DATA1.length, true));
 
-    assertArrayEquals(DATA2, buffer.read().get());
+    assertRead("world");
     assertTrue(buffer.isDone());
   }
 
   @Test
   public void outOfOrder() {
-    buffer.onData(DATA2, DATA1.length, true);
+    onData(DATA2, DATA1.length, true);
 
     assertFalse(buffer.isDone());
+    assertFalse(buffer.hasMore());
     assertFalse(buffer.read().isPresent());
+    assertEquals(5, buffer.getBuffered());
 
-    buffer.onData(DATA1, 0, false);
+    onData(DATA1, 0, false);
 
-    assertArrayEquals(DATA1, buffer.read().get());
-    assertArrayEquals(DATA2, buffer.read().get());
+    // contiguous data is read at once
+    assertRead("helloworld");
     assertTrue(buffer.isDone());
+    assertEquals(0, buffer.getBuffered());
+  }
+
+  @Test
+  public void duplicate() {
+    onData(DATA2, 5, false);
+    onData(DATA2, 5, false);
+
+    assertEquals(5, buffer.getBuffered());
+  }
+
+  @Test
+  public void overlapping() {
+    onData("lo".getBytes(), 3, false);
+    onData("wor".getBytes(), 5, false);
+    // retransmitted as a single frame
+    onData("helloworld".getBytes(), 0, false);
+
+    assertEquals(10, buffer.getBuffered());
+    assertRead("helloworld");
+  }
+
+  @Test
+  public void alreadyRead() {
+    onData(DATA1, 0, false);
+    assertRead("hello");
+
+    onData("llowo".getBytes(), 2, false);
+
+    assertRead("wo");
+  }
+
+  @Test
+  public void beyondMaxOffset() {
+    assertFalse(buffer.onData(Unpooled.wrappedBuffer(DATA2), 5, false, 9));
+    assertEquals(0, buffer.getBuffered());
+
+    assertTrue(buffer.onData(Unpooled.wrappedBuffer(DATA2), 5, false, 10));
+  }
+
+  @Test
+  public void emptyFinish() {
+    onData(DATA1, 0, false);
+    assertRead("hello");
+    assertFalse(buffer.isDone());
+
+    onData(new byte[0], 5, true);
+
+    assertFalse(buffer.hasMore());
+    assertTrue(buffer.isDone());
+  }
+
+  @Test
+  public void retainsInOrder() {
+    final ByteBuf data = Unpooled.wrappedBuffer(DATA1);
+
+    buffer.onData(data, 0, false, Long.MAX_VALUE);
+    data.release();
+
+    // still referenced by the buffer
+    assertEquals(1, data.refCnt());
+
+    assertRead("hello");
+    assertEquals(0, data.refCnt());
+  }
+
+  @Test
+  public void copiesOutOfOrder() {
+    final ByteBuf data = Unpooled.wrappedBuffer(DATA2);
+
+    buffer.onData(data, 5, false, Long.MAX_VALUE);
+    data.release();
+
+    // not pinned by the buffer while waiting for the gap to be filled
+    assertEquals(0, data.refCnt());
+    assertEquals(5, buffer.getBuffered());
+
+    onData(DATA1, 0, false);
+    assertRead("helloworld");
+  }
+
+  @Test
+  public void clear() {
+    onData(DATA2, 5, false);
+
+    buffer.clear();
+
+    assertEquals(0, buffer.getBuffered());
+    onData(DATA1, 0, false);
+    assertRead("hello");
+  }
+
+  private boolean onData(final byte[] data, final long offset, final boolean finish) {
+    final ByteBuf bb = Unpooled.wrappedBuffer(data);
+    final boolean accepted = buffer.onData(bb, offset, finish, Long.MAX_VALUE);
+    bb.release();
+    return accepted;
+  }
+
+  private void assertRead(final String expected) {
+    final ByteBuf read = buffer.read().get();
+    assertEquals(expected, new String(ByteBufUtil.getBytes(read)));
+    read.release();
   }
 }
@@ -0,0 +1,164 @@
+package com.protocol7.quincy.streams;
+
+import static com.protocol7.quincy.streams.StreamType.Bidirectional;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.flowcontrol.MockFlowControlHandler;
+import com.protocol7.quincy.protocol.StreamId;
+import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.StreamFrame;
+import com.protocol7.quincy.protocol.packets.FullPacket;
+import com.protocol7.quincy.tls.EncryptionLevel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamSchedulerTest {
+
+  private static final byte[] DATA = "abcd".getBytes();
+
+  @Mock private PipelineContext ctx;
+  @Mock private StreamHandler handler;
+  @Mock private FullPacket packet;
+
+  private final AtomicBoolean blocked = new AtomicBoolean(true);
+  private final StreamScheduler scheduler = new StreamScheduler(blocked::get);
+  private final List<Long> sent = new ArrayList<>();
+  private long maxId = -1;
+
+  @Before
+  public void setUp() {
+    when(ctx.send(any(EncryptionLevel.class), any(Frame.class)))
+        .thenAnswer(
+            invocation -> {
+              sent.add(((StreamFrame) invocation.getArgument(1)).getStreamId());
+              return packet;
+            });
+  }
+
+  @Test
+  public void heldBackWhileBlocked() {
+    final DefaultStream stream = stream(Priority.DEFAULT);
+
+    stream.write(DATA, false);
+
+    verify(ctx, never()).send(any(EncryptionLevel.class), any(Frame.class));
+    assertTrue(scheduler.isScheduled(stream.getId()));
+
+    unblock();
+
+    assertEquals(List.of(stream.getId(), stream.getId()), sent);
+    assertFalse(scheduler.isScheduled(stream.getId()));
+  }
+
+  @Test
+  public void urgency() {
+    final DefaultStream bulk = stream(new Priority(5, true));
+    final DefaultStream control = stream(new Priority(0, false));
+
+    bulk.write(DATA, false);
+    control.write(DATA, false);
+    unblock();
+
+    assertEquals(List.of(control.getId(), control.getId(), bulk.getId(), bulk.getId()), sent);
+  }
+
+  @Test
+  public void nonIncrementalInIdOrder() {
+    final DefaultStream first = stream(Priority.DEFAULT);
+    final DefaultStream second = stream(Priority.DEFAULT);
+
+    second.write(DATA, false);
+    first.write(DATA, false);
+    unblock();
+
+    assertEquals(List.of(first.getId(), first.getId(), second.getId(), second.getId()), sent);
+  }
+
+  @Test
+  public void incrementalRoundRobin() {
+    final DefaultStream first = stream(new Priority(3, true));
+    final DefaultStream second = stream(new Priority(3, true));
+
+    first.write(DATA, false);
+    second.write(DATA, false);
+    unblock();
+
+    assertEquals(List.of(first.getId(), second.getId(), first.getId(), second.getId()), sent);
+  }
+
+  @Test
+  public void nonIncrementalBeforeIncremental() {
+    final DefaultStream incremental = stream(new Priority(3, true));
+    final DefaultStream nonIncremental = stream(Priority.DEFAULT);
+
+    incremental.write(DATA, false);
+    nonIncremental.write(DATA, false);
+    unblock();
+
+    assertEquals(
+        List.of(
+            nonIncremental.getId(),
+            nonIncremental.getId(),
+            incremental.getId(),
+            incremental.getId()),
+        sent);
+  }
+
+  @Test
+  public void changePriority() {
+    final DefaultStream first = stream(Priority.DEFAULT);
+    final DefaultStream second = stream(Priority.DEFAULT);
+
+    first.write(DATA, false);
+    second.write(DATA, false);
+    second.setPriority(new Priority(1, false));
+    unblock();
+
+    assertEquals(List.of(second.getId(), second.getId(), first.getId(), first.getId()), sent);
+  }
+
+  @Test
+  public void flushWhenNotBlocked() {
+    blocked.set(false);
+    final DefaultStream stream = stream(Priority.DEFAULT);
+
+    stream.write(DATA, false);
+
+    assertEquals(List.of(stream.getId(), stream.getId()), sent);
+  }
+
+  private void unblock() {
+    blocked.set(false);
+    scheduler.flush();
+  }
+
+  private DefaultStream stream(final Priority priority) {
+    maxId = StreamId.next(maxId, true, true);
+    final DefaultStream stream =
+        new DefaultStream(
+            maxId,
+            ctx,
+            new MockFlowControlHandler(),
+            handler,
+            Bidirectional,
+            DATA.length / 2,
+            10000,
+            scheduler);
+    stream.setPriority(priority);
+    return stream;
+  }
+}
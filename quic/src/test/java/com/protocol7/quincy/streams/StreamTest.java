@@ -6,12 +6,24 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.flowcontrol.DefaultFlowControlHandler;
+import com.protocol7.quincy.flowcontrol.FlowControlHandler;
+import com.protocol7.quincy.flowcontrol.MockFlowControlHandler;
+import com.protocol7.quincy.protocol.ConnectionId;
+import com.protocol7.quincy.protocol.PacketNumber;
 import com.protocol7.quincy.protocol.StreamId;
 import com.protocol7.quincy.protocol.frames.Frame;
+import com.protocol7.quincy.protocol.frames.MaxStreamDataFrame;
 import com.protocol7.quincy.protocol.frames.ResetStreamFrame;
+import com.protocol7.quincy.protocol.frames.StreamDataBlockedFrame;
 import com.protocol7.quincy.protocol.frames.StreamFrame;
 import com.protocol7.quincy.protocol.packets.FullPacket;
+import com.protocol7.quincy.protocol.packets.ShortPacket;
 import com.protocol7.quincy.tls.EncryptionLevel;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.Future;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -25,24 +37,24 @@ public class StreamTest {
   @Mock private StreamHandler listener;
   @Mock private FullPacket packet;
   private final long streamId = StreamId.next(-1, true, true);
+  private final StreamScheduler scheduler = new StreamScheduler(() -> false);
 
   @Before
   public void setUp() {
     MockitoAnnotations.initMocks(this);
 
-    when(packet.getPacketNumber()).thenReturn(123L);
     when(ctx.send(any(EncryptionLevel.class), any(Frame.class))).thenReturn(packet);
   }
 
   @Test
   public void write() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(new MockFlowControlHandler());
 
     stream.write(DATA, false);
 
     final StreamFrame frame = (StreamFrame) captureFrame();
 
-    assertEquals(DATA, frame.getData());
+    assertArrayEquals(DATA, ByteBufUtil.getBytes(frame.getData()));
     assertEquals(0, frame.getOffset());
     assertEquals(streamId, frame.getStreamId());
     assertFalse(frame.isFin());
@@ -50,7 +62,7 @@ public class StreamTest {
 
   @Test
   public void writeWithOffset() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(new MockFlowControlHandler());
 
     stream.write(DATA, false);
     final StreamFrame frame1 = (StreamFrame) captureFrame();
@@ -63,7 +75,7 @@ public class StreamTest {
 
   @Test
   public void reset() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(new MockFlowControlHandler());
 
     stream.write(DATA, false);
     captureFrame();
@@ -79,7 +91,7 @@ public class StreamTest {
 
   @Test(expected = IllegalStateException.class)
   public void resetOnClosed() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(new MockFlowControlHandler());
 
     stream.reset(123);
     stream.reset(123);
@@ -87,12 +99,116 @@ public class StreamTest {
 
   @Test(expected = IllegalStateException.class)
   public void writeOnClosed() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(new MockFlowControlHandler());
     stream.write(DATA, true);
     assertTrue(stream.isFinished());
     stream.write(DATA, true);
   }
 
+  @Test
+  public void writeSplitIntoFrames() {
+    final DefaultStream stream = stream(new MockFlowControlHandler(), 3, 100);
+
+    assertTrue(stream.write(DATA, true).isSuccess());
+
+    final List<Frame> frames = captureFrames();
+    assertEquals(
+        List.of(
+            new StreamFrame(streamId, 0, false, "Hel".getBytes()),
+            new StreamFrame(streamId, 3, true, "lo".getBytes())),
+        frames);
+  }
+
+  @Test
+  public void writeBlocked() {
+    final DefaultFlowControlHandler flowControl = new DefaultFlowControlHandler(100, 3);
+    final DefaultStream stream = stream(flowControl, 100, 100);
+
+    stream.write(DATA, true);
+
+    // only what the stream credit allows, and the peer is notified
+    assertEquals(
+        List.of(
+            new StreamDataBlockedFrame(streamId, 3),
+            new StreamFrame(streamId, 0, false, "Hel".getBytes())),
+        captureFrames());
+    assertFalse(stream.isFinished());
+
+    flowControl.onReceivePacket(p(new MaxStreamDataFrame(streamId, 10)), ctx);
+    flush(stream);
+
+    assertEquals(new StreamFrame(streamId, 3, true, "lo".getBytes()), captureFrame());
+    assertTrue(stream.isFinished());
+  }
+
+  @Test
+  public void writeBackpressure() {
+    final DefaultFlowControlHandler flowControl = new DefaultFlowControlHandler(100, 3);
+    final DefaultStream stream = stream(flowControl, 100, 4);
+
+    // 2 bytes buffered
+    assertTrue(stream.write(DATA, false).isSuccess());
+    // 7 bytes buffered, more than the buffer holds
+    final Future<Void> future = stream.write(DATA, false);
+    assertFalse(future.isDone());
+
+    flowControl.onReceivePacket(p(new MaxStreamDataFrame(streamId, 6)), ctx);
+    flush(stream);
+
+    // 4 bytes buffered
+    assertTrue(future.isSuccess());
+  }
+
+  @Test
+  public void resetFailsBufferedWrites() {
+    final DefaultStream stream = stream(new DefaultFlowControlHandler(100, 3), 100, 4);
+
+    stream.write(DATA, false);
+    final Future<Void> future = stream.write(DATA, false);
+
+    stream.reset(123);
+
+    assertFalse(future.isSuccess());
+    assertTrue(future.isDone());
+    // only the data sent counts towards the final size
+    assertEquals(3, ((ResetStreamFrame) captureFrame()).getFinalSize());
+  }
+
+  private DefaultStream stream(final FlowControlHandler flowControlHandler) {
+    return stream(flowControlHandler, 1000, 10000);
+  }
+
+  private DefaultStream stream(
+      final FlowControlHandler flowControlHandler,
+      final int maxFrameSize,
+      final long sendBufferSize) {
+    return new DefaultStream(
+        streamId,
+        ctx,
+        flowControlHandler,
+        listener,
+        Bidirectional,
+        maxFrameSize,
+        sendBufferSize,
+        scheduler);
+  }
+
+  private void flush(final DefaultStream stream) {
+    scheduler.schedule(stream);
+    scheduler.flush();
+  }
+
+  private static FullPacket p(final Frame frame) {
+    return ShortPacket.create(
+        false, ConnectionId.random(), ConnectionId.random(), PacketNumber.MIN, frame);
+  }
+
+  private List<Frame> captureFrames() {
+    final ArgumentCaptor<Frame> packetCaptor = ArgumentCaptor.forClass(Frame.class);
+    verify(ctx, atLeastOnce()).send(any(EncryptionLevel.class), packetCaptor.capture());
+    return packetCaptor.getAllValues();
+  }
+
   private Frame captureFrame() {
     final ArgumentCaptor<Frame> packetCaptor = ArgumentCaptor.forClass(Frame.class);
     verify(ctx, atLeastOnce()).send(any(EncryptionLevel.class), packetCaptor.capture());
@@ -101,15 +217,15 @@ public class StreamTest {
 
   @Test
   public void onData() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
-    stream.onData(0, true, DATA);
+    final DefaultStream stream = stream(new MockFlowControlHandler());
+    stream.onData(0, true, Unpooled.wrappedBuffer(DATA));
 
     verify(listener).onData(stream, DATA, true);
   }
 
   @Test
   public void onReset() {
-    final DefaultStream stream = new DefaultStream(streamId, ctx, listener, Bidirectional);
+    final DefaultStream stream = stream(new MockFlowControlHandler());
     stream.onReset(123, 456);
 
     assertTrue(stream.isFinished());
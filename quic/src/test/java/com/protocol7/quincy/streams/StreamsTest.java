@@ -3,6 +3,7 @@ package com.protocol7.quincy.streams;
 import static org.junit.Assert.*;
 
 import com.protocol7.quincy.PipelineContext;
+import com.protocol7.quincy.flowcontrol.MockFlowControlHandler;
 import com.protocol7.quincy.protocol.StreamId;
 import org.junit.Before;
 import org.junit.Test;
@@ -20,7 +21,7 @@ public class StreamsTest {
 
   @Before
   public void setUp() {
-    this.streams = new Streams(ctx);
+    this.streams = new Streams(ctx, new MockFlowControlHandler(), 1000, 10000, () -> false);
   }
 
   @Test
@@ -25,6 +25,7 @@ import com.protocol7.quincy.protocol.packets.ShortPacket;
 import com.protocol7.quincy.tls.ServerTlsSession.ServerHelloAndHandshake;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.util.concurrent.DefaultPromise;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import java.util.List;
@@ -65,7 +66,7 @@ public class ClientTlsManagerTest {
     verify(sender).send(any(EncryptionLevel.class), chFrame.capture(), any(PaddingFrame.class));
     verify(stateSetter).accept(State.BeforeHello);
 
-    final byte[] ch = chFrame.getValue().getCryptoData();
+    final byte[] ch = ByteBufUtil.getBytes(chFrame.getValue().getCryptoData());
 
     final ServerHelloAndHandshake shah = serverTlsSession.handleClientHello(ch);
 
@@ -27,7 +27,7 @@ import com.protocol7.quincy.protocol.packets.ShortPacket;
 import com.protocol7.quincy.tls.ClientTlsSession.CertificateInvalidException;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
 import com.protocol7.quincy.tls.extensions.TransportParameters;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -73,10 +73,12 @@ public class ServerTlsManagerTest {
     verify(ctx).setState(State.BeforeHandshake);
     verify(ctx).next(chPacket);
 
-    clientTlsSession.handleServerHello(
-        Unpooled.wrappedBuffer(cfCaptor.getAllValues().get(0).getCryptoData()));
+    clientTlsSession.handleServerHello(cfCaptor.getAllValues().get(0).getCryptoData());
     final byte[] clientFin =
-        clientTlsSession.handleHandshake(cfCaptor.getAllValues().get(1).getCryptoData(), 0).get();
+        clientTlsSession
+            .handleHandshake(
+                ByteBufUtil.getBytes(cfCaptor.getAllValues().get(1).getCryptoData()), 0)
+            .get();
 
     // receive fin, should send handshake done
     when(ctx.getState()).thenReturn(State.BeforeHandshake);
@@ -1,6 +1,8 @@
 package com.protocol7.quincy.tls;
 
+import com.sun.management.HotSpotDiagnosticMXBean;
 import io.netty.buffer.ByteBuf;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
@@ -8,13 +10,61 @@ import java.util.List;
 import java.util.Optional;
 
 public enum CipherSuite {
-  TLS_AES_128_GCM_SHA256(0x1301),
-  TLS_AES_256_GCM_SHA384(0x1302),
-  TLS_CHACHA20_POLY1305_SHA256(0x1303);
+  TLS_AES_128_GCM_SHA256(0x1301, 16, "SHA-256", 32),
+  TLS_AES_256_GCM_SHA384(0x1302, 32, "SHA-384", 48),
+  TLS_CHACHA20_POLY1305_SHA256(0x1303, 32, "SHA-256", 32);
 
   private static final EnumSet<CipherSuite> ALL = EnumSet.allOf(CipherSuite.class);
 
-  public static final List<CipherSuite> SUPPORTED = List.of(TLS_AES_128_GCM_SHA256);
+  /**
+   * Supported cipher suites, in order of preference. AES-GCM is preferred when the JVM uses
+   * hardware AES instructions, otherwise ChaCha20-Poly1305 is faster and goes first.
+   */
+  public static List<CipherSuite> supported() {
+    return Preference.SUPPORTED;
+  }
+
+  static List<CipherSuite> inPreferenceOrder(final boolean aesAccelerated) {
+    if (aesAccelerated) {
+      return List.of(TLS_AES_128_GCM_SHA256, TLS_CHACHA20_POLY1305_SHA256, TLS_AES_256_GCM_SHA384);
+    } else {
+      return List.of(TLS_CHACHA20_POLY1305_SHA256, TLS_AES_128_GCM_SHA256, TLS_AES_256_GCM_SHA384);
+    }
+  }
+
+  /** Looks up the JVM options on first use, rather than when the enum is loaded */
+  private static class Preference {
+    private static final List<CipherSuite> SUPPORTED = inPreferenceOrder(isAesAccelerated());
+
+    private static boolean isAesAccelerated() {
+      try {
+        final HotSpotDiagnosticMXBean hotSpot =
+            ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        return hotSpot != null
+            && Boolean.parseBoolean(hotSpot.getVMOption("UseAESIntrinsics").getValue());
+      } catch (final RuntimeException | LinkageError e) {
+        // not a HotSpot JVM, or the management classes are not available. Assume the common case
+        // of AES capable hardware
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Picks the first of our preferred cipher suites that the peer also supports.
+   *
+   * @param preferred our cipher suites, in order of preference
+   * @param offered the cipher suites supported by the peer
+   */
+  public static Optional<CipherSuite> select(
+      final List<CipherSuite> preferred, final Collection<CipherSuite> offered) {
+    for (final CipherSuite cs : preferred) {
+      if (offered.contains(cs)) {
+        return Optional.of(cs);
+      }
+    }
+    return Optional.empty();
+  }
 
   public static List<CipherSuite> parseKnown(final ByteBuf bb) {
     final int len = bb.readShort() / 2;
@@ -49,12 +99,38 @@ public enum CipherSuite {
   }
 
   private final int value;
+  private final int keyLength;
+  private final String hashAlgorithm;
+  private final int hashLength;
 
-  CipherSuite(final int value) {
+  CipherSuite(
+      final int value, final int keyLength, final String hashAlgorithm, final int hashLength) {
     this.value = value;
+    this.keyLength = keyLength;
+    this.hashAlgorithm = hashAlgorithm;
+    this.hashLength = hashLength;
   }
 
   public int getValue() {
     return value;
   }
+
+  /** Length of the AEAD and header protection keys */
+  public int getKeyLength() {
+    return keyLength;
+  }
+
+  /** Name of the message digest used for the handshake transcript and HKDF */
+  public String getHashAlgorithm() {
+    return hashAlgorithm;
+  }
+
+  /** Length of the hash output, and therefore of all secrets derived for this suite */
+  public int getHashLength() {
+    return hashLength;
+  }
+
+  public String getMacAlgorithm() {
+    return "Hmac" + hashAlgorithm.replace("-", "");
+  }
 }
@@ -1,6 +1,8 @@
 package com.protocol7.quincy.tls;
 
 import static com.protocol7.quincy.tls.aead.Labels.CLIENT_HANDSHAKE_TRAFFIC_SECRET;
+import static com.protocol7.quincy.tls.aead.Labels.SERVER_HANDSHAKE_TRAFFIC_SECRET;
+import static io.netty.util.internal.ObjectUtil.checkNonEmpty;
 
 import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.AEADs;
@@ -39,19 +41,37 @@ public class ClientTlsSession {
   private final KeyExchange kek;
   private final CertificateValidator certificateValidator;
   private final List<String> applicationProtocols;
+  private final List<CipherSuite> cipherSuites;
 
   private ReceivedDataBuffer handshakeBuffer = new ReceivedDataBuffer();
   private byte[] clientHello;
   private byte[] serverHello;
   private byte[] handshakeSecret;
+  private CipherSuite cipherSuite;
 
   public ClientTlsSession(
       final AEAD initialAEAD,
       final List<String> applicationProtocols,
       final TransportParameters transportParametersDefaults,
       final CertificateValidator certificateValidator) {
+    this(
+        initialAEAD,
+        applicationProtocols,
+        transportParametersDefaults,
+        certificateValidator,
+        CipherSuite.supported());
+  }
+
+  /** @param cipherSuites the cipher suites to offer, in order of preference */
+  public ClientTlsSession(
+      final AEAD initialAEAD,
+      final List<String> applicationProtocols,
+      final TransportParameters transportParametersDefaults,
+      final CertificateValidator certificateValidator,
+      final List<CipherSuite> cipherSuites) {
 
     this.applicationProtocols = applicationProtocols;
+    this.cipherSuites = checkNonEmpty(cipherSuites, "cipherSuites");
     this.transportParametersDefaults = transportParametersDefaults;
 
     aeads = new AEADs(initialAEAD);
@@ -76,7 +96,7 @@ public class ClientTlsSession {
       extensions.add(new ALPN(applicationProtocols));
     }
 
-    final ClientHello ch = ClientHello.defaults(kek, extensions);
+    final ClientHello ch = ClientHello.defaults(kek, cipherSuites, extensions);
     clientHello = Bytes.write(bb -> ch.write(bb, true));
     return clientHello;
   }
@@ -99,17 +119,22 @@ public class ClientTlsSession {
       throw new IllegalArgumentException("Illegal version");
     }
 
+    if (!cipherSuites.contains(hello.getCipherSuites())) {
+      throw new IllegalArgumentException("Cipher suite not offered");
+    }
+    cipherSuite = hello.getCipherSuites();
+
     final KeyShare keyShareExtension =
         (KeyShare)
             hello.geExtension(ExtensionType.KEY_SHARE).orElseThrow(IllegalArgumentException::new);
     final byte[] peerPublicKey = keyShareExtension.getKey(Group.X25519).get();
     final byte[] sharedSecret = kek.generateSharedSecret(peerPublicKey);
 
-    final byte[] helloHash = Hash.sha256(clientHello, serverHello);
+    final byte[] helloHash = Hash.hash(cipherSuite, clientHello, serverHello);
 
-    handshakeSecret = HKDF.calculateHandshakeSecret(sharedSecret);
+    handshakeSecret = HKDF.calculateHandshakeSecret(cipherSuite, sharedSecret);
 
-    aeads.setHandshakeAead(HandshakeAEAD.create(handshakeSecret, helloHash, true));
+    aeads.setHandshakeAead(HandshakeAEAD.create(cipherSuite, handshakeSecret, helloHash, true));
   }
 
   public synchronized Optional<byte[]> handleHandshake(final byte[] msg, final long offset)
@@ -147,7 +172,7 @@ public class ClientTlsSession {
 
       final Finished fin = Finished.parse(buffer);
 
-      final byte[] helloHash = Hash.sha256(clientHello, serverHello);
+      final byte[] helloHash = Hash.hash(cipherSuite, clientHello, serverHello);
       validateServerFinish(fin, helloHash, finBytes);
 
       if (!certificateValidator.validate(sc.getServerCertificates())) {
@@ -158,17 +183,22 @@ public class ClientTlsSession {
       final byte[] hs = Bytes.peekToArray(buffer);
       handshakeBuffer = new ReceivedDataBuffer();
 
-      final byte[] handshakeHash = Hash.sha256(clientHello, serverHello, hs);
+      final byte[] handshakeHash = Hash.hash(cipherSuite, clientHello, serverHello, hs);
 
-      final AEAD oneRttAead = OneRttAEAD.create(handshakeSecret, handshakeHash, true);
+      final AEAD oneRttAead = OneRttAEAD.create(cipherSuite, handshakeSecret, handshakeHash, true);
       aeads.setOneRttAead(oneRttAead);
 
       // TODO dedup
       final byte[] clientHandshakeTrafficSecret =
-          HKDF.expandLabel(handshakeSecret, CLIENT_HANDSHAKE_TRAFFIC_SECRET, helloHash, 32);
+          HKDF.expandLabel(
+              cipherSuite,
+              handshakeSecret,
+              CLIENT_HANDSHAKE_TRAFFIC_SECRET,
+              helloHash,
+              cipherSuite.getHashLength());
 
       final Finished clientFinished =
-          Finished.createClientFinished(clientHandshakeTrafficSecret, handshakeHash);
+          Finished.createClientFinished(cipherSuite, clientHandshakeTrafficSecret, handshakeHash);
 
       final byte[] clientFin = Bytes.write(clientFinished);
 
@@ -185,14 +215,23 @@ public class ClientTlsSession {
   private void validateServerFinish(
       final Finished fin, final byte[] helloHash, final byte[] finBytes) {
     // verify server fin
-    final byte[] finishedHash = Hash.sha256(clientHello, serverHello, finBytes);
+    final byte[] finishedHash = Hash.hash(cipherSuite, clientHello, serverHello, finBytes);
 
     final byte[] serverHandshakeTrafficSecret =
-        HKDF.expandLabel(handshakeSecret, "s hs traffic", helloHash, 32);
+        HKDF.expandLabel(
+            cipherSuite,
+            handshakeSecret,
+            SERVER_HANDSHAKE_TRAFFIC_SECRET,
+            helloHash,
+            cipherSuite.getHashLength());
 
     final boolean valid =
         VerifyData.verify(
-            fin.getVerificationData(), serverHandshakeTrafficSecret, finishedHash, false);
+            cipherSuite,
+            fin.getVerificationData(),
+            serverHandshakeTrafficSecret,
+            finishedHash,
+            false);
     if (!valid) {
       throw new RuntimeException("Server verification data not valid");
     }
@@ -200,7 +239,7 @@ public class ClientTlsSession {
 
   private void validateServerCertificateVerify(
       final ServerCertificate sc, final ServerCertificateVerify scv, final byte[] handshakeData) {
-    final byte[] toVerify = Hash.sha256(clientHello, serverHello, handshakeData);
+    final byte[] toVerify = Hash.hash(cipherSuite, clientHello, serverHello, handshakeData);
 
     final byte[] serverSig = scv.getSignature();
 
@@ -216,6 +255,11 @@ public class ClientTlsSession {
     return aeads.available(encLevel);
   }
 
+  /** The cipher suite selected by the server, or empty until the ServerHello is handled */
+  public Optional<CipherSuite> getCipherSuite() {
+    return Optional.ofNullable(cipherSuite);
+  }
+
   public AEAD getAEAD(final EncryptionLevel level) {
     return aeads.get(level);
   }
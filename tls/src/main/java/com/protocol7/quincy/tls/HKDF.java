@@ -1,9 +1,12 @@
 package com.protocol7.quincy.tls;
 
+import at.favre.lib.crypto.HkdfMacFactory;
 import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
 
 public class HKDF {
 
@@ -11,34 +14,70 @@ public class HKDF {
 
   public static final at.favre.lib.crypto.HKDF hkdf = at.favre.lib.crypto.HKDF.fromHmacSha256();
 
-  // early_secret = hkdf-Extract(
-  //         salt=00,
-  //         key=00...)
-  private static final byte[] EARLY_SECRET = hkdf.extract(new byte[1], new byte[32]);
-  public static final byte[] EMPTY_HASH = Hash.sha256("".getBytes(StandardCharsets.US_ASCII));
+  private static final Map<CipherSuite, at.favre.lib.crypto.HKDF> hkdfs =
+      new EnumMap<>(CipherSuite.class);
+  private static final Map<CipherSuite, byte[]> derivedSecrets = new EnumMap<>(CipherSuite.class);
 
-  //         derived_secret = hkdf-Expand-Label(
-  //                key = early_secret,
-  //                label = "derived",
-  //                context = empty_hash,
-  //                len = 32)
-  private static final byte[] DERIVED_SECRET = expandLabel(EARLY_SECRET, "derived", EMPTY_HASH, 32);
+  public static final byte[] EMPTY_HASH = Hash.sha256();
+
+  static {
+    for (final CipherSuite cipherSuite : CipherSuite.values()) {
+      hkdfs.put(
+          cipherSuite,
+          at.favre.lib.crypto.HKDF.from(new HkdfMacFactory.Default(cipherSuite.getMacAlgorithm())));
+
+      final int hashLength = cipherSuite.getHashLength();
+
+      // early_secret = hkdf-Extract(
+      //         salt=00,
+      //         key=00...)
+      final byte[] earlySecret = extract(cipherSuite, new byte[1], new byte[hashLength]);
+
+      //         derived_secret = hkdf-Expand-Label(
+      //                key = early_secret,
+      //                label = "derived",
+      //                context = empty_hash,
+      //                len = hash length)
+      derivedSecrets.put(
+          cipherSuite,
+          expandLabel(cipherSuite, earlySecret, "derived", Hash.hash(cipherSuite), hashLength));
+    }
+  }
 
   public static byte[] calculateHandshakeSecret(final byte[] sharedSecret) {
+    return calculateHandshakeSecret(CipherSuite.TLS_AES_128_GCM_SHA256, sharedSecret);
+  }
+
+  public static byte[] calculateHandshakeSecret(
+      final CipherSuite cipherSuite, final byte[] sharedSecret) {
     //         handshake_secret = hkdf-Extract(
     //                salt = derived_secret,
     //                key = shared_secret)
-    return hkdf.extract(DERIVED_SECRET, sharedSecret);
+    return extract(cipherSuite, derivedSecrets.get(cipherSuite), sharedSecret);
   }
 
   public static byte[] extract(final byte[] salt, final byte[] inputKeyingMaterial) {
     return hkdf.extract(salt, inputKeyingMaterial);
   }
 
+  public static byte[] extract(
+      final CipherSuite cipherSuite, final byte[] salt, final byte[] inputKeyingMaterial) {
+    return hkdfs.get(cipherSuite).extract(salt, inputKeyingMaterial);
+  }
+
   public static byte[] expandLabel(
       final byte[] key, final String label, final byte[] context, final int length) {
+    return expandLabel(CipherSuite.TLS_AES_128_GCM_SHA256, key, label, context, length);
+  }
+
+  public static byte[] expandLabel(
+      final CipherSuite cipherSuite,
+      final byte[] key,
+      final String label,
+      final byte[] context,
+      final int length) {
     final byte[] expandedLabel = makeLabel(label, context, length);
-    return hkdf.expand(key, expandedLabel, length);
+    return hkdfs.get(cipherSuite).expand(key, expandedLabel, length);
   }
 
   private static byte[] makeLabel(final String label, final byte[] context, final int length) {
@@ -3,20 +3,35 @@ package com.protocol7.quincy.tls;
 import com.protocol7.quincy.utils.Bytes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Map;
 
 public class Hash {
 
-  private static final ThreadLocal<MessageDigest> digests =
-      ThreadLocal.withInitial(
-          () -> {
-            try {
-              return MessageDigest.getInstance("SHA-256");
-            } catch (NoSuchAlgorithmException e) {
-              throw new RuntimeException(e);
-            }
-          });
+  private static final Map<CipherSuite, ThreadLocal<MessageDigest>> digests =
+      new EnumMap<>(CipherSuite.class);
+
+  static {
+    for (final CipherSuite cipherSuite : CipherSuite.values()) {
+      digests.put(
+          cipherSuite,
+          ThreadLocal.withInitial(
+              () -> {
+                try {
+                  return MessageDigest.getInstance(cipherSuite.getHashAlgorithm());
+                } catch (NoSuchAlgorithmException e) {
+                  throw new RuntimeException(e);
+                }
+              }));
+    }
+  }
 
   public static byte[] sha256(final byte[]... data) {
-    return digests.get().digest(Bytes.concat(data));
+    return hash(CipherSuite.TLS_AES_128_GCM_SHA256, data);
+  }
+
+  /** Hashes the data with the hash function of the cipher suite */
+  public static byte[] hash(final CipherSuite cipherSuite, final byte[]... data) {
+    return digests.get(cipherSuite).get().digest(Bytes.concat(data));
   }
 }
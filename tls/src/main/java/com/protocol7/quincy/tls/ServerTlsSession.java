@@ -1,5 +1,7 @@
 package com.protocol7.quincy.tls;
 
+import static com.protocol7.quincy.tls.aead.Labels.CLIENT_HANDSHAKE_TRAFFIC_SECRET;
+import static com.protocol7.quincy.tls.aead.Labels.SERVER_HANDSHAKE_TRAFFIC_SECRET;
 import static com.protocol7.quincy.utils.Bytes.peekToArray;
 import static io.netty.util.internal.ObjectUtil.checkNonEmpty;
 import static java.util.Objects.requireNonNull;
@@ -37,6 +39,7 @@ public class ServerTlsSession {
   private final KeyExchange kek;
 
   private final List<String> applicationProtocols;
+  private final List<CipherSuite> cipherSuites;
 
   private final PrivateKey privateKey;
   private final List<byte[]> certificates;
@@ -44,6 +47,7 @@ public class ServerTlsSession {
   private byte[] serverHello;
   private byte[] handshake;
   private byte[] handshakeSecret;
+  private CipherSuite cipherSuite;
 
   public ServerTlsSession(
       final AEAD initialAEAD,
@@ -51,11 +55,29 @@ public class ServerTlsSession {
       final TransportParameters defaultTransportParameters,
       final List<byte[]> certificates,
       final PrivateKey privateKey) {
+    this(
+        initialAEAD,
+        applicationProtocols,
+        defaultTransportParameters,
+        certificates,
+        privateKey,
+        CipherSuite.supported());
+  }
+
+  /** @param cipherSuites the cipher suites to accept, in order of preference */
+  public ServerTlsSession(
+      final AEAD initialAEAD,
+      final List<String> applicationProtocols,
+      final TransportParameters defaultTransportParameters,
+      final List<byte[]> certificates,
+      final PrivateKey privateKey,
+      final List<CipherSuite> cipherSuites) {
     this.defaultTransportParameters = requireNonNull(defaultTransportParameters);
     this.aeads = new AEADs(requireNonNull(initialAEAD));
     this.applicationProtocols = applicationProtocols;
     this.privateKey = requireNonNull(privateKey);
     this.certificates = checkNonEmpty(certificates, "certificates");
+    this.cipherSuites = checkNonEmpty(cipherSuites, "cipherSuites");
     this.kek = KeyExchange.generate(Group.X25519);
   }
 
@@ -99,8 +121,13 @@ public class ServerTlsSession {
           (KeyShare)
               ch.getExtension(ExtensionType.KEY_SHARE).orElseThrow(IllegalArgumentException::new);
 
+      // our preference wins over the order of the client
+      cipherSuite =
+          CipherSuite.select(cipherSuites, ch.getCipherSuites())
+              .orElseThrow(() -> new IllegalArgumentException("No common cipher suite"));
+
       // create ServerHello
-      serverHello = Bytes.write(ServerHello.defaults(kek));
+      serverHello = Bytes.write(ServerHello.defaults(kek, cipherSuite));
 
       final ByteBuf handshakeBB = Unpooled.buffer();
 
@@ -119,7 +146,7 @@ public class ServerTlsSession {
 
       final byte[] verificationSig =
           CertificateVerify.sign(
-              Hash.sha256(clientHello, serverHello, toVerify), privateKey, false);
+              Hash.hash(cipherSuite, clientHello, serverHello, toVerify), privateKey, false);
 
       final ServerCertificateVerify scv = new ServerCertificateVerify(2052, verificationSig);
       scv.write(handshakeBB);
@@ -127,20 +154,28 @@ public class ServerTlsSession {
       // create server finished
       final byte[] peerPublicKey = keyShareExtension.getKey(Group.X25519).get();
       final byte[] sharedSecret = kek.generateSharedSecret(peerPublicKey);
-      handshakeSecret = HKDF.calculateHandshakeSecret(sharedSecret);
-      final byte[] helloHash = Hash.sha256(clientHello, serverHello);
+      handshakeSecret = HKDF.calculateHandshakeSecret(cipherSuite, sharedSecret);
+      final byte[] helloHash = Hash.hash(cipherSuite, clientHello, serverHello);
 
       // create handshake AEAD
-      final AEAD handshakeAEAD = HandshakeAEAD.create(handshakeSecret, helloHash, false);
+      final AEAD handshakeAEAD =
+          HandshakeAEAD.create(cipherSuite, handshakeSecret, helloHash, false);
       aeads.setHandshakeAead(handshakeAEAD);
 
       final byte[] serverHandshakeTrafficSecret =
-          HKDF.expandLabel(handshakeSecret, "s hs traffic", helloHash, 32);
+          HKDF.expandLabel(
+              cipherSuite,
+              handshakeSecret,
+              SERVER_HANDSHAKE_TRAFFIC_SECRET,
+              helloHash,
+              cipherSuite.getHashLength());
 
-      // finished_hash = SHA256(Client Hello ... Server Cert Verify)
-      final byte[] finishedHash = Hash.sha256(clientHello, serverHello, peekToArray(handshakeBB));
+      // finished_hash = Hash(Client Hello ... Server Cert Verify)
+      final byte[] finishedHash =
+          Hash.hash(cipherSuite, clientHello, serverHello, peekToArray(handshakeBB));
 
-      final byte[] verifyData = VerifyData.create(serverHandshakeTrafficSecret, finishedHash);
+      final byte[] verifyData =
+          VerifyData.create(cipherSuite, serverHandshakeTrafficSecret, finishedHash);
 
       final Finished fin = new Finished(verifyData);
       fin.write(handshakeBB);
@@ -148,8 +183,8 @@ public class ServerTlsSession {
       // create 1-RTT AEAD
       handshake = Bytes.drainToArray(handshakeBB);
 
-      final byte[] handshakeHash = Hash.sha256(clientHello, serverHello, handshake);
-      final AEAD oneRttAEAD = OneRttAEAD.create(handshakeSecret, handshakeHash, false);
+      final byte[] handshakeHash = Hash.hash(cipherSuite, clientHello, serverHello, handshake);
+      final AEAD oneRttAEAD = OneRttAEAD.create(cipherSuite, handshakeSecret, handshakeHash, false);
       aeads.setOneRttAead(oneRttAEAD);
 
       return new ServerHelloAndHandshake(serverHello, handshake);
@@ -166,22 +201,36 @@ public class ServerTlsSession {
     final ByteBuf bb = Unpooled.wrappedBuffer(msg);
     final Finished fin = Finished.parse(bb);
 
-    final byte[] helloHash = Hash.sha256(clientHello, serverHello);
+    final byte[] helloHash = Hash.hash(cipherSuite, clientHello, serverHello);
 
     final byte[] clientHandshakeTrafficSecret =
-        HKDF.expandLabel(handshakeSecret, "c hs traffic", helloHash, 32);
+        HKDF.expandLabel(
+            cipherSuite,
+            handshakeSecret,
+            CLIENT_HANDSHAKE_TRAFFIC_SECRET,
+            helloHash,
+            cipherSuite.getHashLength());
 
-    final byte[] handshakeHash = Hash.sha256(clientHello, serverHello, handshake);
+    final byte[] handshakeHash = Hash.hash(cipherSuite, clientHello, serverHello, handshake);
 
     final boolean valid =
         VerifyData.verify(
-            fin.getVerificationData(), clientHandshakeTrafficSecret, handshakeHash, false);
+            cipherSuite,
+            fin.getVerificationData(),
+            clientHandshakeTrafficSecret,
+            handshakeHash,
+            false);
 
     if (!valid) {
       throw new RuntimeException("Invalid client verification");
     }
   }
 
+  /** The negotiated cipher suite, or empty until the ClientHello is handled */
+  public Optional<CipherSuite> getCipherSuite() {
+    return Optional.ofNullable(cipherSuite);
+  }
+
   public AEAD getAEAD(final EncryptionLevel level) {
     return aeads.get(level);
   }
@@ -3,37 +3,64 @@ package com.protocol7.quincy.tls;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.protocol7.quincy.tls.aead.Labels.FINISHED;
 
-import com.google.common.hash.Hashing;
+import java.security.GeneralSecurityException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 public class VerifyData {
 
   public static byte[] create(final byte[] handshakeTrafficSecret, final byte[] finishedHash) {
-    checkArgument(handshakeTrafficSecret.length == 32);
-    checkArgument(finishedHash.length == 32);
+    return create(CipherSuite.TLS_AES_128_GCM_SHA256, handshakeTrafficSecret, finishedHash);
+  }
+
+  public static byte[] create(
+      final CipherSuite cipherSuite,
+      final byte[] handshakeTrafficSecret,
+      final byte[] finishedHash) {
+    final int hashLength = cipherSuite.getHashLength();
+    checkArgument(handshakeTrafficSecret.length == hashLength);
+    checkArgument(finishedHash.length == hashLength);
 
     // finished_key = HKDF-Expand-Label(
     //    key = client_handshake_traffic_secret,
     //    label = "finished",
     //    context = "",
-    //    len = 32)
-    final byte[] finishedKey = HKDF.expandLabel(handshakeTrafficSecret, FINISHED, new byte[0], 32);
+    //    len = hash length)
+    final byte[] finishedKey =
+        HKDF.expandLabel(cipherSuite, handshakeTrafficSecret, FINISHED, new byte[0], hashLength);
 
-    // verify_data = HMAC-SHA256(
+    // verify_data = HMAC(
     //	key = finished_key,
     //	msg = finished_hash)
-    return Hashing.hmacSha256(finishedKey).hashBytes(finishedHash).asBytes();
+    try {
+      final Mac mac = Mac.getInstance(cipherSuite.getMacAlgorithm());
+      mac.init(new SecretKeySpec(finishedKey, cipherSuite.getMacAlgorithm()));
+      return mac.doFinal(finishedHash);
+    } catch (final GeneralSecurityException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static boolean verify(
+      final byte[] verifyData,
+      final byte[] handshakeTrafficSecret,
+      final byte[] finishedHash,
+      final boolean quic) {
+    return verify(
+        CipherSuite.TLS_AES_128_GCM_SHA256, verifyData, handshakeTrafficSecret, finishedHash, quic);
   }
 
   public static boolean verify(
+      final CipherSuite cipherSuite,
       final byte[] verifyData,
       final byte[] handshakeTrafficSecret,
       final byte[] finishedHash,
       final boolean quic) {
     checkArgument(verifyData.length > 0);
-    checkArgument(handshakeTrafficSecret.length == 32);
-    checkArgument(finishedHash.length == 32);
+    checkArgument(handshakeTrafficSecret.length == cipherSuite.getHashLength());
+    checkArgument(finishedHash.length == cipherSuite.getHashLength());
 
-    final byte[] actual = create(handshakeTrafficSecret, finishedHash);
+    final byte[] actual = create(cipherSuite, handshakeTrafficSecret, finishedHash);
 
     return ConstantTimeEquals.isEqual(verifyData, actual);
   }
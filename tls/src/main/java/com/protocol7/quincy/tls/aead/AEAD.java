@@ -1,33 +1,43 @@
 package com.protocol7.quincy.tls.aead;
 
-import com.google.common.primitives.Longs;
+import static java.util.Objects.requireNonNull;
+
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.utils.Hex;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.spec.AlgorithmParameterSpec;
 import java.util.Arrays;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.ChaCha20ParameterSpec;
 import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 public class AEAD {
 
   public static final int OVERHEAD = 16;
 
-  private static byte[] makeNonce(final byte[] iv, final long packetNumber) {
-    final byte[] nonce = new byte[iv.length];
+  private static final int NONCE_LENGTH = 12;
+  private static final int SAMPLE_LENGTH = 16;
+  private static final int HEADER_MASK_LENGTH = 5;
+  private static final byte[] HEADER_MASK_ZEROS = new byte[HEADER_MASK_LENGTH];
 
-    System.arraycopy(Longs.toByteArray(packetNumber), 0, nonce, nonce.length - 8, 8);
-    for (int i = 0; i < iv.length; i++) {
-      nonce[i] ^= iv[i];
+  private static Cipher getCipher(final String transformation) {
+    try {
+      return Cipher.getInstance(transformation, "SunJCE");
+    } catch (final GeneralSecurityException shouldNeverHappen) {
+      throw new RuntimeException(shouldNeverHappen);
     }
-    return nonce;
   }
 
-  private static byte[] prepareKey(final byte[] key) {
+  private static byte[] prepareKey(final byte[] key, final int length) {
     if (key == null) {
       throw new IllegalArgumentException("key must not be null");
-    } else if (key.length != 16) {
-      throw new IllegalArgumentException("key must be 16 bytes");
+    } else if (key.length != length) {
+      throw new IllegalArgumentException("key must be " + length + " bytes");
     }
     return Arrays.copyOf(key, key.length);
   }
@@ -35,12 +45,13 @@ public class AEAD {
   private static byte[] prepareIV(final byte[] iv) {
     if (iv == null) {
       throw new IllegalArgumentException("IV must not be null");
-    } else if (iv.length != 12) {
+    } else if (iv.length != NONCE_LENGTH) {
       throw new IllegalArgumentException("IV must be 12 bytes");
     }
     return Arrays.copyOf(iv, iv.length);
   }
 
+  private final CipherSuite cipherSuite;
   private final byte[] myKey;
   private final byte[] otherKey;
   private final byte[] myIV;
@@ -48,108 +59,243 @@ public class AEAD {
   private final byte[] myPnKey;
   private final byte[] otherPnKey;
 
+  private final PacketCipher sealer;
+  private final PacketCipher opener;
+  private final HeaderCipher headerEncrypter;
+  private final HeaderCipher headerDecrypter;
+
+  public AEAD(
+      final byte[] myKey,
+      final byte[] otherKey,
+      final byte[] myIV,
+      final byte[] otherIV,
+      final byte[] myPnKey,
+      final byte[] otherPnKey) {
+    this(CipherSuite.TLS_AES_128_GCM_SHA256, myKey, otherKey, myIV, otherIV, myPnKey, otherPnKey);
+  }
+
   public AEAD(
+      final CipherSuite cipherSuite,
       final byte[] myKey,
       final byte[] otherKey,
       final byte[] myIV,
       final byte[] otherIV,
       final byte[] myPnKey,
       final byte[] otherPnKey) {
-    this.myKey = prepareKey(myKey);
-    this.otherKey = prepareKey(otherKey);
+    this.cipherSuite = requireNonNull(cipherSuite);
+    final int keyLength = cipherSuite.getKeyLength();
+    this.myKey = prepareKey(myKey, keyLength);
+    this.otherKey = prepareKey(otherKey, keyLength);
     this.myIV = prepareIV(myIV);
     this.otherIV = prepareIV(otherIV);
-    this.myPnKey = prepareKey(myPnKey);
-    this.otherPnKey = prepareKey(otherPnKey);
+    this.myPnKey = prepareKey(myPnKey, keyLength);
+    this.otherPnKey = prepareKey(otherPnKey, keyLength);
+
+    this.sealer = new PacketCipher(cipherSuite, this.myKey, this.myIV, Cipher.ENCRYPT_MODE);
+    this.opener = new PacketCipher(cipherSuite, this.otherKey, this.otherIV, Cipher.DECRYPT_MODE);
+    this.headerEncrypter = new HeaderCipher(cipherSuite, this.myPnKey);
+    this.headerDecrypter = new HeaderCipher(cipherSuite, this.otherPnKey);
+  }
+
+  public CipherSuite getCipherSuite() {
+    return cipherSuite;
   }
 
   public byte[] open(final byte[] src, final long packetNumber, final byte[] aad)
       throws GeneralSecurityException {
-    return process(src, packetNumber, aad, otherKey, otherIV, Cipher.DECRYPT_MODE);
+    return opener.process(src, packetNumber, aad);
   }
 
   public byte[] seal(final byte[] src, final long packetNumber, final byte[] aad)
       throws GeneralSecurityException {
-    return process(src, packetNumber, aad, myKey, myIV, Cipher.ENCRYPT_MODE);
+    return sealer.process(src, packetNumber, aad);
+  }
+
+  /**
+   * Decrypts the remaining bytes of {@code src} into {@code dst}. The buffers may share memory, in
+   * which case the packet is opened in place. Returns the number of plaintext bytes written.
+   */
+  public int open(
+      final ByteBuffer src, final ByteBuffer dst, final long packetNumber, final byte[] aad)
+      throws GeneralSecurityException {
+    return opener.process(src, dst, packetNumber, aad);
+  }
+
+  /**
+   * Encrypts the remaining bytes of {@code src} into {@code dst}, which must have room for {@link
+   * #OVERHEAD} additional bytes. The buffers may share memory, in which case the packet is sealed
+   * in place. Returns the number of ciphertext bytes written.
+   */
+  public int seal(
+      final ByteBuffer src, final ByteBuffer dst, final long packetNumber, final byte[] aad)
+      throws GeneralSecurityException {
+    return sealer.process(src, dst, packetNumber, aad);
   }
 
   public int getSampleLength() {
-    return 16;
+    return SAMPLE_LENGTH;
   }
 
   public byte[] decryptHeader(final byte[] sample, final byte[] bs, final boolean shortHeader)
       throws GeneralSecurityException {
-    return processHeader(sample, bs, shortHeader, otherPnKey);
+    return headerDecrypter.process(sample, bs, shortHeader);
   }
 
   public byte[] encryptHeader(final byte[] sample, final byte[] bs, final boolean shortHeader)
       throws GeneralSecurityException {
-    return processHeader(sample, bs, shortHeader, myPnKey);
+    return headerEncrypter.process(sample, bs, shortHeader);
   }
 
-  private final ThreadLocal<Cipher> pnCiphers =
-      ThreadLocal.withInitial(
-          () -> {
-            try {
-              return Cipher.getInstance("AES/ECB/NoPadding", "SunJCE");
-            } catch (final GeneralSecurityException shouldNeverHappen) {
-              throw new RuntimeException(shouldNeverHappen);
-            }
-          });
+  private static boolean isChaCha20(final CipherSuite cipherSuite) {
+    return cipherSuite == CipherSuite.TLS_CHACHA20_POLY1305_SHA256;
+  }
 
-  private byte[] processHeader(
-      final byte[] sample, final byte[] bs, final boolean shortHeader, final byte[] key)
-      throws GeneralSecurityException {
-    final byte[] out = Arrays.copyOf(bs, bs.length);
+  /**
+   * AES-GCM or ChaCha20-Poly1305 packet protection for one direction. The key spec is built once
+   * and the cipher is reused for every packet, only re-initialized with the per-packet nonce.
+   * Access is synchronized as packets for a connection may be protected from more than one thread,
+   * but in practice the lock is uncontended.
+   */
+  private static class PacketCipher {
+    private final boolean chaCha20;
+    private final SecretKey key;
+    private final byte[] iv;
+    private final int mode;
+    private final byte[] nonce = new byte[NONCE_LENGTH];
+    private Cipher cipher;
+
+    private PacketCipher(
+        final CipherSuite cipherSuite, final byte[] key, final byte[] iv, final int mode) {
+      this.chaCha20 = isChaCha20(cipherSuite);
+      this.key = new SecretKeySpec(key, chaCha20 ? "ChaCha20" : "AES");
+      this.iv = iv;
+      this.mode = mode;
+    }
 
-    final Cipher cipher = pnCiphers.get();
-    final SecretKey secretKey = new SecretKeySpec(key, 0, key.length, "AES");
+    private synchronized byte[] process(final byte[] src, final long packetNumber, final byte[] aad)
+        throws GeneralSecurityException {
+      return init(packetNumber, aad).doFinal(src);
+    }
 
-    cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+    private synchronized int process(
+        final ByteBuffer src, final ByteBuffer dst, final long packetNumber, final byte[] aad)
+        throws GeneralSecurityException {
+      return init(packetNumber, aad).doFinal(src, dst);
+    }
 
-    final byte[] mask = cipher.doFinal(sample);
+    private Cipher init(final long packetNumber, final byte[] aad) throws GeneralSecurityException {
+      if (cipher == null) {
+        cipher = getCipher(chaCha20 ? "ChaCha20-Poly1305" : "AES/GCM/NoPadding");
+      }
+
+      // the packet number is left-padded to the IV length and XORed with the IV
+      for (int i = 0; i < NONCE_LENGTH; i++) {
+        final int shift = (NONCE_LENGTH - 1 - i) * 8;
+        final byte pnByte = shift < Long.SIZE ? (byte) (packetNumber >>> shift) : 0;
+        nonce[i] = (byte) (iv[i] ^ pnByte);
+      }
+
+      final AlgorithmParameterSpec spec;
+      if (chaCha20) {
+        spec = new IvParameterSpec(nonce);
+      } else {
+        spec = new GCMParameterSpec(OVERHEAD * 8, nonce);
+      }
+
+      try {
+        cipher.init(mode, key, spec);
+      } catch (final InvalidKeyException e) {
+        if (!chaCha20 || mode != Cipher.DECRYPT_MODE) {
+          throw e;
+        }
+        // the ChaCha20 provider rejects a key and nonce repeating the previous initialization,
+        // also when decrypting. Opening a duplicated packet is legitimate, so start over with a
+        // fresh cipher
+        cipher = getCipher("ChaCha20-Poly1305");
+        cipher.init(mode, key, spec);
+      }
+      cipher.updateAAD(aad);
+      return cipher;
+    }
+  }
 
-    final byte maskMask;
-    if (shortHeader) {
-      maskMask = 0x1f;
-    } else {
-      maskMask = 0xf;
+  /**
+   * Header protection for one direction. For AES suites, the mask is the AES-ECB encryption of the
+   * sample, which takes no per-call parameters so the cipher is initialized with the key once. For
+   * ChaCha20, the mask is the ChaCha20 key stream with the block counter and nonce taken from the
+   * sample, which requires re-initializing the cipher for every mask.
+   */
+  private static class HeaderCipher {
+    private final boolean chaCha20;
+    private final SecretKey key;
+    private final byte[] mask = new byte[SAMPLE_LENGTH];
+    private Cipher cipher;
+
+    private HeaderCipher(final CipherSuite cipherSuite, final byte[] key) {
+      this.chaCha20 = isChaCha20(cipherSuite);
+      this.key = new SecretKeySpec(key, chaCha20 ? "ChaCha20" : "AES");
     }
-    out[0] ^= mask[0] & maskMask;
 
-    for (int i = 1; i < out.length; i++) {
-      out[i] ^= mask[i];
+    private synchronized byte[] process(
+        final byte[] sample, final byte[] bs, final boolean shortHeader)
+        throws GeneralSecurityException {
+      final byte[] out = Arrays.copyOf(bs, bs.length);
+
+      if (chaCha20) {
+        chaCha20Mask(sample);
+      } else {
+        aesMask(sample);
+      }
+
+      final byte maskMask;
+      if (shortHeader) {
+        maskMask = 0x1f;
+      } else {
+        maskMask = 0xf;
+      }
+      out[0] ^= mask[0] & maskMask;
+
+      for (int i = 1; i < out.length; i++) {
+        out[i] ^= mask[i];
+      }
+
+      return out;
     }
 
-    return out;
-  }
-
-  private final ThreadLocal<Cipher> aeadCiphers =
-      ThreadLocal.withInitial(
-          () -> {
-            try {
-              return Cipher.getInstance("AES/GCM/NoPadding", "SunJCE");
-            } catch (final GeneralSecurityException shouldNeverHappen) {
-              throw new RuntimeException(shouldNeverHappen);
-            }
-          });
-
-  private byte[] process(
-      final byte[] src,
-      final long packetNumber,
-      final byte[] aad,
-      final byte[] key,
-      final byte[] iv,
-      final int mode)
-      throws GeneralSecurityException {
-    final Cipher cipher = aeadCiphers.get();
-    final SecretKey secretKey = new SecretKeySpec(key, 0, key.length, "AES");
-    final byte[] nonce = makeNonce(iv, packetNumber);
-    final GCMParameterSpec spec = new GCMParameterSpec(128, nonce);
+    private void aesMask(final byte[] sample) throws GeneralSecurityException {
+      if (cipher == null) {
+        cipher = getCipher("AES/ECB/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+      }
 
-    cipher.init(mode, secretKey, spec);
-    cipher.updateAAD(aad);
-    return cipher.doFinal(src);
+      cipher.doFinal(sample, 0, SAMPLE_LENGTH, mask);
+    }
+
+    private void chaCha20Mask(final byte[] sample) throws GeneralSecurityException {
+      if (cipher == null) {
+        cipher = getCipher("ChaCha20");
+      }
+
+      // counter is the first 4 bytes of the sample in little endian, the nonce is the rest
+      final int counter =
+          (sample[0] & 0xff)
+              | (sample[1] & 0xff) << 8
+              | (sample[2] & 0xff) << 16
+              | (sample[3] & 0xff) << 24;
+      final byte[] nonce = Arrays.copyOfRange(sample, 4, SAMPLE_LENGTH);
+
+      final ChaCha20ParameterSpec spec = new ChaCha20ParameterSpec(nonce, counter);
+      try {
+        cipher.init(Cipher.DECRYPT_MODE, key, spec);
+      } catch (final InvalidKeyException e) {
+        // the provider rejects a key and nonce repeating the previous initialization, which
+        // happens when protecting the same header twice. Reusing the key stream for the mask is
+        // harmless, so start over with a fresh cipher
+        cipher = getCipher("ChaCha20");
+        cipher.init(Cipher.DECRYPT_MODE, key, spec);
+      }
+      cipher.doFinal(HEADER_MASK_ZEROS, 0, HEADER_MASK_LENGTH, mask);
+    }
   }
 
   public byte[] getMyKey() {
@@ -179,7 +325,9 @@ public class AEAD {
   @Override
   public String toString() {
     return "AEAD{"
-        + "myKey="
+        + "cipherSuite="
+        + cipherSuite
+        + ", myKey="
         + Hex.hex(myKey)
         + ", otherKey="
         + Hex.hex(otherKey)
@@ -6,44 +6,59 @@ import static com.protocol7.quincy.tls.aead.Labels.IV;
 import static com.protocol7.quincy.tls.aead.Labels.KEY;
 import static com.protocol7.quincy.tls.aead.Labels.SERVER_HANDSHAKE_TRAFFIC_SECRET;
 
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.tls.HKDF;
 
 public class HandshakeAEAD {
 
+  private static final byte[] EMPTY = new byte[0];
+
   public static AEAD create(
       final byte[] handshakeSecret, final byte[] helloHash, final boolean isClient) {
+    return create(CipherSuite.TLS_AES_128_GCM_SHA256, handshakeSecret, helloHash, isClient);
+  }
+
+  public static AEAD create(
+      final CipherSuite cipherSuite,
+      final byte[] handshakeSecret,
+      final byte[] helloHash,
+      final boolean isClient) {
+    final int hashLength = cipherSuite.getHashLength();
+    final int keyLength = cipherSuite.getKeyLength();
 
     // client_handshake_traffic_secret = hkdf-Expand-Label(
     //    key = handshake_secret,
     //    label = "c hs traffic",
     //    context = hello_hash,
-    //    len = 32)
+    //    len = hash length)
     final byte[] clientHandshakeTrafficSecret =
-        HKDF.expandLabel(handshakeSecret, CLIENT_HANDSHAKE_TRAFFIC_SECRET, helloHash, 32);
+        HKDF.expandLabel(
+            cipherSuite, handshakeSecret, CLIENT_HANDSHAKE_TRAFFIC_SECRET, helloHash, hashLength);
 
     // server_handshake_traffic_secret = hkdf-Expand-Label(
     //    key = handshake_secret,
     //    label = "s hs traffic",
     //    context = hello_hash,
-    //    len = 32)
+    //    len = hash length)
     final byte[] serverHandshakeTrafficSecret =
-        HKDF.expandLabel(handshakeSecret, SERVER_HANDSHAKE_TRAFFIC_SECRET, helloHash, 32);
+        HKDF.expandLabel(
+            cipherSuite, handshakeSecret, SERVER_HANDSHAKE_TRAFFIC_SECRET, helloHash, hashLength);
 
     // client_handshake_key = hkdf-Expand-Label(
     //    key = client_handshake_traffic_secret,
     //    label = "key",
     //    context = "",
-    //    len = 16)
+    //    len = key length)
     final byte[] clientHandshakeKey =
-        HKDF.expandLabel(clientHandshakeTrafficSecret, KEY, new byte[0], 16);
+        HKDF.expandLabel(cipherSuite, clientHandshakeTrafficSecret, KEY, EMPTY, keyLength);
 
     // server_handshake_key = hkdf-Expand-Label(
     //    key = server_handshake_traffic_secret,
     //    label = "key",
     //    context = "",
-    //    len = 16)
+    //    len = key length)
     final byte[] serverHandshakeKey =
-        HKDF.expandLabel(serverHandshakeTrafficSecret, KEY, new byte[0], 16);
+        HKDF.expandLabel(cipherSuite, serverHandshakeTrafficSecret, KEY, EMPTY, keyLength);
 
     // client_handshake_iv = hkdf-Expand-Label(
     //    key = client_handshake_traffic_secret,
@@ -51,7 +66,7 @@ public class HandshakeAEAD {
     //    context = "",
     //    len = 12)
     final byte[] clientHandshakeIV =
-        HKDF.expandLabel(clientHandshakeTrafficSecret, IV, new byte[0], 12);
+        HKDF.expandLabel(cipherSuite, clientHandshakeTrafficSecret, IV, EMPTY, 12);
 
     // server_handshake_iv = hkdf-Expand-Label(
     //    key = server_handshake_traffic_secret,
@@ -59,15 +74,16 @@ public class HandshakeAEAD {
     //    context = "",
     //    len = 12)
     final byte[] serverHandshakeIV =
-        HKDF.expandLabel(serverHandshakeTrafficSecret, IV, new byte[0], 12);
+        HKDF.expandLabel(cipherSuite, serverHandshakeTrafficSecret, IV, EMPTY, 12);
 
     final byte[] clientPnKey =
-        HKDF.expandLabel(clientHandshakeTrafficSecret, HP_KEY, new byte[0], 16);
+        HKDF.expandLabel(cipherSuite, clientHandshakeTrafficSecret, HP_KEY, EMPTY, keyLength);
     final byte[] serverPnKey =
-        HKDF.expandLabel(serverHandshakeTrafficSecret, HP_KEY, new byte[0], 16);
+        HKDF.expandLabel(cipherSuite, serverHandshakeTrafficSecret, HP_KEY, EMPTY, keyLength);
 
     if (isClient) {
       return new AEAD(
+          cipherSuite,
           clientHandshakeKey,
           serverHandshakeKey,
           clientHandshakeIV,
@@ -76,6 +92,7 @@ public class HandshakeAEAD {
           serverPnKey);
     } else {
       return new AEAD(
+          cipherSuite,
           serverHandshakeKey,
           clientHandshakeKey,
           serverHandshakeIV,
@@ -7,59 +7,81 @@ import static com.protocol7.quincy.tls.aead.Labels.IV;
 import static com.protocol7.quincy.tls.aead.Labels.KEY;
 import static com.protocol7.quincy.tls.aead.Labels.SERVER_APPLICATION_TRAFFIC_SECRET;
 
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.tls.HKDF;
+import com.protocol7.quincy.tls.Hash;
 
 public class OneRttAEAD {
 
-  private static final byte[] ZEROS = new byte[32];
   private static final byte[] EMPTY = new byte[0];
 
   public static AEAD create(
       final byte[] handshakeSecret, final byte[] handshakeHash, final boolean isClient) {
+    return create(CipherSuite.TLS_AES_128_GCM_SHA256, handshakeSecret, handshakeHash, isClient);
+  }
+
+  public static AEAD create(
+      final CipherSuite cipherSuite,
+      final byte[] handshakeSecret,
+      final byte[] handshakeHash,
+      final boolean isClient) {
+    final int hashLength = cipherSuite.getHashLength();
+    final int keyLength = cipherSuite.getKeyLength();
 
     // derived_secret = HKDF-Expand-Label(
     //                key = handshake_secret,
     //                label = "derived",
     //                context = empty_hash,
-    //                len = 32)
-    final byte[] derivedSecret = HKDF.expandLabel(handshakeSecret, DERIVED, HKDF.EMPTY_HASH, 32);
+    //                len = hash length)
+    final byte[] derivedSecret =
+        HKDF.expandLabel(cipherSuite, handshakeSecret, DERIVED, Hash.hash(cipherSuite), hashLength);
 
     //        master_secret = HKDF-Extract(
     //                salt=derived_secret,
     //                key=00...)
-    final byte[] masterSecret = HKDF.hkdf.extract(derivedSecret, ZEROS);
+    final byte[] masterSecret = HKDF.extract(cipherSuite, derivedSecret, new byte[hashLength]);
 
     // client_application_traffic_secret = HKDF-Expand-Label(
     //    key = master_secret,
     //    label = "c ap traffic",
     //    context = handshake_hash,
-    //    len = 32)
+    //    len = hash length)
     final byte[] clientApplicationTrafficSecret =
-        HKDF.expandLabel(masterSecret, CLIENT_APPLICATION_TRAFFIC_SECRET, handshakeHash, 32);
+        HKDF.expandLabel(
+            cipherSuite,
+            masterSecret,
+            CLIENT_APPLICATION_TRAFFIC_SECRET,
+            handshakeHash,
+            hashLength);
 
     // server_application_traffic_secret = HKDF-Expand-Label(
     //    key = master_secret,
     //    label = "s ap traffic",
     //    context = handshake_hash,
-    //    len = 32)
+    //    len = hash length)
     final byte[] serverApplicationTrafficSecret =
-        HKDF.expandLabel(masterSecret, SERVER_APPLICATION_TRAFFIC_SECRET, handshakeHash, 32);
+        HKDF.expandLabel(
+            cipherSuite,
+            masterSecret,
+            SERVER_APPLICATION_TRAFFIC_SECRET,
+            handshakeHash,
+            hashLength);
 
     // client_application_key = HKDF-Expand-Label(
     //    key = client_application_traffic_secret,
     //    label = "key",
     //    context = "",
-    //    len = 16)
+    //    len = key length)
     final byte[] clientApplicationKey =
-        HKDF.expandLabel(clientApplicationTrafficSecret, KEY, EMPTY, 16);
+        HKDF.expandLabel(cipherSuite, clientApplicationTrafficSecret, KEY, EMPTY, keyLength);
 
     // server_application_key = HKDF-Expand-Label(
     //    key = server_application_traffic_secret,
     //    label = "key",
     //    context = "",
-    //    len = 16)
+    //    len = key length)
     final byte[] serverApplicationKey =
-        HKDF.expandLabel(serverApplicationTrafficSecret, KEY, EMPTY, 16);
+        HKDF.expandLabel(cipherSuite, serverApplicationTrafficSecret, KEY, EMPTY, keyLength);
 
     // client_application_iv = HKDF-Expand-Label(
     //    key = client_application_traffic_secret,
@@ -67,7 +89,7 @@ public class OneRttAEAD {
     //    context = "",
     //    len = 12)
     final byte[] clientApplicationIV =
-        HKDF.expandLabel(clientApplicationTrafficSecret, IV, EMPTY, 12);
+        HKDF.expandLabel(cipherSuite, clientApplicationTrafficSecret, IV, EMPTY, 12);
 
     // server_application_iv = HKDF-Expand-Label(
     //    key = server_application_traffic_secret,
@@ -75,13 +97,16 @@ public class OneRttAEAD {
     //    context = "",
     //    len = 12)
     final byte[] serverApplicationIV =
-        HKDF.expandLabel(serverApplicationTrafficSecret, IV, EMPTY, 12);
+        HKDF.expandLabel(cipherSuite, serverApplicationTrafficSecret, IV, EMPTY, 12);
 
-    final byte[] clientPnKey = HKDF.expandLabel(clientApplicationTrafficSecret, HP_KEY, EMPTY, 16);
-    final byte[] serverPnKey = HKDF.expandLabel(serverApplicationTrafficSecret, HP_KEY, EMPTY, 16);
+    final byte[] clientPnKey =
+        HKDF.expandLabel(cipherSuite, clientApplicationTrafficSecret, HP_KEY, EMPTY, keyLength);
+    final byte[] serverPnKey =
+        HKDF.expandLabel(cipherSuite, serverApplicationTrafficSecret, HP_KEY, EMPTY, keyLength);
 
     if (isClient) {
       return new AEAD(
+          cipherSuite,
           clientApplicationKey,
           serverApplicationKey,
           clientApplicationIV,
@@ -90,6 +115,7 @@ public class OneRttAEAD {
           serverPnKey);
     } else {
       return new AEAD(
+          cipherSuite,
           serverApplicationKey,
           clientApplicationKey,
           serverApplicationIV,
@@ -27,9 +27,13 @@ public class ClientHello implements Message {
   private static final MessageType TYPE = MessageType.CLIENT_HELLO;
 
   public static ClientHello defaults(final KeyExchange ke, final List<Extension> exts) {
+    return defaults(ke, CipherSuite.supported(), exts);
+  }
+
+  public static ClientHello defaults(
+      final KeyExchange ke, final List<CipherSuite> cipherSuites, final List<Extension> exts) {
     final byte[] clientRandom = Rnd.rndBytes(32);
     final byte[] sessionId = new byte[0];
-    final List<CipherSuite> cipherSuites = CipherSuite.SUPPORTED;
     final List<Extension> extensions =
         ImmutableList.<Extension>builder()
             .add(
@@ -3,6 +3,7 @@ package com.protocol7.quincy.tls.messages;
 import static com.protocol7.quincy.tls.messages.MessageType.FINISHED;
 
 import com.protocol7.quincy.Writeable;
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.tls.VerifyData;
 import com.protocol7.quincy.utils.Bytes;
 import io.netty.buffer.ByteBuf;
@@ -13,7 +14,15 @@ public class Finished implements Message, Writeable {
 
   public static Finished createClientFinished(
       final byte[] clientHandshakeTrafficSecret, final byte[] finHash) {
-    final byte[] verifyData = VerifyData.create(clientHandshakeTrafficSecret, finHash);
+    return createClientFinished(
+        CipherSuite.TLS_AES_128_GCM_SHA256, clientHandshakeTrafficSecret, finHash);
+  }
+
+  public static Finished createClientFinished(
+      final CipherSuite cipherSuite,
+      final byte[] clientHandshakeTrafficSecret,
+      final byte[] finHash) {
+    final byte[] verifyData = VerifyData.create(cipherSuite, clientHandshakeTrafficSecret, finHash);
 
     return new Finished(verifyData);
   }
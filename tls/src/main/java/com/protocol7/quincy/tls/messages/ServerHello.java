@@ -23,17 +23,17 @@ public class ServerHello implements Message, Writeable {
   private static final MessageType TYPE = SERVER_HELLO;
   private static final byte[] VERSION = new byte[] {0x03, 0x03};
 
-  public static ServerHello defaults(final KeyExchange ke, final Extension... exts) {
+  public static ServerHello defaults(
+      final KeyExchange ke, final CipherSuite cipherSuite, final Extension... exts) {
     final byte[] clientRandom = Rnd.rndBytes(32);
     final byte[] sessionId = new byte[0];
-    final CipherSuite cipherSuites = CipherSuite.TLS_AES_128_GCM_SHA256;
     final List<Extension> extensions =
         ImmutableList.<Extension>builder()
             .add(KeyShare.of(ke.getGroup(), ke.getPublicKey()), SupportedVersions.TLS13)
             .add(exts)
             .build();
 
-    return new ServerHello(clientRandom, sessionId, cipherSuites, extensions);
+    return new ServerHello(clientRandom, sessionId, cipherSuite, extensions);
   }
 
   public static ServerHello parse(final ByteBuf bb, final boolean isClient) {
@@ -57,7 +57,6 @@ public class ServerHello implements Message, Writeable {
     final byte[] sessionId = new byte[sessionIdLen];
 
     final Optional<CipherSuite> cipherSuite = CipherSuite.parseOne(bb);
-    // TODO implement all know cipher suites
     if (!cipherSuite.isPresent()) {
       throw new IllegalArgumentException("Illegal cipher suite");
     }
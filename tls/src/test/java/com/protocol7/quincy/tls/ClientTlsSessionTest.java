@@ -55,7 +55,7 @@ public class ClientTlsSessionTest {
 
     assertEquals(32, hello.getClientRandom().length);
     assertEquals(0, hello.getSessionId().length);
-    assertEquals(List.of(TLS_AES_128_GCM_SHA256), hello.getCipherSuites());
+    assertEquals(CipherSuite.supported(), hello.getCipherSuites());
 
     assertEquals(
         32,
@@ -151,6 +151,24 @@ public class ClientTlsSessionTest {
     started.handleServerHello(b);
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void serverHelloCipherSuiteNotOffered() {
+    final ClientTlsSession aesOnly =
+        new ClientTlsSession(
+            InitialAEAD.create(Rnd.rndBytes(4), true),
+            List.of("http/0.9"),
+            TestUtil.tps(),
+            NoopCertificateValidator.INSTANCE,
+            List.of(TLS_AES_128_GCM_SHA256));
+    aesOnly.startHandshake(connectionId);
+
+    final List<Extension> ext = List.of(keyshare(), SupportedVersions.TLS13, TestUtil.tps());
+    final ByteBuf b =
+        Unpooled.wrappedBuffer(sh(new byte[32], CipherSuite.TLS_CHACHA20_POLY1305_SHA256, ext));
+
+    aesOnly.handleServerHello(b);
+  }
+
   @Test(expected = IllegalStateException.class)
   public void serverHelloWithoutStart() {
     engine.handleServerHello(Unpooled.wrappedBuffer(new byte[0]));
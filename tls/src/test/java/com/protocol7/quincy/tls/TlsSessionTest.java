@@ -1,7 +1,11 @@
 package com.protocol7.quincy.tls;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
 import com.protocol7.quincy.tls.ClientTlsSession.CertificateInvalidException;
 import com.protocol7.quincy.tls.ServerTlsSession.ServerHelloAndHandshake;
+import com.protocol7.quincy.tls.aead.AEAD;
 import com.protocol7.quincy.tls.aead.InitialAEAD;
 import com.protocol7.quincy.tls.messages.EncryptedExtensions;
 import com.protocol7.quincy.tls.messages.Finished;
@@ -21,6 +25,7 @@ public class TlsSessionTest {
   private static final String ALPN = "http/0.9";
 
   private PrivateKey privateKey;
+  private byte[] serverCert;
   private final byte[] connectionId = Rnd.rndBytes(16);
   private final ClientTlsSession client =
       new ClientTlsSession(
@@ -33,7 +38,7 @@ public class TlsSessionTest {
   @Before
   public void setUp() throws Exception {
     privateKey = KeyUtil.getPrivateKey("src/test/resources/server.der");
-    final byte[] serverCert = KeyUtil.getCertFromCrt("src/test/resources/server.crt").getEncoded();
+    serverCert = KeyUtil.getCertFromCrt("src/test/resources/server.crt").getEncoded();
 
     server =
         new ServerTlsSession(
@@ -56,6 +61,70 @@ public class TlsSessionTest {
     server.handleClientFinished(clientFin);
   }
 
+  @Test
+  public void handshakeAllCipherSuites() throws Exception {
+    for (final CipherSuite cipherSuite : CipherSuite.values()) {
+      assertHandshake(List.of(cipherSuite), CipherSuite.supported(), cipherSuite);
+    }
+  }
+
+  @Test
+  public void handshakeServerPreference() throws Exception {
+    assertHandshake(
+        List.of(CipherSuite.TLS_AES_128_GCM_SHA256, CipherSuite.TLS_CHACHA20_POLY1305_SHA256),
+        List.of(CipherSuite.TLS_CHACHA20_POLY1305_SHA256, CipherSuite.TLS_AES_128_GCM_SHA256),
+        CipherSuite.TLS_CHACHA20_POLY1305_SHA256);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void handshakeNoCommonCipherSuite() throws Exception {
+    assertHandshake(
+        List.of(CipherSuite.TLS_AES_256_GCM_SHA384),
+        List.of(CipherSuite.TLS_AES_128_GCM_SHA256),
+        CipherSuite.TLS_AES_128_GCM_SHA256);
+  }
+
+  private void assertHandshake(
+      final List<CipherSuite> clientSuites,
+      final List<CipherSuite> serverSuites,
+      final CipherSuite expected)
+      throws Exception {
+    final ClientTlsSession client =
+        new ClientTlsSession(
+            InitialAEAD.create(connectionId, true),
+            List.of(ALPN),
+            TestUtil.tps(),
+            NoopCertificateValidator.INSTANCE,
+            clientSuites);
+    final ServerTlsSession server =
+        new ServerTlsSession(
+            InitialAEAD.create(connectionId, false),
+            List.of(ALPN),
+            TestUtil.tps(),
+            List.of(serverCert),
+            privateKey,
+            serverSuites);
+
+    final ServerHelloAndHandshake shah =
+        server.handleClientHello(client.startHandshake(connectionId));
+    client.handleServerHello(Unpooled.wrappedBuffer(shah.getServerHello()));
+    server.handleClientFinished(client.handleHandshake(shah.getServerHandshake(), 0).get());
+
+    assertEquals(expected, client.getCipherSuite().get());
+    assertEquals(expected, server.getCipherSuite().get());
+
+    for (final EncryptionLevel level : List.of(EncryptionLevel.Handshake, EncryptionLevel.OneRtt)) {
+      final AEAD clientAEAD = client.getAEAD(level);
+      final AEAD serverAEAD = server.getAEAD(level);
+      assertEquals(expected, clientAEAD.getCipherSuite());
+
+      final byte[] plainText = Rnd.rndBytes(100);
+      final byte[] aad = Rnd.rndBytes(20);
+      assertArrayEquals(plainText, serverAEAD.open(clientAEAD.seal(plainText, 1, aad), 1, aad));
+      assertArrayEquals(plainText, clientAEAD.open(serverAEAD.seal(plainText, 1, aad), 1, aad));
+    }
+  }
+
   @Test(expected = RuntimeException.class)
   public void handshakeWithInvalidServerCertVerification() throws CertificateInvalidException {
     final byte[] clientHello = client.startHandshake(connectionId);
@@ -0,0 +1,66 @@
+package com.protocol7.quincy.tls.aead;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import org.junit.Test;
+
+public class AEADAllocationTest {
+
+  private static final int PAYLOAD_LENGTH = 1200;
+
+  // the SunJCE GCM implementation copies overlapping input when sealing and buffers the full
+  // ciphertext when opening, roughly two payload lengths each. Anything on top of that is
+  // allocated by AEAD itself and must stay within a small constant per packet
+  private static final long ALLOCATION_BUDGET = 4 * PAYLOAD_LENGTH + 1024;
+
+  private static final int WARMUP = 10_000;
+  private static final int ITERATIONS = 10_000;
+
+  private final AEAD aead = TestAEAD.create();
+  private final ByteBuffer packet = ByteBuffer.allocate(PAYLOAD_LENGTH + AEAD.OVERHEAD);
+  private final byte[] aad = new byte[20];
+  private final byte[] sample = new byte[16];
+  private final byte[] header = new byte[5];
+
+  private long pn = 0;
+
+  @Test
+  public void allocationPerPacket() throws GeneralSecurityException {
+    final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean) threadMXBean;
+    assumeTrue(mxBean.isThreadAllocatedMemorySupported());
+
+    for (int i = 0; i < WARMUP; i++) {
+      roundtrip();
+    }
+
+    final long threadId = Thread.currentThread().getId();
+    final long before = mxBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ITERATIONS; i++) {
+      roundtrip();
+    }
+    final long perPacket = (mxBean.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+
+    assertTrue(
+        "Allocated " + perPacket + " bytes per packet, budget is " + ALLOCATION_BUDGET,
+        perPacket <= ALLOCATION_BUDGET);
+  }
+
+  private void roundtrip() throws GeneralSecurityException {
+    packet.clear().limit(PAYLOAD_LENGTH);
+    aead.seal(packet.duplicate(), packet.duplicate().clear(), pn, aad);
+    aead.encryptHeader(sample, header, true);
+
+    packet.clear();
+    aead.decryptHeader(sample, header, true);
+    aead.open(packet.duplicate(), packet.duplicate(), pn, aad);
+
+    pn++;
+  }
+}
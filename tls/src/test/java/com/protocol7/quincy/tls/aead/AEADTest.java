@@ -3,9 +3,16 @@ package com.protocol7.quincy.tls.aead;
 import static com.protocol7.quincy.tls.TestUtil.assertHex;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+import com.protocol7.quincy.tls.CipherSuite;
+import com.protocol7.quincy.tls.HKDF;
 import com.protocol7.quincy.utils.Hex;
+import com.protocol7.quincy.utils.Rnd;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
 import javax.crypto.AEADBadTagException;
 import org.junit.Test;
 
@@ -110,6 +117,56 @@ public class AEADTest {
     assertArrayEquals(plainText, actual);
   }
 
+  @Test
+  public void sealInPlaceHeap() throws GeneralSecurityException {
+    assertSealInPlace(ByteBuffer.allocate(plainText.length + AEAD.OVERHEAD));
+  }
+
+  @Test
+  public void sealInPlaceDirect() throws GeneralSecurityException {
+    assertSealInPlace(ByteBuffer.allocateDirect(plainText.length + AEAD.OVERHEAD));
+  }
+
+  private void assertSealInPlace(final ByteBuffer bb) throws GeneralSecurityException {
+    bb.put(plainText).flip();
+
+    final int written =
+        aead.seal(bb.duplicate(), bb.duplicate().limit(bb.capacity()), packetNumber, aad);
+
+    assertEquals(myCipherText.length, written);
+    final byte[] actual = new byte[written];
+    bb.clear();
+    bb.get(actual);
+    assertArrayEquals(myCipherText, actual);
+  }
+
+  @Test
+  public void openInPlaceHeap() throws GeneralSecurityException {
+    assertOpenInPlace(ByteBuffer.allocate(otherCipherText.length));
+  }
+
+  @Test
+  public void openInPlaceDirect() throws GeneralSecurityException {
+    assertOpenInPlace(ByteBuffer.allocateDirect(otherCipherText.length));
+  }
+
+  private void assertOpenInPlace(final ByteBuffer bb) throws GeneralSecurityException {
+    bb.put(otherCipherText).flip();
+
+    final int written = aead.open(bb.duplicate(), bb.duplicate(), packetNumber, aad);
+
+    assertEquals(plainText.length, written);
+    final byte[] actual = new byte[written];
+    bb.get(actual, 0, written);
+    assertArrayEquals(plainText, actual);
+  }
+
+  @Test(expected = AEADBadTagException.class)
+  public void openInPlaceBadAad() throws GeneralSecurityException {
+    final ByteBuffer bb = ByteBuffer.wrap(otherCipherText.clone());
+    aead.open(bb.duplicate(), bb.duplicate(), packetNumber, new byte[aad.length]);
+  }
+
   @Test
   public void testAEAD() throws GeneralSecurityException {
     final AEAD testAEAD = TestAEAD.create();
@@ -119,6 +176,98 @@ public class AEADTest {
     assertArrayEquals(pt, plainText);
   }
 
+  // RFC 9001, appendix A.5
+  @Test
+  public void chaCha20ShortHeader() throws GeneralSecurityException {
+    final CipherSuite cs = CipherSuite.TLS_CHACHA20_POLY1305_SHA256;
+    final byte[] secret =
+        Hex.dehex("9ac312a7f877468ebe69422748ad00a15443f18203a07d6060f688f30f21632b");
+
+    final byte[] key = HKDF.expandLabel(cs, secret, Labels.KEY, new byte[0], 32);
+    final byte[] iv = HKDF.expandLabel(cs, secret, Labels.IV, new byte[0], 12);
+    final byte[] hp = HKDF.expandLabel(cs, secret, Labels.HP_KEY, new byte[0], 32);
+    assertHex("c6d98ff3441c3fe1b2182094f69caa2ed4b716b65488960a7a984979fb23e1c8", key);
+    assertHex("e0459b3474bdd0e44a41c144", iv);
+    assertHex("25a282b9e82f06f21f488917a4fc8f1b73573685608597d0efcb076b0ab7a7a4", hp);
+
+    final AEAD chaCha20 = new AEAD(cs, key, key, iv, iv, hp, hp);
+    final byte[] header = Hex.dehex("4200bff4");
+
+    final byte[] sealed = chaCha20.seal(Hex.dehex("01"), 654360564, header);
+    assertHex("655e5cd55c41f69080575d7999c25a5bfb", sealed);
+    assertHex("01", chaCha20.open(sealed, 654360564, header));
+
+    final byte[] sample = Arrays.copyOfRange(sealed, 1, 17);
+    final byte[] protectedHeader = chaCha20.encryptHeader(sample, header, true);
+    assertHex("4cfe4189", protectedHeader);
+    assertHex(header, chaCha20.decryptHeader(sample, protectedHeader, true));
+  }
+
+  @Test
+  public void chaCha20Duplicates() throws GeneralSecurityException {
+    final CipherSuite cs = CipherSuite.TLS_CHACHA20_POLY1305_SHA256;
+    final byte[] key = Rnd.rndBytes(32);
+    final byte[] iv = Rnd.rndBytes(12);
+    final AEAD chaCha20 = new AEAD(cs, key, key, iv, iv, key, key);
+
+    // a duplicated packet is opened, and its header unprotected, with the same nonce twice
+    final byte[] sealed = chaCha20.seal(plainText, packetNumber, aad);
+    assertHex(plainText, chaCha20.open(sealed, packetNumber, aad));
+    assertHex(plainText, chaCha20.open(sealed, packetNumber, aad));
+
+    final byte[] protectedHeader = chaCha20.encryptHeader(sample, header, true);
+    assertHex(protectedHeader, chaCha20.encryptHeader(sample, header, true));
+    assertHex(header, chaCha20.decryptHeader(sample, protectedHeader, true));
+    assertHex(header, chaCha20.decryptHeader(sample, protectedHeader, true));
+  }
+
+  @Test
+  public void chaCha20SealRepeatedNonce() throws GeneralSecurityException {
+    final CipherSuite cs = CipherSuite.TLS_CHACHA20_POLY1305_SHA256;
+    final byte[] key = Rnd.rndBytes(32);
+    final byte[] iv = Rnd.rndBytes(12);
+    final AEAD chaCha20 = new AEAD(cs, key, key, iv, iv, key, key);
+
+    chaCha20.seal(plainText, packetNumber, aad);
+    // sealing with the same key and nonce twice would reuse the key stream, which must not be
+    // recovered from
+    try {
+      chaCha20.seal(plainText, packetNumber, aad);
+      fail();
+    } catch (final InvalidKeyException expected) {
+    }
+
+    // but the next packet is still sealed
+    final byte[] sealed = chaCha20.seal(plainText, packetNumber + 1, aad);
+    assertHex(plainText, chaCha20.open(sealed, packetNumber + 1, aad));
+  }
+
+  @Test
+  public void aes256Roundtrip() throws GeneralSecurityException {
+    final byte[] key = Rnd.rndBytes(32);
+    final AEAD aes256 =
+        new AEAD(CipherSuite.TLS_AES_256_GCM_SHA384, key, key, myIV, myIV, key, key);
+
+    final ByteBuffer bb = ByteBuffer.allocateDirect(plainText.length + AEAD.OVERHEAD);
+    bb.put(plainText).flip();
+    aes256.seal(bb.duplicate(), bb.duplicate().clear(), packetNumber, aad);
+    bb.clear();
+    final int written = aes256.open(bb.duplicate(), bb.duplicate(), packetNumber, aad);
+
+    final byte[] actual = new byte[written];
+    bb.get(actual);
+    assertArrayEquals(plainText, actual);
+
+    final byte[] encrypted = aes256.encryptHeader(sample, header, false);
+    assertHex(header, aes256.decryptHeader(sample, encrypted, false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void aes256KeyInvalidLength() {
+    new AEAD(
+        CipherSuite.TLS_AES_256_GCM_SHA384, myKey, otherKey, myIV, otherIV, myPnKey, otherPnKey);
+  }
+
   @Test
   public void headerRoundtripLongHeader() throws GeneralSecurityException {
 
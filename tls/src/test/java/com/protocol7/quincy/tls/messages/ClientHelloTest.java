@@ -5,6 +5,7 @@ import static com.protocol7.quincy.tls.TestUtil.assertHex;
 import static com.protocol7.quincy.utils.Hex.dehex;
 import static org.junit.Assert.assertEquals;
 
+import com.protocol7.quincy.tls.CipherSuite;
 import com.protocol7.quincy.tls.Group;
 import com.protocol7.quincy.tls.KeyExchange;
 import com.protocol7.quincy.tls.TestUtil;
@@ -64,7 +65,7 @@ public class ClientHelloTest {
 
     assertEquals(32, ch.getClientRandom().length);
     assertEquals(0, ch.getSessionId().length);
-    assertEquals(List.of(TLS_AES_128_GCM_SHA256), ch.getCipherSuites());
+    assertEquals(CipherSuite.supported(), ch.getCipherSuites());
 
     final KeyShare keyShare = (KeyShare) ch.getExtension(ExtensionType.KEY_SHARE).get();
     assertEquals(1, keyShare.getKeys().size());